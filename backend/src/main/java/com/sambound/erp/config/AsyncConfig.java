@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
@@ -23,5 +24,13 @@ public class AsyncConfig {
     public Executor auditLogExecutor() {
         return Executors.newVirtualThreadPerTaskExecutor();
     }
-}
 
+    /**
+     * 导入任务执行器
+     * 每个导入任务占用一个虚拟线程，同时运行的任务数由 ImportJobService 控制
+     */
+    @Bean(name = "importJobExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService importJobExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
\ No newline at end of file
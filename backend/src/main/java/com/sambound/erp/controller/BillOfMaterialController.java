@@ -2,12 +2,14 @@ package com.sambound.erp.controller;
 
 import com.sambound.erp.dto.ApiResponse;
 import com.sambound.erp.dto.BillOfMaterialDTO;
-import com.sambound.erp.dto.BomImportResponse;
 import com.sambound.erp.dto.BomQueryDTO;
+import com.sambound.erp.dto.BomWhereUsedDTO;
 import com.sambound.erp.dto.CreateBomRequest;
+import com.sambound.erp.dto.ImportJobResponse;
 import com.sambound.erp.dto.UpdateBomRequest;
 import com.sambound.erp.service.BillOfMaterialService;
-import com.sambound.erp.service.BomImportService;
+import com.sambound.erp.service.ImportJobService;
+import com.sambound.erp.service.importer.ImportJobType;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +17,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -22,13 +25,13 @@ import java.util.List;
 public class BillOfMaterialController {
 
     private final BillOfMaterialService bomService;
-    private final BomImportService bomImportService;
+    private final ImportJobService importJobService;
 
     public BillOfMaterialController(
             BillOfMaterialService bomService,
-            BomImportService bomImportService) {
+            ImportJobService importJobService) {
         this.bomService = bomService;
-        this.bomImportService = bomImportService;
+        this.importJobService = importJobService;
     }
 
     @GetMapping
@@ -84,8 +87,11 @@ public class BillOfMaterialController {
 
     @PostMapping("/import")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<BomImportResponse>> importBoms(
-            @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<ApiResponse<ImportJobResponse>> importBoms(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun,
+            @RequestParam(value = "force", defaultValue = "false") boolean force,
+            Principal principal) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("文件不能为空"));
@@ -104,13 +110,12 @@ public class BillOfMaterialController {
                     .body(ApiResponse.error("只支持Excel或CSV格式的文件（.xlsx、.xls或.csv），当前文件: " + filename));
         }
 
-        try {
-            BomImportResponse result = bomImportService.importFromExcel(file);
-            return ResponseEntity.ok(ApiResponse.success(result));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("导入失败: " + e.getMessage()));
-        }
+        // 导入在后台任务中执行，返回任务信息供前端轮询进度
+        // dryRun=true 时只做校验和变更预览，不写入数据库
+        // 当前用户相同内容的文件正在排队或导入（预检：刚预检成功）时返回已有任务，force=true 时强制重新导入
+        ImportJobResponse job = importJobService.submit(ImportJobType.BOM, file, principal.getName(), dryRun, force);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(dryRun ? "预检任务已提交" : "导入任务已提交", job));
     }
 
     /**
@@ -144,5 +149,16 @@ public class BillOfMaterialController {
         List<BomQueryDTO> result = bomService.queryBomBackward(materialCode, version);
         return ResponseEntity.ok(ApiResponse.success(result));
     }
+
+    /**
+     * BOM反查（平铺）：按层级平铺返回所有父级物料及其BOM，每条父项明细只出现一次，层级取最短层数
+     */
+    @GetMapping("/query/backward/flat")
+    public ResponseEntity<ApiResponse<List<BomWhereUsedDTO>>> queryBomBackwardFlat(
+            @RequestParam String materialCode,
+            @RequestParam(required = false) String version) {
+        List<BomWhereUsedDTO> result = bomService.queryBomBackwardFlat(materialCode, version);
+        return ResponseEntity.ok(ApiResponse.success(result));
+    }
 }
 
@@ -0,0 +1,57 @@
+package com.sambound.erp.controller;
+
+import com.sambound.erp.dto.ApiResponse;
+import com.sambound.erp.dto.ImportJobResponse;
+import com.sambound.erp.service.ImportJobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+
+/**
+ * 导入任务进度查询、取消与错误报告下载
+ */
+@RestController
+@RequestMapping("/api/import-jobs")
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+
+    public ImportJobController(ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobResponse>> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success(importJobService.getJob(jobId)));
+    }
+
+    /**
+     * 下载完整错误报告（gzip 压缩的 CSV，UTF-8 带 BOM）
+     */
+    @GetMapping("/{jobId}/error-report")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Resource> downloadErrorReport(@PathVariable String jobId) {
+        Path report = importJobService.getErrorReport(jobId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("import-errors-" + jobId + ".csv.gz")
+                        .build()
+                        .toString())
+                .body(new FileSystemResource(report));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobResponse>> cancelJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success("取消请求已提交", importJobService.cancel(jobId)));
+    }
+}
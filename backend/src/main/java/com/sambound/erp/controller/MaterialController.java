@@ -1,16 +1,18 @@
 package com.sambound.erp.controller;
 
 import com.sambound.erp.dto.ApiResponse;
+import com.sambound.erp.dto.ImportJobResponse;
 import com.sambound.erp.dto.MaterialDTO;
-import com.sambound.erp.dto.MaterialImportResponse;
-import com.sambound.erp.service.MaterialImportService;
+import com.sambound.erp.service.ImportJobService;
 import com.sambound.erp.service.MaterialService;
+import com.sambound.erp.service.importer.ImportJobType;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -18,11 +20,11 @@ import java.util.List;
 public class MaterialController {
 
     private final MaterialService materialService;
-    private final MaterialImportService materialImportService;
+    private final ImportJobService importJobService;
 
-    public MaterialController(MaterialService materialService, MaterialImportService materialImportService) {
+    public MaterialController(MaterialService materialService, ImportJobService importJobService) {
         this.materialService = materialService;
-        this.materialImportService = materialImportService;
+        this.importJobService = importJobService;
     }
 
     @GetMapping
@@ -36,8 +38,11 @@ public class MaterialController {
 
     @PostMapping("/import")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<MaterialImportResponse>> importMaterials(
-            @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<ApiResponse<ImportJobResponse>> importMaterials(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun,
+            @RequestParam(value = "force", defaultValue = "false") boolean force,
+            Principal principal) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("文件不能为空"));
@@ -50,18 +55,18 @@ public class MaterialController {
         }
         // 大小写不敏感检查
         String lowerFilename = filename.toLowerCase().trim();
-        if (!lowerFilename.endsWith(".xlsx") && !lowerFilename.endsWith(".xls")) {
+        if (!lowerFilename.endsWith(".xlsx") && !lowerFilename.endsWith(".xls")
+                && !lowerFilename.endsWith(".csv")) {
             return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("只支持Excel格式的文件（.xlsx或.xls），当前文件: " + filename));
+                    .body(ApiResponse.error("只支持Excel或CSV格式的文件（.xlsx、.xls或.csv），当前文件: " + filename));
         }
 
-        try {
-            MaterialImportResponse result = materialImportService.importFromExcel(file);
-            return ResponseEntity.ok(ApiResponse.success(result));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("导入失败: " + e.getMessage()));
-        }
+        // 导入在后台任务中执行，返回任务信息供前端轮询进度
+        // dryRun=true 时只做校验和变更预览，不写入数据库
+        // 当前用户相同内容的文件正在排队或导入（预检：刚预检成功）时返回已有任务，force=true 时强制重新导入
+        ImportJobResponse job = importJobService.submit(ImportJobType.MATERIAL, file, principal.getName(), dryRun, force);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(dryRun ? "预检任务已提交" : "导入任务已提交", job));
     }
 
     @GetMapping("/group/{groupId}")
@@ -2,11 +2,12 @@ package com.sambound.erp.controller;
 
 import com.sambound.erp.dto.ApiResponse;
 import com.sambound.erp.dto.CreateUnitRequest;
+import com.sambound.erp.dto.ImportJobResponse;
 import com.sambound.erp.dto.UnitDTO;
-import com.sambound.erp.dto.UnitImportResponse;
 import com.sambound.erp.dto.UpdateUnitRequest;
-import com.sambound.erp.service.UnitImportService;
+import com.sambound.erp.service.ImportJobService;
 import com.sambound.erp.service.UnitService;
+import com.sambound.erp.service.importer.ImportJobType;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -21,11 +23,11 @@ import java.util.List;
 public class UnitController {
 
     private final UnitService unitService;
-    private final UnitImportService unitImportService;
+    private final ImportJobService importJobService;
 
-    public UnitController(UnitService unitService, UnitImportService unitImportService) {
+    public UnitController(UnitService unitService, ImportJobService importJobService) {
         this.unitService = unitService;
-        this.unitImportService = unitImportService;
+        this.importJobService = importJobService;
     }
 
     @GetMapping
@@ -72,26 +74,29 @@ public class UnitController {
 
     @PostMapping("/import")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<UnitImportResponse>> importUnits(
-            @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<ApiResponse<ImportJobResponse>> importUnits(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun,
+            @RequestParam(value = "force", defaultValue = "false") boolean force,
+            Principal principal) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("文件不能为空"));
         }
 
         String filename = file.getOriginalFilename();
-        if (filename == null || (!filename.endsWith(".xlsx") && !filename.endsWith(".xls"))) {
+        if (filename == null || (!filename.endsWith(".xlsx") && !filename.endsWith(".xls")
+                && !filename.endsWith(".csv"))) {
             return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("只支持Excel格式的文件（.xlsx或.xls）"));
+                    .body(ApiResponse.error("只支持Excel或CSV格式的文件（.xlsx、.xls或.csv）"));
         }
 
-        try {
-            UnitImportResponse result = unitImportService.importFromExcel(file);
-            return ResponseEntity.ok(ApiResponse.success(result));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("导入失败: " + e.getMessage()));
-        }
+        // 导入在后台任务中执行，返回任务信息供前端轮询进度
+        // dryRun=true 时只做校验和变更预览，不写入数据库
+        // 当前用户相同内容的文件正在排队或导入（预检：刚预检成功）时返回已有任务，force=true 时强制重新导入
+        ImportJobResponse job = importJobService.submit(ImportJobType.UNIT, file, principal.getName(), dryRun, force);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(dryRun ? "预检任务已提交" : "导入任务已提交", job));
     }
 }
 
@@ -10,6 +10,9 @@ public record BomImportResponse(
         Integer totalRows,
         Integer successCount,
         Integer failureCount,
+        Integer insertedCount,
+        Integer updatedCount,
+        Integer skippedCount,
         List<ImportError> errors
     ) {}
     
@@ -17,6 +20,10 @@ public record BomImportResponse(
         Integer totalRows,
         Integer successCount,
         Integer failureCount,
+        Integer insertedCount,
+        Integer updatedCount,
+        Integer deletedCount,
+        Integer unchangedCount,
         List<ImportError> errors
     ) {}
     
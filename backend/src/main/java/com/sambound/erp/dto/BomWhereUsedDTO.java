@@ -0,0 +1,38 @@
+package com.sambound.erp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * BOM反查平铺结果DTO（每行一条父项明细，带层级号）
+ */
+public record BomWhereUsedDTO(
+    // 层级：直接使用被查物料的父项为 1，逐层向上递增；经多条路径到达的明细取最短层数，只出现一次
+    Integer level,
+    
+    // 该行的子项物料（第 1 层为被查物料，其余为下一层的父项物料）
+    Long childMaterialId,
+    String childMaterialCode,
+    
+    // 父项物料信息
+    Long materialId,
+    String materialCode,
+    String materialName,
+    String materialSpecification, // 物料型号
+    String materialGroupCode,
+    String materialGroupName,
+    
+    // 父项BOM信息
+    Long bomId,
+    String bomVersion,
+    String bomName,
+    
+    // 子项在父项BOM中的用量信息
+    Integer sequence,
+    BigDecimal numerator,
+    BigDecimal denominator,
+    BigDecimal scrapRate,
+    String childBomVersion, // 子项配置的BOM版本
+    String childUnitCode, // 子项单位编码
+    String childUnitName // 子项单位名称
+) {
+}
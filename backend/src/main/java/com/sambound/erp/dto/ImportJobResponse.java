@@ -0,0 +1,33 @@
+package com.sambound.erp.dto;
+
+import com.sambound.erp.service.importer.ImportJobStatus;
+import com.sambound.erp.service.importer.ImportJobType;
+
+import java.time.LocalDateTime;
+
+/**
+ * 导入任务状态
+ * result 在任务成功完成后为对应的导入结果（MaterialImportResponse / BomImportResponse / UnitImportResponse）；
+ * dryRun 为 true 时结果为预检结果，新增/更新/未变化数量为预计值，数据库未被修改；
+ * result 中的错误列表只是摘要，errorReportAvailable 为 true 时可下载包含全部 errorCount 条错误的报告
+ */
+public record ImportJobResponse(
+        String jobId,
+        ImportJobType type,
+        boolean dryRun,
+        ImportJobStatus status,
+        String filename,
+        String submittedBy,
+        int queuePosition,
+        long rowsParsed,
+        long batchesCommitted,
+        long errorCount,
+        boolean errorReportAvailable,
+        double rowsPerSecond,
+        LocalDateTime submittedAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        Object result,
+        String errorMessage
+) {
+}
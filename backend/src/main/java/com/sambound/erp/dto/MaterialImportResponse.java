@@ -17,6 +17,9 @@ public record MaterialImportResponse(
         Integer totalRows,
         Integer successCount,
         Integer failureCount,
+        Integer insertedCount,
+        Integer updatedCount,
+        Integer skippedCount,
         List<ImportError> errors
     ) {}
 
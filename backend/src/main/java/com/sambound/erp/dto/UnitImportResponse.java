@@ -6,6 +6,9 @@ public record UnitImportResponse(
     Integer totalRows,
     Integer successCount,
     Integer failureCount,
+    Integer insertedCount,
+    Integer updatedCount,
+    Integer skippedCount,
     List<ImportError> errors
 ) {
     public record ImportError(
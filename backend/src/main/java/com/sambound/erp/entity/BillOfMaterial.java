@@ -45,6 +45,10 @@ public class BillOfMaterial {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    // 导入时计算的行内容指纹，再次导入内容未变化时跳过写入；手工修改后清空
+    @Column(name = "content_hash")
+    private Long contentHash;
+
     @Column(nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
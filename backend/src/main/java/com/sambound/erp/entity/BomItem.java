@@ -19,8 +19,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 public class BomItem {
+    // 序列每次分配的ID数量（pooled 优化器），与数据库序列的 INCREMENT BY 一致
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bom_items_id_seq")
+    @SequenceGenerator(name = "bom_items_id_seq", sequenceName = "bom_items_id_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
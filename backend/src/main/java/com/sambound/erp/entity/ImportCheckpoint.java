@@ -0,0 +1,91 @@
+package com.sambound.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 导入检查点实体类
+ * 每个写入批次一行，记录批次覆盖的工作表行范围和提交状态。
+ * 同一导入任务在服务重启后恢复时，已提交批次覆盖的行直接跳过，不再执行其SQL；任务结束后删除。
+ * 同一任务同一工作表从同一行开始的批次只有一行（唯一约束），重复记录时更新该行
+ */
+@Entity
+@Table(name = "import_checkpoints",
+        uniqueConstraints = @UniqueConstraint(name = "uk_import_checkpoints_batch",
+                columnNames = {"job_id", "sheet_name", "first_row"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportCheckpoint {
+
+    public static final String STATUS_COMMITTED = "COMMITTED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 导入任务ID
+     */
+    @Column(name = "job_id", nullable = false, length = 36)
+    private String jobId;
+
+    /**
+     * 导入类型（MATERIAL, BOM等）
+     */
+    @Column(name = "job_type", nullable = false, length = 20)
+    private String jobType;
+
+    /**
+     * 工作表名称
+     */
+    @Column(name = "sheet_name", nullable = false, length = 100)
+    private String sheetName;
+
+    /**
+     * 批次序号（同一次导入内从1开始）
+     */
+    @Column(name = "batch_index", nullable = false)
+    private Integer batchIndex;
+
+    /**
+     * 批次覆盖的第一行行号
+     */
+    @Column(name = "first_row", nullable = false)
+    private Integer firstRow;
+
+    /**
+     * 批次覆盖的最后一行行号（已提交批次中的最大值即最后提交的行偏移）
+     */
+    @Column(name = "last_row", nullable = false)
+    private Integer lastRow;
+
+    /**
+     * 批次写入的记录数
+     */
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    /**
+     * 批次状态（COMMITTED, FAILED）
+     */
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    /**
+     * 失败原因（批次失败时）
+     */
+    @Column(length = 1000)
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -0,0 +1,90 @@
+package com.sambound.erp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 导入任务记录实体类
+ * 排队中和运行中的导入任务各一行，任务结束（成功、失败或取消）后删除。
+ * 服务重启时仍存在的记录即为被中断的任务，按记录中的暂存文件重新排队，
+ * 已提交的批次由导入检查点跳过
+ */
+@Entity
+@Table(name = "import_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobRecord {
+
+    /**
+     * 任务ID（与前端轮询使用的任务ID相同）
+     */
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    /**
+     * 导入类型（MATERIAL, BOM, UNIT）
+     */
+    @Column(nullable = false, length = 20)
+    private String jobType;
+
+    /**
+     * 是否只做预检
+     */
+    @Column(nullable = false)
+    private boolean dryRun;
+
+    /**
+     * 上传时的原始文件名
+     */
+    @Column(length = 255)
+    private String originalFilename;
+
+    /**
+     * 暂存文件的本地路径
+     */
+    @Column(nullable = false, length = 1000)
+    private String filePath;
+
+    /**
+     * 暂存文件大小（字节）
+     */
+    @Column(nullable = false)
+    private long fileSize;
+
+    /**
+     * 导入文件内容的SHA-256
+     */
+    @Column(nullable = false, length = 64)
+    private String fileHash;
+
+    /**
+     * 提交用户
+     */
+    @Column(nullable = false, length = 50)
+    private String submittedBy;
+
+    /**
+     * 任务状态（QUEUED, RUNNING）
+     */
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    /**
+     * 提交时间
+     */
+    @Column(nullable = false)
+    private LocalDateTime submittedAt;
+
+    /**
+     * 开始运行时间
+     */
+    private LocalDateTime startedAt;
+}
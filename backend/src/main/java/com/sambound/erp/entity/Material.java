@@ -51,6 +51,10 @@ public class Material {
     @JoinColumn(name = "base_unit_id", nullable = false)
     private Unit baseUnit;
 
+    // 导入时计算的行内容指纹，再次导入内容未变化时跳过写入；手工修改后清空
+    @Column(name = "content_hash")
+    private Long contentHash;
+
     @Column(nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -44,6 +44,10 @@ public class Unit {
     @Builder.Default
     private BigDecimal denominator = BigDecimal.ONE;
 
+    // 导入时计算的行内容指纹，再次导入内容未变化时跳过写入；手工修改后清空
+    @Column(name = "content_hash")
+    private Long contentHash;
+
     @Column(nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -0,0 +1,11 @@
+package com.sambound.erp.exception;
+
+/**
+ * 导入任务被取消时抛出，用于中止正在进行的解析和批次处理
+ */
+public class ImportCancelledException extends RuntimeException {
+
+    public ImportCancelledException(String message) {
+        super(message);
+    }
+}
@@ -6,11 +6,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BillOfMaterialRepository extends JpaRepository<BillOfMaterial, Long> {
+public interface BillOfMaterialRepository extends JpaRepository<BillOfMaterial, Long>, BillOfMaterialRepositoryCustom {
     
     /**
      * 根据父项物料ID查找所有版本的BOM
@@ -65,5 +66,109 @@ public interface BillOfMaterialRepository extends JpaRepository<BillOfMaterial,
            "JOIN BomItem item ON item.bom.id = bom.id " +
            "WHERE item.childMaterial.id = :childMaterialId")
     List<BillOfMaterial> findByChildMaterialId(@Param("childMaterialId") Long childMaterialId);
+    
+    /**
+     * 查询所有已记录内容指纹的BOM（父项物料编码、版本、指纹），导入前预加载，用于跳过内容未变化的BOM
+     */
+    @Query("SELECT bom.material.code, bom.version, bom.contentHash FROM BillOfMaterial bom " +
+           "WHERE bom.contentHash IS NOT NULL")
+    List<Object[]> findAllContentHashes();
+    
+    /**
+     * BOM表头批量写入数据（已存在的BOM按文件内容覆盖表头）
+     */
+    record BomHeaderBatchData(
+        Long materialId,
+        String version,
+        String name,
+        String category,
+        String usage,
+        String description,
+        Long contentHash
+    ) {}
+    
+    /**
+     * BOM表头批量写入的结果行
+     */
+    record UpsertedBom(Long id, Long materialId, String version, boolean inserted) {}
+    
+    /**
+     * BOM正查展开的一行：展开范围内某个BOM的一条明细，连同子项物料、物料组、单位和解析出的子项BOM
+     * 每个可达BOM的明细只返回一次（与被引用的次数无关），由调用方按 childBomId 组装成树
+     *
+     * @param bomId 明细所属的BOM
+     */
+    record ExplodedBomLine(
+        Long bomId,
+        Integer sequence,
+        Long childMaterialId,
+        String childMaterialCode,
+        String childMaterialName,
+        String childMaterialSpecification,
+        String childMaterialGroupCode,
+        String childMaterialGroupName,
+        Long childBomId,
+        String childBomVersion,
+        String childBomName,
+        BigDecimal numerator,
+        BigDecimal denominator,
+        BigDecimal scrapRate,
+        String configuredChildBomVersion,
+        String childUnitCode,
+        String childUnitName
+    ) {}
+    
+    /**
+     * BOM反查的一行：使用某物料的一条父项明细，连同父项物料、物料组和父项BOM
+     * 每条明细只返回一次（与经过它的向上路径数无关），由调用方按 childMaterialId / parentMaterialId 组装成树
+     */
+    record WhereUsedLine(
+        Long childMaterialId,
+        String childMaterialCode,
+        Long parentMaterialId,
+        String parentMaterialCode,
+        String parentMaterialName,
+        String parentMaterialSpecification,
+        String parentMaterialGroupCode,
+        String parentMaterialGroupName,
+        Long bomId,
+        String bomVersion,
+        String bomName,
+        Integer sequence,
+        BigDecimal numerator,
+        BigDecimal denominator,
+        BigDecimal scrapRate,
+        String childBomVersion,
+        String childUnitCode,
+        String childUnitName
+    ) {}
+    
+    /**
+     * 内存结构图的BOM表头
+     */
+    record GraphBom(long id, long materialId, String version) {}
+    
+    /**
+     * 内存结构图的BOM明细
+     */
+    record GraphItem(
+        long bomId,
+        long childMaterialId,
+        int sequence,
+        long childUnitId,
+        BigDecimal numerator,
+        BigDecimal denominator,
+        BigDecimal scrapRate,
+        String childBomVersion
+    ) {}
+    
+    /**
+     * BOM表头和明细的总行数（用于预分配内存结构图）
+     */
+    record GraphSize(long bomCount, long itemCount) {}
+    
+    /**
+     * BOM名称
+     */
+    record BomName(Long id, String name) {}
 }
-
@@ -0,0 +1,53 @@
+package com.sambound.erp.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BillOfMaterialRepositoryCustom {
+    /**
+     * 批量插入/更新BOM表头（按父项物料ID + 版本匹配），一条语句完成
+     * 批次内父项物料ID + 版本必须唯一
+     *
+     * @return 每个写入行的ID、父项物料ID、版本以及是否为新增
+     */
+    List<BillOfMaterialRepository.UpsertedBom> upsertHeaders(List<BillOfMaterialRepository.BomHeaderBatchData> batchData);
+
+    /**
+     * 一条递归查询取回BOM展开范围内的全部明细（子项BOM按明细配置的版本解析，未配置时使用 V000）
+     * 递归只按BOM去重遍历：被多个父项共用的子项BOM、以及循环引用中的BOM，其明细都只读取一次；
+     * 结果按 (BOM ID, 序号) 排列
+     */
+    List<BillOfMaterialRepository.ExplodedBomLine> explode(Long rootBomId);
+
+    /**
+     * 一条递归查询向上找出使用该物料的全部父项明细（沿 子项物料 → 明细 → BOM → 父项物料 逐层向上）
+     * 递归只按物料去重遍历：经多条路径到达的父项物料、以及循环引用中的物料，其父项明细都只读取一次；
+     * 结果按明细ID排列
+     */
+    List<BillOfMaterialRepository.WhereUsedLine> whereUsed(Long materialId);
+
+    /**
+     * BOM表头和明细的总行数
+     */
+    BillOfMaterialRepository.GraphSize countGraph();
+
+    /**
+     * 逐行读取全部BOM表头（按ID升序）和明细（按BOM ID、序号升序），不在内存中缓存结果集
+     * 须在事务中调用（PostgreSQL 只有在事务中才按批次从游标读取）
+     */
+    void streamGraph(Consumer<BillOfMaterialRepository.GraphBom> bomConsumer,
+                     Consumer<BillOfMaterialRepository.GraphItem> itemConsumer);
+
+    /**
+     * 读取指定BOM的表头和明细，顺序与 {@link #streamGraph(Consumer, Consumer)} 相同；已删除的BOM不返回
+     */
+    void streamGraph(Collection<Long> bomIds,
+                     Consumer<BillOfMaterialRepository.GraphBom> bomConsumer,
+                     Consumer<BillOfMaterialRepository.GraphItem> itemConsumer);
+
+    /**
+     * 按ID批量读取BOM名称
+     */
+    List<BillOfMaterialRepository.BomName> findNamesByIds(Collection<Long> ids);
+}
@@ -0,0 +1,295 @@
+package com.sambound.erp.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Repository
+public class BillOfMaterialRepositoryImpl implements BillOfMaterialRepositoryCustom {
+
+    private static final String COLUMNS = "material_id, version, name, category, usage, description, content_hash";
+
+    // 数组绑定的批量插入/更新语句（固定文本，与批次大小无关）
+    // 已存在的BOM按文件内容覆盖表头；RETURNING 返回ID供明细写入使用，xmax = 0 表示新增
+    private static final String UNNEST_UPSERT_SQL = """
+            INSERT INTO bill_of_materials (%s, created_at, updated_at)
+            SELECT %s, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS bigint[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]),
+                        CAST(? AS text[]), CAST(? AS text[]), CAST(? AS bigint[]))
+                AS t(%s)
+            ON CONFLICT (material_id, version) DO UPDATE
+            SET name = EXCLUDED.name,
+                category = EXCLUDED.category,
+                usage = EXCLUDED.usage,
+                description = EXCLUDED.description,
+                content_hash = EXCLUDED.content_hash,
+                updated_at = CURRENT_TIMESTAMP
+            RETURNING id, material_id, version, (xmax = 0) AS inserted
+            """.formatted(COLUMNS, COLUMNS, COLUMNS);
+
+    // 子项BOM版本解析：明细未配置版本（空或只有空白）时使用 V000，配置了版本时按原值匹配
+    private static final String CHILD_BOM_CONDITION = """
+            cb.material_id = i.child_material_id
+            AND cb.version = CASE WHEN BTRIM(COALESCE(i.child_bom_version, '')) = '' THEN 'V000'
+                                  ELSE i.child_bom_version END
+            """;
+
+    // 多层展开：递归部分只求可达的BOM集合（UNION 去重，共用的子项BOM和循环引用中的BOM只展开一次），
+    // 再一次连接取回这些BOM的明细及物料、物料组、单位和子项BOM；树由调用方在内存中组装
+    private static final String EXPLODE_SQL = """
+            WITH RECURSIVE reachable(bom_id) AS (
+                SELECT CAST(? AS bigint)
+                UNION
+                SELECT cb.id
+                FROM reachable r
+                JOIN bom_items i ON i.bom_id = r.bom_id
+                JOIN bill_of_materials cb ON %1$s
+            )
+            SELECT i.bom_id, i.sequence,
+                   m.id, m.code, m.name, m.specification, g.code, g.name,
+                   cb.id, cb.version, cb.name,
+                   i.numerator, i.denominator, i.scrap_rate, i.child_bom_version,
+                   u.code, u.name
+            FROM reachable r
+            JOIN bom_items i ON i.bom_id = r.bom_id
+            JOIN materials m ON m.id = i.child_material_id
+            LEFT JOIN material_groups g ON g.id = m.material_group_id
+            LEFT JOIN units u ON u.id = i.child_unit_id
+            LEFT JOIN bill_of_materials cb ON %1$s
+            ORDER BY i.bom_id, i.sequence, i.id
+            """.formatted(CHILD_BOM_CONDITION);
+
+    // 多层反查：递归部分沿 bom_items(child_material_id, bom_id) 索引向上，只求可达的物料集合
+    // （UNION 去重，经多条路径到达的物料和循环引用中的物料只展开一次），再一次连接取回使用这些物料的明细
+    private static final String WHERE_USED_SQL = """
+            WITH RECURSIVE reached(material_id) AS (
+                SELECT CAST(? AS bigint)
+                UNION
+                SELECT b.material_id
+                FROM reached r
+                JOIN bom_items i ON i.child_material_id = r.material_id
+                JOIN bill_of_materials b ON b.id = i.bom_id
+            )
+            SELECT i.child_material_id, cm.code,
+                   pm.id, pm.code, pm.name, pm.specification, g.code, g.name,
+                   b.id, b.version, b.name,
+                   i.sequence, i.numerator, i.denominator, i.scrap_rate, i.child_bom_version,
+                   u.code, u.name
+            FROM reached r
+            JOIN bom_items i ON i.child_material_id = r.material_id
+            JOIN bill_of_materials b ON b.id = i.bom_id
+            JOIN materials pm ON pm.id = b.material_id
+            JOIN materials cm ON cm.id = i.child_material_id
+            LEFT JOIN material_groups g ON g.id = pm.material_group_id
+            LEFT JOIN units u ON u.id = i.child_unit_id
+            ORDER BY i.id
+            """;
+
+    // 内存结构图的加载语句：表头按ID、明细按 (BOM ID, 序号) 排列，与结构图的CSR布局一致
+    private static final String GRAPH_SIZE_SQL =
+            "SELECT (SELECT COUNT(*) FROM bill_of_materials), (SELECT COUNT(*) FROM bom_items)";
+    private static final String GRAPH_BOMS_SQL =
+            "SELECT id, material_id, version FROM bill_of_materials %s ORDER BY id";
+    private static final String GRAPH_ITEMS_SQL = """
+            SELECT bom_id, child_material_id, sequence, child_unit_id,
+                   numerator, denominator, scrap_rate, child_bom_version
+            FROM bom_items %s
+            ORDER BY bom_id, sequence, id
+            """;
+    // 全量加载时每次从游标读取的行数
+    private static final int GRAPH_FETCH_SIZE = 10000;
+
+    private static final String FIND_NAMES_BY_IDS_SQL =
+            "SELECT id, name FROM bill_of_materials WHERE id = ANY(CAST(? AS bigint[]))";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BillOfMaterialRepository.UpsertedBom> upsertHeaders(
+            List<BillOfMaterialRepository.BomHeaderBatchData> batchData) {
+        if (batchData == null || batchData.isEmpty()) {
+            return List.of();
+        }
+
+        int size = batchData.size();
+        Long[] materialIds = new Long[size];
+        String[] versions = new String[size];
+        String[] names = new String[size];
+        String[] categories = new String[size];
+        String[] usages = new String[size];
+        String[] descriptions = new String[size];
+        Long[] contentHashes = new Long[size];
+        for (int i = 0; i < size; i++) {
+            BillOfMaterialRepository.BomHeaderBatchData data = batchData.get(i);
+            materialIds[i] = data.materialId();
+            versions[i] = data.version();
+            names[i] = data.name();
+            categories[i] = data.category();
+            usages[i] = data.usage();
+            descriptions[i] = data.description();
+            contentHashes[i] = data.contentHash();
+        }
+
+        Query query = entityManager.createNativeQuery(UNNEST_UPSERT_SQL);
+        query.setParameter(1, materialIds);
+        query.setParameter(2, versions);
+        query.setParameter(3, names);
+        query.setParameter(4, categories);
+        query.setParameter(5, usages);
+        query.setParameter(6, descriptions);
+        query.setParameter(7, contentHashes);
+
+        List<?> rows = query.getResultList();
+        List<BillOfMaterialRepository.UpsertedBom> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            result.add(new BillOfMaterialRepository.UpsertedBom(
+                    ((Number) columns[0]).longValue(),
+                    ((Number) columns[1]).longValue(),
+                    (String) columns[2],
+                    Boolean.TRUE.equals(columns[3])));
+        }
+        return result;
+    }
+
+    @Override
+    public List<BillOfMaterialRepository.ExplodedBomLine> explode(Long rootBomId) {
+        List<?> rows = entityManager.createNativeQuery(EXPLODE_SQL)
+                .setParameter(1, rootBomId)
+                .getResultList();
+        List<BillOfMaterialRepository.ExplodedBomLine> lines = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            lines.add(new BillOfMaterialRepository.ExplodedBomLine(
+                    ((Number) columns[0]).longValue(),
+                    columns[1] != null ? ((Number) columns[1]).intValue() : null,
+                    ((Number) columns[2]).longValue(),
+                    (String) columns[3],
+                    (String) columns[4],
+                    (String) columns[5],
+                    (String) columns[6],
+                    (String) columns[7],
+                    columns[8] != null ? ((Number) columns[8]).longValue() : null,
+                    (String) columns[9],
+                    (String) columns[10],
+                    (BigDecimal) columns[11],
+                    (BigDecimal) columns[12],
+                    (BigDecimal) columns[13],
+                    (String) columns[14],
+                    (String) columns[15],
+                    (String) columns[16]));
+        }
+        return lines;
+    }
+
+    @Override
+    public List<BillOfMaterialRepository.WhereUsedLine> whereUsed(Long materialId) {
+        List<?> rows = entityManager.createNativeQuery(WHERE_USED_SQL)
+                .setParameter(1, materialId)
+                .getResultList();
+        List<BillOfMaterialRepository.WhereUsedLine> lines = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            lines.add(new BillOfMaterialRepository.WhereUsedLine(
+                    ((Number) columns[0]).longValue(),
+                    (String) columns[1],
+                    ((Number) columns[2]).longValue(),
+                    (String) columns[3],
+                    (String) columns[4],
+                    (String) columns[5],
+                    (String) columns[6],
+                    (String) columns[7],
+                    ((Number) columns[8]).longValue(),
+                    (String) columns[9],
+                    (String) columns[10],
+                    columns[11] != null ? ((Number) columns[11]).intValue() : null,
+                    (BigDecimal) columns[12],
+                    (BigDecimal) columns[13],
+                    (BigDecimal) columns[14],
+                    (String) columns[15],
+                    (String) columns[16],
+                    (String) columns[17]));
+        }
+        return lines;
+    }
+
+    @Override
+    public BillOfMaterialRepository.GraphSize countGraph() {
+        Object[] columns = (Object[]) entityManager.createNativeQuery(GRAPH_SIZE_SQL).getSingleResult();
+        return new BillOfMaterialRepository.GraphSize(
+                ((Number) columns[0]).longValue(),
+                ((Number) columns[1]).longValue());
+    }
+
+    @Override
+    public void streamGraph(Consumer<BillOfMaterialRepository.GraphBom> bomConsumer,
+                            Consumer<BillOfMaterialRepository.GraphItem> itemConsumer) {
+        forEachRow(entityManager.createNativeQuery(GRAPH_BOMS_SQL.formatted("")), row -> bomConsumer.accept(toGraphBom(row)));
+        forEachRow(entityManager.createNativeQuery(GRAPH_ITEMS_SQL.formatted("")), row -> itemConsumer.accept(toGraphItem(row)));
+    }
+
+    @Override
+    public void streamGraph(Collection<Long> bomIds,
+                            Consumer<BillOfMaterialRepository.GraphBom> bomConsumer,
+                            Consumer<BillOfMaterialRepository.GraphItem> itemConsumer) {
+        if (bomIds == null || bomIds.isEmpty()) {
+            return;
+        }
+        Long[] ids = bomIds.toArray(new Long[0]);
+        forEachRow(entityManager.createNativeQuery(GRAPH_BOMS_SQL.formatted("WHERE id = ANY(CAST(? AS bigint[]))"))
+                .setParameter(1, ids), row -> bomConsumer.accept(toGraphBom(row)));
+        forEachRow(entityManager.createNativeQuery(GRAPH_ITEMS_SQL.formatted("WHERE bom_id = ANY(CAST(? AS bigint[]))"))
+                .setParameter(1, ids), row -> itemConsumer.accept(toGraphItem(row)));
+    }
+
+    @Override
+    public List<BillOfMaterialRepository.BomName> findNamesByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        List<?> rows = entityManager.createNativeQuery(FIND_NAMES_BY_IDS_SQL)
+                .setParameter(1, ids.toArray(new Long[0]))
+                .getResultList();
+        List<BillOfMaterialRepository.BomName> names = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            names.add(new BillOfMaterialRepository.BomName(((Number) columns[0]).longValue(), (String) columns[1]));
+        }
+        return names;
+    }
+
+    private static void forEachRow(Query query, Consumer<Object[]> rowConsumer) {
+        try (Stream<?> rows = query.setHint(HibernateHints.HINT_FETCH_SIZE, GRAPH_FETCH_SIZE).getResultStream()) {
+            rows.forEach(row -> rowConsumer.accept((Object[]) row));
+        }
+    }
+
+    private static BillOfMaterialRepository.GraphBom toGraphBom(Object[] columns) {
+        return new BillOfMaterialRepository.GraphBom(
+                ((Number) columns[0]).longValue(),
+                ((Number) columns[1]).longValue(),
+                (String) columns[2]);
+    }
+
+    private static BillOfMaterialRepository.GraphItem toGraphItem(Object[] columns) {
+        return new BillOfMaterialRepository.GraphItem(
+                ((Number) columns[0]).longValue(),
+                ((Number) columns[1]).longValue(),
+                ((Number) columns[2]).intValue(),
+                ((Number) columns[3]).longValue(),
+                (BigDecimal) columns[4],
+                (BigDecimal) columns[5],
+                (BigDecimal) columns[6],
+                (String) columns[7]);
+    }
+}
@@ -6,10 +6,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Repository
-public interface BomItemRepository extends JpaRepository<BomItem, Long> {
+public interface BomItemRepository extends JpaRepository<BomItem, Long>, BomItemRepositoryCustom {
     
     /**
      * 根据BOM ID查找所有明细项
@@ -45,5 +46,49 @@ public interface BomItemRepository extends JpaRepository<BomItem, Long> {
      * 删除指定BOM的所有明细项
      */
     void deleteByBomId(Long bomId);
+    
+    /**
+     * BOM明细批量插入数据
+     */
+    record BomItemBatchData(
+        Long bomId,
+        Integer sequence,
+        Long childMaterialId,
+        Long childUnitId,
+        BigDecimal numerator,
+        BigDecimal denominator,
+        BigDecimal scrapRate,
+        String childBomVersion,
+        String memo
+    ) {}
+    
+    /**
+     * 数据库中的BOM明细（用于与导入或编辑后的明细比较，以及按ID批量更新）
+     */
+    record StoredBomItem(
+        Long id,
+        Long bomId,
+        Integer sequence,
+        Long childMaterialId,
+        Long childUnitId,
+        BigDecimal numerator,
+        BigDecimal denominator,
+        BigDecimal scrapRate,
+        String childBomVersion,
+        String memo
+    ) {
+        public static StoredBomItem of(Long id, BomItemBatchData data) {
+            return new StoredBomItem(id, data.bomId(), data.sequence(), data.childMaterialId(), data.childUnitId(),
+                    data.numerator(), data.denominator(), data.scrapRate(), data.childBomVersion(), data.memo());
+        }
+    }
+    
+    /**
+     * BOM结构中的一条边：父项物料 → 子项物料
+     */
+    record BomEdge(
+        Long bomId,
+        Long parentMaterialId,
+        Long childMaterialId
+    ) {}
 }
-
@@ -0,0 +1,38 @@
+package com.sambound.erp.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BomItemRepositoryCustom {
+    /**
+     * 一条语句查询多个BOM的全部明细项（只取比较所需的列，不加载实体）
+     */
+    List<BomItemRepository.StoredBomItem> findStoredItemsByBomIds(Collection<Long> bomIds);
+
+    /**
+     * 查询全部BOM明细对应的"父项物料 → 子项物料"边，按BOM ID排序（只取三列，用于循环引用检测）
+     */
+    List<BomItemRepository.BomEdge> findAllEdges();
+
+    /**
+     * 按ID批量删除明细项，一条语句完成
+     *
+     * @return 删除的行数
+     */
+    int deleteByIds(Collection<Long> ids);
+
+    /**
+     * 按ID批量更新明细项的单位、用量、损耗率、子项BOM版本和备注，一条语句完成
+     * （序号和子项物料是匹配键，不更新）
+     *
+     * @return 更新的行数
+     */
+    int updateItems(List<BomItemRepository.StoredBomItem> items);
+
+    /**
+     * 批量插入明细项，一条语句完成
+     *
+     * @return 插入的行数
+     */
+    int insertItems(List<BomItemRepository.BomItemBatchData> batchData);
+}
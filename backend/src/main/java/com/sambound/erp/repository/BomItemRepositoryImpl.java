@@ -0,0 +1,252 @@
+package com.sambound.erp.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public class BomItemRepositoryImpl implements BomItemRepositoryCustom {
+
+    private static final String COLUMNS = "bom_id, sequence, child_material_id, child_unit_id, "
+            + "numerator, denominator, scrap_rate, child_bom_version, memo";
+
+    private static final String ID_SEQUENCE = "bom_items_id_seq";
+
+    // 一次取回多个序列值；每个值按 pooled 语义代表 (值 - 步长, 值] 区间，与 Hibernate 分配的ID不会重叠
+    private static final String NEXT_ID_BLOCKS_SQL =
+            "SELECT nextval('" + ID_SEQUENCE + "') FROM generate_series(1, ?)";
+
+    // 序列的实际步长（INCREMENT BY），不假定与实体的分配数量一致
+    private static final String ID_SEQUENCE_INCREMENT_SQL = """
+            SELECT increment_by FROM pg_sequences
+            WHERE schemaname = current_schema() AND sequencename = '%s'
+            """.formatted(ID_SEQUENCE);
+
+    private static final String FIND_BY_BOM_IDS_SQL = "SELECT id, " + COLUMNS
+            + " FROM bom_items WHERE bom_id = ANY(CAST(? AS bigint[])) ORDER BY bom_id, id";
+
+    private static final String FIND_ALL_EDGES_SQL = """
+            SELECT i.bom_id, b.material_id, i.child_material_id
+            FROM bom_items i
+            JOIN bill_of_materials b ON b.id = i.bom_id
+            ORDER BY i.bom_id
+            """;
+
+    private static final String DELETE_BY_IDS_SQL =
+            "DELETE FROM bom_items WHERE id = ANY(CAST(? AS bigint[]))";
+
+    // 数组绑定的批量更新语句（固定文本，与批次大小无关）
+    private static final String UNNEST_UPDATE_SQL = """
+            UPDATE bom_items AS b
+            SET child_unit_id = t.child_unit_id,
+                numerator = t.numerator,
+                denominator = t.denominator,
+                scrap_rate = t.scrap_rate,
+                child_bom_version = t.child_bom_version,
+                memo = t.memo,
+                updated_at = CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS numeric[]), CAST(? AS numeric[]),
+                        CAST(? AS numeric[]), CAST(? AS text[]), CAST(? AS text[]))
+                AS t(id, child_unit_id, numerator, denominator, scrap_rate, child_bom_version, memo)
+            WHERE b.id = t.id
+            """;
+
+    // 数组绑定的批量插入语句（固定文本，与批次大小无关）
+    // ID 由调用方按块从序列预先分配后一并写入，不依赖列默认值（每行调用一次 nextval 会按分配数量跳号）
+    private static final String UNNEST_INSERT_SQL = """
+            INSERT INTO bom_items (id, %s, created_at, updated_at)
+            SELECT id, %s, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS bigint[]),
+                        CAST(? AS bigint[]), CAST(? AS integer[]), CAST(? AS bigint[]), CAST(? AS bigint[]),
+                        CAST(? AS numeric[]), CAST(? AS numeric[]), CAST(? AS numeric[]),
+                        CAST(? AS text[]), CAST(? AS text[]))
+                AS t(id, %s)
+            """.formatted(COLUMNS, COLUMNS, COLUMNS);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 序列步长，首次分配ID时读取
+    private volatile Long idSequenceIncrement;
+
+    @Override
+    public List<BomItemRepository.StoredBomItem> findStoredItemsByBomIds(Collection<Long> bomIds) {
+        if (bomIds == null || bomIds.isEmpty()) {
+            return List.of();
+        }
+        List<?> rows = entityManager.createNativeQuery(FIND_BY_BOM_IDS_SQL)
+                .setParameter(1, bomIds.toArray(new Long[0]))
+                .getResultList();
+        List<BomItemRepository.StoredBomItem> items = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            items.add(new BomItemRepository.StoredBomItem(
+                    ((Number) columns[0]).longValue(),
+                    ((Number) columns[1]).longValue(),
+                    ((Number) columns[2]).intValue(),
+                    ((Number) columns[3]).longValue(),
+                    ((Number) columns[4]).longValue(),
+                    (BigDecimal) columns[5],
+                    (BigDecimal) columns[6],
+                    (BigDecimal) columns[7],
+                    (String) columns[8],
+                    (String) columns[9]));
+        }
+        return items;
+    }
+
+    @Override
+    public List<BomItemRepository.BomEdge> findAllEdges() {
+        List<?> rows = entityManager.createNativeQuery(FIND_ALL_EDGES_SQL).getResultList();
+        List<BomItemRepository.BomEdge> edges = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            edges.add(new BomItemRepository.BomEdge(
+                    ((Number) columns[0]).longValue(),
+                    ((Number) columns[1]).longValue(),
+                    ((Number) columns[2]).longValue()));
+        }
+        return edges;
+    }
+
+    @Override
+    public int deleteByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        return entityManager.createNativeQuery(DELETE_BY_IDS_SQL)
+                .setParameter(1, ids.toArray(new Long[0]))
+                .executeUpdate();
+    }
+
+    @Override
+    public int updateItems(List<BomItemRepository.StoredBomItem> items) {
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
+
+        int size = items.size();
+        Long[] ids = new Long[size];
+        Long[] childUnitIds = new Long[size];
+        BigDecimal[] numerators = new BigDecimal[size];
+        BigDecimal[] denominators = new BigDecimal[size];
+        BigDecimal[] scrapRates = new BigDecimal[size];
+        String[] childBomVersions = new String[size];
+        String[] memos = new String[size];
+        for (int i = 0; i < size; i++) {
+            BomItemRepository.StoredBomItem item = items.get(i);
+            ids[i] = item.id();
+            childUnitIds[i] = item.childUnitId();
+            numerators[i] = item.numerator();
+            denominators[i] = item.denominator();
+            scrapRates[i] = item.scrapRate();
+            childBomVersions[i] = item.childBomVersion();
+            memos[i] = item.memo();
+        }
+
+        Query query = entityManager.createNativeQuery(UNNEST_UPDATE_SQL);
+        query.setParameter(1, ids);
+        query.setParameter(2, childUnitIds);
+        query.setParameter(3, numerators);
+        query.setParameter(4, denominators);
+        query.setParameter(5, scrapRates);
+        query.setParameter(6, childBomVersions);
+        query.setParameter(7, memos);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int insertItems(List<BomItemRepository.BomItemBatchData> batchData) {
+        if (batchData == null || batchData.isEmpty()) {
+            return 0;
+        }
+
+        int size = batchData.size();
+        Long[] ids = allocateIds(size);
+        Long[] bomIds = new Long[size];
+        Integer[] sequences = new Integer[size];
+        Long[] childMaterialIds = new Long[size];
+        Long[] childUnitIds = new Long[size];
+        BigDecimal[] numerators = new BigDecimal[size];
+        BigDecimal[] denominators = new BigDecimal[size];
+        BigDecimal[] scrapRates = new BigDecimal[size];
+        String[] childBomVersions = new String[size];
+        String[] memos = new String[size];
+        for (int i = 0; i < size; i++) {
+            BomItemRepository.BomItemBatchData data = batchData.get(i);
+            bomIds[i] = data.bomId();
+            sequences[i] = data.sequence();
+            childMaterialIds[i] = data.childMaterialId();
+            childUnitIds[i] = data.childUnitId();
+            numerators[i] = data.numerator();
+            denominators[i] = data.denominator();
+            scrapRates[i] = data.scrapRate();
+            childBomVersions[i] = data.childBomVersion();
+            memos[i] = data.memo();
+        }
+
+        Query query = entityManager.createNativeQuery(UNNEST_INSERT_SQL);
+        query.setParameter(1, ids);
+        query.setParameter(2, bomIds);
+        query.setParameter(3, sequences);
+        query.setParameter(4, childMaterialIds);
+        query.setParameter(5, childUnitIds);
+        query.setParameter(6, numerators);
+        query.setParameter(7, denominators);
+        query.setParameter(8, scrapRates);
+        query.setParameter(9, childBomVersions);
+        query.setParameter(10, memos);
+        return query.executeUpdate();
+    }
+
+    /**
+     * 按块从序列分配ID：一次查询取回足够的序列值，每个值展开为一段连续ID
+     */
+    private Long[] allocateIds(int count) {
+        long increment = idSequenceIncrement();
+        // 多取一块，覆盖首个序列值只对应一个ID的情况
+        long blocks = (count + increment - 1) / increment + 1;
+        List<?> values = entityManager.createNativeQuery(NEXT_ID_BLOCKS_SQL)
+                .setParameter(1, blocks)
+                .getResultList();
+        return expandIdBlocks(values, increment, count);
+    }
+
+    private long idSequenceIncrement() {
+        Long increment = idSequenceIncrement;
+        if (increment == null) {
+            Object value = entityManager.createNativeQuery(ID_SEQUENCE_INCREMENT_SQL).getSingleResult();
+            increment = ((Number) value).longValue();
+            if (increment <= 0) {
+                throw new IllegalStateException("序列 " + ID_SEQUENCE + " 的步长必须大于 0: " + increment);
+            }
+            idSequenceIncrement = increment;
+        }
+        return increment;
+    }
+
+    /**
+     * 把序列值展开为 count 个ID：序列值 v 对应 (v - 步长, v]，
+     * 首个值为 1 时只对应 1 本身，与 Hibernate pooled 优化器一致
+     */
+    static Long[] expandIdBlocks(List<?> values, long increment, int count) {
+        Long[] ids = new Long[count];
+        int filled = 0;
+        for (Object value : values) {
+            long hi = ((Number) value).longValue();
+            for (long id = Math.max(1, hi - increment + 1); id <= hi && filled < count; id++) {
+                ids[filled++] = id;
+            }
+            if (filled == count) {
+                return ids;
+            }
+        }
+        throw new IllegalStateException("序列 " + ID_SEQUENCE + " 取回的值不足以分配 " + count + " 个ID");
+    }
+}
@@ -0,0 +1,89 @@
+package com.sambound.erp.repository;
+
+import com.sambound.erp.entity.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, Long> {
+
+    /**
+     * 查询某个导入任务某个工作表指定状态的批次行范围（first_row, last_row）
+     */
+    @Query("""
+        SELECT c.firstRow, c.lastRow FROM ImportCheckpoint c
+        WHERE c.jobId = :jobId AND c.sheetName = :sheetName AND c.status = :status
+        """)
+    List<Object[]> findRowRanges(@Param("jobId") String jobId,
+                                 @Param("sheetName") String sheetName,
+                                 @Param("status") String status);
+
+    /**
+     * 记录已提交的批次
+     * 同一起始行已有记录时（重启后重新导入的批次、或失败批次重新导入）更新该行：
+     * 两次都已提交时合并为较大的行范围，原记录为失败时改为已提交
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO import_checkpoints (job_id, job_type, sheet_name, batch_index, first_row, last_row,
+                                        row_count, status, created_at)
+        VALUES (:jobId, :jobType, :sheetName, :batchIndex, :firstRow, :lastRow, :rowCount, 'COMMITTED',
+                CURRENT_TIMESTAMP)
+        ON CONFLICT (job_id, sheet_name, first_row) DO UPDATE
+        SET last_row = CASE WHEN import_checkpoints.status = 'COMMITTED'
+                            THEN GREATEST(import_checkpoints.last_row, EXCLUDED.last_row)
+                            ELSE EXCLUDED.last_row END,
+            batch_index = EXCLUDED.batch_index,
+            row_count = EXCLUDED.row_count,
+            status = EXCLUDED.status,
+            error_message = NULL,
+            created_at = EXCLUDED.created_at
+        """, nativeQuery = true)
+    int upsertCommitted(@Param("jobId") String jobId,
+                        @Param("jobType") String jobType,
+                        @Param("sheetName") String sheetName,
+                        @Param("batchIndex") int batchIndex,
+                        @Param("firstRow") int firstRow,
+                        @Param("lastRow") int lastRow,
+                        @Param("rowCount") int rowCount);
+
+    /**
+     * 记录失败的批次；同一起始行已提交时保留已提交的记录
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO import_checkpoints (job_id, job_type, sheet_name, batch_index, first_row, last_row,
+                                        row_count, status, error_message, created_at)
+        VALUES (:jobId, :jobType, :sheetName, :batchIndex, :firstRow, :lastRow, :rowCount, 'FAILED',
+                :errorMessage, CURRENT_TIMESTAMP)
+        ON CONFLICT (job_id, sheet_name, first_row) DO UPDATE
+        SET last_row = EXCLUDED.last_row,
+            batch_index = EXCLUDED.batch_index,
+            row_count = EXCLUDED.row_count,
+            error_message = EXCLUDED.error_message,
+            created_at = EXCLUDED.created_at
+        WHERE import_checkpoints.status = 'FAILED'
+        """, nativeQuery = true)
+    int upsertFailed(@Param("jobId") String jobId,
+                     @Param("jobType") String jobType,
+                     @Param("sheetName") String sheetName,
+                     @Param("batchIndex") int batchIndex,
+                     @Param("firstRow") int firstRow,
+                     @Param("lastRow") int lastRow,
+                     @Param("rowCount") int rowCount,
+                     @Param("errorMessage") String errorMessage);
+
+    @Modifying
+    @Query("DELETE FROM ImportCheckpoint c WHERE c.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") String jobId);
+
+    @Modifying
+    @Query("DELETE FROM ImportCheckpoint c WHERE c.createdAt < :threshold")
+    int deleteByCreatedAtBefore(@Param("threshold") LocalDateTime threshold);
+}
@@ -0,0 +1,31 @@
+package com.sambound.erp.repository;
+
+import com.sambound.erp.entity.ImportJobRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ImportJobRecordRepository extends JpaRepository<ImportJobRecord, String> {
+
+    /**
+     * 按提交顺序查询全部任务记录（服务启动时恢复被中断的任务）
+     */
+    List<ImportJobRecord> findAllByOrderBySubmittedAtAsc();
+
+    /**
+     * 任务开始运行
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImportJobRecord j SET j.status = :status, j.startedAt = :startedAt WHERE j.id = :id")
+    int markStarted(@Param("id") String id,
+                    @Param("status") String status,
+                    @Param("startedAt") LocalDateTime startedAt);
+}
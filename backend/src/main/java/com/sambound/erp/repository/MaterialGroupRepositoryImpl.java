@@ -6,13 +6,33 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
 import java.util.*;
 
 @Repository
 public class MaterialGroupRepositoryImpl implements MaterialGroupRepositoryCustom {
     
+    // 数组绑定的批量插入语句（固定文本，与批次大小无关，可复用服务端预编译语句）
+    private static final String UNNEST_INSERT_OR_GET_SQL = """
+            INSERT INTO material_groups (code, name, created_at, updated_at)
+            SELECT code, name, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS text[]), CAST(? AS text[])) AS t(code, name)
+            ON CONFLICT (code) DO UPDATE SET code = EXCLUDED.code
+            RETURNING id, code, name, description, parent_id, created_at, updated_at
+            """;
+    
+    private static final String UNNEST_UPSERT_WITH_PARENT_SQL = """
+            INSERT INTO material_groups (code, name, description, parent_id, created_at, updated_at)
+            SELECT code, name, description, parent_id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS bigint[]))
+                AS t(code, name, description, parent_id)
+            ON CONFLICT (code) DO UPDATE 
+            SET name = EXCLUDED.name, 
+                description = EXCLUDED.description, 
+                parent_id = EXCLUDED.parent_id,
+                updated_at = EXCLUDED.updated_at
+            RETURNING id, code, name, description, parent_id, created_at, updated_at
+            """;
+    
     @PersistenceContext
     private EntityManager entityManager;
     
@@ -22,36 +42,12 @@ public class MaterialGroupRepositoryImpl implements MaterialGroupRepositoryCusto
             return new HashMap<>();
         }
         
-        int size = codes.size();
         Map<String, MaterialGroup> result = new HashMap<>();
-        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-        
-        // 构建 VALUES 子句
-        StringBuilder valuesClause = new StringBuilder();
-        List<Object> parameters = new ArrayList<>();
-        
-        for (int i = 0; i < size; i++) {
-            if (i > 0) {
-                valuesClause.append(", ");
-            }
-            valuesClause.append("(?, ?, ?, ?)");
-            parameters.add(codes.get(i));
-            parameters.add(names.get(i));
-            parameters.add(now);
-            parameters.add(now);
-        }
         
-        String sql = String.format("""
-            INSERT INTO material_groups (code, name, created_at, updated_at)
-            VALUES %s
-            ON CONFLICT (code) DO UPDATE SET code = EXCLUDED.code
-            RETURNING id, code, name, description, parent_id, created_at, updated_at
-            """, valuesClause);
-        
-        Query query = entityManager.createNativeQuery(sql, MaterialGroup.class);
-        for (int i = 0; i < parameters.size(); i++) {
-            query.setParameter(i + 1, parameters.get(i));
-        }
+        // 按列绑定为数组，SQL 文本与批次大小无关
+        Query query = entityManager.createNativeQuery(UNNEST_INSERT_OR_GET_SQL, MaterialGroup.class);
+        query.setParameter(1, codes.toArray(new String[0]));
+        query.setParameter(2, names.toArray(new String[0]));
         
         @SuppressWarnings("unchecked")
         List<MaterialGroup> results = query.getResultList();
@@ -70,41 +66,26 @@ public class MaterialGroupRepositoryImpl implements MaterialGroupRepositoryCusto
         }
         
         Map<String, MaterialGroup> result = new HashMap<>();
-        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-        
-        // 构建 VALUES 子句
-        StringBuilder valuesClause = new StringBuilder();
-        List<Object> parameters = new ArrayList<>();
         
-        for (int i = 0; i < batchData.size(); i++) {
-            if (i > 0) {
-                valuesClause.append(", ");
-            }
+        // 按列绑定为数组，SQL 文本与批次大小无关
+        int size = batchData.size();
+        String[] codes = new String[size];
+        String[] names = new String[size];
+        String[] descriptions = new String[size];
+        Long[] parentIds = new Long[size];
+        for (int i = 0; i < size; i++) {
             MaterialGroupRepository.MaterialGroupBatchData data = batchData.get(i);
-            valuesClause.append("(?, ?, ?, ?, ?, ?)");
-            parameters.add(data.code());
-            parameters.add(data.name());
-            parameters.add(data.description());
-            parameters.add(data.parentId());
-            parameters.add(now);
-            parameters.add(now);
+            codes[i] = data.code();
+            names[i] = data.name();
+            descriptions[i] = data.description();
+            parentIds[i] = data.parentId();
         }
         
-        String sql = String.format("""
-            INSERT INTO material_groups (code, name, description, parent_id, created_at, updated_at)
-            VALUES %s
-            ON CONFLICT (code) DO UPDATE 
-            SET name = EXCLUDED.name, 
-                description = EXCLUDED.description, 
-                parent_id = EXCLUDED.parent_id,
-                updated_at = EXCLUDED.updated_at
-            RETURNING id, code, name, description, parent_id, created_at, updated_at
-            """, valuesClause);
-        
-        Query query = entityManager.createNativeQuery(sql, MaterialGroup.class);
-        for (int i = 0; i < parameters.size(); i++) {
-            query.setParameter(i + 1, parameters.get(i));
-        }
+        Query query = entityManager.createNativeQuery(UNNEST_UPSERT_WITH_PARENT_SQL, MaterialGroup.class);
+        query.setParameter(1, codes);
+        query.setParameter(2, names);
+        query.setParameter(3, descriptions);
+        query.setParameter(4, parentIds);
         
         @SuppressWarnings("unchecked")
         List<MaterialGroup> results = query.getResultList();
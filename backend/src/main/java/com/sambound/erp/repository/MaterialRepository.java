@@ -41,9 +41,10 @@ public interface MaterialRepository extends JpaRepository<Material, Long>, Mater
             material_group_id = EXCLUDED.material_group_id,
             base_unit_id = EXCLUDED.base_unit_id,
             erp_cls_id = EXCLUDED.erp_cls_id,
+            content_hash = NULL,
             updated_at = CURRENT_TIMESTAMP
         RETURNING id, code, name, specification, mnemonic_code, old_number, description, erp_cls_id,
-                  material_group_id, base_unit_id, created_at, updated_at
+                  material_group_id, base_unit_id, content_hash, created_at, updated_at
         """, nativeQuery = true)
     Material insertOrGetByCode(
         @Param("code") String code,
@@ -53,6 +54,14 @@ public interface MaterialRepository extends JpaRepository<Material, Long>, Mater
         @Param("erpClsId") String erpClsId
     );
     
+    /**
+     * 查询所有物料的编码和内容指纹（导入前预加载，用于跳过内容未变化的行，预检时区分新增和更新）
+     * 
+     * @return [物料编码, 内容指纹] 列表，未记录指纹的物料指纹为 null
+     */
+    @Query("SELECT m.code, m.contentHash FROM Material m")
+    List<Object[]> findAllContentHashes();
+    
     /**
      * 根据物料编码或名称模糊查询物料（用于搜索）
      * 使用PostgreSQL的ILIKE进行大小写不敏感的模糊匹配
@@ -70,14 +79,30 @@ public interface MaterialRepository extends JpaRepository<Material, Long>, Mater
                                      @Param("offset") long offset);
     
     /**
-     * 物料批量插入数据
+     * 物料批量插入数据（规格、助记码、旧编码、描述为 null 时保留数据库中的原值）
+     * contentHash 为导入行的内容指纹，与其他列一起写入
      */
     record MaterialBatchData(
         String code,
         String name,
+        String specification,
+        String mnemonicCode,
+        String oldNumber,
+        String description,
+        String erpClsId,
         Long materialGroupId,
         Long baseUnitId,
-        String erpClsId
+        Long contentHash
     ) {}
+    
+    /**
+     * 批量插入/更新的结果：新增行数和实际更新的行数（内容未变化的行两者都不计）
+     */
+    record UpsertCounts(int inserted, int updated) {}
+    
+    /**
+     * 物料展示信息（编码、名称、规格和物料组）
+     */
+    record MaterialDisplay(Long id, String code, String name, String specification,
+                           String groupCode, String groupName) {}
 }
-
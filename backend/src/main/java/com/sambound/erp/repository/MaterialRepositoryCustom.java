@@ -1,10 +1,23 @@
 package com.sambound.erp.repository;
 
-import com.sambound.erp.entity.Material;
-
+import java.util.Collection;
 import java.util.List;
 
 public interface MaterialRepositoryCustom {
-    List<Material> batchInsertOrGetByCode(List<MaterialRepository.MaterialBatchData> batchData);
+    /**
+     * 批量插入/更新物料（所有列一次写入，内容未变化的行不产生写入）
+     * 批次内物料编码必须唯一
+     */
+    MaterialRepository.UpsertCounts upsertByCode(List<MaterialRepository.MaterialBatchData> batchData);
+    
+    /**
+     * 批量装载模式：COPY 写入临时暂存表后一次合并，适用于大文件导入
+     * 必须在事务中调用，批次内物料编码必须唯一
+     */
+    MaterialRepository.UpsertCounts bulkUpsertByCode(List<MaterialRepository.MaterialBatchData> batchData);
+    
+    /**
+     * 按ID批量读取物料展示信息，一条语句完成
+     */
+    List<MaterialRepository.MaterialDisplay> findDisplayByIds(Collection<Long> ids);
 }
-
@@ -1,73 +1,193 @@
 package com.sambound.erp.repository;
 
-import com.sambound.erp.entity.Material;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public class MaterialRepositoryImpl implements MaterialRepositoryCustom {
     
+    // 批量装载使用的临时暂存表
+    private static final String STAGING_TABLE = "material_import_staging";
+    private static final String STAGING_COLUMN_DDL =
+            "code VARCHAR(50), name TEXT, specification TEXT, mnemonic_code TEXT, old_number VARCHAR(50), "
+                    + "description TEXT, erp_cls_id VARCHAR(50), material_group_id BIGINT, base_unit_id BIGINT, "
+                    + "content_hash BIGINT";
+    private static final String COLUMNS =
+            "code, name, specification, mnemonic_code, old_number, description, erp_cls_id, material_group_id, base_unit_id, "
+                    + "content_hash";
+    
+    // 冲突时的更新子句（两种写入路径共用）
+    // 规格、助记码、旧编码、描述为空时保留原值；WHERE 条件使内容未变化的行不产生更新（无死元组、无 WAL）
+    // RETURNING 只返回实际新增或更新的行，xmax = 0 表示新增
+    private static final String ON_CONFLICT_CLAUSE = """
+            ON CONFLICT (code) DO UPDATE 
+            SET name = EXCLUDED.name,
+                specification = COALESCE(EXCLUDED.specification, materials.specification),
+                mnemonic_code = COALESCE(EXCLUDED.mnemonic_code, materials.mnemonic_code),
+                old_number = COALESCE(EXCLUDED.old_number, materials.old_number),
+                description = COALESCE(EXCLUDED.description, materials.description),
+                erp_cls_id = EXCLUDED.erp_cls_id,
+                material_group_id = EXCLUDED.material_group_id,
+                base_unit_id = EXCLUDED.base_unit_id,
+                content_hash = EXCLUDED.content_hash,
+                updated_at = CURRENT_TIMESTAMP
+            WHERE (materials.name, materials.specification, materials.mnemonic_code, materials.old_number,
+                   materials.description, materials.erp_cls_id, materials.material_group_id, materials.base_unit_id,
+                   materials.content_hash)
+                IS DISTINCT FROM
+                  (EXCLUDED.name,
+                   COALESCE(EXCLUDED.specification, materials.specification),
+                   COALESCE(EXCLUDED.mnemonic_code, materials.mnemonic_code),
+                   COALESCE(EXCLUDED.old_number, materials.old_number),
+                   COALESCE(EXCLUDED.description, materials.description),
+                   EXCLUDED.erp_cls_id, EXCLUDED.material_group_id, EXCLUDED.base_unit_id,
+                   EXCLUDED.content_hash)
+            RETURNING (xmax = 0) AS inserted
+            """;
+    
+    // 数组绑定的批量插入/更新语句（固定文本，与批次大小无关）
+    // 批次大小变化时不会产生新的语句文本，预编译语句和执行计划可以复用；
+    // 多行 VALUES 每行 7 个参数，超过 4681 行的批次还会超出 32767 个绑定参数的协议上限
+    private static final String UNNEST_UPSERT_SQL = """
+            INSERT INTO materials (%s, created_at, updated_at)
+            SELECT %s, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]),
+                        CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[]),
+                        CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS bigint[]))
+                AS t(%s)
+            """.formatted(COLUMNS, COLUMNS, COLUMNS) + ON_CONFLICT_CLAUSE;
+    
+    private static final String STAGING_MERGE_SQL = """
+            INSERT INTO materials (%s, created_at, updated_at)
+            SELECT %s, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+            FROM %s
+            """.formatted(COLUMNS, COLUMNS, STAGING_TABLE) + ON_CONFLICT_CLAUSE;
+    
+    private static final String FIND_DISPLAY_BY_IDS_SQL = """
+            SELECT m.id, m.code, m.name, m.specification, g.code, g.name
+            FROM materials m
+            LEFT JOIN material_groups g ON g.id = m.material_group_id
+            WHERE m.id = ANY(CAST(? AS bigint[]))
+            """;
+    
     @PersistenceContext
     private EntityManager entityManager;
     
     @Override
-    public List<Material> batchInsertOrGetByCode(List<MaterialRepository.MaterialBatchData> batchData) {
+    public MaterialRepository.UpsertCounts upsertByCode(List<MaterialRepository.MaterialBatchData> batchData) {
         if (batchData == null || batchData.isEmpty()) {
-            return new ArrayList<>();
+            return new MaterialRepository.UpsertCounts(0, 0);
         }
         
-        List<Material> result = new ArrayList<>();
-        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-        
-        // 构建 VALUES 子句
-        StringBuilder valuesClause = new StringBuilder();
-        List<Object> parameters = new ArrayList<>();
-        
-        for (int i = 0; i < batchData.size(); i++) {
-            if (i > 0) {
-                valuesClause.append(", ");
-            }
+        // 按列绑定为数组：无论批次大小，SQL 文本只有一种，
+        // pgjdbc 可以复用服务端预编译语句，PostgreSQL 不必为每种批次大小重新解析和规划
+        int size = batchData.size();
+        String[] codes = new String[size];
+        String[] names = new String[size];
+        String[] specifications = new String[size];
+        String[] mnemonicCodes = new String[size];
+        String[] oldNumbers = new String[size];
+        String[] descriptions = new String[size];
+        String[] erpClsIds = new String[size];
+        Long[] materialGroupIds = new Long[size];
+        Long[] baseUnitIds = new Long[size];
+        Long[] contentHashes = new Long[size];
+        for (int i = 0; i < size; i++) {
             MaterialRepository.MaterialBatchData data = batchData.get(i);
-            valuesClause.append("(?, ?, ?, ?, ?, ?, ?)");
-            parameters.add(data.code());
-            parameters.add(data.name());
-            parameters.add(data.materialGroupId());
-            parameters.add(data.baseUnitId());
-            parameters.add(data.erpClsId());
-            parameters.add(now);
-            parameters.add(now);
+            codes[i] = data.code();
+            names[i] = data.name();
+            specifications[i] = data.specification();
+            mnemonicCodes[i] = data.mnemonicCode();
+            oldNumbers[i] = data.oldNumber();
+            descriptions[i] = data.description();
+            erpClsIds[i] = data.erpClsId();
+            materialGroupIds[i] = data.materialGroupId();
+            baseUnitIds[i] = data.baseUnitId();
+            contentHashes[i] = data.contentHash();
         }
         
-        String sql = String.format("""
-            INSERT INTO materials (code, name, material_group_id, base_unit_id, erp_cls_id, created_at, updated_at)
-            VALUES %s
-            ON CONFLICT (code) DO UPDATE 
-            SET name = EXCLUDED.name,
-                material_group_id = EXCLUDED.material_group_id,
-                base_unit_id = EXCLUDED.base_unit_id,
-                erp_cls_id = EXCLUDED.erp_cls_id,
-                updated_at = CURRENT_TIMESTAMP
-            RETURNING id, code, name, specification, mnemonic_code, old_number, description, erp_cls_id,
-                      material_group_id, base_unit_id, created_at, updated_at
-            """, valuesClause);
+        Query query = entityManager.createNativeQuery(UNNEST_UPSERT_SQL);
+        query.setParameter(1, codes);
+        query.setParameter(2, names);
+        query.setParameter(3, specifications);
+        query.setParameter(4, mnemonicCodes);
+        query.setParameter(5, oldNumbers);
+        query.setParameter(6, descriptions);
+        query.setParameter(7, erpClsIds);
+        query.setParameter(8, materialGroupIds);
+        query.setParameter(9, baseUnitIds);
+        query.setParameter(10, contentHashes);
         
-        Query query = entityManager.createNativeQuery(sql, Material.class);
-        for (int i = 0; i < parameters.size(); i++) {
-            query.setParameter(i + 1, parameters.get(i));
+        return countResults(query.getResultList());
+    }
+    
+    @Override
+    public MaterialRepository.UpsertCounts bulkUpsertByCode(List<MaterialRepository.MaterialBatchData> batchData) {
+        if (batchData == null || batchData.isEmpty()) {
+            return new MaterialRepository.UpsertCounts(0, 0);
         }
         
-        @SuppressWarnings("unchecked")
-        List<Material> results = query.getResultList();
-        result.addAll(results);
+        // 第一步：通过 COPY 将数据流式写入临时暂存表（不产生 WAL，没有绑定参数数量限制）
+        List<Object[]> rows = new ArrayList<>(batchData.size());
+        for (MaterialRepository.MaterialBatchData data : batchData) {
+            rows.add(new Object[]{
+                    data.code(),
+                    data.name(),
+                    data.specification(),
+                    data.mnemonicCode(),
+                    data.oldNumber(),
+                    data.description(),
+                    data.erpClsId(),
+                    data.materialGroupId(),
+                    data.baseUnitId(),
+                    data.contentHash()
+            });
+        }
+        PgCopySupport.copyIntoStaging(entityManager, STAGING_TABLE, STAGING_COLUMN_DDL, COLUMNS, rows);
         
-        return result;
+        // 第二步：一次基于集合的合并，SQL 文本固定
+        // 注意：暂存表中的编码必须唯一，否则 ON CONFLICT 会在同一语句中重复更新同一行而失败
+        return countResults(entityManager.createNativeQuery(STAGING_MERGE_SQL).getResultList());
+    }
+    
+    @Override
+    public List<MaterialRepository.MaterialDisplay> findDisplayByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        List<?> rows = entityManager.createNativeQuery(FIND_DISPLAY_BY_IDS_SQL)
+                .setParameter(1, ids.toArray(new Long[0]))
+                .getResultList();
+        List<MaterialRepository.MaterialDisplay> materials = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            materials.add(new MaterialRepository.MaterialDisplay(
+                    ((Number) columns[0]).longValue(),
+                    (String) columns[1],
+                    (String) columns[2],
+                    (String) columns[3],
+                    (String) columns[4],
+                    (String) columns[5]));
+        }
+        return materials;
+    }
+    
+    /**
+     * 统计 RETURNING (xmax = 0) 的结果：true 为新增，false 为更新
+     */
+    private static MaterialRepository.UpsertCounts countResults(List<?> results) {
+        int inserted = 0;
+        for (Object result : results) {
+            if (Boolean.TRUE.equals(result)) {
+                inserted++;
+            }
+        }
+        return new MaterialRepository.UpsertCounts(inserted, results.size() - inserted);
     }
 }
-
@@ -0,0 +1,68 @@
+package com.sambound.erp.repository;
+
+import jakarta.persistence.EntityManager;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * PostgreSQL COPY 暂存表装载工具
+ * 在当前事务的连接上创建临时暂存表（ON COMMIT DROP），并通过 CopyManager 以 CSV 流写入行数据。
+ * 调用方随后在同一事务中执行基于集合的 INSERT ... SELECT ... ON CONFLICT 合并。
+ */
+final class PgCopySupport {
+
+    private PgCopySupport() {
+    }
+
+    /**
+     * 创建（或清空）临时暂存表并以 COPY 写入数据
+     *
+     * @param entityManager 当前事务的 EntityManager
+     * @param stagingTable  暂存表名
+     * @param columnDdl     暂存表列定义，例如 "code VARCHAR(50), name TEXT"
+     * @param columns       COPY 的列名列表，与每行数据的顺序一致
+     * @param rows          行数据
+     * @return 写入的行数
+     */
+    static long copyIntoStaging(EntityManager entityManager,
+                                String stagingTable,
+                                String columnDdl,
+                                String columns,
+                                List<Object[]> rows) {
+        Session session = entityManager.unwrap(Session.class);
+        return session.doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                // 临时表只对当前连接可见，事务提交时自动删除；同一事务内重复调用时先清空
+                statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + stagingTable
+                        + " (" + columnDdl + ") ON COMMIT DROP");
+                statement.execute("TRUNCATE " + stagingTable);
+            }
+
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            String copySql = "COPY " + stagingTable + " (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+            try (PGCopyOutputStream copyStream = new PGCopyOutputStream(pgConnection, copySql);
+                 CSVPrinter printer = new CSVPrinter(
+                         new BufferedWriter(new OutputStreamWriter(copyStream, StandardCharsets.UTF_8)),
+                         CSVFormat.POSTGRESQL_CSV)) {
+                for (Object[] row : rows) {
+                    printer.printRecord(row);
+                }
+                printer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("COPY 写入暂存表失败: " + stagingTable, e);
+            }
+            return (long) rows.size();
+        });
+    }
+}
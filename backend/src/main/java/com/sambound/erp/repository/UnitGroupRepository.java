@@ -6,12 +6,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UnitGroupRepository extends JpaRepository<UnitGroup, Long> {
     Optional<UnitGroup> findByCode(String code);
     boolean existsByCode(String code);
+    List<UnitGroup> findByCodeIn(List<String> codes);
     
     /**
      * 使用 PostgreSQL 的 INSERT ... ON CONFLICT 实现原子性的插入或获取操作
@@ -44,7 +44,8 @@ public interface UnitRepository extends JpaRepository<Unit, Long> {
         INSERT INTO units (code, name, unit_group_id, enabled, conversion_denominator, created_at, updated_at)
         VALUES (:code, :name, :unitGroupId, TRUE, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
         ON CONFLICT (code) DO UPDATE SET code = EXCLUDED.code
-        RETURNING id, code, name, unit_group_id, enabled, conversion_numerator, conversion_denominator, created_at, updated_at
+        RETURNING id, code, name, unit_group_id, enabled, conversion_numerator, conversion_denominator, content_hash,
+                  created_at, updated_at
         """, nativeQuery = true)
     Unit insertOrGetByCode(@Param("code") String code, @Param("name") String name, @Param("unitGroupId") Long unitGroupId);
     
@@ -56,5 +57,13 @@ public interface UnitRepository extends JpaRepository<Unit, Long> {
      */
     @Query("SELECT u FROM Unit u WHERE u.code IN :codes")
     List<Unit> findByCodeIn(@Param("codes") List<String> codes);
+    
+    /**
+     * 查询所有单位的编码和内容指纹（导入前预加载，用于跳过内容未变化的行并区分新增和更新）
+     * 
+     * @return [单位编码, 内容指纹] 列表，未记录指纹的单位指纹为 null
+     */
+    @Query("SELECT u.code, u.contentHash FROM Unit u")
+    List<Object[]> findAllContentHashes();
 }
 
@@ -3,6 +3,7 @@ package com.sambound.erp.service;
 import com.sambound.erp.dto.BillOfMaterialDTO;
 import com.sambound.erp.dto.BomItemDTO;
 import com.sambound.erp.dto.BomQueryDTO;
+import com.sambound.erp.dto.BomWhereUsedDTO;
 import com.sambound.erp.dto.CreateBomRequest;
 import com.sambound.erp.dto.UpdateBomRequest;
 import com.sambound.erp.entity.BillOfMaterial;
@@ -14,35 +15,49 @@ import com.sambound.erp.repository.BillOfMaterialRepository;
 import com.sambound.erp.repository.BomItemRepository;
 import com.sambound.erp.repository.MaterialRepository;
 import com.sambound.erp.repository.UnitRepository;
+import com.sambound.erp.service.importer.BomItemDiff;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 public class BillOfMaterialService {
 
+    private static final Comparator<BomQueryDTO> BY_SEQUENCE =
+            Comparator.comparing(BomQueryDTO::sequence, Comparator.nullsLast(Comparator.naturalOrder()));
+
     private final BillOfMaterialRepository bomRepository;
     private final BomItemRepository bomItemRepository;
     private final MaterialRepository materialRepository;
     private final UnitRepository unitRepository;
+    private final BomGraphService bomGraphService;
 
     public BillOfMaterialService(
             BillOfMaterialRepository bomRepository,
             BomItemRepository bomItemRepository,
             MaterialRepository materialRepository,
-            UnitRepository unitRepository) {
+            UnitRepository unitRepository,
+            BomGraphService bomGraphService) {
         this.bomRepository = bomRepository;
         this.bomItemRepository = bomItemRepository;
         this.materialRepository = materialRepository;
         this.unitRepository = unitRepository;
+        this.bomGraphService = bomGraphService;
     }
 
     public List<BillOfMaterialDTO> getAllBoms() {
@@ -95,8 +110,9 @@ public class BillOfMaterialService {
 
         bom = bomRepository.save(bom);
 
-        // 创建BOM明细
+        // 创建BOM明细（收集后一次保存，由 Hibernate 按 JDBC 批次写入）
         if (request.items() != null && !request.items().isEmpty()) {
+            List<BomItem> items = new ArrayList<>(request.items().size());
             for (CreateBomRequest.CreateBomItemRequest itemRequest : request.items()) {
                 Material childMaterial = materialRepository.findById(itemRequest.childMaterialId())
                         .orElseThrow(() -> new BusinessException("子项物料不存在: " + itemRequest.childMaterialId()));
@@ -125,9 +141,11 @@ public class BillOfMaterialService {
                         .memo(itemRequest.memo())
                         .build();
 
-                bomItemRepository.save(item);
+                items.add(item);
             }
+            bomItemRepository.saveAll(items);
         }
+        bomGraphService.refreshAfterCommit(List.of(bom.getId()));
 
         return toDTOWithItems(bom);
     }
@@ -149,15 +167,14 @@ public class BillOfMaterialService {
         if (request.description() != null) {
             bom.setDescription(request.description());
         }
+        // 手工修改后清空内容指纹，下次导入时按文件内容重新写入
+        bom.setContentHash(null);
 
         bom = bomRepository.save(bom);
 
-        // 更新明细项
+        // 更新明细项：与现有明细按（序号, 子项物料）逐条比较，只写入有变化的明细，未变化的明细保留原ID
         if (request.items() != null) {
-            // 删除所有现有明细项
-            bomItemRepository.deleteByBomId(bom.getId());
-
-            // 创建新的明细项
+            List<BomItemRepository.BomItemBatchData> targetItems = new ArrayList<>(request.items().size());
             for (UpdateBomRequest.UpdateBomItemRequest itemRequest : request.items()) {
                 Material childMaterial = materialRepository.findById(itemRequest.childMaterialId())
                         .orElseThrow(() -> new BusinessException("子项物料不存在: " + itemRequest.childMaterialId()));
@@ -174,20 +191,24 @@ public class BillOfMaterialService {
                     validateMaterialForChildBomVersion(childMaterial, childMaterial.getCode());
                 }
 
-                BomItem item = BomItem.builder()
-                        .bom(bom)
-                        .sequence(itemRequest.sequence())
-                        .childMaterial(childMaterial)
-                        .childUnit(childUnit)
-                        .numerator(itemRequest.numerator())
-                        .denominator(itemRequest.denominator())
-                        .scrapRate(itemRequest.scrapRate())
-                        .childBomVersion(childBomVersion)
-                        .memo(itemRequest.memo())
-                        .build();
-
-                bomItemRepository.save(item);
+                targetItems.add(new BomItemRepository.BomItemBatchData(
+                        bom.getId(),
+                        itemRequest.sequence(),
+                        childMaterial.getId(),
+                        childUnit.getId(),
+                        itemRequest.numerator(),
+                        itemRequest.denominator(),
+                        itemRequest.scrapRate(),
+                        childBomVersion,
+                        itemRequest.memo()));
             }
+
+            BomItemDiff.Result diff = BomItemDiff.compute(
+                    bomItemRepository.findStoredItemsByBomIds(List.of(bom.getId())), targetItems);
+            bomItemRepository.deleteByIds(diff.deletes());
+            bomItemRepository.updateItems(diff.updates());
+            bomItemRepository.insertItems(diff.inserts());
+            bomGraphService.refreshAfterCommit(List.of(bom.getId()));
         }
 
         return toDTOWithItems(bom);
@@ -199,6 +220,7 @@ public class BillOfMaterialService {
             throw new BusinessException("BOM不存在");
         }
         bomRepository.deleteById(id);
+        bomGraphService.refreshAfterCommit(List.of(id));
     }
 
     /**
@@ -227,9 +249,15 @@ public class BillOfMaterialService {
                 .orElseThrow(() -> new BusinessException(
                         String.format("物料 %s 不存在版本 %s 的BOM", materialCode, version)));
         
-        // 递归查询子物料
-        Set<Long> visited = new HashSet<>();
-        List<BomQueryDTO> children = queryChildrenRecursive(bom.getId(), visited);
+        // 优先在内存结构图中取回展开范围内的明细，结构图未就绪时一次递归查询取回，再在内存中组装树
+        List<BillOfMaterialRepository.ExplodedBomLine> lines = bomGraphService.explode(bom.getId())
+                .orElseGet(() -> bomRepository.explode(bom.getId()));
+        Map<Long, List<BillOfMaterialRepository.ExplodedBomLine>> linesByBom = new HashMap<>();
+        for (BillOfMaterialRepository.ExplodedBomLine line : lines) {
+            linesByBom.computeIfAbsent(line.bomId(), k -> new ArrayList<>()).add(line);
+        }
+        List<BomQueryDTO> children = buildTree(bom.getId(), linesByBom,
+                BillOfMaterialRepository.ExplodedBomLine::childBomId, this::toExplodedNode, BY_SEQUENCE);
         
         // 构建根节点
         return BomQueryDTO.createRoot(
@@ -250,6 +278,41 @@ public class BillOfMaterialService {
      * BOM反查：根据物料编码和版本（可选），递归查询所有父级物料及其BOM
      */
     public List<BomQueryDTO> queryBomBackward(String materialCode, String version) {
+        Material material = findWhereUsedMaterial(materialCode, version);
+        return buildTree(material.getId(), findWhereUsedLines(material.getId()),
+                BillOfMaterialRepository.WhereUsedLine::parentMaterialId, this::toWhereUsedNode, null);
+    }
+
+    /**
+     * BOM反查（平铺）：与树形反查相同的父项明细，每条明细只返回一次，按层级排列
+     * 层级为从被查物料向上的最短层数：经多条路径在不同层数上用到的父项明细只出现在最浅的一层，
+     * 结果行数与向上可达的明细数相同，与路径数无关；循环引用不会产生更深的层级
+     */
+    public List<BomWhereUsedDTO> queryBomBackwardFlat(String materialCode, String version) {
+        Material material = findWhereUsedMaterial(materialCode, version);
+        Map<Long, List<BillOfMaterialRepository.WhereUsedLine>> linesByChild = findWhereUsedLines(material.getId());
+
+        // 广度优先逐层向上，每个物料只在首次到达的层级展开
+        List<BomWhereUsedDTO> result = new ArrayList<>();
+        Set<Long> reached = new HashSet<>();
+        reached.add(material.getId());
+        List<Long> currentLevel = List.of(material.getId());
+        for (int level = 1; !currentLevel.isEmpty(); level++) {
+            List<Long> nextLevel = new ArrayList<>();
+            for (Long childMaterialId : currentLevel) {
+                for (BillOfMaterialRepository.WhereUsedLine line : linesByChild.getOrDefault(childMaterialId, List.of())) {
+                    result.add(toWhereUsedDTO(level, line));
+                    if (reached.add(line.parentMaterialId())) {
+                        nextLevel.add(line.parentMaterialId());
+                    }
+                }
+            }
+            currentLevel = nextLevel;
+        }
+        return result;
+    }
+
+    private Material findWhereUsedMaterial(String materialCode, String version) {
         // 查找物料
         Material material = materialRepository.findByCode(materialCode)
                 .orElseThrow(() -> new BusinessException("物料不存在: " + materialCode));
@@ -260,153 +323,144 @@ public class BillOfMaterialService {
                     .orElseThrow(() -> new BusinessException(
                             String.format("物料 %s 不存在版本 %s 的BOM", materialCode, version)));
         }
-        
-        // 递归查询父级
-        Set<Long> visited = new HashSet<>();
-        List<BomQueryDTO> parents = queryParentsRecursive(material.getId(), visited);
-        
-        return parents;
+        return material;
     }
 
     /**
-     * 递归查询子物料及其BOM
+     * 一次查询取回全部层级的父项明细，按子项物料分组
+     * 同一父项BOM中同一子项有多条明细时只保留第一条，与按父项BOM逐个查询的结果一致
      */
-    private List<BomQueryDTO> queryChildrenRecursive(Long bomId, Set<Long> visited) {
-        // 防止循环引用
-        if (visited.contains(bomId)) {
-            return new ArrayList<>();
-        }
-        visited.add(bomId);
-        
-        // 获取BOM的所有明细项
-        List<BomItem> items = bomItemRepository.findByBomIdWithDetails(bomId);
-        List<BomQueryDTO> children = new ArrayList<>();
-        
-        for (BomItem item : items) {
-            Material childMaterial = item.getChildMaterial();
-            String childBomVersion = item.getChildBomVersion();
-            
-            // 如果子物料没有配置BOM版本，使用V000作为默认版本
-            if (childBomVersion == null || childBomVersion.trim().isEmpty()) {
-                childBomVersion = "V000";
-            }
-            
-            // 查找子物料的BOM
-            BillOfMaterial childBom = bomRepository.findByMaterialIdAndVersion(
-                    childMaterial.getId(), childBomVersion).orElse(null);
-            
-            List<BomQueryDTO> grandChildren = new ArrayList<>();
-            if (childBom != null) {
-                // 递归查询子物料的子物料
-                grandChildren = queryChildrenRecursive(childBom.getId(), visited);
+    private Map<Long, List<BillOfMaterialRepository.WhereUsedLine>> findWhereUsedLines(Long materialId) {
+        List<BillOfMaterialRepository.WhereUsedLine> lines = bomGraphService.whereUsed(materialId)
+                .orElseGet(() -> bomRepository.whereUsed(materialId));
+        Set<String> usedParentBoms = new HashSet<>(lines.size() * 2);
+        Map<Long, List<BillOfMaterialRepository.WhereUsedLine>> linesByChild = new HashMap<>();
+        for (BillOfMaterialRepository.WhereUsedLine line : lines) {
+            if (usedParentBoms.add(line.childMaterialId() + "/" + line.bomId())) {
+                linesByChild.computeIfAbsent(line.childMaterialId(), k -> new ArrayList<>()).add(line);
             }
-            
-            // 构建子节点
-            BomQueryDTO childNode = BomQueryDTO.createChild(
-                    childMaterial.getId(),
-                    childMaterial.getCode(),
-                    childMaterial.getName(),
-                    childMaterial.getSpecification(),
-                    childMaterial.getMaterialGroup() != null ? childMaterial.getMaterialGroup().getCode() : null,
-                    childMaterial.getMaterialGroup() != null ? childMaterial.getMaterialGroup().getName() : null,
-                    childBom != null ? childBom.getId() : null,
-                    childBom != null ? childBom.getVersion() : null,
-                    childBom != null ? childBom.getName() : null,
-                    item.getSequence(),
-                    item.getNumerator(),
-                    item.getDenominator(),
-                    item.getScrapRate(),
-                    item.getChildBomVersion(),
-                    item.getChildUnit() != null ? item.getChildUnit().getCode() : null,
-                    item.getChildUnit() != null ? item.getChildUnit().getName() : null,
-                    grandChildren
-            );
-            
-            children.add(childNode);
         }
-        
-        // 按序号排序
-        children.sort(Comparator.comparing(BomQueryDTO::sequence, Comparator.nullsLast(Comparator.naturalOrder())));
-        
-        return children;
+        return linesByChild;
     }
 
     /**
-     * 递归查询父级物料及其BOM
-     * @param materialId 当前物料ID（用于查找该物料在父级BOM中的用量信息）
+     * 由按键（BOM或物料）分组的明细组装树，与逐层递归查询的结果一致：
+     * 按深度优先顺序，每个键只在第一次出现的位置展开，之后再出现（被多个父项共用或循环引用）时保留节点但不再展开，
+     * 树的节点数与展开范围内的明细数相同
+     *
+     * @param childKey 明细指向的下一层键，没有下一层时返回 null
+     * @param order    同一父节点下子节点的排序，null 表示保持明细顺序
      */
-    private List<BomQueryDTO> queryParentsRecursive(Long materialId, Set<Long> visited) {
-        // 防止循环引用
-        if (visited.contains(materialId)) {
-            return new ArrayList<>();
-        }
-        visited.add(materialId);
-        
-        // 查找所有使用该物料作为子项的BOM
-        List<BillOfMaterial> parentBoms = bomRepository.findByChildMaterialId(materialId);
-        
-        if (parentBoms.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        List<BomQueryDTO> parents = new ArrayList<>();
-        
-        for (BillOfMaterial parentBom : parentBoms) {
-            Material parentMaterial = parentBom.getMaterial();
-            
-            // 查询该物料在父级BOM中的用量信息
-            List<BomItem> bomItems = bomItemRepository.findByBomIdAndChildMaterialId(
-                    parentBom.getId(), materialId);
-            
-            // 如果找到用量信息，使用第一个（理论上一个BOM中一个物料应该只有一条明细）
-            BomItem bomItem = bomItems.isEmpty() ? null : bomItems.get(0);
-            
-            // 递归查询父级物料的父级
-            List<BomQueryDTO> grandParents = queryParentsRecursive(parentMaterial.getId(), visited);
-            
-            // 构建父节点，包含用量信息
-            BomQueryDTO parentNode;
-            if (bomItem != null) {
-                // 有用量信息，使用createChild方法
-                parentNode = BomQueryDTO.createChild(
-                        parentMaterial.getId(),
-                        parentMaterial.getCode(),
-                        parentMaterial.getName(),
-                        parentMaterial.getSpecification(),
-                        parentMaterial.getMaterialGroup() != null ? parentMaterial.getMaterialGroup().getCode() : null,
-                        parentMaterial.getMaterialGroup() != null ? parentMaterial.getMaterialGroup().getName() : null,
-                        parentBom.getId(),
-                        parentBom.getVersion(),
-                        parentBom.getName(),
-                        bomItem.getSequence(),
-                        bomItem.getNumerator(),
-                        bomItem.getDenominator(),
-                        bomItem.getScrapRate(),
-                        bomItem.getChildBomVersion(),
-                        bomItem.getChildUnit() != null ? bomItem.getChildUnit().getCode() : null,
-                        bomItem.getChildUnit() != null ? bomItem.getChildUnit().getName() : null,
-                        grandParents
-                );
+    private static <L> List<BomQueryDTO> buildTree(Long rootKey,
+                                                   Map<Long, List<L>> linesByKey,
+                                                   Function<L, Long> childKey,
+                                                   BiFunction<L, List<BomQueryDTO>, BomQueryDTO> toNode,
+                                                   Comparator<BomQueryDTO> order) {
+        Set<Long> visited = new HashSet<>();
+        visited.add(rootKey);
+        TreeFrame<L> root = new TreeFrame<>(null, linesByKey.getOrDefault(rootKey, List.of()).iterator(),
+                new ArrayList<>());
+        // 显式栈代替递归，不受层级深度限制
+        Deque<TreeFrame<L>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            TreeFrame<L> frame = stack.peek();
+            if (frame.lines().hasNext()) {
+                L line = frame.lines().next();
+                Long next = childKey.apply(line);
+                if (next != null && visited.add(next)) {
+                    stack.push(new TreeFrame<>(line, linesByKey.getOrDefault(next, List.of()).iterator(),
+                            new ArrayList<>()));
+                } else {
+                    frame.children().add(toNode.apply(line, new ArrayList<>()));
+                }
             } else {
-                // 没有找到用量信息（理论上不应该发生），使用createRoot方法
-                parentNode = BomQueryDTO.createRoot(
-                        parentMaterial.getId(),
-                        parentMaterial.getCode(),
-                        parentMaterial.getName(),
-                        parentMaterial.getSpecification(),
-                        parentMaterial.getMaterialGroup() != null ? parentMaterial.getMaterialGroup().getCode() : null,
-                        parentMaterial.getMaterialGroup() != null ? parentMaterial.getMaterialGroup().getName() : null,
-                        parentBom.getId(),
-                        parentBom.getVersion(),
-                        parentBom.getName(),
-                        grandParents
-                );
+                stack.pop();
+                if (order != null) {
+                    frame.children().sort(order);
+                }
+                if (frame != root) {
+                    stack.peek().children().add(toNode.apply(frame.line(), frame.children()));
+                }
             }
-            
-            parents.add(parentNode);
         }
-        
-        return parents;
+        return root.children();
+    }
+
+    /**
+     * 组装树时的一层：展开该层的明细及已组装的子节点
+     */
+    private record TreeFrame<L>(L line, Iterator<L> lines, List<BomQueryDTO> children) {
+    }
+
+    private BomQueryDTO toExplodedNode(BillOfMaterialRepository.ExplodedBomLine line, List<BomQueryDTO> children) {
+        return BomQueryDTO.createChild(
+                line.childMaterialId(),
+                line.childMaterialCode(),
+                line.childMaterialName(),
+                line.childMaterialSpecification(),
+                line.childMaterialGroupCode(),
+                line.childMaterialGroupName(),
+                line.childBomId(),
+                line.childBomVersion(),
+                line.childBomName(),
+                line.sequence(),
+                line.numerator(),
+                line.denominator(),
+                line.scrapRate(),
+                line.configuredChildBomVersion(),
+                line.childUnitCode(),
+                line.childUnitName(),
+                children
+        );
+    }
+
+    /**
+     * 反查树的节点：父项物料及其BOM，children 为再上一层的父项
+     */
+    private BomQueryDTO toWhereUsedNode(BillOfMaterialRepository.WhereUsedLine line, List<BomQueryDTO> grandParents) {
+        return BomQueryDTO.createChild(
+                line.parentMaterialId(),
+                line.parentMaterialCode(),
+                line.parentMaterialName(),
+                line.parentMaterialSpecification(),
+                line.parentMaterialGroupCode(),
+                line.parentMaterialGroupName(),
+                line.bomId(),
+                line.bomVersion(),
+                line.bomName(),
+                line.sequence(),
+                line.numerator(),
+                line.denominator(),
+                line.scrapRate(),
+                line.childBomVersion(),
+                line.childUnitCode(),
+                line.childUnitName(),
+                grandParents
+        );
+    }
+
+    private BomWhereUsedDTO toWhereUsedDTO(int level, BillOfMaterialRepository.WhereUsedLine line) {
+        return new BomWhereUsedDTO(
+                level,
+                line.childMaterialId(),
+                line.childMaterialCode(),
+                line.parentMaterialId(),
+                line.parentMaterialCode(),
+                line.parentMaterialName(),
+                line.parentMaterialSpecification(),
+                line.parentMaterialGroupCode(),
+                line.parentMaterialGroupName(),
+                line.bomId(),
+                line.bomVersion(),
+                line.bomName(),
+                line.sequence(),
+                line.numerator(),
+                line.denominator(),
+                line.scrapRate(),
+                line.childBomVersion(),
+                line.childUnitCode(),
+                line.childUnitName());
     }
 
     /**
@@ -0,0 +1,474 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.entity.Unit;
+import com.sambound.erp.repository.BillOfMaterialRepository;
+import com.sambound.erp.repository.MaterialRepository;
+import com.sambound.erp.repository.UnitRepository;
+import com.sambound.erp.service.bomgraph.BomGraph;
+import com.sambound.erp.service.bomgraph.BomGraphSnapshot;
+import com.sambound.erp.service.bomgraph.BomGraphSnapshot.BomRef;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BOM内存结构图
+ * 启动时把全部BOM表头和明细加载为 {@link BomGraph}，BOM正查/反查在内存中遍历结构，
+ * 只有物料、BOM名称和单位等展示信息按结果批量读取（每次查询固定三条语句，与层级和节点数无关）。
+ *
+ * <p>增量更新：BOM新增、修改、删除和导入的事务提交后，变化的BOM ID 进入待刷新队列，
+ * 由结构图自己的虚拟线程逐批从数据库重新读取，写入增量图（见 {@link BomGraphSnapshot}）。
+ * 提交方只入队，不占用额外连接、不等待刷新；读取和构建在锁外进行，锁只用于替换快照。
+ * 从入队到增量写入结构图之前，查询返回空结果改用数据库，写入方法返回后的查询总能看到本次修改。</p>
+ *
+ * <p>加载完成前、加载失败或增量更新失败时返回空结果，调用方改用数据库递归查询；
+ * 增量更新失败后在后台重新全量加载。</p>
+ */
+@Service
+public class BomGraphService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BomGraphService.class);
+
+    // 增量图至少允许的BOM数，避免基础图较小时频繁合并
+    private static final int MIN_COMPACT_THRESHOLD = 1024;
+    // 子项未配置BOM版本时使用的默认版本
+    private static final String DEFAULT_BOM_VERSION = "V000";
+
+    private final BillOfMaterialRepository bomRepository;
+    private final MaterialRepository materialRepository;
+    private final UnitRepository unitRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executorService;
+    private final boolean enabled;
+
+    private final Object lock = new Object();
+    // 当前可查询的快照，null 表示尚未就绪
+    private volatile BomGraphSnapshot snapshot;
+    // 有已提交但尚未写入快照的变更（待刷新或正在刷新）时为 true，查询改用数据库
+    // 在 lock 内与 snapshot 一起修改：先替换快照再清除标记，查询先读标记再读快照
+    private volatile boolean changesPending;
+    // 以下字段由 lock 保护
+    private boolean loading;
+    private boolean draining;
+    private Set<Long> pendingBomIds = new HashSet<>();
+
+    /**
+     * 正查明细：可达BOM的一条明细及其解析出的子项BOM
+     */
+    private record ExplodeNode(BomRef bom, int edge, BomRef childBom) {
+    }
+
+    /**
+     * 反查明细：一条使用子项物料的明细及其所属BOM
+     */
+    private record UsageNode(BomRef bom, int edge) {
+    }
+
+    public BomGraphService(
+            BillOfMaterialRepository bomRepository,
+            MaterialRepository materialRepository,
+            UnitRepository unitRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${erp.bom-graph.enabled:true}") boolean enabled) {
+        this.bomRepository = bomRepository;
+        this.materialRepository = materialRepository;
+        this.unitRepository = unitRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+        this.enabled = enabled;
+    }
+
+    /**
+     * 应用启动完成后在后台加载，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            executorService.submit(this::load);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * 全量加载结构图；加载期间入队的变更在加载完成后补充读取
+     */
+    public void load() {
+        synchronized (lock) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+            snapshot = null;
+            pendingBomIds = new HashSet<>();
+            changesPending = false;
+        }
+        long startTime = System.currentTimeMillis();
+        BomGraph base;
+        try {
+            base = transactionTemplate.execute(status -> {
+                BillOfMaterialRepository.GraphSize size = bomRepository.countGraph();
+                BomGraph.Builder builder = new BomGraph.Builder(
+                        (int) Math.min(size.bomCount(), Integer.MAX_VALUE - 8),
+                        (int) Math.min(size.itemCount(), Integer.MAX_VALUE - 8));
+                bomRepository.streamGraph(
+                        bom -> builder.addBom(bom.id(), bom.materialId(), bom.version()),
+                        item -> addItem(builder, item));
+                return builder.build();
+            });
+        } catch (Exception e) {
+            synchronized (lock) {
+                loading = false;
+                pendingBomIds = new HashSet<>();
+                changesPending = false;
+            }
+            logger.error("BOM结构图加载失败，BOM正查/反查将一直使用数据库递归查询，直到下次加载成功", e);
+            return;
+        }
+
+        boolean drain;
+        synchronized (lock) {
+            snapshot = BomGraphSnapshot.of(base);
+            loading = false;
+            drain = !pendingBomIds.isEmpty() && !draining;
+            draining |= drain;
+        }
+        logger.info("BOM结构图加载完成: BOM {} 个, 明细 {} 条, 物料 {} 个, 约 {}MB, 耗时 {}ms",
+                base.bomCount(), base.edgeCount(), base.materialCount(),
+                base.estimatedBytes() / (1024 * 1024), System.currentTimeMillis() - startTime);
+        warnOverflow(base);
+        if (drain) {
+            drain();
+        }
+    }
+
+    /**
+     * 当前事务提交后把指定BOM加入待刷新队列；没有事务时立即入队
+     * 只做入队，刷新在结构图自己的线程上进行，不占用调用方的连接和时间
+     */
+    public void refreshAfterCommit(Collection<Long> bomIds) {
+        if (!enabled || bomIds == null || bomIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(bomIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(ids);
+                }
+            });
+        } else {
+            enqueue(ids);
+        }
+    }
+
+    private void enqueue(Collection<Long> bomIds) {
+        synchronized (lock) {
+            if (snapshot == null && !loading) {
+                // 结构图已停用，查询使用数据库，无需记录
+                return;
+            }
+            pendingBomIds.addAll(bomIds);
+            changesPending = true;
+            if (loading || draining) {
+                return;
+            }
+            draining = true;
+        }
+        executorService.submit(this::drain);
+    }
+
+    /**
+     * 逐批处理待刷新队列：锁内只取出队列和当前快照、替换新快照，读取数据库和构建增量图在锁外进行
+     * 同一时刻只有一个 drain 在运行，快照的替换顺序与读取顺序一致
+     */
+    private void drain() {
+        while (true) {
+            Set<Long> ids;
+            BomGraphSnapshot current;
+            synchronized (lock) {
+                if (pendingBomIds.isEmpty() || snapshot == null) {
+                    draining = false;
+                    changesPending = !pendingBomIds.isEmpty();
+                    return;
+                }
+                ids = pendingBomIds;
+                pendingBomIds = new HashSet<>();
+                current = snapshot;
+            }
+
+            BomGraphSnapshot next;
+            try {
+                BomGraph.Builder builder = new BomGraph.Builder(ids.size(), 0);
+                transactionTemplate.executeWithoutResult(status -> bomRepository.streamGraph(ids,
+                        bom -> builder.addBom(bom.id(), bom.materialId(), bom.version()),
+                        item -> addItem(builder, item)));
+                next = current.withChanges(ids, builder.build());
+                if (next.needsCompaction(MIN_COMPACT_THRESHOLD)) {
+                    long startTime = System.currentTimeMillis();
+                    next = next.compact();
+                    logger.info("BOM结构图合并增量: BOM {} 个, 明细 {} 条, 耗时 {}ms",
+                            next.base().bomCount(), next.base().edgeCount(), System.currentTimeMillis() - startTime);
+                    warnOverflow(next.base());
+                }
+            } catch (Exception e) {
+                logger.error("BOM结构图增量更新失败，重新加载", e);
+                synchronized (lock) {
+                    snapshot = null;
+                    draining = false;
+                }
+                executorService.submit(this::load);
+                return;
+            }
+
+            synchronized (lock) {
+                if (snapshot == current) {
+                    snapshot = next;
+                    changesPending = !pendingBomIds.isEmpty();
+                } else {
+                    // 期间开始了全量加载，交给加载完成后重新处理
+                    pendingBomIds.addAll(ids);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单位或版本种类超出打包位数时提示：结果仍然正确，但溢出的明细额外占用内存
+     */
+    private static void warnOverflow(BomGraph graph) {
+        int overflow = graph.overflowEdgeCount();
+        if (overflow > 0) {
+            logger.warn("BOM结构图中有 {} 条明细的单位或子项BOM版本种类超出打包位数，已改存溢出表，内存占用高于预估",
+                    overflow);
+        }
+    }
+
+    private static void addItem(BomGraph.Builder builder, BillOfMaterialRepository.GraphItem item) {
+        builder.addItem(item.bomId(), item.childMaterialId(), item.sequence(), item.childUnitId(),
+                item.numerator(), item.denominator(), item.scrapRate(), item.childBomVersion());
+    }
+
+    // ---------- 查询 ----------
+
+    /**
+     * 可供查询的快照：尚未就绪或有已提交但尚未写入的变更时返回 null
+     */
+    private BomGraphSnapshot currentSnapshot() {
+        if (changesPending) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * BOM正查：取回展开范围内全部BOM的明细，结果与 {@link BillOfMaterialRepository#explode(Long)} 相同
+     *
+     * @return 结构图未就绪、有尚未写入的变更或BOM尚未进入结构图时返回空，调用方改用数据库查询
+     */
+    public Optional<List<BillOfMaterialRepository.ExplodedBomLine>> explode(Long rootBomId) {
+        BomGraphSnapshot current = currentSnapshot();
+        if (current == null) {
+            return Optional.empty();
+        }
+        BomRef root = current.bom(rootBomId);
+        if (root == null) {
+            return Optional.empty();
+        }
+
+        // 广度优先遍历可达的BOM，每个BOM只展开一次（共用的子项BOM和循环引用不会重复遍历）
+        List<ExplodeNode> nodes = new ArrayList<>();
+        Set<Long> reached = new HashSet<>();
+        reached.add(root.id());
+        Deque<BomRef> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            BomRef bom = queue.poll();
+            BomGraph graph = bom.graph();
+            for (int e = graph.firstEdge(bom.index()); e < graph.endEdge(bom.index()); e++) {
+                String version = graph.childBomVersion(e);
+                if (version == null || version.trim().isEmpty()) {
+                    version = DEFAULT_BOM_VERSION;
+                }
+                BomRef childBom = current.findBom(graph.childMaterialId(e), version);
+                nodes.add(new ExplodeNode(bom, e, childBom));
+                if (childBom != null && reached.add(childBom.id())) {
+                    queue.add(childBom);
+                }
+            }
+        }
+
+        Set<Long> materialIds = new HashSet<>();
+        Set<Long> bomIds = new HashSet<>();
+        Set<Long> unitIds = new HashSet<>();
+        for (ExplodeNode node : nodes) {
+            materialIds.add(node.bom().graph().childMaterialId(node.edge()));
+            unitIds.add(node.bom().graph().unitId(node.edge()));
+            if (node.childBom() != null) {
+                bomIds.add(node.childBom().id());
+            }
+        }
+        Map<Long, MaterialRepository.MaterialDisplay> materials = materialDisplays(materialIds);
+        Map<Long, String> bomNames = bomNames(bomIds);
+        Map<Long, Unit> units = units(unitIds);
+
+        List<BillOfMaterialRepository.ExplodedBomLine> lines = new ArrayList<>(nodes.size());
+        for (ExplodeNode node : nodes) {
+            BomGraph graph = node.bom().graph();
+            int edge = node.edge();
+            MaterialRepository.MaterialDisplay material = materials.get(graph.childMaterialId(edge));
+            if (material == null) {
+                // 物料已被删除，与数据库查询的内连接一致，跳过该明细
+                continue;
+            }
+            BomRef childBom = node.childBom();
+            Unit unit = units.get(graph.unitId(edge));
+            lines.add(new BillOfMaterialRepository.ExplodedBomLine(
+                    node.bom().id(),
+                    graph.sequence(edge),
+                    material.id(),
+                    material.code(),
+                    material.name(),
+                    material.specification(),
+                    material.groupCode(),
+                    material.groupName(),
+                    childBom != null ? childBom.id() : null,
+                    childBom != null ? childBom.graph().bomVersion(childBom.index()) : null,
+                    childBom != null ? bomNames.get(childBom.id()) : null,
+                    graph.numerator(edge),
+                    graph.denominator(edge),
+                    graph.scrapRate(edge),
+                    graph.childBomVersion(edge),
+                    unit != null ? unit.getCode() : null,
+                    unit != null ? unit.getName() : null));
+        }
+        return Optional.of(lines);
+    }
+
+    /**
+     * BOM反查：取回向上可达的全部父项明细，结果与 {@link BillOfMaterialRepository#whereUsed(Long)} 相同
+     *
+     * @return 结构图未就绪或有尚未写入的变更时返回空，调用方改用数据库查询
+     */
+    public Optional<List<BillOfMaterialRepository.WhereUsedLine>> whereUsed(Long materialId) {
+        BomGraphSnapshot current = currentSnapshot();
+        if (current == null) {
+            return Optional.empty();
+        }
+
+        // 广度优先逐层向上，每个物料只展开一次（经多条路径到达的父项和循环引用不会重复遍历）
+        List<UsageNode> nodes = new ArrayList<>();
+        Set<Long> reached = new HashSet<>();
+        reached.add(materialId);
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(materialId);
+        while (!queue.isEmpty()) {
+            current.forEachUsage(queue.poll(), (bom, edge) -> {
+                nodes.add(new UsageNode(bom, edge));
+                long parentMaterialId = bom.graph().bomMaterialId(bom.index());
+                if (reached.add(parentMaterialId)) {
+                    queue.add(parentMaterialId);
+                }
+            });
+        }
+
+        Set<Long> bomIds = new HashSet<>();
+        Set<Long> unitIds = new HashSet<>();
+        for (UsageNode node : nodes) {
+            bomIds.add(node.bom().id());
+            unitIds.add(node.bom().graph().unitId(node.edge()));
+        }
+        Map<Long, MaterialRepository.MaterialDisplay> materials = materialDisplays(reached);
+        Map<Long, String> bomNames = bomNames(bomIds);
+        Map<Long, Unit> units = units(unitIds);
+
+        List<BillOfMaterialRepository.WhereUsedLine> lines = new ArrayList<>(nodes.size());
+        for (UsageNode node : nodes) {
+            BomGraph graph = node.bom().graph();
+            int edge = node.edge();
+            MaterialRepository.MaterialDisplay parent = materials.get(graph.bomMaterialId(node.bom().index()));
+            MaterialRepository.MaterialDisplay child = materials.get(graph.childMaterialId(edge));
+            if (parent == null || child == null) {
+                continue;
+            }
+            Unit unit = units.get(graph.unitId(edge));
+            lines.add(new BillOfMaterialRepository.WhereUsedLine(
+                    child.id(),
+                    child.code(),
+                    parent.id(),
+                    parent.code(),
+                    parent.name(),
+                    parent.specification(),
+                    parent.groupCode(),
+                    parent.groupName(),
+                    node.bom().id(),
+                    graph.bomVersion(node.bom().index()),
+                    bomNames.get(node.bom().id()),
+                    graph.sequence(edge),
+                    graph.numerator(edge),
+                    graph.denominator(edge),
+                    graph.scrapRate(edge),
+                    graph.childBomVersion(edge),
+                    unit != null ? unit.getCode() : null,
+                    unit != null ? unit.getName() : null));
+        }
+        return Optional.of(lines);
+    }
+
+    // ---------- 展示信息 ----------
+
+    private Map<Long, MaterialRepository.MaterialDisplay> materialDisplays(Collection<Long> ids) {
+        Map<Long, MaterialRepository.MaterialDisplay> materials = new HashMap<>();
+        for (MaterialRepository.MaterialDisplay material : materialRepository.findDisplayByIds(ids)) {
+            materials.put(material.id(), material);
+        }
+        return materials;
+    }
+
+    private Map<Long, String> bomNames(Collection<Long> ids) {
+        Map<Long, String> names = new HashMap<>();
+        for (BillOfMaterialRepository.BomName bom : bomRepository.findNamesByIds(ids)) {
+            names.put(bom.id(), bom.name());
+        }
+        return names;
+    }
+
+    private Map<Long, Unit> units(Collection<Long> ids) {
+        Map<Long, Unit> units = new HashMap<>();
+        for (Unit unit : unitRepository.findAllById(ids)) {
+            units.put(unit.getId(), unit);
+        }
+        return units;
+    }
+}
@@ -1,78 +1,144 @@
 package com.sambound.erp.service;
 
 import cn.idev.excel.FastExcel;
-import cn.idev.excel.context.AnalysisContext;
-import cn.idev.excel.read.listener.ReadListener;
 import com.sambound.erp.dto.BomExcelRow;
 import com.sambound.erp.dto.BomImportResponse;
 import com.sambound.erp.entity.BillOfMaterial;
 import com.sambound.erp.entity.BomItem;
 import com.sambound.erp.entity.Material;
 import com.sambound.erp.entity.Unit;
+import com.sambound.erp.exception.ImportCancelledException;
 import com.sambound.erp.repository.BillOfMaterialRepository;
 import com.sambound.erp.repository.BomItemRepository;
 import com.sambound.erp.repository.MaterialRepository;
 import com.sambound.erp.repository.UnitRepository;
+import com.sambound.erp.service.importer.AdaptiveBatchLimiter;
+import com.sambound.erp.service.importer.AdaptiveBatchTuner;
+import com.sambound.erp.service.importer.BatchProfile;
+import com.sambound.erp.service.importer.BomCycleDetector;
+import com.sambound.erp.service.importer.BomItemDiff;
+import com.sambound.erp.service.importer.BoundedErrorList;
+import com.sambound.erp.service.importer.CellNormalizer;
+import com.sambound.erp.service.importer.CommittedRowRanges;
+import com.sambound.erp.service.importer.CsvRowReader;
+import com.sambound.erp.service.importer.ExcelRowListener;
+import com.sambound.erp.service.importer.ImportFile;
+import com.sambound.erp.service.importer.ImportJobType;
+import com.sambound.erp.service.importer.ImportProgress;
+import com.sambound.erp.service.importer.ImportRowHandler;
+import com.sambound.erp.service.importer.RowFingerprint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class BomImportService {
 
     private static final Logger logger = LoggerFactory.getLogger(BomImportService.class);
+    // 导入结果中保留的错误条数上限，完整错误写入任务的错误报告文件
     private static final int MAX_ERROR_COUNT = 1000;
     private static final int BATCH_QUERY_CHUNK_SIZE = 1000;
-    private static final int BOM_BATCH_SIZE = 500; // 每批处理的BOM数量
+    private static final String BOM_SHEET = "物料清单#单据头(FBillHead)";
+    // 读取线程与写入线程之间的队列容量（按BOM计）；队列满时读取线程等待
+    private static final int GROUP_QUEUE_CAPACITY = 1000;
+    private static final long QUEUE_OFFER_TIMEOUT_MS = 200;
+    // 每批处理的BOM数量和并发提交的批次数由自适应调节器根据提交耗时调节
+    // 批次按文件顺序划分，同一父项物料的批次依次执行，其余批次可以并发提交（并发上限同时受连接池大小限制）
+    private static final BatchProfile BOM_BATCH_PROFILE =
+            new BatchProfile("bom", 500, 50, 2000, 4, 10, 10000);
 
     private final BillOfMaterialRepository bomRepository;
     private final BomItemRepository bomItemRepository;
     private final MaterialRepository materialRepository;
     private final UnitRepository unitRepository;
     private final TransactionTemplate transactionTemplate;
+    private final AdaptiveBatchTuner batchTuner;
+    private final ImportCheckpointService checkpointService;
+    private final ExecutorService executorService;
+    private final BomGraphService bomGraphService;
 
     public BomImportService(
             BillOfMaterialRepository bomRepository,
             BomItemRepository bomItemRepository,
             MaterialRepository materialRepository,
             UnitRepository unitRepository,
-            PlatformTransactionManager transactionManager) {
+            PlatformTransactionManager transactionManager,
+            AdaptiveBatchTuner batchTuner,
+            ImportCheckpointService checkpointService,
+            BomGraphService bomGraphService) {
         this.bomRepository = bomRepository;
         this.bomItemRepository = bomItemRepository;
         this.materialRepository = materialRepository;
         this.unitRepository = unitRepository;
+        this.batchTuner = batchTuner;
+        this.checkpointService = checkpointService;
+        this.bomGraphService = bomGraphService;
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
         this.transactionTemplate.setTimeout(120);
+        // 批次提交使用虚拟线程，并发数由自适应限流器控制
+        this.executorService = Executors.newVirtualThreadPerTaskExecutor();
     }
 
-    public BomImportResponse importFromExcel(MultipartFile file) {
-        logger.info("开始导入BOM Excel文件: {}", file.getOriginalFilename());
+    /**
+     * 导入BOM
+     *
+     * @param file     已暂存的导入文件
+     * @param jobId    导入任务ID，批次检查点按任务记录，同一任务重启后跳过已提交的BOM
+     * @param progress 导入进度，在行/批次边界检查取消标记
+     * @param dryRun   预检模式：完成解析、引用解析、数值校验和与现有BOM的比对，只执行只读查询
+     */
+    public BomImportResponse importFromExcel(ImportFile file, String jobId, ImportProgress progress, boolean dryRun) {
+        logger.info("开始{}BOM Excel文件: {}", dryRun ? "预检" : "导入", file.originalFilename());
 
         try {
-            byte[] fileBytes = file.getBytes();
-
-            BomDataCollector collector = new BomDataCollector();
-            FastExcel.read(new ByteArrayInputStream(fileBytes), BomExcelRow.class, collector)
-                    .sheet("物料清单#单据头(FBillHead)")
-                    .headRowNumber(2)  // 前两行为表头
-                    .doRead();
+            // 边读取边写入：读取线程解析出完整的BOM后交给写入线程
+            BomDataCollector collector = new BomDataCollector(jobId, progress, dryRun);
+            collector.start();
+            try {
+                if (CsvRowReader.isCsv(file)) {
+                    CsvRowReader.read(file, BomExcelRow.class, collector);
+                } else {
+                    try (InputStream inputStream = file.openStream()) {
+                        FastExcel.read(inputStream, BomExcelRow.class, new ExcelRowListener<>(collector))
+                                .sheet(BOM_SHEET)
+                                .headRowNumber(2)  // 前两行为表头
+                                .doRead();
+                    }
+                }
+            } catch (Exception e) {
+                collector.abort();
+                throw e;
+            }
 
-            BomImportResponse result = collector.importToDatabase();
-            logger.info("BOM导入完成：BOM总计 {} 条，成功 {} 条，失败 {} 条；明细总计 {} 条，成功 {} 条，失败 {} 条",
-                    result.bomResult().totalRows(), result.bomResult().successCount(), result.bomResult().failureCount(),
+            BomImportResponse result = collector.awaitResult();
+            logger.info("BOM导入完成：BOM总计 {} 条，成功 {} 条（新增 {} 条，更新 {} 条，未变化 {} 条），失败 {} 条；明细总计 {} 条，成功 {} 条，失败 {} 条",
+                    result.bomResult().totalRows(), result.bomResult().successCount(),
+                    result.bomResult().insertedCount(), result.bomResult().updatedCount(), result.bomResult().skippedCount(),
+                    result.bomResult().failureCount(),
                     result.itemResult().totalRows(), result.itemResult().successCount(), result.itemResult().failureCount());
 
             return result;
         } catch (Exception e) {
+            if (progress.isCancelled()) {
+                logger.info("BOM导入已取消: {}", file.originalFilename());
+                throw new ImportCancelledException("BOM导入已取消");
+            }
             logger.error("Excel文件导入失败", e);
             throw new RuntimeException("Excel文件导入失败: " + e.getMessage(), e);
         }
@@ -80,30 +146,106 @@ public class BomImportService {
 
     /**
      * BOM数据收集器：处理CSV的特殊结构（父项字段只在第一行有值，后续行重复）
+     *
+     * <p>工作表按"表头行 + 明细行"顺序排列，读取到下一个表头时上一个BOM即已完整，
+     * 立即放入有界队列交给写入线程；写入线程按窗口（约一个批次的BOM数）预加载引用、比对并提交批次，
+     * 写入与解析重叠进行。队列满或在途批次达到上限时读取线程等待，内存占用不随文件大小增长。</p>
      */
-    private class BomDataCollector implements ReadListener<BomExcelRow> {
-        private final List<BomData> bomDataList = new ArrayList<>();
-        private final AtomicInteger totalRows = new AtomicInteger(0);
+    private class BomDataCollector implements ImportRowHandler<BomExcelRow> {
+        private final BlockingQueue<Map.Entry<BomHeader, List<BomItemData>>> groupQueue =
+                new ArrayBlockingQueue<>(GROUP_QUEUE_CAPACITY);
+        private final String jobId;
+        private final ImportProgress progress;
+        private final boolean dryRun;
         private BomHeader currentHeader = null;
+        private List<BomItemData> currentItems = new ArrayList<>();
+        private final CellNormalizer cells = new CellNormalizer();
+        private CompletableFuture<BomImportResponse> writer;
+        private volatile boolean aborted = false;
+
+        // 以下状态由写入线程维护；缓存和错误列表同时被批次线程读写
+        private final Map<String, Material> materialCache = new ConcurrentHashMap<>();
+        private final Map<String, Unit> unitCache = new ConcurrentHashMap<>();
+        private final BoundedErrorList<BomImportResponse.ImportError> bomErrors = new BoundedErrorList<>(MAX_ERROR_COUNT);
+        // 预检时由多个线程并行写入
+        private final BoundedErrorList<BomImportResponse.ImportError> itemErrors = new BoundedErrorList<>(MAX_ERROR_COUNT);
+        // 因形成循环引用而被拒绝的明细行号：写入线程在解析所在窗口的BOM前加入，批次线程只读
+        private final Set<Integer> cycleItemRows = ConcurrentHashMap.newKeySet();
+        private final List<CompletableFuture<BatchImportResult>> batchFutures = new ArrayList<>();
+        // 每个父项物料最近一次提交的批次：同一父项物料的后续批次等它完成后再执行
+        private final Map<String, CompletableFuture<BatchImportResult>> lastBatchByParent = new HashMap<>();
+        private Map<String, Long> existingContentHashes;
+        private CommittedRowRanges committedRows;
+        private BomCycleDetector cycleDetector;
+        // 现有BOM的明细在循环检测图中的边序号范围（bomId -> [起始, 结束)），BOM被文件替换时删除这些边
+        private Map<Long, int[]> existingEdgeRanges;
+        private long cycleDetectionNanos = 0;
+        private int batchIndex = 0;
+        private int totalBomCount = 0;
+        private int totalItemCount = 0;
+        private int bomSkippedCount = 0;
+        // 跳过写入的BOM的明细均计为未变化
+        private int itemUnchangedCount = 0;
+        private int skippedBomSuccessCount = 0;
+        private int skippedItemSuccessCount = 0;
+
+        BomDataCollector(String jobId, ImportProgress progress, boolean dryRun) {
+            this.jobId = jobId;
+            this.progress = progress;
+            this.dryRun = dryRun;
+        }
+
+        /**
+         * 启动写入线程（在开始读取文件前调用）
+         */
+        void start() {
+            writer = CompletableFuture.supplyAsync(this::consumeGroups, executorService);
+        }
+
+        /**
+         * 读取失败或取消时停止写入线程：丢弃队列中尚未处理的BOM，等待已提交的批次结束
+         */
+        void abort() {
+            aborted = true;
+            groupQueue.clear();
+            groupQueue.offer(END_OF_GROUPS);
+            try {
+                writer.join();
+            } catch (CompletionException | CancellationException e) {
+                logger.debug("BOM写入线程已停止: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * 等待写入线程处理完全部BOM并返回导入结果
+         */
+        BomImportResponse awaitResult() {
+            try {
+                return writer.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
 
         @Override
-        public void invoke(BomExcelRow data, AnalysisContext context) {
-            totalRows.incrementAndGet();
-            int rowNum = context.readRowHolder().getRowIndex();
+        public void handleRow(BomExcelRow data, int rowNum) {
+            progress.checkCancelled();
+            progress.rowParsed();
 
             // 检查是否是新的BOM头（billHead不为空，或者父项物料编码不为空）
-            if ((data.getBillHead() != null && !data.getBillHead().trim().isEmpty()) ||
-                (data.getMaterialCode() != null && !data.getMaterialCode().trim().isEmpty())) {
+            String materialCode = cells.code(data.getMaterialCode());
+            if (!CellNormalizer.isBlank(data.getBillHead()) || materialCode != null) {
+                // 上一个BOM的明细已全部读完
+                flushCurrentGroup();
                 // 创建新的BOM头
                 // 版本可以为空，如果为空则使用实体类的默认值
-                String version = null;
-                if (data.getVersion() != null && !data.getVersion().trim().isEmpty()) {
-                    version = data.getVersion().trim();
-                }
                 currentHeader = new BomHeader(
                         rowNum,
-                        data.getMaterialCode() != null ? data.getMaterialCode().trim() : null,
-                        version,
+                        materialCode,
+                        cells.code(data.getVersion()),
                         data.getName(),
                         data.getCategory(),
                         data.getUsage(),
@@ -112,139 +254,363 @@ public class BomImportService {
             }
 
             // 如果有BOM头且子项物料编码不为空，添加明细项
-            if (currentHeader != null && 
-                data.getChildMaterialCode() != null && !data.getChildMaterialCode().trim().isEmpty()) {
-                
-                BomData bomData = new BomData(currentHeader, new BomItemData(
+            // 编码类单元格在一次导入内复用同一个字符串实例
+            String childMaterialCode = cells.code(data.getChildMaterialCode());
+            if (currentHeader != null && childMaterialCode != null) {
+                currentItems.add(new BomItemData(
                         rowNum,
-                        data.getSequence() != null && !data.getSequence().trim().isEmpty() 
-                                ? Integer.parseInt(data.getSequence().trim()) : null,
-                        data.getChildMaterialCode().trim(),
-                        data.getChildUnitCode() != null && !data.getChildUnitCode().trim().isEmpty() 
-                                ? data.getChildUnitCode().trim() : null,
+                        parseSequence(data.getSequence(), rowNum),
+                        childMaterialCode,
+                        cells.code(data.getChildUnitCode()),
                         data.getNumerator(),
                         data.getDenominator(),
                         data.getScrapRate(),
-                        data.getChildBomVersion(),
+                        cells.code(data.getChildBomVersion()),
                         data.getMemo()
                 ));
-                bomDataList.add(bomData);
             }
         }
 
+        /**
+         * 解析明细序号，不是正整数时（含 0 和负数，bom_items 要求序号大于 0）记录提示并按自动编号处理
+         */
+        private Integer parseSequence(String value, int rowNumber) {
+            CellNormalizer.ParsedDecimal parsed = CellNormalizer.parsePositiveInt(value);
+            if (parsed.isEmpty()) {
+                return null;
+            }
+            if (!parsed.invalid()) {
+                return parsed.value().intValue();
+            }
+            recordError(itemErrors, new BomImportResponse.ImportError(
+                    "BOM明细", rowNumber, "FReplaceGroup",
+                    String.format("序号必须是大于 0 的整数: %s，已按自动编号处理", value)));
+            return null;
+        }
+
         @Override
-        public void doAfterAllAnalysed(AnalysisContext context) {
-            logger.info("BOM数据收集完成，共 {} 条BOM明细数据", bomDataList.size());
+        public void afterAllRows() {
+            flushCurrentGroup();
+            emit(END_OF_GROUPS);
+            logger.info("BOM数据读取完成");
         }
 
-        public BomImportResponse importToDatabase() {
-            if (bomDataList.isEmpty()) {
-                logger.info("未找到BOM数据");
-                return new BomImportResponse(
-                        new BomImportResponse.BomImportResult(0, 0, 0, new ArrayList<>()),
-                        new BomImportResponse.BomItemImportResult(0, 0, 0, new ArrayList<>())
-                );
+        /**
+         * 将当前BOM（至少有一条明细）交给写入线程
+         */
+        private void flushCurrentGroup() {
+            if (currentHeader != null && !currentItems.isEmpty()) {
+                emit(Map.entry(currentHeader, currentItems));
             }
+            currentItems = new ArrayList<>();
+        }
 
-            long startTime = System.currentTimeMillis();
-
-            // 按BOM头分组
-            Map<BomHeader, List<BomItemData>> bomGroups = new LinkedHashMap<>();
-            for (BomData data : bomDataList) {
-                bomGroups.computeIfAbsent(data.header, k -> new ArrayList<>()).add(data.item);
+        /**
+         * 放入队列；队列满时等待，期间写入线程异常结束或任务取消则停止读取
+         */
+        private void emit(Map.Entry<BomHeader, List<BomItemData>> group) {
+            try {
+                while (!groupQueue.offer(group, QUEUE_OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (writer.isDone()) {
+                        awaitResult();
+                        throw new IllegalStateException("BOM写入线程已提前结束");
+                    }
+                    progress.checkCancelled();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("BOM导入被中断", e);
             }
+        }
 
-            int totalBomCount = bomGroups.size();
-            int totalItemCount = bomDataList.size();
-            logger.info("找到 {} 个BOM，{} 条明细，开始导入到数据库", totalBomCount, totalItemCount);
-
-            List<BomImportResponse.ImportError> bomErrors = new ArrayList<>();
-            List<BomImportResponse.ImportError> itemErrors = new ArrayList<>();
-            AtomicInteger bomSuccessCount = new AtomicInteger(0);
-            AtomicInteger itemSuccessCount = new AtomicInteger(0);
-
-            // 预加载物料和单位数据
-            Map<String, Material> materialCache = new HashMap<>();
-            Map<String, Unit> unitCache = new HashMap<>();
-            preloadMaterialsAndUnits(bomGroups, materialCache, unitCache);
-
-            // 预先批量查询所有已存在的BOM
-            Map<String, BillOfMaterial> existingBomMap = preloadExistingBoms(bomGroups, materialCache);
-
-            // 将BOM分组转换为列表以便批量处理
-            List<Map.Entry<BomHeader, List<BomItemData>>> bomList = new ArrayList<>(bomGroups.entrySet());
-
-            // 批量导入BOM
-            for (int i = 0; i < bomList.size(); i += BOM_BATCH_SIZE) {
-                int end = Math.min(i + BOM_BATCH_SIZE, bomList.size());
-                List<Map.Entry<BomHeader, List<BomItemData>>> batch = bomList.subList(i, end);
-                int batchIndex = (i / BOM_BATCH_SIZE) + 1;
-                int totalBatches = (bomList.size() + BOM_BATCH_SIZE - 1) / BOM_BATCH_SIZE;
-
-                logger.info("处理批次 {}/{}，BOM数量: {}", batchIndex, totalBatches, batch.size());
-                long batchStartTime = System.currentTimeMillis();
+        /**
+         * 写入线程：逐个取出BOM，凑满一个窗口后处理；读取结束后等待全部批次并汇总结果
+         */
+        private BomImportResponse consumeGroups() {
+            long startTime = System.currentTimeMillis();
 
-                // 每个批次使用独立事务
-                try {
-                    BatchImportResult result = transactionTemplate.execute(status -> {
-                        return importBatchBoms(batch, materialCache, unitCache, existingBomMap, itemErrors);
-                    });
+            // 同一任务因服务重启中断后恢复时，已提交批次中的BOM不再重新写入
+            committedRows = dryRun
+                    ? CommittedRowRanges.empty()
+                    : checkpointService.loadCommitted(ImportJobType.BOM, jobId, BOM_SHEET);
+            // 计算每个BOM（表头+全部明细）的内容指纹，与上次导入一致的BOM不再写入
+            existingContentHashes = preloadContentHashes();
+            loadExistingEdges();
 
-                    if (result != null) {
-                        bomSuccessCount.addAndGet(result.bomSuccessCount);
-                        itemSuccessCount.addAndGet(result.itemSuccessCount);
+            AdaptiveBatchLimiter limiter = batchTuner.limiter(BOM_BATCH_PROFILE);
+            int bomSuccessCount = 0;
+            int itemSuccessCount = 0;
+            int bomInsertedCount = 0;
+            int bomUpdatedCount = 0;
+            BomItemDiff.Counts itemChanges = BomItemDiff.Counts.NONE;
+            boolean completed = false;
+            try {
+                List<Map.Entry<BomHeader, List<BomItemData>>> window = new ArrayList<>();
+                while (!aborted) {
+                    Map.Entry<BomHeader, List<BomItemData>> group;
+                    try {
+                        group = groupQueue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("BOM导入被中断", e);
                     }
-                } catch (Exception e) {
-                    logger.error("批次 {} 导入失败", batchIndex, e);
-                    // 记录批次级别的错误
-                    for (Map.Entry<BomHeader, List<BomItemData>> entry : batch) {
-                        if (bomErrors.size() < MAX_ERROR_COUNT) {
-                            bomErrors.add(new BomImportResponse.ImportError(
-                                    "BOM", entry.getKey().rowNumber, null,
-                                    "批次导入失败: " + e.getMessage()));
-                        }
+                    if (group == END_OF_GROUPS) {
+                        break;
+                    }
+                    window.add(group);
+                    // 每个窗口读取调节后的批次大小
+                    if (window.size() >= limiter.batchSize()) {
+                        processWindow(window, limiter);
+                        window = new ArrayList<>();
                     }
                 }
+                if (!window.isEmpty() && !aborted) {
+                    processWindow(window, limiter);
+                }
 
-                long batchDuration = System.currentTimeMillis() - batchStartTime;
-                logger.info("批次 {}/{} 完成，耗时: {}ms，平均: {}ms/BOM",
-                        batchIndex, totalBatches, batchDuration,
-                        batch.size() > 0 ? batchDuration / batch.size() : 0);
+                for (CompletableFuture<BatchImportResult> future : batchFutures) {
+                    BatchImportResult result = future.join();
+                    bomSuccessCount += result.bomSuccessCount();
+                    itemSuccessCount += result.itemSuccessCount();
+                    bomInsertedCount += result.bomInsertedCount();
+                    bomUpdatedCount += result.bomUpdatedCount();
+                    itemChanges = itemChanges.plus(result.itemChanges());
+                }
+                completed = true;
+            } finally {
+                // 出错、中断、中止或取消时，等待已提交的批次全部结束再返回，任务结束后不再有写入在进行，
+                // 检查点和取消状态与数据库一致
+                if (!completed) {
+                    awaitBatchesQuietly();
+                }
             }
+            // 跳过写入的BOM在读取窗口时计数，窗口全部处理完后再累加
+            bomSuccessCount += skippedBomSuccessCount;
+            itemSuccessCount += skippedItemSuccessCount;
+            int itemUnchanged = itemUnchangedCount + itemChanges.unchanged();
 
+            if (totalBomCount == 0) {
+                logger.info("未找到BOM数据");
+            }
+            if (bomSkippedCount > 0) {
+                logger.info("{} 个BOM内容未变化或已从检查点恢复，跳过写入", bomSkippedCount);
+            }
+            logger.info("BOM循环引用检测：累计耗时 {}ms，拒绝 {} 条形成循环的明细",
+                    cycleDetectionNanos / 1_000_000, cycleItemRows.size());
             long totalDuration = System.currentTimeMillis() - startTime;
-            logger.info("BOM导入完成：总耗时 {}ms，BOM总计 {} 条，成功 {} 条，失败 {} 条；明细总计 {} 条，成功 {} 条，失败 {} 条",
-                    totalDuration, totalBomCount, bomSuccessCount.get(), totalBomCount - bomSuccessCount.get(),
-                    totalItemCount, itemSuccessCount.get(), totalItemCount - itemSuccessCount.get());
+            logger.info("BOM{}完成：共 {} 个批次，总耗时 {}ms，BOM总计 {} 条，成功 {} 条，失败 {} 条；明细总计 {} 条，成功 {} 条，失败 {} 条，"
+                            + "其中新增 {} 条，更新 {} 条，删除 {} 条，未变化 {} 条",
+                    dryRun ? "预检" : "导入", batchIndex, totalDuration, totalBomCount, bomSuccessCount,
+                    totalBomCount - bomSuccessCount, totalItemCount, itemSuccessCount, totalItemCount - itemSuccessCount,
+                    itemChanges.inserted(), itemChanges.updated(), itemChanges.deleted(), itemUnchanged);
 
             return new BomImportResponse(
                     new BomImportResponse.BomImportResult(
                             totalBomCount,
-                            bomSuccessCount.get(),
-                            totalBomCount - bomSuccessCount.get(),
-                            bomErrors),
+                            bomSuccessCount,
+                            totalBomCount - bomSuccessCount,
+                            bomInsertedCount,
+                            bomUpdatedCount,
+                            bomSkippedCount,
+                            bomErrors.toList()),
                     new BomImportResponse.BomItemImportResult(
                             totalItemCount,
-                            itemSuccessCount.get(),
-                            totalItemCount - itemSuccessCount.get(),
-                            itemErrors)
+                            itemSuccessCount,
+                            totalItemCount - itemSuccessCount,
+                            itemChanges.inserted(),
+                            itemChanges.updated(),
+                            itemChanges.deleted(),
+                            itemUnchanged,
+                            itemErrors.toList())
             );
         }
 
-        private void preloadMaterialsAndUnits(
-                Map<BomHeader, List<BomItemData>> bomGroups,
-                Map<String, Material> materialCache,
-                Map<String, Unit> unitCache) {
+        /**
+         * 等待已提交的全部批次结束，忽略其结果
+         */
+        private void awaitBatchesQuietly() {
+            try {
+                CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException | CancellationException e) {
+                logger.debug("BOM批次异常结束: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * 处理一个窗口的BOM：预加载引用和现有BOM，跳过未变化和已提交的BOM，检测循环引用，
+         * 其余BOM预检时直接比对，正式导入时作为一个批次异步提交
+         */
+        private void processWindow(List<Map.Entry<BomHeader, List<BomItemData>>> window,
+                                   AdaptiveBatchLimiter limiter) {
+            progress.checkCancelled();
+            totalBomCount += window.size();
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
+                totalItemCount += entry.getValue().size();
+            }
+
+            // 预加载物料和单位数据（已缓存的不再查询）
+            preloadMaterialsAndUnits(window);
+            // 批量查询窗口内已存在的BOM
+            Map<String, BillOfMaterial> existingBomMap = preloadExistingBoms(window);
+
+            Map<BomHeader, Long> contentHashes = new HashMap<>();
+            List<Map.Entry<BomHeader, List<BomItemData>>> bomList = new ArrayList<>(window.size());
+            List<Map.Entry<BomHeader, List<BomItemData>>> resumedList = new ArrayList<>();
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
+                BomHeader header = entry.getKey();
+                long contentHash = fingerprint(header, entry.getValue());
+                Long existingHash = existingContentHashes.get(contentHashKey(header.materialCode, versionOf(header)));
+                if (existingHash != null && existingHash == contentHash) {
+                    bomSkippedCount++;
+                    skippedBomSuccessCount++;
+                    skippedItemSuccessCount += entry.getValue().size();
+                    itemUnchangedCount += entry.getValue().size();
+                    continue;
+                }
+                contentHashes.put(header, contentHash);
+                if (committedRows.contains(header.rowNumber)) {
+                    resumedList.add(entry);
+                } else {
+                    bomList.add(entry);
+                }
+            }
+
+            // 在现有BOM结构与文件中已读取部分合并后的结构上检测循环引用
+            detectCycles(window, bomList, existingBomMap);
+
+            // 已提交的BOM只在内存中重新解析，照常报告明细错误和计数，不访问数据库
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : resumedList) {
+                PreparedBom prepared = prepareBom(entry.getKey(), entry.getValue(), existingBomMap, contentHashes);
+                if (prepared != null) {
+                    bomSkippedCount++;
+                    skippedBomSuccessCount++;
+                    skippedItemSuccessCount += prepared.items.size();
+                    itemUnchangedCount += prepared.items.size();
+                }
+            }
+            if (!resumedList.isEmpty()) {
+                logger.info("从检查点恢复：跳过上次已提交的BOM {} 个", resumedList.size());
+            }
+            if (bomList.isEmpty()) {
+                return;
+            }
+
+            // 预检只解析和比对，正式导入按批次写入
+            if (dryRun) {
+                batchFutures.add(CompletableFuture.completedFuture(
+                        previewBoms(bomList, existingBomMap, contentHashes)));
+            } else {
+                submitBatch(bomList, limiter, existingBomMap, contentHashes);
+            }
+        }
+
+        /**
+         * 获取在途批次许可后异步提交一个批次（许可数达到上限时阻塞，为读取提供背压）
+         * 同一父项物料此前的批次尚未完成时，新批次等它们完成后再执行：
+         * 并发的批次之间不会写入同一表头行或其明细，不会相互等待行锁，文件中后出现的内容总是后写入
+         */
+        private void submitBatch(
+                List<Map.Entry<BomHeader, List<BomItemData>>> batch,
+                AdaptiveBatchLimiter limiter,
+                Map<String, BillOfMaterial> existingBomMap,
+                Map<BomHeader, Long> contentHashes) {
+            int currentBatchIndex = ++batchIndex;
+            // 批次覆盖的行范围：第一个BOM的表头行到最后一个BOM的最后一条明细行
+            List<BomItemData> lastItems = batch.get(batch.size() - 1).getValue();
+            int[] rowRange = {batch.get(0).getKey().rowNumber,
+                    lastItems.get(lastItems.size() - 1).rowNumber, batch.size()};
+
+            lastBatchByParent.values().removeIf(CompletableFuture::isDone);
+            Set<CompletableFuture<BatchImportResult>> dependencies = new HashSet<>();
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : batch) {
+                CompletableFuture<BatchImportResult> previous = lastBatchByParent.get(entry.getKey().materialCode);
+                if (previous != null) {
+                    dependencies.add(previous);
+                }
+            }
+
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("BOM导入被中断", e);
+            }
+            CompletableFuture<Void> ready = dependencies.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                            .handle((result, error) -> null);
+            CompletableFuture<BatchImportResult> future = ready.thenApplyAsync(ignored -> {
+                try {
+                    if (progress.isCancelled()) {
+                        return BatchImportResult.EMPTY;
+                    }
+                    return processBatch(batch, currentBatchIndex, rowRange, limiter, existingBomMap, contentHashes);
+                } finally {
+                    // 释放在途批次许可
+                    limiter.release();
+                }
+            }, executorService);
+
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : batch) {
+                lastBatchByParent.put(entry.getKey().materialCode, future);
+            }
+            batchFutures.add(future);
+        }
+
+        /**
+         * 处理单个批次：数据和检查点在同一事务中提交，失败时整批记为错误并记录失败检查点
+         */
+        private BatchImportResult processBatch(
+                List<Map.Entry<BomHeader, List<BomItemData>>> batch,
+                int batchIndex,
+                int[] rowRange,
+                AdaptiveBatchLimiter limiter,
+                Map<String, BillOfMaterial> existingBomMap,
+                Map<BomHeader, Long> contentHashes) {
+            logger.info("处理批次 {}，BOM数量: {}", batchIndex, batch.size());
+            long batchStartTime = System.currentTimeMillis();
+            long batchStartNanos = System.nanoTime();
+            try {
+                BatchImportResult result = transactionTemplate.execute(status -> {
+                    BatchImportResult imported = importBatchBoms(batch, existingBomMap, contentHashes);
+                    checkpointService.recordCommitted(ImportJobType.BOM, jobId, BOM_SHEET,
+                            batchIndex, rowRange[0], rowRange[1], rowRange[2]);
+                    return imported;
+                });
+                limiter.onBatchCommitted(batch.size(), System.nanoTime() - batchStartNanos);
+                progress.batchCommitted();
+                logger.info("批次 {} 完成，耗时: {}ms", batchIndex, System.currentTimeMillis() - batchStartTime);
+                return result != null ? result : BatchImportResult.EMPTY;
+            } catch (Exception e) {
+                limiter.onBatchFailed(System.nanoTime() - batchStartNanos);
+                logger.error("批次 {} 导入失败", batchIndex, e);
+                checkpointService.recordFailed(ImportJobType.BOM, jobId, BOM_SHEET,
+                        batchIndex, rowRange[0], rowRange[1], rowRange[2], e.getMessage());
+                // 记录批次级别的错误
+                for (Map.Entry<BomHeader, List<BomItemData>> entry : batch) {
+                    recordError(bomErrors, new BomImportResponse.ImportError(
+                            "BOM", entry.getKey().rowNumber, null,
+                            "批次导入失败: " + e.getMessage()));
+                }
+                return BatchImportResult.EMPTY;
+            }
+        }
+
+        private void preloadMaterialsAndUnits(List<Map.Entry<BomHeader, List<BomItemData>>> window) {
 
             Set<String> materialCodes = new HashSet<>();
             Set<String> unitCodes = new HashSet<>();
 
-            // 收集所有物料编码和单位编码
-            for (Map.Entry<BomHeader, List<BomItemData>> entry : bomGroups.entrySet()) {
-                materialCodes.add(entry.getKey().materialCode);
+            // 收集窗口内尚未缓存的物料编码和单位编码
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
+                if (entry.getKey().materialCode != null && !materialCache.containsKey(entry.getKey().materialCode)) {
+                    materialCodes.add(entry.getKey().materialCode);
+                }
                 for (BomItemData item : entry.getValue()) {
-                    materialCodes.add(item.childMaterialCode);
-                    if (item.childUnitCode != null) {
+                    if (!materialCache.containsKey(item.childMaterialCode)) {
+                        materialCodes.add(item.childMaterialCode);
+                    }
+                    if (item.childUnitCode != null && !unitCache.containsKey(item.childUnitCode)) {
                         unitCodes.add(item.childUnitCode);
                     }
                 }
@@ -272,19 +638,54 @@ public class BomImportService {
         }
 
         /**
-         * 预先批量查询所有已存在的BOM
+         * 预加载数据库中已有BOM的内容指纹（物料编码:版本 -> contentHash）
          */
-        private Map<String, BillOfMaterial> preloadExistingBoms(
-                Map<BomHeader, List<BomItemData>> bomGroups,
-                Map<String, Material> materialCache) {
+        private Map<String, Long> preloadContentHashes() {
+            Map<String, Long> hashes = new HashMap<>();
+            for (Object[] row : bomRepository.findAllContentHashes()) {
+                hashes.put(contentHashKey((String) row[0], (String) row[1]), ((Number) row[2]).longValue());
+            }
+            logger.debug("预加载BOM内容指纹: {} 个", hashes.size());
+            return hashes;
+        }
+
+        /**
+         * 计算BOM内容指纹：表头字段和按文件顺序排列的全部明细字段（规整后）
+         */
+        private long fingerprint(BomHeader header, List<BomItemData> items) {
+            RowFingerprint fingerprint = RowFingerprint.builder()
+                    .add(header.materialCode)
+                    .add(versionOf(header))
+                    .add(header.name)
+                    .add(header.category)
+                    .add(header.usage)
+                    .add(header.description)
+                    .add(items.size());
+            for (BomItemData item : items) {
+                fingerprint.add(item.sequence)
+                        .add(item.childMaterialCode)
+                        .add(item.childUnitCode)
+                        .add(CellNormalizer.numberText(item.numerator))
+                        .add(CellNormalizer.numberText(item.denominator))
+                        .add(CellNormalizer.numberText(item.scrapRate))
+                        .add(item.childBomVersion)
+                        .add(item.memo);
+            }
+            return fingerprint.build();
+        }
+
+        /**
+         * 批量查询窗口内已存在的BOM
+         */
+        private Map<String, BillOfMaterial> preloadExistingBoms(List<Map.Entry<BomHeader, List<BomItemData>>> window) {
 
             Map<String, BillOfMaterial> existingBomMap = new HashMap<>();
             
             // 收集所有需要查询的(materialId, version)组合
             Set<String> bomKeys = new HashSet<>();
-            for (Map.Entry<BomHeader, List<BomItemData>> entry : bomGroups.entrySet()) {
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
                 BomHeader header = entry.getKey();
-                Material material = materialCache.get(header.materialCode);
+                Material material = cachedMaterial(header.materialCode);
                 if (material != null) {
                     String versionToUse = header.version != null ? header.version : "V000";
                     String bomKey = material.getId() + ":" + versionToUse;
@@ -298,9 +699,9 @@ public class BomImportService {
 
             // 收集所有物料ID
             Set<Long> materialIds = new HashSet<>();
-            for (Map.Entry<BomHeader, List<BomItemData>> entry : bomGroups.entrySet()) {
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
                 BomHeader header = entry.getKey();
-                Material material = materialCache.get(header.materialCode);
+                Material material = cachedMaterial(header.materialCode);
                 if (material != null) {
                     materialIds.add(material.getId());
                 }
@@ -324,196 +725,415 @@ public class BomImportService {
             return existingBomMap;
         }
 
+        /**
+         * 将数据库中现有的BOM结构载入循环检测图，并记录每个BOM的边序号范围
+         */
+        private void loadExistingEdges() {
+            List<BomItemRepository.BomEdge> edges = bomItemRepository.findAllEdges();
+            cycleDetector = new BomCycleDetector(edges.size());
+            existingEdgeRanges = new HashMap<>();
+            for (BomItemRepository.BomEdge edge : edges) {
+                int edgeIndex = cycleDetector.addEdge(edge.parentMaterialId(), edge.childMaterialId());
+                // 边按BOM ID排序返回，同一BOM的边序号连续
+                existingEdgeRanges.computeIfAbsent(edge.bomId(), k -> new int[]{edgeIndex, edgeIndex})[1] = edgeIndex + 1;
+            }
+            logger.debug("载入现有BOM结构：{} 条边", edges.size());
+        }
+
+        /**
+         * 循环引用检测：文件中的BOM替换同一父项物料和版本的现有BOM，按文件顺序逐个窗口加入检测图，
+         * 只检查本窗口新加入的边。待写入的BOM中位于循环上的明细被拒绝并从图中移除；
+         * 只由现有明细（含内容未变化而跳过、已从检查点恢复的BOM）构成的循环不属于本次写入，仅记录日志。
+         * 循环由文件中较后的BOM闭合时，拒绝的是后出现的明细
+         */
+        private void detectCycles(List<Map.Entry<BomHeader, List<BomItemData>>> window,
+                                  List<Map.Entry<BomHeader, List<BomItemData>>> bomList,
+                                  Map<String, BillOfMaterial> existingBomMap) {
+            long startTime = System.nanoTime();
+
+            // 文件中出现的BOM以文件内容为准，移除其现有明细对应的边
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
+                Material parentMaterial = cachedMaterial(entry.getKey().materialCode);
+                if (parentMaterial == null) {
+                    continue;
+                }
+                BillOfMaterial existing = existingBomMap.get(parentMaterial.getId() + ":" + versionOf(entry.getKey()));
+                int[] range = existing != null ? existingEdgeRanges.remove(existing.getId()) : null;
+                if (range != null) {
+                    for (int edge = range[0]; edge < range[1]; edge++) {
+                        cycleDetector.removeEdge(edge);
+                    }
+                }
+            }
+
+            // 加入本窗口的明细；只有待写入BOM的明细可被拒绝，其余记为 null
+            Set<BomHeader> writableHeaders = new HashSet<>();
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : bomList) {
+                writableHeaders.add(entry.getKey());
+            }
+            int firstNewEdge = cycleDetector.edgeCount();
+            List<BomItemData> newEdgeItems = new ArrayList<>();
+            for (Map.Entry<BomHeader, List<BomItemData>> entry : window) {
+                Material parentMaterial = cachedMaterial(entry.getKey().materialCode);
+                if (parentMaterial == null) {
+                    continue;
+                }
+                boolean writable = writableHeaders.contains(entry.getKey());
+                for (BomItemData item : entry.getValue()) {
+                    Material childMaterial = materialCache.get(item.childMaterialCode);
+                    if (childMaterial != null) {
+                        cycleDetector.addEdge(parentMaterial.getId(), childMaterial.getId());
+                        newEdgeItems.add(writable ? item : null);
+                    }
+                }
+            }
+
+            BitSet cycleEdges = cycleDetector.findCycleEdges(firstNewEdge);
+            int unresolvedCount = 0;
+            for (int e = cycleEdges.nextSetBit(0); e >= 0; e = cycleEdges.nextSetBit(e + 1)) {
+                BomItemData item = newEdgeItems.get(e - firstNewEdge);
+                if (item != null) {
+                    cycleItemRows.add(item.rowNumber);
+                    cycleDetector.removeEdge(e);
+                } else {
+                    unresolvedCount++;
+                }
+            }
+            if (unresolvedCount > 0) {
+                logger.warn("{} 条未变化或已提交的BOM明细位于循环上，不在本次导入写入范围内", unresolvedCount);
+            }
+            cycleDetectionNanos += System.nanoTime() - startTime;
+        }
+
+        private Material cachedMaterial(String materialCode) {
+            return materialCode != null ? materialCache.get(materialCode) : null;
+        }
+
         /**
          * 批量导入BOM（在事务内执行）
+         * 整个批次基于集合写入：一条语句写入全部表头并返回ID；已有BOM的明细与数据库中的现有明细逐条比较，
+         * 只对有变化的明细执行删除、更新和插入（各一条语句），未变化的明细不产生写入、保留原ID
          */
         private BatchImportResult importBatchBoms(
                 List<Map.Entry<BomHeader, List<BomItemData>>> batch,
-                Map<String, Material> materialCache,
-                Map<String, Unit> unitCache,
                 Map<String, BillOfMaterial> existingBomMap,
-                List<BomImportResponse.ImportError> itemErrors) {
+                Map<BomHeader, Long> contentHashes) {
 
-            int bomSuccessCount = 0;
-            int itemSuccessCount = 0;
-            
-            // 收集所有需要保存的BOM和明细项
-            List<BillOfMaterial> bomsToSave = new ArrayList<>();
-            Map<BillOfMaterial, List<BomItem>> bomItemsMap = new LinkedHashMap<>();
-            
+            // 解析批次内的全部BOM（父项物料ID:版本 -> 待保存的BOM）
+            // 同一父项物料和版本在文件中重复出现时以后出现的为准，与跨批次的覆盖顺序一致
+            Map<String, PreparedBom> preparedByKey = new LinkedHashMap<>();
             for (Map.Entry<BomHeader, List<BomItemData>> entry : batch) {
                 BomHeader header = entry.getKey();
-                List<BomItemData> items = entry.getValue();
-                
                 try {
-                    // 验证父项物料
-                    Material parentMaterial = materialCache.get(header.materialCode);
-                    if (parentMaterial == null) {
-                        logger.warn("父项物料不存在: {}", header.materialCode);
+                    PreparedBom prepared = prepareBom(header, entry.getValue(), existingBomMap, contentHashes);
+                    if (prepared == null) {
                         continue;
                     }
-
-                    // 检查BOM是否已存在
-                    String versionToUse = header.version != null ? header.version : "V000";
-                    String bomKey = parentMaterial.getId() + ":" + versionToUse;
-                    BillOfMaterial bom = existingBomMap.get(bomKey);
-                    
-                    if (bom == null) {
-                        // 创建新的BOM
-                        BillOfMaterial.BillOfMaterialBuilder builder = BillOfMaterial.builder()
-                                .material(parentMaterial)
-                                .name(header.name)
-                                .category(header.category)
-                                .usage(header.usage)
-                                .description(header.description);
-                        if (header.version != null) {
-                            builder.version(header.version);
-                        }
-                        bom = builder.build();
-                        bomsToSave.add(bom);
-                    } else {
-                        // 删除现有明细项（如果需要更新）
-                        bomItemRepository.deleteByBomId(bom.getId());
-                    }
-
-                    // 处理明细项
-                    List<BomItem> bomItems = new ArrayList<>();
-                    int sequence = 1;
-                    
-                    for (BomItemData itemData : items) {
-                        try {
-                            Material childMaterial = materialCache.get(itemData.childMaterialCode);
-                            if (childMaterial == null) {
-                                if (itemErrors.size() < MAX_ERROR_COUNT) {
-                                    itemErrors.add(new BomImportResponse.ImportError(
-                                            "BOM明细", itemData.rowNumber, "FMATERIALIDCHILD",
-                                            "子项物料不存在: " + itemData.childMaterialCode));
-                                }
-                                continue;
-                            }
-
-                            Unit childUnit;
-                            if (itemData.childUnitCode != null) {
-                                childUnit = unitCache.get(itemData.childUnitCode);
-                                if (childUnit == null) {
-                                    if (itemErrors.size() < MAX_ERROR_COUNT) {
-                                        itemErrors.add(new BomImportResponse.ImportError(
-                                                "BOM明细", itemData.rowNumber, "FCHILDUNITID",
-                                                "子项单位不存在: " + itemData.childUnitCode));
-                                    }
-                                    continue;
-                                }
-                            } else {
-                                childUnit = childMaterial.getBaseUnit();
-                            }
-
-                            Integer seq = itemData.sequence != null ? itemData.sequence : sequence++;
-
-                            BigDecimal numerator = BigDecimal.ONE;
-                            if (itemData.numerator != null && !itemData.numerator.trim().isEmpty()) {
-                                try {
-                                    String numeratorStr = itemData.numerator.trim().replace(",", "");
-                                    numerator = new BigDecimal(numeratorStr);
-                                } catch (NumberFormatException e) {
-                                    logger.warn("用量分子格式错误: {}, 使用默认值1", itemData.numerator);
-                                }
-                            }
-
-                            BigDecimal denominator = BigDecimal.ONE;
-                            if (itemData.denominator != null && !itemData.denominator.trim().isEmpty()) {
-                                try {
-                                    String denominatorStr = itemData.denominator.trim().replace(",", "");
-                                    denominator = new BigDecimal(denominatorStr);
-                                } catch (NumberFormatException e) {
-                                    logger.warn("用量分母格式错误: {}, 使用默认值1", itemData.denominator);
-                                }
-                            }
-
-                            BigDecimal scrapRate = null;
-                            if (itemData.scrapRate != null && !itemData.scrapRate.trim().isEmpty()) {
-                                try {
-                                    String scrapRateStr = itemData.scrapRate.trim().replace(",", "");
-                                    scrapRate = new BigDecimal(scrapRateStr);
-                                } catch (NumberFormatException e) {
-                                    logger.warn("损耗率格式错误: {}", itemData.scrapRate);
-                                }
-                            }
-
-                            String childBomVersion = (itemData.childBomVersion != null && !itemData.childBomVersion.trim().isEmpty())
-                                    ? itemData.childBomVersion.trim() : null;
-
-                            BomItem bomItem = BomItem.builder()
-                                    .bom(bom)
-                                    .sequence(seq)
-                                    .childMaterial(childMaterial)
-                                    .childUnit(childUnit)
-                                    .numerator(numerator)
-                                    .denominator(denominator)
-                                    .scrapRate(scrapRate)
-                                    .childBomVersion(childBomVersion)
-                                    .memo(itemData.memo)
-                                    .build();
-
-                            bomItems.add(bomItem);
-                        } catch (Exception e) {
-                            logger.error("导入BOM明细失败: 行{}", itemData.rowNumber, e);
-                            if (itemErrors.size() < MAX_ERROR_COUNT) {
-                                itemErrors.add(new BomImportResponse.ImportError(
-                                        "BOM明细", itemData.rowNumber, null,
-                                        "导入失败: " + e.getMessage()));
-                            }
-                        }
-                    }
-
-                    if (!bomItems.isEmpty()) {
-                        bomItemsMap.put(bom, bomItems);
-                    }
-                    
-                    if (bom.getId() == null) {
-                        bomSuccessCount++;
-                    } else {
-                        bomSuccessCount++; // 更新也算成功
+                    PreparedBom replaced = preparedByKey.put(bomKey(prepared.bom), prepared);
+                    if (replaced != null) {
+                        recordError(itemErrors, new BomImportResponse.ImportError(
+                                "BOM", header.rowNumber, "FMATERIALID",
+                                "父项物料和版本重复，以该行开始的BOM为准: " + header.materialCode + " " + versionOf(header)));
                     }
                 } catch (Exception e) {
                     logger.error("导入BOM失败: 物料={}, 版本={}", header.materialCode, header.version, e);
                     // 错误已在itemErrors中记录
                 }
             }
+            if (preparedByKey.isEmpty()) {
+                return BatchImportResult.EMPTY;
+            }
 
-            // 批量保存BOM
-            if (!bomsToSave.isEmpty()) {
-                bomRepository.saveAll(bomsToSave);
+            // 第一步：写入表头，取回ID
+            List<BillOfMaterialRepository.BomHeaderBatchData> headerData = new ArrayList<>(preparedByKey.size());
+            for (PreparedBom prepared : preparedByKey.values()) {
+                BillOfMaterial bom = prepared.bom;
+                headerData.add(new BillOfMaterialRepository.BomHeaderBatchData(
+                        bom.getMaterial().getId(), bom.getVersion(), bom.getName(), bom.getCategory(),
+                        bom.getUsage(), bom.getDescription(), bom.getContentHash()));
+            }
+            Map<String, Long> bomIds = new HashMap<>();
+            List<Long> updatedBomIds = new ArrayList<>();
+            for (BillOfMaterialRepository.UpsertedBom upserted : bomRepository.upsertHeaders(headerData)) {
+                bomIds.put(upserted.materialId() + ":" + upserted.version(), upserted.id());
+                if (!upserted.inserted()) {
+                    updatedBomIds.add(upserted.id());
+                }
             }
 
-            // 批量保存所有明细项
-            List<BomItem> allBomItems = new ArrayList<>();
-            for (Map.Entry<BillOfMaterial, List<BomItem>> entry : bomItemsMap.entrySet()) {
-                allBomItems.addAll(entry.getValue());
+            // 第二步：一次查询已有BOM的现有明细，逐个BOM计算差异
+            Map<Long, List<BomItemRepository.StoredBomItem>> storedItems = groupByBomId(
+                    bomItemRepository.findStoredItemsByBomIds(updatedBomIds));
+            List<BomItemRepository.BomItemBatchData> inserts = new ArrayList<>();
+            List<BomItemRepository.StoredBomItem> updates = new ArrayList<>();
+            List<Long> deletes = new ArrayList<>();
+            BomItemDiff.Counts itemChanges = BomItemDiff.Counts.NONE;
+            int itemSuccessCount = 0;
+            Set<Long> changedBomIds = new HashSet<>();
+            for (Map.Entry<String, PreparedBom> entry : preparedByKey.entrySet()) {
+                Long bomId = bomIds.get(entry.getKey());
+                List<BomItemRepository.BomItemBatchData> targetItems = toBatchData(bomId, entry.getValue().items);
+                itemSuccessCount += targetItems.size();
+                BomItemDiff.Result diff = BomItemDiff.compute(
+                        storedItems.getOrDefault(bomId, List.of()), targetItems);
+                inserts.addAll(diff.inserts());
+                updates.addAll(diff.updates());
+                deletes.addAll(diff.deletes());
+                itemChanges = itemChanges.plus(diff.counts());
+                if (!diff.inserts().isEmpty() || !diff.updates().isEmpty() || !diff.deletes().isEmpty()
+                        || !storedItems.containsKey(bomId)) {
+                    changedBomIds.add(bomId);
+                }
             }
+
+            // 第三步：写入差异（先删除，再更新，最后插入）
+            bomItemRepository.deleteByIds(deletes);
+            bomItemRepository.updateItems(updates);
+            bomItemRepository.insertItems(inserts);
+            // 批次提交后刷新内存结构图中结构有变化的BOM（含新增的BOM）
+            bomGraphService.refreshAfterCommit(changedBomIds);
+
+            int bomUpdatedCount = updatedBomIds.size();
+            int bomInsertedCount = bomIds.size() - bomUpdatedCount;
+            return new BatchImportResult(bomIds.size(), itemSuccessCount, bomInsertedCount, bomUpdatedCount,
+                    itemChanges);
+        }
+
+        /**
+         * 预检：与正式导入使用相同的校验和解析逻辑，不开启事务。
+         * 各BOM之间互不依赖，且只读取预加载的缓存，使用并行流在多个核心上处理；
+         * 已有BOM的明细再分块查询现有明细，计算将要新增、更新和删除的条数
+         */
+        private BatchImportResult previewBoms(
+                List<Map.Entry<BomHeader, List<BomItemData>>> bomList,
+                Map<String, BillOfMaterial> existingBomMap,
+                Map<BomHeader, Long> contentHashes) {
+            List<PreparedBom> preparedList = bomList.parallelStream()
+                    .map(entry -> prepareBom(entry.getKey(), entry.getValue(), existingBomMap, contentHashes))
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            int bomInsertedCount = 0;
+            int itemSuccessCount = 0;
+            BomItemDiff.Counts itemChanges = BomItemDiff.Counts.NONE;
+            List<PreparedBom> existingBoms = new ArrayList<>();
+            for (PreparedBom prepared : preparedList) {
+                itemSuccessCount += prepared.items.size();
+                if (prepared.isNew) {
+                    bomInsertedCount++;
+                    itemChanges = itemChanges.plus(new BomItemDiff.Counts(prepared.items.size(), 0, 0, 0));
+                } else {
+                    existingBoms.add(prepared);
+                }
+            }
+            for (int i = 0; i < existingBoms.size(); i += BATCH_QUERY_CHUNK_SIZE) {
+                List<PreparedBom> chunk = existingBoms.subList(i, Math.min(i + BATCH_QUERY_CHUNK_SIZE, existingBoms.size()));
+                List<Long> bomIds = chunk.stream().map(prepared -> prepared.bom.getId()).toList();
+                Map<Long, List<BomItemRepository.StoredBomItem>> storedItems = groupByBomId(
+                        bomItemRepository.findStoredItemsByBomIds(bomIds));
+                for (PreparedBom prepared : chunk) {
+                    Long bomId = prepared.bom.getId();
+                    itemChanges = itemChanges.plus(BomItemDiff.compute(storedItems.getOrDefault(bomId, List.of()),
+                            toBatchData(bomId, prepared.items)).counts());
+                }
+            }
+            return new BatchImportResult(preparedList.size(), itemSuccessCount,
+                    bomInsertedCount, existingBoms.size(), itemChanges);
+        }
+
+        private Map<Long, List<BomItemRepository.StoredBomItem>> groupByBomId(
+                List<BomItemRepository.StoredBomItem> items) {
+            Map<Long, List<BomItemRepository.StoredBomItem>> byBomId = new HashMap<>();
+            for (BomItemRepository.StoredBomItem item : items) {
+                byBomId.computeIfAbsent(item.bomId(), k -> new ArrayList<>()).add(item);
+            }
+            return byBomId;
+        }
+
+        private List<BomItemRepository.BomItemBatchData> toBatchData(Long bomId, List<BomItem> items) {
+            List<BomItemRepository.BomItemBatchData> data = new ArrayList<>(items.size());
+            for (BomItem item : items) {
+                data.add(new BomItemRepository.BomItemBatchData(
+                        bomId, item.getSequence(), item.getChildMaterial().getId(), item.getChildUnit().getId(),
+                        item.getNumerator(), item.getDenominator(), item.getScrapRate(),
+                        item.getChildBomVersion(), item.getMemo()));
+            }
+            return data;
+        }
+
+        /**
+         * 解析单个BOM：校验父项物料、解析明细项的物料/单位引用和数值，不访问数据库
+         * 已存在的BOM在副本上更新表头，预加载的对象不被修改
+         *
+         * @return 待保存的BOM和明细项，父项物料不存在时返回 null
+         */
+        private PreparedBom prepareBom(
+                BomHeader header,
+                List<BomItemData> items,
+                Map<String, BillOfMaterial> existingBomMap,
+                Map<BomHeader, Long> contentHashes) {
+            // 验证父项物料
+            Material parentMaterial = cachedMaterial(header.materialCode);
+            if (parentMaterial == null) {
+                logger.warn("父项物料不存在: {}", header.materialCode);
+                return null;
+            }
+
+            // 检查BOM是否已存在
+            String bomKey = parentMaterial.getId() + ":" + versionOf(header);
+            BillOfMaterial existing = existingBomMap.get(bomKey);
+            boolean isNew = existing == null;
+            
+            BillOfMaterial.BillOfMaterialBuilder builder = BillOfMaterial.builder()
+                    .material(parentMaterial)
+                    .name(header.name)
+                    .category(header.category)
+                    .usage(header.usage)
+                    .description(header.description);
+            if (isNew) {
+                // 创建新的BOM
+                if (header.version != null) {
+                    builder.version(header.version);
+                }
+            } else {
+                // 内容已变化：按文件内容更新表头（保留ID和创建时间，保存时合并到已有行）
+                builder.id(existing.getId())
+                        .version(existing.getVersion())
+                        .createdAt(existing.getCreatedAt());
+            }
+            BillOfMaterial bom = builder.build();
+
+            // 处理明细项
+            List<BomItem> bomItems = new ArrayList<>();
+            int sequence = 1;
             
-            if (!allBomItems.isEmpty()) {
-                bomItemRepository.saveAll(allBomItems);
-                itemSuccessCount = allBomItems.size();
+            for (BomItemData itemData : items) {
+                try {
+                    Material childMaterial = materialCache.get(itemData.childMaterialCode);
+                    if (childMaterial == null) {
+                        recordError(itemErrors, new BomImportResponse.ImportError(
+                                "BOM明细", itemData.rowNumber, "FMATERIALIDCHILD",
+                                "子项物料不存在: " + itemData.childMaterialCode));
+                        continue;
+                    }
+                    if (cycleItemRows.contains(itemData.rowNumber)) {
+                        recordError(itemErrors, new BomImportResponse.ImportError(
+                                "BOM明细", itemData.rowNumber, "FMATERIALIDCHILD",
+                                String.format("子项物料形成循环引用，已拒绝: %s → %s",
+                                        header.materialCode, itemData.childMaterialCode)));
+                        continue;
+                    }
+
+                    Unit childUnit;
+                    if (itemData.childUnitCode != null) {
+                        childUnit = unitCache.get(itemData.childUnitCode);
+                        if (childUnit == null) {
+                            recordError(itemErrors, new BomImportResponse.ImportError(
+                                    "BOM明细", itemData.rowNumber, "FCHILDUNITID",
+                                    "子项单位不存在: " + itemData.childUnitCode));
+                            continue;
+                        }
+                    } else {
+                        childUnit = childMaterial.getBaseUnit();
+                    }
+
+                    Integer seq = itemData.sequence != null ? itemData.sequence : sequence++;
+
+                    BigDecimal numerator = parseItemDecimal(itemData.numerator, BigDecimal.ONE,
+                            itemData.rowNumber, "FNUMERATOR", "用量分子", itemErrors);
+                    BigDecimal denominator = parseItemDecimal(itemData.denominator, BigDecimal.ONE,
+                            itemData.rowNumber, "FDENOMINATOR", "用量分母", itemErrors);
+                    BigDecimal scrapRate = parseItemDecimal(itemData.scrapRate, null,
+                            itemData.rowNumber, "FSCRAPRATE", "损耗率", itemErrors);
+
+                    BomItem bomItem = BomItem.builder()
+                            .bom(bom)
+                            .sequence(seq)
+                            .childMaterial(childMaterial)
+                            .childUnit(childUnit)
+                            .numerator(numerator)
+                            .denominator(denominator)
+                            .scrapRate(scrapRate)
+                            .childBomVersion(itemData.childBomVersion)
+                            .memo(itemData.memo)
+                            .build();
+
+                    bomItems.add(bomItem);
+                } catch (Exception e) {
+                    logger.error("导入BOM明细失败: 行{}", itemData.rowNumber, e);
+                    recordError(itemErrors, new BomImportResponse.ImportError(
+                            "BOM明细", itemData.rowNumber, null,
+                            "导入失败: " + e.getMessage()));
+                }
             }
 
-            return new BatchImportResult(bomSuccessCount, itemSuccessCount);
+            // 只有全部明细都写入时才记录指纹，否则下次导入时会因指纹相同而跳过缺失的明细
+            bom.setContentHash(bomItems.size() == items.size() ? contentHashes.get(header) : null);
+            return new PreparedBom(bom, isNew, bomItems);
+        }
+
+        /**
+         * 解析明细数值列，格式错误时使用默认值并记录提示（不影响该明细的导入）
+         */
+        private BigDecimal parseItemDecimal(String value, BigDecimal defaultValue, int rowNumber,
+                                            String field, String label,
+                                            BoundedErrorList<BomImportResponse.ImportError> itemErrors) {
+            CellNormalizer.ParsedDecimal parsed = CellNormalizer.parseDecimal(value);
+            if (parsed.invalid()) {
+                logger.warn("{}格式错误: {}, 使用默认值{}", label, value, defaultValue);
+                recordError(itemErrors, new BomImportResponse.ImportError(
+                        "BOM明细", rowNumber, field,
+                        String.format("%s格式错误: %s，已使用默认值%s", label, value,
+                                defaultValue != null ? defaultValue.toPlainString() : "空")));
+            }
+            return parsed.orElse(defaultValue);
+        }
+
+        /**
+         * 记录错误：全部写入错误报告，结果中只保留前 MAX_ERROR_COUNT 条
+         */
+        private void recordError(BoundedErrorList<BomImportResponse.ImportError> errors,
+                                 BomImportResponse.ImportError error) {
+            progress.recordError(error.sheetName(), error.rowNumber(), error.field(), error.message());
+            errors.add(error);
+        }
+
+        /**
+         * 解析完成、待保存的BOM
+         */
+        private record PreparedBom(BillOfMaterial bom, boolean isNew, List<BomItem> items) {
         }
 
         /**
          * 批量导入结果
+         *
+         * @param itemChanges 明细的新增、更新、删除和未变化条数
          */
-        private static class BatchImportResult {
-            final int bomSuccessCount;
-            final int itemSuccessCount;
+        private record BatchImportResult(int bomSuccessCount, int itemSuccessCount,
+                                         int bomInsertedCount, int bomUpdatedCount,
+                                         BomItemDiff.Counts itemChanges) {
 
-            BatchImportResult(int bomSuccessCount, int itemSuccessCount) {
-                this.bomSuccessCount = bomSuccessCount;
-                this.itemSuccessCount = itemSuccessCount;
-            }
+            static final BatchImportResult EMPTY = new BatchImportResult(0, 0, 0, 0, BomItemDiff.Counts.NONE);
         }
 
     }
 
+    // 队列结束标记：读取完成或读取中止
+    private static final Map.Entry<BomHeader, List<BomItemData>> END_OF_GROUPS =
+            Map.entry(new BomHeader(-1, null, null, null, null, null, null), List.of());
+
+    private static String versionOf(BomHeader header) {
+        return header.version != null ? header.version : "V000";
+    }
+
+    private static String bomKey(BillOfMaterial bom) {
+        return bom.getMaterial().getId() + ":" + bom.getVersion();
+    }
+
+    private static String contentHashKey(String materialCode, String version) {
+        return materialCode + ":" + version;
+    }
+
     private record BomHeader(
             int rowNumber,
             String materialCode,
@@ -535,10 +1155,5 @@ public class BomImportService {
             String childBomVersion,
             String memo
     ) {}
-
-    private record BomData(
-            BomHeader header,
-            BomItemData item
-    ) {}
 }
 
@@ -0,0 +1,114 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.entity.ImportCheckpoint;
+import com.sambound.erp.repository.ImportCheckpointRepository;
+import com.sambound.erp.service.importer.CommittedRowRanges;
+import com.sambound.erp.service.importer.ImportJobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 导入检查点服务
+ * 导入批次提交时在同一事务中写入检查点，批次回滚时检查点随之回滚，检查点与已写入的数据始终一致。
+ * 检查点按导入任务记录：服务重启中断的任务按原任务ID恢复时，已提交批次覆盖的行直接跳过。
+ * 任务结束（成功、失败或取消）后由 {@link ImportJobService} 删除该任务的检查点；
+ * 再次上传同一文件是新的任务，不使用之前的检查点（期间数据库可能已被修改）。
+ */
+@Service
+public class ImportCheckpointService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportCheckpointService.class);
+
+    // 检查点保留天数，超过后视为放弃续传
+    private static final long CHECKPOINT_RETENTION_DAYS = 7;
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1000;
+
+    private final ImportCheckpointRepository checkpointRepository;
+
+    public ImportCheckpointService(ImportCheckpointRepository checkpointRepository) {
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    /**
+     * 加载某个导入任务某个工作表已提交批次覆盖的行范围
+     */
+    @Transactional(readOnly = true)
+    public CommittedRowRanges loadCommitted(ImportJobType type, String jobId, String sheetName) {
+        List<int[]> ranges = new ArrayList<>();
+        for (Object[] row : checkpointRepository.findRowRanges(
+                jobId, sheetName, ImportCheckpoint.STATUS_COMMITTED)) {
+            ranges.add(new int[]{((Number) row[0]).intValue(), ((Number) row[1]).intValue()});
+        }
+        CommittedRowRanges committed = CommittedRowRanges.of(ranges);
+        if (!committed.isEmpty()) {
+            logger.info("{}导入从检查点恢复：任务={}，工作表={}，已提交批次 {} 个，覆盖 {} 行，最后提交行 {}",
+                    type.getDisplayName(), jobId, sheetName, ranges.size(), committed.rowCount(),
+                    committed.lastCommittedRow());
+        }
+        return committed;
+    }
+
+    /**
+     * 记录已提交的批次，必须在批次的写入事务中调用
+     * 按（任务, 工作表, 起始行）唯一，同一批次重复提交时不会产生重复的检查点
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCommitted(ImportJobType type, String jobId, String sheetName,
+                                int batchIndex, int firstRow, int lastRow, int rowCount) {
+        checkpointRepository.upsertCommitted(jobId, type.name(), sheetName, batchIndex, firstRow, lastRow, rowCount);
+    }
+
+    /**
+     * 记录失败的批次（独立事务），同一任务续传时该批次的行会重新导入
+     * 检查点写入失败不影响导入本身
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordFailed(ImportJobType type, String jobId, String sheetName,
+                             int batchIndex, int firstRow, int lastRow, int rowCount, String errorMessage) {
+        try {
+            checkpointRepository.upsertFailed(jobId, type.name(), sheetName, batchIndex, firstRow, lastRow,
+                    rowCount, truncate(errorMessage));
+        } catch (Exception e) {
+            logger.warn("记录失败批次检查点失败: 批次{}", batchIndex, e);
+        }
+    }
+
+    /**
+     * 导入任务结束后删除该任务的检查点
+     */
+    @Transactional
+    public void clear(String jobId) {
+        int deleted = checkpointRepository.deleteByJobId(jobId);
+        if (deleted > 0) {
+            logger.debug("清除导入任务的检查点 {} 个: 任务={}", deleted, jobId);
+        }
+    }
+
+    /**
+     * 清除超过保留期的检查点（任务结束时未能删除的残留），每天执行一次
+     */
+    @Scheduled(fixedRate = 86400000)
+    @Transactional
+    public void evictExpiredCheckpoints() {
+        int deleted = checkpointRepository.deleteByCreatedAtBefore(
+                LocalDateTime.now().minusDays(CHECKPOINT_RETENTION_DAYS));
+        if (deleted > 0) {
+            logger.info("清除过期的导入检查点 {} 个", deleted);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_MESSAGE_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,554 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.dto.ImportJobResponse;
+import com.sambound.erp.entity.ImportJobRecord;
+import com.sambound.erp.exception.BusinessException;
+import com.sambound.erp.exception.ImportCancelledException;
+import com.sambound.erp.repository.ImportJobRecordRepository;
+import com.sambound.erp.service.importer.ImportErrorReport;
+import com.sambound.erp.service.importer.ImportFile;
+import com.sambound.erp.service.importer.ImportJobStatus;
+import com.sambound.erp.service.importer.ImportJobType;
+import com.sambound.erp.service.importer.ImportProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 导入任务服务
+ * 上传请求只负责暂存文件并登记任务，导入在后台虚拟线程中执行，前端通过任务ID轮询进度。
+ *
+ * <p>每个任务的全部行级错误写入暂存目录下的压缩错误报告，任务结束后可下载，任务从内存中清除时一并删除；
+ * 导入结果中只保留前若干条错误作为摘要。任务只保存在内存中，服务重启后上次运行遗留的报告无法再下载，启动时删除。</p>
+ *
+ * <p>重复上传：同一用户、同一类型、同一内容（按上传时计算的 SHA-256 判断）的文件在排队或运行中时，
+ * 不再创建新任务，直接返回已有任务（前端轮询同一个任务ID即可得到结果）；预检任务刚成功完成时也直接返回。
+ * 已完成的导入任务不复用，再次上传总是重新导入（数据库可能已被修改，未变化的行由内容指纹跳过）；
+ * 其他用户上传同一文件时各自创建任务。force 为 true 时总是重新导入。</p>
+ *
+ * <p>排队策略：同时运行的任务数受限（每个导入任务内部还会并发占用多个数据库连接），
+ * 排队中的任务按提交用户轮转调度，避免单个用户连续提交的大文件阻塞其他用户。</p>
+ *
+ * <p>断点续传：排队中和运行中的任务登记在 import_jobs 表，上传文件暂存在 erp.import.staging-dir 下，
+ * 任务结束后才删除。服务重启（含停机时被中断的运行中任务）后按原任务ID重新排队，
+ * 已提交的批次由该任务的导入检查点跳过；任务结束时检查点随任务记录一并删除。</p>
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+    // 同时运行的导入任务上限（连接池为20，单个物料导入任务最多占用10个连接）
+    private static final int MAX_RUNNING_JOBS = 2;
+    // 已结束任务的保留时间，超过后从内存中清除
+    private static final long FINISHED_JOB_RETENTION_HOURS = 24;
+    // 成功完成的预检任务在该时间内可被相同内容的上传复用，超过后重新预检（期间数据库可能已被修改）
+    private static final long DUPLICATE_REUSE_MINUTES = 60;
+    // 暂存目录下错误报告的文件名：前缀 + 任务ID + 后缀
+    private static final String ERROR_REPORT_PREFIX = "erp-import-errors-";
+    private static final String ERROR_REPORT_SUFFIX = ".csv.gz";
+
+    private final MaterialImportService materialImportService;
+    private final BomImportService bomImportService;
+    private final UnitImportService unitImportService;
+    private final ImportJobRecordRepository jobRecordRepository;
+    private final ImportCheckpointService checkpointService;
+    private final ExecutorService importJobExecutor;
+    private final Path stagingDirectory;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    // 最近一次相同内容的任务（用户 + 类型 + 预检标记 + 文件 SHA-256 -> 任务），写入受 queueLock 保护
+    private final Map<String, ImportJob> jobsByContent = new ConcurrentHashMap<>();
+    // 按用户分组的排队任务，用户按首次排队的顺序轮转（受 queueLock 保护）
+    private final LinkedHashMap<String, Deque<ImportJob>> pendingJobsByUser = new LinkedHashMap<>();
+    private final Object queueLock = new Object();
+    private int runningJobs = 0;
+    // 服务停止中：被中断的任务保留暂存文件和任务记录，重启后继续
+    private volatile boolean shuttingDown = false;
+    private final Clock clock;
+
+    @Autowired
+    public ImportJobService(
+            MaterialImportService materialImportService,
+            BomImportService bomImportService,
+            UnitImportService unitImportService,
+            ImportJobRecordRepository jobRecordRepository,
+            ImportCheckpointService checkpointService,
+            @Qualifier("importJobExecutor") ExecutorService importJobExecutor,
+            @Value("${erp.import.staging-dir:${java.io.tmpdir}/erp-import}") String stagingDirectory) {
+        this(materialImportService, bomImportService, unitImportService, jobRecordRepository, checkpointService,
+                importJobExecutor, stagingDirectory, Clock.systemDefaultZone());
+    }
+
+    ImportJobService(
+            MaterialImportService materialImportService,
+            BomImportService bomImportService,
+            UnitImportService unitImportService,
+            ImportJobRecordRepository jobRecordRepository,
+            ImportCheckpointService checkpointService,
+            ExecutorService importJobExecutor,
+            String stagingDirectory,
+            Clock clock) {
+        this.materialImportService = materialImportService;
+        this.bomImportService = bomImportService;
+        this.unitImportService = unitImportService;
+        this.jobRecordRepository = jobRecordRepository;
+        this.checkpointService = checkpointService;
+        this.importJobExecutor = importJobExecutor;
+        this.stagingDirectory = Path.of(stagingDirectory);
+        this.clock = clock;
+    }
+
+    /**
+     * 应用启动完成后恢复上次停止时未结束的任务：暂存文件仍在的按原任务ID重新排队，文件已丢失的删除记录
+     * （恢复的任务重新生成错误报告，上次运行遗留的报告先全部删除）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        deleteOrphanedErrorReports();
+        List<ImportJobRecord> records;
+        try {
+            records = jobRecordRepository.findAllByOrderBySubmittedAtAsc();
+        } catch (Exception e) {
+            logger.warn("读取未结束的导入任务失败，跳过恢复", e);
+            return;
+        }
+        int resumed = 0;
+        for (ImportJobRecord record : records) {
+            Path path = Path.of(record.getFilePath());
+            ImportJobType type;
+            try {
+                type = ImportJobType.valueOf(record.getJobType());
+            } catch (IllegalArgumentException e) {
+                type = null;
+            }
+            if (type == null || !Files.isRegularFile(path)) {
+                logger.warn("无法恢复导入任务，删除任务记录: 任务={}, 类型={}, 文件={}, 暂存文件={}",
+                        record.getId(), record.getJobType(), record.getOriginalFilename(), path);
+                deleteRecord(record.getId());
+                continue;
+            }
+            ImportFile importFile = new ImportFile(
+                    record.getOriginalFilename(), path, record.getFileSize(), record.getFileHash());
+            String contentKey = contentKey(record.getSubmittedBy(), type, record.isDryRun(), importFile.sha256());
+            ImportJob job = new ImportJob(record.getId(), type, importFile, record.getSubmittedBy(),
+                    record.isDryRun(), contentKey, record.getSubmittedAt(), errorReportPath(record.getId()));
+            synchronized (queueLock) {
+                jobs.put(job.id, job);
+                jobsByContent.put(contentKey, job);
+                pendingJobsByUser.computeIfAbsent(job.submittedBy, k -> new ArrayDeque<>()).addLast(job);
+            }
+            resumed++;
+            logger.info("{}导入任务已恢复排队: 任务={}, 文件={}, 用户={}, 上次状态={}",
+                    type.getDisplayName(), job.id, importFile.originalFilename(), job.submittedBy,
+                    record.getStatus());
+        }
+        if (resumed > 0) {
+            dispatch();
+        }
+    }
+
+    /**
+     * 服务停止时通知运行中的任务在下一个批次边界停止；任务记录和暂存文件保留，重启后继续
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        for (ImportJob job : jobs.values()) {
+            if (job.status == ImportJobStatus.RUNNING) {
+                job.progress.cancel();
+            }
+        }
+    }
+
+    /**
+     * 提交导入任务：暂存上传文件后立即返回，任务进入排队
+     *
+     * @param dryRun 是否只做预检（解析、引用解析、数值校验和与现有数据的比对），不写入数据库
+     * @param force  是否忽略相同内容的已有任务，强制重新导入
+     */
+    public ImportJobResponse submit(ImportJobType type, MultipartFile file, String username,
+                                    boolean dryRun, boolean force) {
+        ImportFile importFile;
+        try {
+            importFile = ImportFile.stage(file, stagingDirectory);
+        } catch (IOException e) {
+            logger.error("暂存导入文件失败: {}", file.getOriginalFilename(), e);
+            throw new BusinessException("暂存导入文件失败: " + e.getMessage(), e);
+        }
+
+        String contentKey = contentKey(username, type, dryRun, importFile.sha256());
+        ImportJob job;
+        synchronized (queueLock) {
+            ImportJob existing = force ? null : jobsByContent.get(contentKey);
+            if (existing != null && isReusable(existing)) {
+                job = existing;
+            } else {
+                String jobId = UUID.randomUUID().toString();
+                job = new ImportJob(jobId, type, importFile, username, dryRun, contentKey,
+                        LocalDateTime.now(clock), errorReportPath(jobId));
+                jobs.put(job.id, job);
+                jobsByContent.put(contentKey, job);
+                pendingJobsByUser.computeIfAbsent(username, k -> new ArrayDeque<>()).addLast(job);
+            }
+        }
+        if (job.file != importFile) {
+            importFile.delete();
+            logger.info("{}导入文件与已有任务内容相同，直接返回已有任务: 任务={}, 状态={}, 文件={}, 用户={}",
+                    type.getDisplayName(), job.id, job.status, importFile.originalFilename(), username);
+            return toResponse(job);
+        }
+        logger.info("{}导入任务已提交: 任务={}, 文件={}, 用户={}, 预检={}",
+                type.getDisplayName(), job.id, importFile.originalFilename(), username, dryRun);
+
+        saveRecord(job);
+        dispatch();
+        return toResponse(job);
+    }
+
+    public ImportJobResponse getJob(String jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    /**
+     * 获取已结束任务的完整错误报告文件（gzip 压缩的 CSV）
+     */
+    public Path getErrorReport(String jobId) {
+        ImportJob job = findJob(jobId);
+        if (!job.status.isFinished()) {
+            throw new BusinessException("导入任务尚未结束，错误报告还在生成中");
+        }
+        if (!job.errorReport.isAvailable()) {
+            throw new BusinessException("该导入任务没有错误报告");
+        }
+        return job.errorReport.path();
+    }
+
+    /**
+     * 取消导入任务
+     * 排队中的任务直接移出队列；运行中的任务设置取消标记，导入在下一个行/批次边界停止，
+     * 已提交的批次不会回滚
+     */
+    public ImportJobResponse cancel(String jobId) {
+        ImportJob job = findJob(jobId);
+        boolean removedFromQueue = false;
+        synchronized (queueLock) {
+            if (job.status == ImportJobStatus.QUEUED) {
+                Deque<ImportJob> queue = pendingJobsByUser.get(job.submittedBy);
+                if (queue != null && queue.remove(job)) {
+                    if (queue.isEmpty()) {
+                        pendingJobsByUser.remove(job.submittedBy);
+                    }
+                    job.progress.cancel();
+                    job.errorReport.close();
+                    job.finish(LocalDateTime.now(clock), ImportJobStatus.CANCELLED, null, "导入任务已取消");
+                    removedFromQueue = true;
+                }
+            } else if (job.status == ImportJobStatus.RUNNING) {
+                job.progress.cancel();
+            }
+        }
+        if (removedFromQueue) {
+            job.file.delete();
+            deleteRecord(job.id);
+        }
+        logger.info("{}导入任务取消请求: 任务={}, 当前状态={}", job.type.getDisplayName(), job.id, job.status);
+        return toResponse(job);
+    }
+
+    /**
+     * 清除已结束且超过保留时间的任务，每小时执行一次
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void evictFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now(clock).minusHours(FINISHED_JOB_RETENTION_HOURS);
+        int before = jobs.size();
+        jobs.values().removeIf(job -> {
+            boolean expired = job.status.isFinished()
+                    && job.finishedAt != null && job.finishedAt.isBefore(threshold);
+            if (expired) {
+                job.errorReport.delete();
+                jobsByContent.remove(job.contentKey, job);
+            }
+            return expired;
+        });
+        int evicted = before - jobs.size();
+        if (evicted > 0) {
+            logger.info("清除已结束的导入任务 {} 个", evicted);
+        }
+    }
+
+    /**
+     * 在运行数未达上限时按用户轮转启动排队任务
+     */
+    private void dispatch() {
+        List<ImportJob> toStart = new ArrayList<>();
+        synchronized (queueLock) {
+            while (runningJobs < MAX_RUNNING_JOBS && !pendingJobsByUser.isEmpty()) {
+                Iterator<Map.Entry<String, Deque<ImportJob>>> iterator = pendingJobsByUser.entrySet().iterator();
+                Map.Entry<String, Deque<ImportJob>> entry = iterator.next();
+                iterator.remove();
+                ImportJob job = entry.getValue().pollFirst();
+                // 该用户还有排队任务时移到队尾，下一次轮到其他用户
+                if (!entry.getValue().isEmpty()) {
+                    pendingJobsByUser.put(entry.getKey(), entry.getValue());
+                }
+                if (job == null) {
+                    continue;
+                }
+                job.status = ImportJobStatus.RUNNING;
+                job.startedAt = LocalDateTime.now(clock);
+                job.progress.start();
+                runningJobs++;
+                toStart.add(job);
+            }
+        }
+        for (ImportJob job : toStart) {
+            importJobExecutor.execute(() -> run(job));
+        }
+    }
+
+    private void run(ImportJob job) {
+        logger.info("{}导入任务开始: 任务={}, 文件={}",
+                job.type.getDisplayName(), job.id, job.file.originalFilename());
+        try {
+            jobRecordRepository.markStarted(job.id, ImportJobStatus.RUNNING.name(), job.startedAt);
+        } catch (Exception e) {
+            logger.warn("更新导入任务记录失败: 任务={}", job.id, e);
+        }
+        try {
+            Object result = switch (job.type) {
+                case MATERIAL -> materialImportService.importFromExcel(job.file, job.id, job.progress, job.dryRun);
+                case BOM -> bomImportService.importFromExcel(job.file, job.id, job.progress, job.dryRun);
+                case UNIT -> unitImportService.importFromExcel(job.file, job.progress, job.dryRun);
+            };
+            job.finish(LocalDateTime.now(clock), ImportJobStatus.SUCCEEDED, result, null);
+            logger.info("{}导入任务完成: 任务={}，解析 {} 行，耗时 {}ms",
+                    job.type.getDisplayName(), job.id, job.progress.getRowsParsed(),
+                    Duration.between(job.startedAt, job.finishedAt).toMillis());
+        } catch (ImportCancelledException e) {
+            job.finish(LocalDateTime.now(clock), ImportJobStatus.CANCELLED, null, e.getMessage());
+            logger.info("{}导入任务已取消: 任务={}", job.type.getDisplayName(), job.id);
+        } catch (Exception e) {
+            if (job.progress.isCancelled()) {
+                job.finish(LocalDateTime.now(clock), ImportJobStatus.CANCELLED, null, "导入任务已取消");
+            } else {
+                job.finish(LocalDateTime.now(clock), ImportJobStatus.FAILED, null, e.getMessage());
+                logger.error("{}导入任务失败: 任务={}", job.type.getDisplayName(), job.id, e);
+            }
+        } finally {
+            if (shuttingDown && job.status != ImportJobStatus.SUCCEEDED) {
+                logger.info("{}导入任务因服务停止中断，重启后继续: 任务={}", job.type.getDisplayName(), job.id);
+            } else {
+                job.file.delete();
+                deleteRecord(job.id);
+            }
+            job.errorReport.close();
+            synchronized (queueLock) {
+                runningJobs--;
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * 相同内容的任务是否可复用：排队中、运行中，或成功完成且未超过复用时间的预检任务
+     * （已完成的导入任务、失败和取消的任务总是重新执行）
+     */
+    private boolean isReusable(ImportJob job) {
+        return switch (job.status) {
+            case QUEUED, RUNNING -> true;
+            case SUCCEEDED -> job.dryRun && job.finishedAt != null
+                    && job.finishedAt.isAfter(LocalDateTime.now(clock).minusMinutes(DUPLICATE_REUSE_MINUTES));
+            default -> false;
+        };
+    }
+
+    private Path errorReportPath(String jobId) {
+        return stagingDirectory.resolve(ERROR_REPORT_PREFIX + jobId + ERROR_REPORT_SUFFIX);
+    }
+
+    /**
+     * 删除暂存目录下不属于当前任务的错误报告（上次运行中已结束任务的报告）
+     */
+    private void deleteOrphanedErrorReports() {
+        if (!Files.isDirectory(stagingDirectory)) {
+            return;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> reports = Files.newDirectoryStream(
+                stagingDirectory, ERROR_REPORT_PREFIX + "*" + ERROR_REPORT_SUFFIX)) {
+            for (Path report : reports) {
+                String name = report.getFileName().toString();
+                String jobId = name.substring(ERROR_REPORT_PREFIX.length(), name.length() - ERROR_REPORT_SUFFIX.length());
+                // 启动期间已提交的任务
+                if (jobs.containsKey(jobId)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(report);
+                    deleted++;
+                } catch (IOException e) {
+                    logger.warn("删除遗留的导入错误报告失败: {}", report, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理遗留的导入错误报告失败: {}", stagingDirectory, e);
+        }
+        if (deleted > 0) {
+            logger.info("删除上次运行遗留的导入错误报告 {} 个", deleted);
+        }
+    }
+
+    private static String contentKey(String username, ImportJobType type, boolean dryRun, String sha256) {
+        return username + ":" + type + ":" + dryRun + ":" + sha256;
+    }
+
+    /**
+     * 登记排队中的任务；登记失败只影响重启后的恢复，不影响本次导入
+     */
+    private void saveRecord(ImportJob job) {
+        try {
+            jobRecordRepository.save(ImportJobRecord.builder()
+                    .id(job.id)
+                    .jobType(job.type.name())
+                    .dryRun(job.dryRun)
+                    .originalFilename(job.file.originalFilename())
+                    .filePath(job.file.path().toAbsolutePath().toString())
+                    .fileSize(job.file.size())
+                    .fileHash(job.file.sha256())
+                    .submittedBy(job.submittedBy)
+                    .status(ImportJobStatus.QUEUED.name())
+                    .submittedAt(job.submittedAt)
+                    .build());
+        } catch (Exception e) {
+            logger.warn("登记导入任务失败，服务重启后该任务不会恢复: 任务={}", job.id, e);
+        }
+    }
+
+    /**
+     * 任务结束：删除任务记录和该任务的检查点（之后不会再按该任务ID恢复）
+     * 删除失败时残留的检查点按保留期清除，不会被其他任务使用
+     */
+    private void deleteRecord(String jobId) {
+        try {
+            jobRecordRepository.deleteById(jobId);
+        } catch (Exception e) {
+            logger.warn("删除导入任务记录失败: 任务={}", jobId, e);
+        }
+        try {
+            checkpointService.clear(jobId);
+        } catch (Exception e) {
+            logger.warn("删除导入任务检查点失败: 任务={}", jobId, e);
+        }
+    }
+
+    private ImportJob findJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException("导入任务不存在或已过期: " + jobId);
+        }
+        return job;
+    }
+
+    private int queuePosition(ImportJob job) {
+        if (job.status != ImportJobStatus.QUEUED) {
+            return 0;
+        }
+        synchronized (queueLock) {
+            Deque<ImportJob> queue = pendingJobsByUser.get(job.submittedBy);
+            if (queue == null) {
+                return 0;
+            }
+            int position = 1;
+            for (ImportJob queued : queue) {
+                if (queued == job) {
+                    return position;
+                }
+                position++;
+            }
+            return 0;
+        }
+    }
+
+    private ImportJobResponse toResponse(ImportJob job) {
+        return new ImportJobResponse(
+                job.id,
+                job.type,
+                job.dryRun,
+                job.status,
+                job.file.originalFilename(),
+                job.submittedBy,
+                queuePosition(job),
+                job.progress.getRowsParsed(),
+                job.progress.getBatchesCommitted(),
+                job.progress.getErrorCount(),
+                job.status.isFinished() && job.errorReport.isAvailable(),
+                job.progress.getRowsPerSecond(),
+                job.submittedAt,
+                job.startedAt,
+                job.finishedAt,
+                job.result,
+                job.errorMessage
+        );
+    }
+
+    /**
+     * 导入任务（内存中保存；未结束的任务另登记在 import_jobs 表，重启后按原ID恢复，进度和错误报告重新开始）
+     */
+    private static class ImportJob {
+        private final String id;
+        private final ImportJobType type;
+        private final ImportFile file;
+        private final String submittedBy;
+        private final boolean dryRun;
+        private final String contentKey;
+        private final ImportErrorReport errorReport;
+        private final ImportProgress progress;
+        private final LocalDateTime submittedAt;
+        private volatile ImportJobStatus status = ImportJobStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile Object result;
+        private volatile String errorMessage;
+
+        ImportJob(String id, ImportJobType type, ImportFile file, String submittedBy, boolean dryRun,
+                  String contentKey, LocalDateTime submittedAt, Path errorReportPath) {
+            this.id = id;
+            this.type = type;
+            this.file = file;
+            this.submittedBy = submittedBy;
+            this.dryRun = dryRun;
+            this.contentKey = contentKey;
+            this.submittedAt = submittedAt;
+            this.errorReport = ImportErrorReport.toFile(errorReportPath);
+            this.progress = new ImportProgress(errorReport);
+        }
+
+        void finish(LocalDateTime finishTime, ImportJobStatus finalStatus, Object finalResult, String message) {
+            this.result = finalResult;
+            this.errorMessage = message;
+            this.finishedAt = finishTime;
+            this.status = finalStatus;
+        }
+    }
+}
@@ -1,26 +1,38 @@
 package com.sambound.erp.service;
 
-import cn.idev.excel.FastExcel;
-import cn.idev.excel.context.AnalysisContext;
-import cn.idev.excel.read.listener.ReadListener;
 import com.sambound.erp.dto.MaterialExcelRow;
 import com.sambound.erp.dto.MaterialGroupExcelRow;
 import com.sambound.erp.dto.MaterialImportResponse;
-import com.sambound.erp.entity.Material;
 import com.sambound.erp.entity.MaterialGroup;
 import com.sambound.erp.entity.Unit;
+import com.sambound.erp.exception.ImportCancelledException;
 import com.sambound.erp.repository.MaterialGroupRepository;
 import com.sambound.erp.repository.MaterialRepository;
 import com.sambound.erp.repository.UnitRepository;
+import com.sambound.erp.service.importer.AdaptiveBatchLimiter;
+import com.sambound.erp.service.importer.AdaptiveBatchTuner;
+import com.sambound.erp.service.importer.BatchProfile;
+import com.sambound.erp.service.importer.BoundedErrorList;
+import com.sambound.erp.service.importer.CellNormalizer;
+import com.sambound.erp.service.importer.CommittedRowRanges;
+import com.sambound.erp.service.importer.CsvRowReader;
+import com.sambound.erp.service.importer.HierarchyLevelSorter;
+import com.sambound.erp.service.importer.ImportFile;
+import com.sambound.erp.service.importer.ImportJobType;
+import com.sambound.erp.service.importer.ImportProgress;
+import com.sambound.erp.service.importer.ImportRowHandler;
+import com.sambound.erp.service.importer.MaterialGroupPrefixIndex;
+import com.sambound.erp.service.importer.MultiSheetExcelReader;
+import com.sambound.erp.service.importer.RowFingerprint;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,15 +42,29 @@ public class MaterialImportService {
 
     private static final Logger logger = LoggerFactory.getLogger(MaterialImportService.class);
 
+    // 导入结果中保留的错误条数上限，完整错误写入任务的错误报告文件
     private static final int MAX_ERROR_COUNT = 1000;
+    private static final String MATERIAL_GROUP_SHEET = "数据分组#单据头(FBillHead)Group";
+    private static final String MATERIAL_SHEET = "物料#物料(FBillHead)";
+    // CSV 文件第一个表头单元格中的单据标识
+    private static final String MATERIAL_GROUP_BILL_HEAD = "BOS_FORMGROUP";
+    private static final String MATERIAL_BILL_HEAD = "BD_MATERIAL";
     // 批量查询时的分片大小，避免IN查询参数过多（PostgreSQL通常限制为32767）
     private static final int BATCH_QUERY_CHUNK_SIZE = 1000;
-    // 批量插入时的分片大小，平衡性能和事务超时（每条记录约6个参数，1000条约6000个参数）
-    // 减小批量大小以避免事务超时，同时保持合理性能
-    private static final int BATCH_INSERT_SIZE = 1000;
-    // 最大并发批次数量，限制为连接池大小的一半（留一些连接给其他操作）
-    // 连接池通常为20，所以设置为10个并发批次
-    private static final int MAX_CONCURRENT_BATCHES = 10;
+    // 物料组同一层级内并行写入的分片数上限，以及每个分片的最小行数（层级较小时不拆分）
+    private static final int MAX_GROUP_UPSERT_CONCURRENCY = 4;
+    private static final int MIN_GROUP_CHUNK_SIZE = 500;
+    // 超过该大小的文件使用 COPY 批量装载模式，小文件继续使用数组绑定批量插入
+    private static final long BULK_LOAD_FILE_SIZE_THRESHOLD = 10L * 1024 * 1024;
+    // 物料组就绪前暂存的物料行上限：达到上限时读取线程等待后台物料组写入完成
+    private static final int MAX_PENDING_ROWS = 20_000;
+    // 批次大小和在途批次数由自适应调节器根据提交耗时和连接池等待情况调节，以下为初始值和上下限
+    // 在途批次数上限同时受连接池大小的一半限制（留一些连接给其他操作）
+    private static final BatchProfile BATCH_INSERT_PROFILE =
+            new BatchProfile("material", 1000, 200, 5000, 4, 10, 5000);
+    // COPY 不受绑定参数数量限制，可以使用更大的批次减少事务次数
+    private static final BatchProfile BULK_LOAD_PROFILE =
+            new BatchProfile("material-copy", 5000, 1000, 20000, 4, 10, 10000);
 
     @Getter
     private final MaterialGroupService materialGroupService;
@@ -47,6 +73,8 @@ public class MaterialImportService {
     private final UnitRepository unitRepository;
     private final TransactionTemplate transactionTemplate;
     private final ExecutorService executorService;
+    private final AdaptiveBatchTuner batchTuner;
+    private final ImportCheckpointService checkpointService;
 
     public MaterialImportService(
             MaterialGroupService materialGroupService,
@@ -54,111 +82,234 @@ public class MaterialImportService {
             MaterialGroupRepository materialGroupRepository,
             MaterialRepository materialRepository,
             UnitRepository unitRepository,
-            PlatformTransactionManager transactionManager) {
+            PlatformTransactionManager transactionManager,
+            AdaptiveBatchTuner batchTuner,
+            ImportCheckpointService checkpointService) {
         this.materialGroupService = materialGroupService;
         this.materialGroupRepository = materialGroupRepository;
         this.materialRepository = materialRepository;
         this.unitRepository = unitRepository;
+        this.batchTuner = batchTuner;
+        this.checkpointService = checkpointService;
         // 创建事务模板，用于批量操作的事务管理
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
-        // 120秒超时，足够处理1000条记录的批量插入
+        // 120秒超时，远大于自适应调节的目标提交耗时
         // 虽然设置了超时，但每个批次在事务完成后立即释放连接，不会长时间占用
         this.transactionTemplate.setTimeout(120);
         // 使用虚拟线程执行器（Java 21+ Virtual Threads）
         // 虚拟线程是轻量级线程，可以创建大量线程而不会消耗过多资源
         // 适合 I/O 密集型任务（如数据库操作），开销极小
-        // 注意：虽然虚拟线程可以创建很多，但需要配合信号量限制并发，避免数据库连接池耗尽
+        // 注意：虽然虚拟线程可以创建很多，但需要配合自适应限流器限制并发，避免数据库连接池耗尽
         this.executorService = Executors.newVirtualThreadPerTaskExecutor();
     }
 
-    public MaterialImportResponse importFromExcel(MultipartFile file) {
-        logger.info("开始导入Excel文件: {}", file.getOriginalFilename());
+    /**
+     * 导入物料组和物料
+     *
+     * @param file     已暂存的导入文件
+     * @param jobId    导入任务ID，批次检查点按任务记录，同一任务重启后跳过已提交的行
+     * @param progress 导入进度，读取线程和批次线程实时更新，并在行/批次边界检查取消标记
+     * @param dryRun   预检模式：完成解析、引用解析和与现有数据的比对，只执行只读查询，不开启写事务
+     */
+    public MaterialImportResponse importFromExcel(ImportFile file, String jobId, ImportProgress progress,
+                                                  boolean dryRun) {
+        logger.info("开始{}Excel文件: {}", dryRun ? "预检" : "导入", file.originalFilename());
 
+        MaterialGroupCollector groupCollector = null;
+        MaterialDataImporter materialImporter = null;
         try {
-            // 缓存文件内容
-            byte[] fileBytes = file.getBytes();
-
-            // 处理物料组：收集数据
-            MaterialGroupCollector groupCollector = new MaterialGroupCollector();
-            FastExcel.read(new ByteArrayInputStream(fileBytes), MaterialGroupExcelRow.class, groupCollector)
-                    .sheet("数据分组#单据头(FBillHead)Group")
-                    .headRowNumber(2)
-                    .doRead();
-
-            // 执行数据库导入操作
-            MaterialImportResponse.UnitGroupImportResult unitGroupResult = groupCollector.importToDatabase();
+            // 导入的物料组缓存（code -> MaterialGroup），由物料组收集器写入，物料导入器读取
+            Map<String, MaterialGroup> importedMaterialGroupCache = new HashMap<>();
+            boolean bulkLoad = file.size() >= BULK_LOAD_FILE_SIZE_THRESHOLD;
+            // 同一任务因服务重启中断后恢复时，物料工作表中已提交批次覆盖的行直接跳过（物料组写入是幂等的且量小，总是重新执行）
+            CommittedRowRanges committedRows = dryRun
+                    ? CommittedRowRanges.empty()
+                    : checkpointService.loadCommitted(ImportJobType.MATERIAL, jobId, MATERIAL_SHEET);
+            materialImporter = new MaterialDataImporter(importedMaterialGroupCache, bulkLoad,
+                    jobId, committedRows, progress, dryRun);
+            groupCollector = new MaterialGroupCollector(importedMaterialGroupCache, materialImporter, progress, dryRun);
+            materialImporter.setMaterialGroupCollector(groupCollector);
+
+            if (CsvRowReader.isCsv(file)) {
+                readCsv(file, groupCollector, materialImporter);
+            } else {
+                // 直接流式读取暂存文件，不再将整个文件复制到堆内存
+                // 单次扫描：物料组和物料两个工作表在同一次解压/解析中分发到各自的处理器
+                try (InputStream inputStream = file.openStream()) {
+                    new MultiSheetExcelReader(inputStream)
+                            .sheet(MATERIAL_GROUP_SHEET, MaterialGroupExcelRow.class, groupCollector)
+                            .sheet(MATERIAL_SHEET, MaterialExcelRow.class, materialImporter)
+                            .read();
+                }
+            }
+
+            // 等待后台物料组写入完成；物料组工作表缺失时也需要完成物料组阶段（加载数据库中已有的物料组）
+            MaterialImportResponse.UnitGroupImportResult unitGroupResult = groupCollector.importAndNotify();
             logger.info("物料组导入完成：总计 {} 条，成功 {} 条，失败 {} 条",
                     unitGroupResult.totalRows(), unitGroupResult.successCount(), unitGroupResult.failureCount());
 
-            // 获取导入的物料组缓存
-            Map<String, MaterialGroup> importedMaterialGroupCache = groupCollector.getImportedMaterialGroupCache();
-
-            // 处理物料
-            MaterialDataImporter materialImporter = new MaterialDataImporter(importedMaterialGroupCache);
-            FastExcel.read(new ByteArrayInputStream(fileBytes), MaterialExcelRow.class, materialImporter)
-                    .sheet("物料#物料(FBillHead)")
-                    .headRowNumber(2)
-                    .doRead();
-
-            // 并行处理所有物料数据
-            materialImporter.processAllMaterials();
-            // 等待所有异步批次处理完成
+            // 提交剩余的物料数据，并等待所有异步批次处理完成
+            materialImporter.finish();
             materialImporter.waitForCompletion();
 
             MaterialImportResponse.MaterialImportResult materialResult = materialImporter.getResult();
-            logger.info("物料导入完成：总计 {} 条，成功 {} 条，失败 {} 条",
-                    materialResult.totalRows(), materialResult.successCount(), materialResult.failureCount());
+            logger.info("物料导入完成：总计 {} 条，成功 {} 条（新增 {} 条，更新 {} 条，未变化 {} 条），失败 {} 条",
+                    materialResult.totalRows(), materialResult.successCount(), materialResult.insertedCount(),
+                    materialResult.updatedCount(), materialResult.skippedCount(), materialResult.failureCount());
 
             return new MaterialImportResponse(unitGroupResult, materialResult);
         } catch (Exception e) {
+            // 失败或取消时等待后台的物料组写入和在途批次结束，任务结束后不再有写入在进行
+            if (groupCollector != null) {
+                groupCollector.awaitQuietly();
+            }
+            if (materialImporter != null) {
+                materialImporter.awaitQuietly();
+            }
+            if (progress.isCancelled()) {
+                logger.info("物料导入已取消: {}", file.originalFilename());
+                throw new ImportCancelledException("物料导入已取消");
+            }
             logger.error("Excel文件导入失败", e);
             throw new RuntimeException("Excel文件导入失败: " + e.getMessage(), e);
         }
     }
 
     /**
-     * 物料组收集器：只负责收集数据
+     * 读取 CSV 文件
+     * CSV 只能承载一个工作表，按第一个表头单元格（Kingdee 单据标识）判断是物料组还是物料；
+     * 物料文件导入前先完成物料组阶段（加载数据库中已有的物料组），物料行即可边读边写
      */
-    private class MaterialGroupCollector implements ReadListener<MaterialGroupExcelRow> {
+    private void readCsv(ImportFile file,
+                         MaterialGroupCollector groupCollector,
+                         MaterialDataImporter materialImporter) throws IOException {
+        String billHead = CsvRowReader.readFirstHeader(file);
+        if (billHead != null && billHead.contains(MATERIAL_GROUP_BILL_HEAD)) {
+            CsvRowReader.read(file, MaterialGroupExcelRow.class, groupCollector);
+        } else if (billHead != null && billHead.contains(MATERIAL_BILL_HEAD)) {
+            groupCollector.importAndNotify();
+            CsvRowReader.read(file, MaterialExcelRow.class, materialImporter);
+        } else {
+            throw new IllegalArgumentException("无法识别的CSV文件，第一列表头应为物料组("
+                    + MATERIAL_GROUP_BILL_HEAD + ")或物料(" + MATERIAL_BILL_HEAD + "): " + billHead);
+        }
+    }
+
+    /**
+     * 物料组收集器：收集数据，工作表读取完成后在后台线程写入数据库，读取线程继续解析物料工作表；
+     * 写入完成后通知物料导入器，在此之前解析出的物料行暂存在物料导入器中（达到上限时读取线程等待写入完成）
+     */
+    private class MaterialGroupCollector implements ImportRowHandler<MaterialGroupExcelRow> {
         private final List<MaterialGroupData> materialGroups = new ArrayList<>();
         private final AtomicInteger totalRows = new AtomicInteger(0);
-
-        /**
-         * -- GETTER --
-         *  获取导入的物料组缓存
-         */
         // 缓存已导入的物料组对象（code -> MaterialGroup）
-        @Getter
-        private final Map<String, MaterialGroup> importedMaterialGroupCache = new HashMap<>();
+        private final Map<String, MaterialGroup> importedMaterialGroupCache;
+        private final MaterialDataImporter materialImporter;
+        private final ImportProgress progress;
+        private final boolean dryRun;
+        // 上级编码与物料组编码复用同一个字符串实例
+        private final CellNormalizer cells = new CellNormalizer();
+        // 后台物料组写入任务，工作表读取完成时启动
+        private CompletableFuture<MaterialImportResponse.UnitGroupImportResult> importFuture;
+        private MaterialImportResponse.UnitGroupImportResult importResult;
+
+        MaterialGroupCollector(Map<String, MaterialGroup> importedMaterialGroupCache,
+                               MaterialDataImporter materialImporter,
+                               ImportProgress progress,
+                               boolean dryRun) {
+            this.importedMaterialGroupCache = importedMaterialGroupCache;
+            this.materialImporter = materialImporter;
+            this.progress = progress;
+            this.dryRun = dryRun;
+        }
 
         @Override
-        public void invoke(MaterialGroupExcelRow data, AnalysisContext context) {
+        public void handleRow(MaterialGroupExcelRow data, int rowNum) {
+            progress.checkCancelled();
             totalRows.incrementAndGet();
+            progress.rowParsed();
 
-            int rowNum = context.readRowHolder().getRowIndex();
-            String code = data.getCode();
-            String name = data.getName();
+            String code = cells.code(data.getCode());
+            String name = CellNormalizer.trimToNull(data.getName());
 
-            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) {
+            if (code == null || name == null) {
                 return;
             }
 
-            materialGroups.add(new MaterialGroupData(rowNum, code.trim(), name.trim(),
+            materialGroups.add(new MaterialGroupData(rowNum, code, name,
                     data.getDescription() != null ? data.getDescription().trim() : null,
-                    (data.getParentCode() != null && !data.getParentCode().trim().isEmpty())
-                            ? data.getParentCode().trim() : null));
+                    cells.code(data.getParentCode())));
         }
 
         @Override
-        public void doAfterAllAnalysed(AnalysisContext context) {
-            logger.info("物料组数据收集完成，共 {} 条数据", materialGroups.size());
+        public void afterAllRows() {
+            logger.info("物料组数据收集完成，共 {} 条数据，开始后台写入", materialGroups.size());
+            // 物料组写入与物料工作表的解析重叠进行：物料行解析只需要物料组编码，
+            // 写入完成后物料导入器在读取线程上解析物料组ID，并开始边读边写
+            progress.checkCancelled();
+            importFuture = CompletableFuture.supplyAsync(() -> {
+                MaterialImportResponse.UnitGroupImportResult result = importToDatabase();
+                materialImporter.markMaterialGroupsImported();
+                return result;
+            }, executorService);
+        }
+
+        /**
+         * 等待物料组导入完成（工作表缺失或尚未开始写入时在当前线程导入，仅执行一次），
+         * 并在当前线程通知物料导入器物料组已就绪
+         */
+        public MaterialImportResponse.UnitGroupImportResult importAndNotify() {
+            if (importResult == null) {
+                progress.checkCancelled();
+                if (importFuture == null) {
+                    importResult = importToDatabase();
+                } else {
+                    try {
+                        importResult = importFuture.join();
+                    } catch (CompletionException e) {
+                        if (e.getCause() instanceof RuntimeException cause) {
+                            throw cause;
+                        }
+                        throw e;
+                    }
+                }
+                materialImporter.onMaterialGroupsReady();
+            }
+            return importResult;
+        }
+
+        /**
+         * 物料组已在后台写入时，等待写入完成并通知物料导入器（读取线程因暂存行达到上限而阻塞）
+         *
+         * @return 物料组工作表尚未读取完成、无法等待时返回 false
+         */
+        public boolean awaitBackgroundImport() {
+            if (importFuture == null) {
+                return false;
+            }
+            importAndNotify();
+            return true;
+        }
+
+        /**
+         * 出错时等待后台物料组写入结束，忽略其结果
+         */
+        public void awaitQuietly() {
+            if (importFuture == null) {
+                return;
+            }
+            try {
+                importFuture.join();
+            } catch (Exception e) {
+                logger.debug("后台物料组写入异常结束: {}", e.getMessage());
+            }
         }
 
         /**
          * 执行数据库导入操作
          */
-        public MaterialImportResponse.UnitGroupImportResult importToDatabase() {
+        private MaterialImportResponse.UnitGroupImportResult importToDatabase() {
             if (materialGroups.isEmpty()) {
                 logger.info("未找到物料组数据");
                 return new MaterialImportResponse.UnitGroupImportResult(
@@ -168,535 +319,627 @@ public class MaterialImportService {
             logger.info("找到 {} 条物料组数据，开始导入到数据库", materialGroups.size());
 
             List<MaterialImportResponse.ImportError> errors = new ArrayList<>();
-            AtomicInteger successCount = new AtomicInteger(0);
 
-            // 处理树形结构：先导入顶级节点，再导入子节点
-            // 第一遍：分离顶级节点和子节点
-            List<MaterialGroupData> rootNodes = new ArrayList<>();
-            List<MaterialGroupData> childNodes = new ArrayList<>();
-            Map<String, MaterialGroupData> codeToRow = new HashMap<>();
+            // 父级ID在整个导入过程中统一从该映射解析：先放入数据库中已有的文件外父级，每写完一层再加入该层
+            Map<String, Long> codeToIdMap = preloadExternalParents();
 
-            for (MaterialGroupData row : materialGroups) {
-                codeToRow.put(row.code, row);
-                if (row.parentCode == null || row.parentCode.isEmpty()) {
-                    rootNodes.add(row);
-                } else {
-                    childNodes.add(row);
-                }
+            // 一次拓扑分层，无法分层的行（编码重复、父节点不存在、循环引用）记为行错误
+            HierarchyLevelSorter.Result<MaterialGroupData> sorted = HierarchyLevelSorter.sort(
+                    materialGroups, MaterialGroupData::code, MaterialGroupData::parentCode, codeToIdMap.keySet());
+            for (HierarchyLevelSorter.Rejected<MaterialGroupData> rejected : sorted.rejected()) {
+                addGroupError(progress, errors, toImportError(rejected));
             }
+            logger.info("物料组拓扑分层完成：{} 层，无法导入 {} 条", sorted.levels().size(), sorted.rejected().size());
 
-            // 缓存已导入的物料组（code -> ID）
-            Map<String, Long> codeToIdMap = new HashMap<>();
-
-            // 第二遍：导入顶级节点
-            importRootMaterialGroups(rootNodes, codeToIdMap, importedMaterialGroupCache, successCount, errors);
-
-            // 第三遍：按层级导入子节点
-            importChildMaterialGroups(childNodes, codeToRow, codeToIdMap, importedMaterialGroupCache, successCount, errors);
+            int success = dryRun
+                    ? previewMaterialGroupLevels(sorted.levels(), importedMaterialGroupCache)
+                    : importMaterialGroupLevels(sorted.levels(), codeToIdMap, importedMaterialGroupCache, errors, progress);
 
             // 返回结果
             int total = totalRows.get();
-            int success = successCount.get();
             int failure = total - success;
             return new MaterialImportResponse.UnitGroupImportResult(total, success, failure, errors);
         }
 
-    }
+        /**
+         * 查询文件中引用、但不在文件中的父级物料组（数据库中已有）
+         */
+        private Map<String, Long> preloadExternalParents() {
+            Set<String> fileCodes = new HashSet<>();
+            for (MaterialGroupData row : materialGroups) {
+                fileCodes.add(row.code);
+            }
+            Set<String> externalCodes = new HashSet<>();
+            for (MaterialGroupData row : materialGroups) {
+                if (row.parentCode != null && !fileCodes.contains(row.parentCode)) {
+                    externalCodes.add(row.parentCode);
+                }
+            }
 
-    /**
-     * 批量导入顶级物料组（单次事务，数据量小）
-     * 优化：将非数据库操作移到事务外，缩短事务持有连接的时间
-     */
-    private void importRootMaterialGroups(List<MaterialGroupData> rootNodes,
-                                         Map<String, Long> codeToIdMap,
-                                         Map<String, MaterialGroup> importedMaterialGroupCache,
-                                         AtomicInteger successCount,
-                                         List<MaterialImportResponse.ImportError> errors) {
-        if (rootNodes.isEmpty()) {
-            return;
+            Map<String, Long> codeToIdMap = new HashMap<>();
+            List<String> externalCodeList = new ArrayList<>(externalCodes);
+            for (int i = 0; i < externalCodeList.size(); i += BATCH_QUERY_CHUNK_SIZE) {
+                int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, externalCodeList.size());
+                materialGroupRepository.findByCodeIn(externalCodeList.subList(i, end))
+                        .forEach(group -> codeToIdMap.put(group.getCode(), group.getId()));
+            }
+            return codeToIdMap;
         }
 
-        long startTime = System.currentTimeMillis();
-        
-        // 在事务外准备数据
-        List<String> codes = new ArrayList<>();
-        List<String> names = new ArrayList<>();
-        
-        for (MaterialGroupData row : rootNodes) {
-            codes.add(row.code);
-            names.add(row.name != null ? row.name : row.code);
-        }
-        
-        // 在独立事务中仅执行数据库操作
-        Map<String, MaterialGroup> batchResult;
-        try {
-            batchResult = transactionTemplate.execute(status -> {
-                // 仅执行数据库批量插入操作，不进行任何其他操作
-                return materialGroupRepository.batchInsertOrGetByCode(codes, names);
-            });
-        } catch (Exception e) {
-            long failedDuration = System.currentTimeMillis() - startTime;
-            logger.error("批量导入顶级物料组失败: {}，耗时{}ms", e.getMessage(), failedDuration, e);
-            // 整批标记为失败
-            int startRow = rootNodes.get(0).rowNumber;
-            int endRow = rootNodes.get(rootNodes.size() - 1).rowNumber;
-            if (errors.size() < MAX_ERROR_COUNT) {
-                errors.add(new MaterialImportResponse.ImportError(
-                        "物料组", startRow, null, 
-                        String.format("批量导入失败（行%d-%d）: %s", startRow, endRow, e.getMessage())));
-            }
-            return;
+        private MaterialImportResponse.ImportError toImportError(HierarchyLevelSorter.Rejected<MaterialGroupData> rejected) {
+            MaterialGroupData row = rejected.node();
+            return switch (rejected.reason()) {
+                case DUPLICATE -> new MaterialImportResponse.ImportError(
+                        "物料组", row.rowNumber, "FNumber", "物料组编码重复，已忽略: " + row.code);
+                case MISSING_PARENT -> new MaterialImportResponse.ImportError(
+                        "物料组", row.rowNumber, "FParentId",
+                        rejected.relatedCode().equals(row.parentCode)
+                                ? "父节点不存在: " + row.parentCode
+                                : "上级物料组的父节点不存在: " + rejected.relatedCode());
+                case CYCLE -> new MaterialImportResponse.ImportError(
+                        "物料组", row.rowNumber, "FParentId",
+                        "物料组上级存在循环引用: " + rejected.relatedCode());
+            };
         }
-        
-        // 在事务外更新缓存和计数（不持有数据库连接）
-        int actualSuccessCount = 0;
-        if (batchResult != null) {
-            for (MaterialGroupData row : rootNodes) {
-                MaterialGroup materialGroup = batchResult.get(row.code);
-                if (materialGroup != null) {
-                    codeToIdMap.put(row.code, materialGroup.getId());
-                    importedMaterialGroupCache.put(row.code, materialGroup);
-                    actualSuccessCount++;
-                }
-            }
-        }
-        
-        long duration = System.currentTimeMillis() - startTime;
-        successCount.addAndGet(actualSuccessCount);
-        logger.info("批量导入顶级物料组完成：处理{}个节点，成功{}个，耗时{}ms，平均{}ms/个", 
-                rootNodes.size(), actualSuccessCount, duration,
-                rootNodes.size() > 0 ? duration / rootNodes.size() : 0);
+
     }
 
     /**
-     * 批量导入子物料组（按层级处理）
+     * 按层写入物料组：层与层之间顺序执行（子节点需要父节点的ID），
+     * 同一层的节点互不依赖，切分后在独立事务中并行执行数组绑定的批量插入/更新
+     *
+     * @return 成功写入的物料组数量
      */
-    private void importChildMaterialGroups(List<MaterialGroupData> childNodes,
-                                          Map<String, MaterialGroupData> codeToRow,
+    private int importMaterialGroupLevels(List<List<MaterialGroupData>> levels,
                                           Map<String, Long> codeToIdMap,
                                           Map<String, MaterialGroup> importedMaterialGroupCache,
-                                          AtomicInteger successCount,
-                                          List<MaterialImportResponse.ImportError> errors) {
-        if (childNodes.isEmpty()) {
-            return;
-        }
-
-        List<MaterialGroupData> remainingNodes = new ArrayList<>(childNodes);
-        int maxIterations = 100; // 防止无限循环，最多100层
-        int iteration = 0;
+                                          List<MaterialImportResponse.ImportError> errors,
+                                          ImportProgress progress) {
+        int successCount = 0;
+        for (int depth = 0; depth < levels.size(); depth++) {
+            long startTime = System.currentTimeMillis();
 
-        while (!remainingNodes.isEmpty() && iteration < maxIterations) {
-            iteration++;
-            List<MaterialGroupData> nextRoundNodes = new ArrayList<>();
-            List<MaterialGroupData> readyToImport = new ArrayList<>();
-            
-            // 第一遍：分离出可以导入的节点
-            for (MaterialGroupData row : remainingNodes) {
-                Long parentId = codeToIdMap.get(row.parentCode);
-                if (parentId == null) {
-                    // 父节点还未导入，留到下一轮
-                    nextRoundNodes.add(row);
-                } else {
-                    // 父节点已存在，可以导入
-                    readyToImport.add(row);
+            // 在事务外准备数据，父级ID从映射中解析
+            List<MaterialGroupData> levelRows = new ArrayList<>();
+            List<MaterialGroupRepository.MaterialGroupBatchData> batchData = new ArrayList<>();
+            for (MaterialGroupData row : levels.get(depth)) {
+                Long parentId = null;
+                if (row.parentCode != null) {
+                    parentId = codeToIdMap.get(row.parentCode);
+                    if (parentId == null) {
+                        // 父节点所在的分片写入失败，其子树都无法导入
+                        addGroupError(progress, errors, new MaterialImportResponse.ImportError(
+                                "物料组", row.rowNumber, "FParentId", "父节点导入失败: " + row.parentCode));
+                        continue;
+                    }
                 }
+                levelRows.add(row);
+                batchData.add(new MaterialGroupRepository.MaterialGroupBatchData(
+                        row.code,
+                        row.name != null ? row.name : row.code,
+                        row.description,
+                        parentId));
             }
-            
-            // 第二遍：批量导入可以导入的节点（单次事务，数据量小）
-            int processedCount = 0;
-            if (!readyToImport.isEmpty()) {
-                long startTime = System.currentTimeMillis();
-                
-                // 在事务外准备数据
-                List<MaterialGroupRepository.MaterialGroupBatchData> batchData = new ArrayList<>();
-                for (MaterialGroupData row : readyToImport) {
-                    Long parentId = codeToIdMap.get(row.parentCode);
-                    batchData.add(new MaterialGroupRepository.MaterialGroupBatchData(
-                            row.code,
-                            row.name != null ? row.name : row.code,
-                            row.description,
-                            parentId));
-                }
-                
-                // 在独立事务中仅执行数据库操作
+            if (batchData.isEmpty()) {
+                continue;
+            }
+
+            int chunkSize = Math.max(MIN_GROUP_CHUNK_SIZE,
+                    (batchData.size() + MAX_GROUP_UPSERT_CONCURRENCY - 1) / MAX_GROUP_UPSERT_CONCURRENCY);
+            List<Integer> chunkStarts = new ArrayList<>();
+            List<CompletableFuture<Map<String, MaterialGroup>>> futures = new ArrayList<>();
+            for (int start = 0; start < batchData.size(); start += chunkSize) {
+                List<MaterialGroupRepository.MaterialGroupBatchData> chunk =
+                        batchData.subList(start, Math.min(start + chunkSize, batchData.size()));
+                chunkStarts.add(start);
+                futures.add(CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status ->
+                        materialGroupRepository.batchInsertOrGetByCodeWithParent(chunk)), executorService));
+            }
+
+            // 在事务外更新ID映射、缓存和计数（不持有数据库连接）
+            int levelSuccessCount = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                int start = chunkStarts.get(i);
+                int end = Math.min(start + chunkSize, levelRows.size());
+                List<MaterialGroupData> chunkRows = levelRows.subList(start, end);
                 Map<String, MaterialGroup> batchResult;
                 try {
-                    batchResult = transactionTemplate.execute(status -> {
-                        // 仅执行数据库批量插入操作，不进行任何其他操作
-                        return materialGroupRepository.batchInsertOrGetByCodeWithParent(batchData);
-                    });
-                } catch (Exception e) {
-                    long failedDuration = System.currentTimeMillis() - startTime;
-                    logger.error("物料组导入第{}轮失败: {}，耗时{}ms", iteration, e.getMessage(), failedDuration, e);
-                    // 整批标记为失败
-                    int startRow = readyToImport.get(0).rowNumber;
-                    int endRow = readyToImport.get(readyToImport.size() - 1).rowNumber;
-                    if (errors.size() < MAX_ERROR_COUNT) {
-                        errors.add(new MaterialImportResponse.ImportError(
-                                "物料组", startRow, null,
-                                String.format("批量导入失败（行%d-%d）: %s", startRow, endRow, e.getMessage())));
-                    }
-                    // 失败的不计入processedCount，避免计数错误
+                    batchResult = futures.get(i).join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.error("物料组第{}层批量导入失败: {}", depth + 1, cause.getMessage(), cause);
+                    // 整个分片标记为失败
+                    int startRow = chunkRows.get(0).rowNumber;
+                    int endRow = chunkRows.get(chunkRows.size() - 1).rowNumber;
+                    addGroupError(progress, errors, new MaterialImportResponse.ImportError(
+                            "物料组", startRow, null,
+                            String.format("批量导入失败（行%d-%d）: %s", startRow, endRow, cause.getMessage())));
                     continue;
                 }
-                
-                // 在事务外更新缓存和计数（不持有数据库连接）
-                if (batchResult != null) {
-                    for (MaterialGroupData row : readyToImport) {
-                        MaterialGroup materialGroup = batchResult.get(row.code);
-                        if (materialGroup != null) {
-                            codeToIdMap.put(row.code, materialGroup.getId());
-                            importedMaterialGroupCache.put(row.code, materialGroup);
-                            processedCount++;
-                        }
-                    }
+                if (batchResult == null) {
+                    continue;
                 }
-                
-                long duration = System.currentTimeMillis() - startTime;
-                logger.info("物料组导入第{}轮完成：处理{}个节点，成功{}个，耗时{}ms，平均{}ms/个",
-                        iteration, readyToImport.size(), processedCount, duration,
-                        readyToImport.size() > 0 ? duration / readyToImport.size() : 0);
-            }
-
-            if (processedCount > 0) {
-                successCount.addAndGet(processedCount);
-                logger.debug("物料组导入第{}轮完成，处理了{}个节点，剩余{}个节点待处理",
-                        iteration, processedCount, nextRoundNodes.size());
-            }
-
-            // 如果本次有进展且还有剩余节点，继续处理下一轮
-            if (processedCount > 0 && !nextRoundNodes.isEmpty()) {
-                remainingNodes = nextRoundNodes;
-            } else if (processedCount > 0) {
-                // 本次有进展且没有剩余节点，说明所有节点都已处理完成
-                logger.debug("物料组导入完成，共{}轮，所有节点都已处理", iteration);
-                break;
-            } else if (!nextRoundNodes.isEmpty()) {
-                // 本次没有进展但还有剩余节点，说明无法继续处理（可能是循环引用或缺失父节点）
-                logger.warn("物料组导入无法继续，第{}轮没有进展，剩余{}个节点无法找到父节点",
-                        iteration, nextRoundNodes.size());
-                for (MaterialGroupData row : nextRoundNodes) {
-                    if (errors.size() < MAX_ERROR_COUNT) {
-                        errors.add(new MaterialImportResponse.ImportError(
-                                "物料组", row.rowNumber, "FParentId",
-                                "父节点不存在: " + row.parentCode));
+                for (MaterialGroupData row : chunkRows) {
+                    MaterialGroup materialGroup = batchResult.get(row.code);
+                    if (materialGroup != null) {
+                        codeToIdMap.put(row.code, materialGroup.getId());
+                        importedMaterialGroupCache.put(row.code, materialGroup);
+                        levelSuccessCount++;
                     }
                 }
-                break;
-            } else {
-                // 没有剩余节点，所有节点都已处理
-                break;
             }
+
+            successCount += levelSuccessCount;
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("物料组第{}层导入完成：{}个节点，{}个分片并行，成功{}个，耗时{}ms",
+                    depth + 1, levelRows.size(), futures.size(), levelSuccessCount, duration);
+        }
+        return successCount;
+    }
+
+    /**
+     * 预检模式：只读查询文件中已存在的物料组，新物料组以临时负数ID的未持久化对象代替，
+     * 使物料行的物料组解析（包括前缀匹配）与正式导入一致
+     *
+     * @return 可以导入的物料组数量
+     */
+    private int previewMaterialGroupLevels(List<List<MaterialGroupData>> levels,
+                                           Map<String, MaterialGroup> importedMaterialGroupCache) {
+        List<String> codes = new ArrayList<>();
+        for (List<MaterialGroupData> level : levels) {
+            for (MaterialGroupData row : level) {
+                codes.add(row.code);
+            }
+        }
+        Map<String, MaterialGroup> existing = new HashMap<>();
+        for (int i = 0; i < codes.size(); i += BATCH_QUERY_CHUNK_SIZE) {
+            int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, codes.size());
+            materialGroupRepository.findByCodeIn(codes.subList(i, end))
+                    .forEach(group -> existing.put(group.getCode(), group));
         }
 
-        if (iteration >= maxIterations) {
-            logger.error("物料组导入达到最大迭代次数，可能存在循环引用");
-            for (MaterialGroupData row : remainingNodes) {
-                if (errors.size() < MAX_ERROR_COUNT) {
-                    errors.add(new MaterialImportResponse.ImportError(
-                            "物料组", row.rowNumber, null,
-                            "导入失败：达到最大迭代次数，可能存在循环引用"));
+        long placeholderId = 0;
+        for (List<MaterialGroupData> level : levels) {
+            for (MaterialGroupData row : level) {
+                MaterialGroup group = existing.get(row.code);
+                if (group == null) {
+                    group = MaterialGroup.builder()
+                            .id(--placeholderId)
+                            .code(row.code)
+                            .name(row.name)
+                            .description(row.description)
+                            .build();
                 }
+                importedMaterialGroupCache.put(row.code, group);
             }
         }
+        logger.info("物料组预检完成：{} 个可导入，其中新增 {} 个", codes.size(), -placeholderId);
+        return codes.size();
+    }
+
+    /**
+     * 记录物料组错误：全部写入错误报告，结果中只保留前 MAX_ERROR_COUNT 条
+     */
+    private static void addGroupError(ImportProgress progress,
+                                      List<MaterialImportResponse.ImportError> errors,
+                                      MaterialImportResponse.ImportError error) {
+        progress.recordError(error.sheetName(), error.rowNumber(), error.field(), error.message());
+        if (errors.size() < MAX_ERROR_COUNT) {
+            errors.add(error);
+        }
     }
 
     /**
      * 物料数据导入器
+     * 流式处理：物料组就绪后，每读满一个批次即提交异步写入；
+     * 在途批次数受信号量限制，读取线程在写入跟不上时阻塞，内存中只保留有限窗口的行数据
      */
-    private class MaterialDataImporter implements ReadListener<MaterialExcelRow> {
-        private final List<MaterialRowData> allMaterials = new ArrayList<>();
+    private class MaterialDataImporter implements ImportRowHandler<MaterialExcelRow> {
         private final AtomicInteger successCount = new AtomicInteger(0);
         private final AtomicInteger totalRows = new AtomicInteger(0);
-        private final List<MaterialImportResponse.ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger insertedCount = new AtomicInteger(0);
+        private final AtomicInteger updatedCount = new AtomicInteger(0);
+        private final AtomicInteger skippedCount = new AtomicInteger(0);
+        private final AtomicInteger resumedCount = new AtomicInteger(0);
+        private final BoundedErrorList<MaterialImportResponse.ImportError> errors = new BoundedErrorList<>(MAX_ERROR_COUNT);
+        // 导入任务ID和任务上次中断时已提交批次覆盖的行（断点续传）
+        private final String jobId;
+        private final CommittedRowRanges committedRows;
         // 导入的物料组缓存
         private final Map<String, MaterialGroup> importedMaterialGroupCache;
         // 异步批次任务列表
         private final List<CompletableFuture<BatchResult>> futures = new ArrayList<>();
-        // 信号量：限制并发批次数量，避免连接池耗尽
-        private final Semaphore batchSemaphore = new Semaphore(MAX_CONCURRENT_BATCHES);
-
-        public MaterialDataImporter(Map<String, MaterialGroup> importedMaterialGroupCache) {
+        // 自适应限流器：限制在途批次数量并给出批次大小，既避免连接池耗尽，也为读取线程提供背压
+        private final AdaptiveBatchLimiter limiter;
+        // 预加载的物料组和单位缓存（批次线程并发读取）
+        private final Map<String, MaterialGroup> materialGroupCache = new ConcurrentHashMap<>();
+        private final Map<String, Unit> unitCache = new ConcurrentHashMap<>();
+        // 已查询过的单位编码（包括数据库中不存在的），避免重复查询
+        private final Set<String> queriedUnitCodes = new HashSet<>();
+        // 已提交的物料编码，同一编码在文件中重复出现时只导入第一次出现的行
+        private final Set<String> submittedCodes = new HashSet<>();
+        // 数据库中已有物料的内容指纹（code -> contentHash，未记录指纹时为 null），只在读取线程上访问
+        private final Map<String, Long> existingContentHashes = new HashMap<>();
+        private final CellNormalizer cells = new CellNormalizer();
+        // 物料组最长前缀索引（物料组就绪后发布的不可变快照，用于前缀匹配）
+        private volatile MaterialGroupPrefixIndex prefixIndex = MaterialGroupPrefixIndex.empty();
+        // 待提交的行（物料组就绪前会累积，最多 MAX_PENDING_ROWS 行；就绪后不超过一个批次）
+        private List<MaterialRowData> pendingRows = new ArrayList<>();
+        private MaterialGroupCollector materialGroupCollector;
+        private boolean pendingLimitWarned = false;
+        private boolean materialGroupsReady = false;
+        // 后台物料组写入已完成（由写入线程设置，读取线程在下一行时完成物料组就绪处理）
+        private volatile boolean materialGroupsImported = false;
+        private int batchIndex = 0;
+        // 是否使用 COPY 批量装载模式
+        private final boolean bulkLoad;
+        private final ImportProgress progress;
+        // 预检模式：解析后的批次只与已有数据比对，不写入
+        private final boolean dryRun;
+
+        public MaterialDataImporter(Map<String, MaterialGroup> importedMaterialGroupCache, boolean bulkLoad,
+                                    String jobId, CommittedRowRanges committedRows,
+                                    ImportProgress progress, boolean dryRun) {
             this.importedMaterialGroupCache = importedMaterialGroupCache != null
                     ? importedMaterialGroupCache
                     : new HashMap<>();
+            this.bulkLoad = bulkLoad;
+            this.jobId = jobId;
+            this.committedRows = committedRows;
+            this.progress = progress;
+            this.dryRun = dryRun;
+            this.limiter = batchTuner.limiter(bulkLoad ? BULK_LOAD_PROFILE : BATCH_INSERT_PROFILE);
+            logger.info("物料写入模式：{}，初始批次大小 {}，并发 {}", bulkLoad ? "COPY批量装载" : "数组绑定批量插入",
+                    limiter.batchSize(), limiter.concurrencyLimit());
         }
 
         @Override
-        public void invoke(MaterialExcelRow data, AnalysisContext context) {
+        public void handleRow(MaterialExcelRow data, int rowNum) {
+            progress.checkCancelled();
             totalRows.incrementAndGet();
+            progress.rowParsed();
 
-            String code = data.getCode();
-            String name = data.getName();
-            int rowNum = context.readRowHolder().getRowIndex();
+            if (CellNormalizer.isBlank(data.getCode()) || CellNormalizer.isBlank(data.getName())) {
+                recordError(new MaterialImportResponse.ImportError(
+                        "物料", rowNum, "FNumber", "物料编码或名称为空"));
+                return;
+            }
+            // 行在物料组就绪前可能被暂存：编码类单元格先规整并复用同一个字符串实例，重复的编码只保留一份
+            data.setMaterialGroupCode(cells.code(data.getMaterialGroupCode()));
+            data.setBaseUnitCode(cells.code(data.getBaseUnitCode()));
+            data.setErpClsId(cells.code(data.getErpClsId()));
+
+            pendingRows.add(new MaterialRowData(rowNum, data));
+            if (!materialGroupsReady && materialGroupsImported) {
+                onMaterialGroupsReady();
+            }
+            // 物料组仍在后台写入而暂存行已达上限：读取线程等待写入完成，暂存行随即按批次提交并受限流器背压
+            if (!materialGroupsReady && pendingRows.size() >= MAX_PENDING_ROWS) {
+                awaitMaterialGroups();
+            }
+            // 物料组就绪后，读满一个批次立即提交
+            if (materialGroupsReady && pendingRows.size() >= limiter.batchSize()) {
+                submitPendingRows(false);
+            }
+        }
 
-            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) {
-                if (errors.size() < MAX_ERROR_COUNT) {
-                    errors.add(new MaterialImportResponse.ImportError(
-                            "物料", rowNum, "FNumber", "物料编码或名称为空"));
-                }
+        @Override
+        public void afterAllRows() {
+            logger.info("物料数据读取完成，共 {} 行", totalRows.get());
+        }
+
+        public void setMaterialGroupCollector(MaterialGroupCollector materialGroupCollector) {
+            this.materialGroupCollector = materialGroupCollector;
+        }
+
+        private void awaitMaterialGroups() {
+            if (materialGroupCollector != null && materialGroupCollector.awaitBackgroundImport()) {
                 return;
             }
+            // 物料工作表位于物料组工作表之前：单次扫描中物料组尚未读取，只能继续暂存
+            if (!pendingLimitWarned) {
+                pendingLimitWarned = true;
+                logger.warn("物料工作表位于物料组工作表之前，物料组读取完成前的物料行将全部暂存在内存中（已超过 {} 行），"
+                        + "建议将物料组工作表放在物料工作表之前", MAX_PENDING_ROWS);
+            }
+        }
 
-            // 收集所有数据（包含行号）
-            allMaterials.add(new MaterialRowData(rowNum, data));
+        /**
+         * 记录行级错误：全部写入错误报告，结果中只保留前 MAX_ERROR_COUNT 条
+         */
+        private void recordError(MaterialImportResponse.ImportError error) {
+            progress.recordError(error.sheetName(), error.rowNumber(), error.field(), error.message());
+            errors.add(error);
         }
 
-        @Override
-        public void doAfterAllAnalysed(AnalysisContext context) {
-            logger.info("物料数据收集完成，共 {} 条数据", allMaterials.size());
+        /**
+         * 后台物料组写入完成的通知（在写入线程上调用），只设置标记，
+         * 暂存行的处理留给读取线程，缓存和待提交行仍只在读取线程上访问
+         */
+        public void markMaterialGroupsImported() {
+            materialGroupsImported = true;
         }
 
         /**
-         * 批量处理所有物料数据（多线程并行）
+         * 物料组导入完成的回调（在读取线程上调用，仅执行一次）：加载物料组缓存，并提交此前暂存的行
+         * （物料组后台写入期间，或物料工作表在工作簿中位于物料组工作表之前时，行数据会先暂存在内存中）
          */
-        public void processAllMaterials() {
-            if (allMaterials.isEmpty()) {
-                logger.info("没有需要处理的物料数据");
+        public void onMaterialGroupsReady() {
+            if (materialGroupsReady) {
                 return;
             }
+            preloadMaterialGroups();
+            preloadContentHashes();
+            materialGroupsReady = true;
+            submitPendingRows(false);
+        }
 
-            logger.info("开始并行批量处理 {} 条物料数据", allMaterials.size());
+        /**
+         * 提交剩余的所有行（包括不足一个批次的尾部数据）
+         */
+        public void finish() {
+            if (!materialGroupsReady) {
+                onMaterialGroupsReady();
+            }
+            submitPendingRows(true);
+            logger.info("物料数据提交完成，共 {} 个批次", batchIndex);
+            if (resumedCount.get() > 0) {
+                logger.info("从检查点恢复：跳过上次已提交的物料 {} 行", resumedCount.get());
+            }
+        }
 
-            // 预加载数据
-            Map<String, MaterialGroup> materialGroupCache = new HashMap<>(importedMaterialGroupCache);
-            Map<String, Unit> unitCache = new HashMap<>();
-            Set<String> allMaterialGroupCodes = preloadAllData(allMaterials, materialGroupCache, unitCache);
+        /**
+         * 按批次大小切分待提交的行并异步提交
+         *
+         * @param includeTail 是否提交不足一个批次的尾部数据
+         */
+        private void submitPendingRows(boolean includeTail) {
+            int offset = 0;
+            // 每个窗口重新读取批次大小，调节结果立即生效
+            int batchSize = limiter.batchSize();
+            while (pendingRows.size() - offset >= batchSize
+                    || (includeTail && offset < pendingRows.size())) {
+                int end = Math.min(offset + batchSize, pendingRows.size());
+                submitWindow(pendingRows.subList(offset, end));
+                offset = end;
+                batchSize = limiter.batchSize();
+            }
+            if (offset > 0) {
+                pendingRows = new ArrayList<>(pendingRows.subList(offset, pendingRows.size()));
+            }
+        }
 
-            // 收集需要批量插入的物料数据（code -> batchData）
-            Map<String, MaterialBatchData> codeToBatchData = new HashMap<>();
-            
-            for (MaterialRowData rowData : allMaterials) {
-                MaterialExcelRow data = rowData.data();
-                int rowNum = rowData.rowNumber();
-                
-                String materialGroupCode = data.getMaterialGroupCode();
-                String baseUnitCode = data.getBaseUnitCode();
-                
-                // 如果物料组代码为空，尝试通过前缀匹配
-                MaterialGroup materialGroup = null;
-                if (materialGroupCode == null || materialGroupCode.trim().isEmpty()) {
-                    // 尝试前缀匹配
-                    materialGroup = MaterialImportService.this.findMaterialGroupByPrefix(
-                            data.getCode(), 
-                            importedMaterialGroupCache, 
-                            allMaterialGroupCodes);
-                    
-                    if (materialGroup == null) {
-                        // 前缀匹配失败，记录错误并跳过
-                        if (errors.size() < MAX_ERROR_COUNT) {
-                            errors.add(new MaterialImportResponse.ImportError(
-                                    "物料", rowNum, "FMaterialGroup",
-                                    String.format("无法通过前缀匹配到物料组：%s", data.getCode())));
-                        }
-                        continue;
-                    }
+        /**
+         * 在读取线程上完成校验和引用解析，然后异步提交批量写入
+         */
+        private void submitWindow(List<MaterialRowData> rows) {
+            preloadUnits(rows);
+
+            List<MaterialRepository.MaterialBatchData> batch = new ArrayList<>(rows.size());
+            for (MaterialRowData rowData : rows) {
+                MaterialRepository.MaterialBatchData batchData = resolveRow(rowData);
+                if (batchData != null) {
+                    batch.add(batchData);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            batchIndex++;
+            if (dryRun) {
+                previewBatch(batch);
+                return;
+            }
+            // 窗口内的行按读取顺序排列，首尾行号即批次在工作表中覆盖的范围
+            processBatchAsync(batch, batchIndex, rows.get(0).rowNumber(), rows.get(rows.size() - 1).rowNumber());
+        }
+
+        /**
+         * 预检模式下的批次处理：内容变化的行按编码是否已存在计为更新或新增
+         * （内容未变化的行已在 resolveRow 中计为未变化）
+         */
+        private void previewBatch(List<MaterialRepository.MaterialBatchData> batch) {
+            for (MaterialRepository.MaterialBatchData data : batch) {
+                if (existingContentHashes.containsKey(data.code())) {
+                    updatedCount.incrementAndGet();
                 } else {
-                    // 使用指定的物料组代码
-                    materialGroup = materialGroupCache.get(materialGroupCode.trim());
+                    insertedCount.incrementAndGet();
                 }
-                
-                // 验证必要字段
-                if (baseUnitCode == null || baseUnitCode.trim().isEmpty()) {
-                    if (errors.size() < MAX_ERROR_COUNT) {
-                        errors.add(new MaterialImportResponse.ImportError(
-                                "物料", rowNum, "FBaseUnitId", "基本单位编码为空"));
-                    }
-                    continue;
+            }
+            successCount.addAndGet(batch.size());
+        }
+
+        /**
+         * 解析单行的物料组和单位引用，失败时记录错误并返回 null
+         */
+        private MaterialRepository.MaterialBatchData resolveRow(MaterialRowData rowData) {
+            MaterialExcelRow data = rowData.data();
+            int rowNum = rowData.rowNumber();
+
+            String materialGroupCode = data.getMaterialGroupCode();
+            String baseUnitCode = data.getBaseUnitCode();
+
+            // 如果物料组代码为空，尝试通过前缀匹配
+            MaterialGroup materialGroup;
+            if (materialGroupCode == null) {
+                // 尝试前缀匹配
+                materialGroup = prefixIndex.findLongestPrefix(data.getCode());
+
+                if (materialGroup == null) {
+                    // 前缀匹配失败，记录错误并跳过
+                    recordError(new MaterialImportResponse.ImportError(
+                            "物料", rowNum, "FMaterialGroup",
+                            String.format("无法通过前缀匹配到物料组：%s", data.getCode())));
+                    return null;
                 }
-                
-                Unit baseUnit = unitCache.get(baseUnitCode.trim());
-                
-                if (materialGroup == null || baseUnit == null) {
-                    if (errors.size() < MAX_ERROR_COUNT) {
-                        if (materialGroup == null) {
-                            errors.add(new MaterialImportResponse.ImportError(
-                                    "物料", rowNum, "FMaterialGroup",
-                                    String.format("物料组不存在：%s", materialGroupCode)));
-                        }
-                        if (baseUnit == null) {
-                            errors.add(new MaterialImportResponse.ImportError(
-                                    "物料", rowNum, "FBaseUnitId",
-                                    String.format("基本单位不存在：%s", baseUnitCode)));
-                        }
-                    }
-                    continue;
+            } else {
+                // 使用指定的物料组代码
+                materialGroup = materialGroupCache.get(materialGroupCode);
+            }
+
+            // 验证必要字段
+            if (baseUnitCode == null) {
+                recordError(new MaterialImportResponse.ImportError(
+                        "物料", rowNum, "FBaseUnitId", "基本单位编码为空"));
+                return null;
+            }
+
+            Unit baseUnit = unitCache.get(baseUnitCode);
+
+            if (materialGroup == null || baseUnit == null) {
+                if (materialGroup == null) {
+                    recordError(new MaterialImportResponse.ImportError(
+                            "物料", rowNum, "FMaterialGroup",
+                            String.format("物料组不存在：%s", materialGroupCode)));
                 }
-                
-                if (materialGroup.getId() == null || baseUnit.getId() == null) {
-                    continue;
+                if (baseUnit == null) {
+                    recordError(new MaterialImportResponse.ImportError(
+                            "物料", rowNum, "FBaseUnitId",
+                            String.format("基本单位不存在：%s", baseUnitCode)));
                 }
-                
-                codeToBatchData.put(data.getCode(), new MaterialBatchData(
-                        data.getCode(),
-                        data.getName() != null ? data.getName() : data.getCode(),
-                        materialGroup.getId(),
-                        baseUnit.getId(),
-                        data.getErpClsId() != null && !data.getErpClsId().trim().isEmpty() 
-                                ? data.getErpClsId().trim() : null,
-                        data
-                ));
-            }
-
-            // 分批并行插入物料
-            List<MaterialBatchData> batchDataList = new ArrayList<>(codeToBatchData.values());
-            
-            for (int i = 0; i < batchDataList.size(); i += BATCH_INSERT_SIZE) {
-                int end = Math.min(i + BATCH_INSERT_SIZE, batchDataList.size());
-                List<MaterialBatchData> batch = new ArrayList<>(batchDataList.subList(i, end));
-                int batchIndex = i / BATCH_INSERT_SIZE + 1;
-                
-                // 异步提交批次处理任务
-                processBatchAsync(batch, batchIndex, codeToBatchData, materialGroupCache, unitCache);
+                return null;
             }
-            
-            // 注意：等待操作在外部调用 waitForCompletion() 方法执行
+
+            if (materialGroup.getId() == null || baseUnit.getId() == null) {
+                return null;
+            }
+
+            // 同一个 INSERT ... ON CONFLICT 语句不能两次更新同一行，并发批次之间也不应争抢同一行
+            if (!submittedCodes.add(data.getCode())) {
+                recordError(new MaterialImportResponse.ImportError(
+                        "物料", rowNum, "FNumber",
+                        String.format("物料编码重复，已忽略：%s", data.getCode())));
+                return null;
+            }
+
+            // 上次导入中已提交的行（校验在内存中完成，错误照常报告），不再执行其SQL
+            if (committedRows.contains(rowNum)) {
+                resumedCount.incrementAndGet();
+                skippedCount.incrementAndGet();
+                successCount.incrementAndGet();
+                return null;
+            }
+
+            // 所有列在读取线程上完成规整（空白单元格视为 null），批次线程只负责写入
+            String name = data.getName() != null ? data.getName() : data.getCode();
+            String specification = CellNormalizer.trimToNull(data.getSpecification());
+            String mnemonicCode = CellNormalizer.trimToNull(data.getMnemonicCode());
+            String oldNumber = CellNormalizer.trimToNull(data.getOldNumber());
+            String description = CellNormalizer.trimToNull(data.getDescription());
+            String erpClsId = data.getErpClsId();
+            // 指纹使用解析后的物料组和单位ID，前缀匹配结果变化时也视为内容变化
+            long contentHash = RowFingerprint.builder()
+                    .add(data.getCode())
+                    .add(name)
+                    .add(specification)
+                    .add(mnemonicCode)
+                    .add(oldNumber)
+                    .add(description)
+                    .add(erpClsId)
+                    .add(materialGroup.getId())
+                    .add(baseUnit.getId())
+                    .build();
+
+            // 内容与上次导入一致，不发送到数据库
+            Long existingHash = existingContentHashes.get(data.getCode());
+            if (existingHash != null && existingHash == contentHash) {
+                skippedCount.incrementAndGet();
+                successCount.incrementAndGet();
+                return null;
+            }
+
+            return new MaterialRepository.MaterialBatchData(
+                    data.getCode(),
+                    name,
+                    specification,
+                    mnemonicCode,
+                    oldNumber,
+                    description,
+                    erpClsId,
+                    materialGroup.getId(),
+                    baseUnit.getId(),
+                    contentHash
+            );
         }
-        
+
         /**
          * 异步处理批次（批量插入）
+         * 在读取线程上获取许可：在途批次达到当前上限时阻塞读取，形成背压
          */
-        private void processBatchAsync(List<MaterialBatchData> batch, int batchIndex,
-                                      Map<String, MaterialBatchData> codeToBatchData,
-                                      Map<String, MaterialGroup> materialGroupCache,
-                                      Map<String, Unit> unitCache) {
+        private void processBatchAsync(List<MaterialRepository.MaterialBatchData> batch, int batchIndex,
+                                       int firstRow, int lastRow) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("物料导入被中断", e);
+            }
+
             CompletableFuture<BatchResult> future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    // 获取信号量许可，限制并发数量
-                    batchSemaphore.acquire();
-                    try {
-                        return processBatch(batch, batchIndex, codeToBatchData, materialGroupCache, unitCache);
-                    } finally {
-                        // 释放信号量许可
-                        batchSemaphore.release();
+                    if (progress.isCancelled()) {
+                        return new BatchResult(0, List.of());
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    logger.warn("批次处理被中断: 批次{}", batchIndex);
-                    return new BatchResult(0, List.of(new MaterialImportResponse.ImportError(
-                            "物料", 0, null, "批次处理被中断")), new ArrayList<>());
+                    return processBatch(batch, batchIndex, firstRow, lastRow);
                 } catch (Exception e) {
                     logger.error("批次处理异常: 批次{}", batchIndex, e);
                     return new BatchResult(0, List.of(new MaterialImportResponse.ImportError(
-                            "物料", 0, null, "批次处理异常: " + e.getMessage())), new ArrayList<>());
+                            "物料", 0, null, "批次处理异常: " + e.getMessage())));
+                } finally {
+                    // 释放在途批次许可
+                    limiter.release();
                 }
             }, MaterialImportService.this.executorService);
             futures.add(future);
         }
         
         /**
-         * 处理单个批次（批量插入）
+         * 处理单个批次：一条语句写入所有列，内容未变化的行不产生写入；检查点与数据在同一事务中提交
          */
-        private BatchResult processBatch(List<MaterialBatchData> batch, int batchIndex,
-                                        Map<String, MaterialBatchData> codeToBatchData,
-                                        Map<String, MaterialGroup> materialGroupCache,
-                                        Map<String, Unit> unitCache) {
+        private BatchResult processBatch(List<MaterialRepository.MaterialBatchData> batch, int batchIndex,
+                                         int firstRow, int lastRow) {
             long startTime = System.currentTimeMillis();
             List<MaterialImportResponse.ImportError> batchErrors = new ArrayList<>();
-            AtomicInteger batchSuccessCount = new AtomicInteger(0);
-            List<Material> materialsToUpdate = new ArrayList<>();
+            int batchSuccessCount = 0;
             
             try {
                 logger.debug("批次{}开始处理，共{}条数据", batchIndex, batch.size());
-                // 在独立事务中批量插入
-                List<Material> batchResult = MaterialImportService.this.transactionTemplate.execute(status -> {
-                    List<MaterialRepository.MaterialBatchData> insertData = new ArrayList<>();
-                    for (MaterialBatchData data : batch) {
-                        insertData.add(new MaterialRepository.MaterialBatchData(
-                                data.code(),
-                                data.name(),
-                                data.materialGroupId(),
-                                data.baseUnitId(),
-                                data.erpClsId()
-                        ));
-                    }
-                    
-                    return materialRepository.batchInsertOrGetByCode(insertData);
+                // 在独立事务中批量插入/更新（单次往返）
+                long insertStartNanos = System.nanoTime();
+                MaterialRepository.UpsertCounts counts = MaterialImportService.this.transactionTemplate.execute(status -> {
+                    MaterialRepository.UpsertCounts upserted = bulkLoad
+                            ? materialRepository.bulkUpsertByCode(batch)
+                            : materialRepository.upsertByCode(batch);
+                    checkpointService.recordCommitted(ImportJobType.MATERIAL, jobId, MATERIAL_SHEET,
+                            batchIndex, firstRow, lastRow, batch.size());
+                    return upserted;
                 });
                 
-                // 建立编码到物料的映射（在事务外执行，避免持有连接）
-                Map<String, Material> codeToMaterial = new HashMap<>();
-                if (batchResult != null) {
-                    for (Material material : batchResult) {
-                        codeToMaterial.put(material.getCode(), material);
-                    }
-                }
-                
-                // 收集需要更新的物料（在事务外准备数据）
-                for (MaterialBatchData data : batch) {
-                    Material material = codeToMaterial.get(data.code());
-                    if (material != null) {
-                        // 设置关联对象
-                        MaterialBatchData batchData = codeToBatchData.get(data.code());
-                        MaterialExcelRow excelRow = batchData.excelRow();
-                        
-                        String materialGroupCode = excelRow.getMaterialGroupCode();
-                        String baseUnitCode = excelRow.getBaseUnitCode();
-                        
-                        if (material.getMaterialGroup() == null && materialGroupCode != null && !materialGroupCode.trim().isEmpty()) {
-                            material.setMaterialGroup(materialGroupCache.get(materialGroupCode.trim()));
-                        }
-                        if (material.getBaseUnit() == null && baseUnitCode != null && !baseUnitCode.trim().isEmpty()) {
-                            material.setBaseUnit(unitCache.get(baseUnitCode.trim()));
-                        }
-                        
-                        // 检查是否需要更新字段
-                        boolean needUpdate = false;
-                        
-                        if (excelRow.getSpecification() != null && !excelRow.getSpecification().trim().isEmpty()) {
-                            material.setSpecification(excelRow.getSpecification().trim());
-                            needUpdate = true;
-                        }
-                        if (excelRow.getMnemonicCode() != null && !excelRow.getMnemonicCode().trim().isEmpty()) {
-                            material.setMnemonicCode(excelRow.getMnemonicCode().trim());
-                            needUpdate = true;
-                        }
-                        if (excelRow.getOldNumber() != null && !excelRow.getOldNumber().trim().isEmpty()) {
-                            material.setOldNumber(excelRow.getOldNumber().trim());
-                            needUpdate = true;
-                        }
-                        if (excelRow.getDescription() != null && !excelRow.getDescription().trim().isEmpty()) {
-                            material.setDescription(excelRow.getDescription().trim());
-                            needUpdate = true;
-                        }
-                        if (excelRow.getErpClsId() != null && !excelRow.getErpClsId().trim().isEmpty()) {
-                            material.setErpClsId(excelRow.getErpClsId().trim());
-                            needUpdate = true;
-                        }
-                        
-                        if (needUpdate) {
-                            materialsToUpdate.add(material);
-                        }
-                        
-                        batchSuccessCount.incrementAndGet();
-                    }
-                }
-                
-                long insertTime = System.currentTimeMillis();
-                long insertDuration = insertTime - startTime;
-                
-                logger.info("批次{}批量插入完成：处理{}条数据，耗时{}ms", 
-                        batchIndex, batch.size(), insertDuration);
-                
-                // 批量更新需要更新的物料（在同一批次中处理）
-                if (!materialsToUpdate.isEmpty()) {
-                    long updateStartTime = System.currentTimeMillis();
-                    MaterialImportService.this.transactionTemplate.executeWithoutResult(status -> {
-                        MaterialImportService.this.materialRepository.saveAll(materialsToUpdate);
-                    });
-                    long updateDuration = System.currentTimeMillis() - updateStartTime;
-                    logger.info("批次{}批量更新完成：更新{}条数据，耗时{}ms", 
-                            batchIndex, materialsToUpdate.size(), updateDuration);
+                limiter.onBatchCommitted(batch.size(), System.nanoTime() - insertStartNanos);
+                progress.batchCommitted();
+                // 语句执行成功即整批成功（包括内容未变化而跳过写入的行）
+                batchSuccessCount = batch.size();
+                if (counts != null) {
+                    insertedCount.addAndGet(counts.inserted());
+                    updatedCount.addAndGet(counts.updated());
+                    skippedCount.addAndGet(batch.size() - counts.inserted() - counts.updated());
                 }
                 
                 long totalDuration = System.currentTimeMillis() - startTime;
-                logger.info("批次{}处理完成：成功{}条，总耗时{}ms，平均{}ms/条", 
-                        batchIndex, batchSuccessCount.get(), totalDuration,
-                        batchSuccessCount.get() > 0 ? totalDuration / batchSuccessCount.get() : 0);
+                logger.info("批次{}处理完成：{}条数据，新增{}条，更新{}条，未变化{}条，耗时{}ms",
+                        batchIndex, batch.size(),
+                        counts != null ? counts.inserted() : 0,
+                        counts != null ? counts.updated() : 0,
+                        counts != null ? batch.size() - counts.inserted() - counts.updated() : 0,
+                        totalDuration);
                 
             } catch (Exception e) {
                 long failedDuration = System.currentTimeMillis() - startTime;
+                limiter.onBatchFailed(TimeUnit.MILLISECONDS.toNanos(failedDuration));
                 logger.error("批次{}批量导入失败: {}，耗时{}ms", batchIndex, e.getMessage(), failedDuration, e);
+                checkpointService.recordFailed(ImportJobType.MATERIAL, jobId, MATERIAL_SHEET,
+                        batchIndex, firstRow, lastRow, batch.size(), e.getMessage());
                 // 整批标记为失败
                 if (batchErrors.size() < MAX_ERROR_COUNT) {
                     batchErrors.add(new MaterialImportResponse.ImportError(
@@ -705,7 +948,7 @@ public class MaterialImportService {
                 }
             }
             
-            return new BatchResult(batchSuccessCount.get(), batchErrors, materialsToUpdate);
+            return new BatchResult(batchSuccessCount, batchErrors);
         }
         
         /**
@@ -737,6 +980,19 @@ public class MaterialImportService {
             }
         }
 
+        /**
+         * 出错时等待已提交的批次结束，忽略其结果（批次在执行前检查取消标记）
+         */
+        public void awaitQuietly() {
+            for (CompletableFuture<BatchResult> future : futures) {
+                try {
+                    future.join();
+                } catch (Exception e) {
+                    logger.debug("批次异常结束: {}", e.getMessage());
+                }
+            }
+        }
+
         /**
          * 收集所有批次的处理结果
          */
@@ -745,7 +1001,7 @@ public class MaterialImportService {
                 try {
                     BatchResult result = future.get();
                     successCount.addAndGet(result.successCount());
-                    errors.addAll(result.errors());
+                    result.errors().forEach(this::recordError);
                 } catch (CancellationException e) {
                     logger.warn("批次被取消");
                 } catch (Exception e) {
@@ -759,20 +1015,7 @@ public class MaterialImportService {
          */
         private record BatchResult(
                 int successCount,
-                List<MaterialImportResponse.ImportError> errors,
-                List<Material> materialsToUpdate
-        ) {}
-        
-        /**
-         * 物料批量插入数据（内部使用）
-         */
-        private record MaterialBatchData(
-                String code,
-                String name,
-                Long materialGroupId,
-                Long baseUnitId,
-                String erpClsId,
-                MaterialExcelRow excelRow
+                List<MaterialImportResponse.ImportError> errors
         ) {}
         
         /**
@@ -784,82 +1027,57 @@ public class MaterialImportService {
         ) {}
 
         /**
-         * 预加载物料组和单位数据
-         * 优化：使用批量查询替代循环查询，大幅提升性能
-         * 
-         * @return 所有物料组代码集合（用于前缀匹配）
+         * 预加载物料组数据（物料组导入完成后执行一次）
+         * 导入的物料组和数据库中的所有物料组都加入缓存，并构建前缀匹配索引
          */
-        private Set<String> preloadAllData(List<MaterialRowData> materials,
-                                    Map<String, MaterialGroup> materialGroupCache,
-                                    Map<String, Unit> unitCache) {
-            Set<String> materialGroupCodes = new HashSet<>();
-            Set<String> unitCodes = new HashSet<>();
-
-            // 收集所有需要查询的数据
-            for (MaterialRowData rowData : materials) {
-                MaterialExcelRow row = rowData.data();
-                String materialGroupCode = row.getMaterialGroupCode();
-                String baseUnitCode = row.getBaseUnitCode();
+        private void preloadMaterialGroups() {
+            materialGroupCache.putAll(importedMaterialGroupCache);
 
-                if (materialGroupCode != null && !materialGroupCode.trim().isEmpty()) {
-                    materialGroupCodes.add(materialGroupCode.trim());
-                }
-
-                if (baseUnitCode != null && !baseUnitCode.trim().isEmpty()) {
-                    unitCodes.add(baseUnitCode.trim());
-                }
+            List<MaterialGroup> allGroups = MaterialImportService.this.materialGroupRepository.findAll();
+            for (MaterialGroup group : allGroups) {
+                // 导入缓存中的对象优先
+                materialGroupCache.putIfAbsent(group.getCode(), group);
             }
+            prefixIndex = MaterialGroupPrefixIndex.build(importedMaterialGroupCache.values(), allGroups);
 
-            // 批量查询物料组：过滤掉已缓存的编码，使用IN查询一次性获取
-            List<String> materialGroupCodesToQuery = materialGroupCodes.stream()
-                    .filter(code -> !materialGroupCache.containsKey(code))
-                    .toList();
+            logger.debug("预加载物料组完成：物料组 {} 个，前缀索引 {} 个编码",
+                    materialGroupCache.size(), prefixIndex.size());
+        }
 
-            if (!materialGroupCodesToQuery.isEmpty()) {
-                // 分批查询，避免IN查询参数过多
-                for (int i = 0; i < materialGroupCodesToQuery.size(); i += BATCH_QUERY_CHUNK_SIZE) {
-                    int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, materialGroupCodesToQuery.size());
-                    List<String> chunk = materialGroupCodesToQuery.subList(i, end);
-                    materialGroupRepository.findByCodeIn(chunk).forEach(group -> {
-                        materialGroupCache.put(group.getCode(), group);
-                    });
-                }
+        /**
+         * 预加载数据库中已有物料的内容指纹（物料组就绪后、第一个批次提交前执行一次）
+         */
+        private void preloadContentHashes() {
+            for (Object[] row : MaterialImportService.this.materialRepository.findAllContentHashes()) {
+                existingContentHashes.put((String) row[0], row[1] != null ? ((Number) row[1]).longValue() : null);
             }
+            logger.debug("预加载物料内容指纹完成：{} 个", existingContentHashes.size());
+        }
 
-            // 批量查询单位：使用IN查询一次性获取
-            if (!unitCodes.isEmpty()) {
-                List<String> unitCodesList = new ArrayList<>(unitCodes);
-                // 分批查询，避免IN查询参数过多
-                for (int i = 0; i < unitCodesList.size(); i += BATCH_QUERY_CHUNK_SIZE) {
-                    int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, unitCodesList.size());
-                    List<String> chunk = unitCodesList.subList(i, end);
-                    unitRepository.findByCodeIn(chunk).forEach(unit -> {
-                        unitCache.put(unit.getCode(), unit);
-                    });
+        /**
+         * 预加载当前窗口引用的单位
+         * 优化：使用批量查询替代循环查询，已查询过的编码不再重复查询
+         */
+        private void preloadUnits(List<MaterialRowData> rows) {
+            Set<String> unitCodes = new HashSet<>();
+            for (MaterialRowData rowData : rows) {
+                String baseUnitCode = rowData.data().getBaseUnitCode();
+                if (baseUnitCode != null && queriedUnitCodes.add(baseUnitCode)) {
+                    unitCodes.add(baseUnitCode);
                 }
             }
 
-            // 预加载所有物料组代码（用于前缀匹配）
-            // 查询数据库中所有物料组代码，过滤掉已经缓存的
-            Set<String> allMaterialGroupCodes = new HashSet<>();
-            // 首先添加已缓存的物料组代码
-            allMaterialGroupCodes.addAll(materialGroupCache.keySet());
-            
-            // 查询数据库中所有物料组代码（分批查询以避免一次性加载过多）
-            List<MaterialGroup> allGroups = MaterialImportService.this.materialGroupRepository.findAll();
-            for (MaterialGroup group : allGroups) {
-                String code = group.getCode();
-                allMaterialGroupCodes.add(code);
-                // 如果不在缓存中，也加入缓存
-                if (!materialGroupCache.containsKey(code)) {
-                    materialGroupCache.put(code, group);
-                }
+            if (unitCodes.isEmpty()) {
+                return;
             }
 
-            logger.debug("预加载完成：物料组 {} 个，单位 {} 个，所有物料组代码 {} 个",
-                    materialGroupCache.size(), unitCache.size(), allMaterialGroupCodes.size());
-            
-            return allMaterialGroupCodes;
+            // 分批查询，避免IN查询参数过多
+            List<String> unitCodesList = new ArrayList<>(unitCodes);
+            for (int i = 0; i < unitCodesList.size(); i += BATCH_QUERY_CHUNK_SIZE) {
+                int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, unitCodesList.size());
+                List<String> chunk = unitCodesList.subList(i, end);
+                unitRepository.findByCodeIn(chunk).forEach(unit -> unitCache.put(unit.getCode(), unit));
+            }
         }
 
         public MaterialImportResponse.MaterialImportResult getResult() {
@@ -867,7 +1085,7 @@ public class MaterialImportService {
             int success = successCount.get();
             int failure = total - success;
             return new MaterialImportResponse.MaterialImportResult(total, success, failure,
-                    new ArrayList<>(errors));
+                    insertedCount.get(), updatedCount.get(), skippedCount.get(), errors.toList());
         }
     }
 
@@ -878,57 +1096,4 @@ public class MaterialImportService {
     private record MaterialGroupData(int rowNumber, String code, String name, String description, String parentCode) {
     }
 
-    /**
-     * 通过物料编码前缀匹配物料组
-     * 优先从导入缓存中匹配，再从数据库匹配
-     * 使用最长匹配原则：如果有多个匹配，选择物料组代码最长的那个
-     *
-     * @param materialCode 物料编码
-     * @param importedMaterialGroupCache 导入的物料组缓存（code -> MaterialGroup）
-     * @param allMaterialGroupCodes 所有物料组代码集合（用于数据库匹配）
-     * @return 匹配到的物料组，如果未找到返回 null
-     */
-    private MaterialGroup findMaterialGroupByPrefix(String materialCode,
-                                                    Map<String, MaterialGroup> importedMaterialGroupCache,
-                                                    Set<String> allMaterialGroupCodes) {
-        if (materialCode == null || materialCode.trim().isEmpty()) {
-            return null;
-        }
-
-        String trimmedCode = materialCode.trim();
-        MaterialGroup matchedGroup = null;
-        int maxLength = 0;
-
-        // 1. 优先从导入缓存中匹配
-        for (Map.Entry<String, MaterialGroup> entry : importedMaterialGroupCache.entrySet()) {
-            String groupCode = entry.getKey();
-            if (trimmedCode.startsWith(groupCode) && groupCode.length() > maxLength) {
-                maxLength = groupCode.length();
-                matchedGroup = entry.getValue();
-            }
-        }
-
-        // 2. 如果缓存中未找到，从数据库的物料组代码集合中匹配
-        if (matchedGroup == null && allMaterialGroupCodes != null) {
-            String matchedCode = null;
-            for (String groupCode : allMaterialGroupCodes) {
-                if (trimmedCode.startsWith(groupCode) && groupCode.length() > maxLength) {
-                    maxLength = groupCode.length();
-                    matchedCode = groupCode;
-                }
-            }
-
-            // 如果找到匹配的代码，从数据库查询对应的物料组
-            if (matchedCode != null) {
-                matchedGroup = materialGroupRepository.findByCode(matchedCode).orElse(null);
-                if (matchedGroup != null) {
-                    // 将查询到的物料组加入缓存，避免后续重复查询
-                    importedMaterialGroupCache.put(matchedCode, matchedGroup);
-                }
-            }
-        }
-
-        return matchedGroup;
-    }
-
 }
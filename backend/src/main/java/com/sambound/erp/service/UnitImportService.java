@@ -1,23 +1,33 @@
 package com.sambound.erp.service;
 
 import cn.idev.excel.FastExcel;
-import cn.idev.excel.context.AnalysisContext;
-import cn.idev.excel.read.listener.ReadListener;
 import com.sambound.erp.dto.UnitExcelRow;
 import com.sambound.erp.dto.UnitImportResponse;
 import com.sambound.erp.entity.Unit;
 import com.sambound.erp.entity.UnitGroup;
+import com.sambound.erp.exception.ImportCancelledException;
 import com.sambound.erp.repository.UnitRepository;
 import com.sambound.erp.repository.UnitGroupRepository;
+import com.sambound.erp.service.importer.AdaptiveBatchLimiter;
+import com.sambound.erp.service.importer.AdaptiveBatchTuner;
+import com.sambound.erp.service.importer.BatchProfile;
+import com.sambound.erp.service.importer.BoundedErrorList;
+import com.sambound.erp.service.importer.CellNormalizer;
+import com.sambound.erp.service.importer.CsvRowReader;
+import com.sambound.erp.service.importer.ExcelRowListener;
+import com.sambound.erp.service.importer.ImportFile;
+import com.sambound.erp.service.importer.ImportProgress;
+import com.sambound.erp.service.importer.ImportRowHandler;
+import com.sambound.erp.service.importer.RowFingerprint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.transaction.TransactionDefinition;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.*;
@@ -28,8 +38,14 @@ public class UnitImportService {
 
     private static final Logger logger = LoggerFactory.getLogger(UnitImportService.class);
 
-    // 批次大小：每批处理100条记录
-    private static final int BATCH_SIZE = 100;
+    // 批次大小和在途批次数由自适应调节器调节：初始每批100条，4个批次并发
+    // 单位逐行写入，批次越大事务越长，目标提交耗时设得较短
+    private static final BatchProfile BATCH_PROFILE =
+            new BatchProfile("unit", 100, 20, 1000, 4, 10, 3000);
+    // 批量查询时的分片大小，避免IN查询参数过多
+    private static final int BATCH_QUERY_CHUNK_SIZE = 1000;
+    // 导入结果中保留的错误条数上限
+    private static final int MAX_ERROR_COUNT = 1000;
     
     private final UnitService unitService;
     private final UnitRepository unitRepository;
@@ -37,16 +53,19 @@ public class UnitImportService {
     private final TransactionTemplate transactionTemplate;
     private final PlatformTransactionManager transactionManager;
     private final ExecutorService executorService;
+    private final AdaptiveBatchTuner batchTuner;
 
     public UnitImportService(
             UnitService unitService,
             UnitRepository unitRepository,
             UnitGroupRepository unitGroupRepository,
-            PlatformTransactionManager transactionManager) {
+            PlatformTransactionManager transactionManager,
+            AdaptiveBatchTuner batchTuner) {
         this.unitService = unitService;
         this.unitRepository = unitRepository;
         this.unitGroupRepository = unitGroupRepository;
         this.transactionManager = transactionManager;
+        this.batchTuner = batchTuner;
         // 创建TransactionTemplate用于程序式事务管理
         // 使用 PROPAGATION_REQUIRES_NEW 确保独立事务，避免嵌套事务问题
         this.transactionTemplate = new TransactionTemplate(transactionManager);
@@ -57,65 +76,104 @@ public class UnitImportService {
         this.executorService = Executors.newVirtualThreadPerTaskExecutor();
     }
 
-    public UnitImportResponse importFromExcel(MultipartFile file) {
+    /**
+     * 导入单位
+     *
+     * @param file     已暂存的导入文件（两遍读取各自打开文件流，不在内存中缓存文件内容）
+     * @param progress 导入进度，在行/批次边界检查取消标记
+     * @param dryRun   预检模式：完成全部校验并与现有数据比对，不开启写事务
+     */
+    public UnitImportResponse importFromExcel(ImportFile file, ImportProgress progress, boolean dryRun) {
         try {
-            // 缓存文件内容，以支持多次读取
-            byte[] fileBytes = file.getBytes();
-            
             // 第一遍读取：收集所有唯一的单位组编码
-            UnitGroupCollector collector = new UnitGroupCollector();
-            FastExcel.read(new ByteArrayInputStream(fileBytes), UnitExcelRow.class, collector)
-                    .sheet()
-                    .headRowNumber(2)  // 前两行为表头
-                    .doRead();
+            UnitGroupCollector collector = new UnitGroupCollector(progress);
+            readRows(file, collector);
             
-            // 预加载单位组到数据库
-            Map<String, UnitGroup> unitGroupCache = collector.preloadAndCache();
+            // 预加载单位组到数据库（预检模式只查询已有单位组）
+            Map<String, UnitGroup> unitGroupCache = dryRun ? collector.lookupExisting() : collector.preloadAndCache();
             logger.info("预加载了 {} 个单位组", unitGroupCache.size());
             
+            // 预加载已有单位的内容指纹，内容未变化的行不再写入
+            Map<String, Long> existingContentHashes = loadExistingContentHashes();
+            
             // 第二遍读取：导入单位数据
-            UnitDataImporter importer = new UnitDataImporter(unitGroupCache);
-            FastExcel.read(new ByteArrayInputStream(fileBytes), UnitExcelRow.class, importer)
-                    .sheet()
-                    .headRowNumber(2)  // 前两行为表头
-                    .doRead();
+            UnitDataImporter importer = new UnitDataImporter(unitGroupCache, existingContentHashes, progress, dryRun);
+            readRows(file, importer);
             
             // 等待所有异步批次处理完成
             importer.waitForCompletion();
             
             return importer.getResult();
         } catch (Exception e) {
+            if (progress.isCancelled()) {
+                logger.info("单位导入已取消: {}", file.originalFilename());
+                throw new ImportCancelledException("单位导入已取消");
+            }
             logger.error("Excel文件导入失败", e);
             throw new RuntimeException("Excel文件导入失败: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * 读取单位文件：CSV 按编码自动识别后逐行解析，Excel 读取第一个工作表
+     */
+    private void readRows(ImportFile file, ImportRowHandler<UnitExcelRow> handler) throws IOException {
+        if (CsvRowReader.isCsv(file)) {
+            CsvRowReader.read(file, UnitExcelRow.class, handler);
+            return;
+        }
+        try (InputStream inputStream = file.openStream()) {
+            FastExcel.read(inputStream, UnitExcelRow.class, new ExcelRowListener<>(handler))
+                    .sheet()
+                    .headRowNumber(2)  // 前两行为表头
+                    .doRead();
+        }
+    }
+    
+    /**
+     * 加载所有已有单位的编码和内容指纹（未记录指纹的单位值为 null，用于区分新增和更新）
+     * 单位数量很少，一次全部加载；导入过程中只读，可被批次线程并发访问
+     */
+    private Map<String, Long> loadExistingContentHashes() {
+        Map<String, Long> hashes = new HashMap<>();
+        for (Object[] row : unitRepository.findAllContentHashes()) {
+            hashes.put((String) row[0], row[1] != null ? ((Number) row[1]).longValue() : null);
+        }
+        return hashes;
+    }
     
     /**
      * 单位组收集器（第一遍读取）
      */
-    private class UnitGroupCollector implements ReadListener<UnitExcelRow> {
+    private class UnitGroupCollector implements ImportRowHandler<UnitExcelRow> {
         private final Map<String, String> unitGroupMap = new HashMap<>();
         private final AtomicInteger totalRows = new AtomicInteger(0);
+        private final ImportProgress progress;
+        private final CellNormalizer cells = new CellNormalizer();
+
+        UnitGroupCollector(ImportProgress progress) {
+            this.progress = progress;
+        }
         
         @Override
-        public void invoke(UnitExcelRow data, AnalysisContext context) {
+        public void handleRow(UnitExcelRow data, int rowIndex) {
+            progress.checkCancelled();
             totalRows.incrementAndGet();
             
             String unitGroupCode = data.getUnitGroupCode();
             String unitGroupName = data.getUnitGroupName();
             
-            if (unitGroupCode != null && !unitGroupCode.trim().isEmpty()) {
-                String code = unitGroupCode.trim();
-                String name = unitGroupName != null && !unitGroupName.trim().isEmpty() 
-                        ? unitGroupName.trim() 
-                        : code;
+            String code = cells.code(unitGroupCode);
+            if (code != null) {
+                String trimmedName = CellNormalizer.trimToNull(unitGroupName);
+                String name = trimmedName != null ? trimmedName : code;
                 // 如果同一个编码有多个名称，保留第一个遇到的名称
                 unitGroupMap.putIfAbsent(code, name);
             }
         }
         
         @Override
-        public void doAfterAllAnalysed(AnalysisContext context) {
+        public void afterAllRows() {
             logger.info("第一遍读取完成，共 {} 行数据，收集到 {} 个单位组", 
                     totalRows.get(), unitGroupMap.size());
         }
@@ -163,30 +221,65 @@ public class UnitImportService {
             
             return cache;
         }
+        
+        /**
+         * 预检模式：只读查询已有单位组，不存在的单位组以未持久化的对象代替（正式导入时会创建）
+         */
+        public Map<String, UnitGroup> lookupExisting() {
+            Map<String, UnitGroup> cache = new ConcurrentHashMap<>();
+            List<String> codes = new ArrayList<>(unitGroupMap.keySet());
+            for (int i = 0; i < codes.size(); i += BATCH_QUERY_CHUNK_SIZE) {
+                int end = Math.min(i + BATCH_QUERY_CHUNK_SIZE, codes.size());
+                unitGroupRepository.findByCodeIn(codes.subList(i, end))
+                        .forEach(unitGroup -> cache.put(unitGroup.getCode(), unitGroup));
+            }
+            for (Map.Entry<String, String> entry : unitGroupMap.entrySet()) {
+                cache.computeIfAbsent(entry.getKey(), code -> UnitGroup.builder()
+                        .code(code)
+                        .name(entry.getValue())
+                        .build());
+            }
+            return cache;
+        }
     }
     
     /**
      * 单位数据导入器（第二遍读取）
      */
-    private class UnitDataImporter implements ReadListener<UnitExcelRow> {
+    private class UnitDataImporter implements ImportRowHandler<UnitExcelRow> {
         private final Map<String, UnitGroup> unitGroupCache;
+        private final Map<String, Long> existingContentHashes;
         private final List<UnitExcelRow> batch = new ArrayList<>();
         private final List<CompletableFuture<BatchResult>> futures = new ArrayList<>();
         private final AtomicInteger successCount = new AtomicInteger(0);
         private final AtomicInteger totalRows = new AtomicInteger(0);
-        private final List<UnitImportResponse.ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger insertedCount = new AtomicInteger(0);
+        private final AtomicInteger updatedCount = new AtomicInteger(0);
+        private final AtomicInteger skippedCount = new AtomicInteger(0);
+        // 结果中只保留前 MAX_ERROR_COUNT 条错误，完整错误写入任务的错误报告文件
+        private final BoundedErrorList<UnitImportResponse.ImportError> errors = new BoundedErrorList<>(MAX_ERROR_COUNT);
         
-        public UnitDataImporter(Map<String, UnitGroup> unitGroupCache) {
+        private final ImportProgress progress;
+        private final boolean dryRun;
+        private final AdaptiveBatchLimiter limiter = batchTuner.limiter(BATCH_PROFILE);
+        
+        public UnitDataImporter(Map<String, UnitGroup> unitGroupCache, Map<String, Long> existingContentHashes,
+                                ImportProgress progress, boolean dryRun) {
             this.unitGroupCache = unitGroupCache;
+            this.existingContentHashes = existingContentHashes;
+            this.progress = progress;
+            this.dryRun = dryRun;
         }
         
         @Override
-        public void invoke(UnitExcelRow data, AnalysisContext context) {
+        public void handleRow(UnitExcelRow data, int rowIndex) {
+            progress.checkCancelled();
             totalRows.incrementAndGet();
+            progress.rowParsed();
             
             // 累积批次
             batch.add(data);
-            if (batch.size() >= BATCH_SIZE) {
+            if (batch.size() >= limiter.batchSize()) {
                 // 异步提交批次处理任务
                 processBatchAsync(new ArrayList<>(batch));
                 batch.clear();
@@ -194,7 +287,7 @@ public class UnitImportService {
         }
         
         @Override
-        public void doAfterAllAnalysed(AnalysisContext context) {
+        public void afterAllRows() {
             // 处理剩余数据
             if (!batch.isEmpty()) {
                 processBatchAsync(new ArrayList<>(batch));
@@ -203,9 +296,23 @@ public class UnitImportService {
         }
         
         private void processBatchAsync(List<UnitExcelRow> batchData) {
+            // 在读取线程上获取许可，在途批次达到上限时阻塞读取
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("单位导入被中断", e);
+            }
             // 异步提交批次处理任务到线程池
             CompletableFuture<BatchResult> future = CompletableFuture.supplyAsync(() -> {
-                return processBatch(batchData);
+                try {
+                    if (progress.isCancelled()) {
+                        return new BatchResult(0, 0, 0, 0, List.of());
+                    }
+                    return processBatch(batchData);
+                } finally {
+                    limiter.release();
+                }
             }, executorService);
             futures.add(future);
         }
@@ -213,22 +320,56 @@ public class UnitImportService {
         private BatchResult processBatch(List<UnitExcelRow> batch) {
             List<UnitImportResponse.ImportError> batchErrors = new ArrayList<>();
             AtomicInteger batchSuccessCount = new AtomicInteger(0);
+            Map<RowOutcome, Integer> outcomeCounts = new EnumMap<>(RowOutcome.class);
             
-            // 每个批次在独立事务中处理
-            transactionTemplate.execute(status -> {
+            if (dryRun) {
+                // 预检：只做校验和比对，不开启事务，也不参与批次大小调节
                 for (UnitExcelRow data : batch) {
                     try {
-                        importUnitRow(data, unitGroupCache);
+                        outcomeCounts.merge(planUnitRow(data, unitGroupCache, existingContentHashes).outcome(), 1, Integer::sum);
                         batchSuccessCount.incrementAndGet();
                     } catch (Exception e) {
-                        logger.warn("导入单位数据失败: {}", e.getMessage());
                         batchErrors.add(new UnitImportResponse.ImportError(null, null, e.getMessage()));
+                        progress.recordError("单位", null, null, e.getMessage());
                     }
                 }
-                return null;
-            });
+                return toBatchResult(batchSuccessCount.get(), outcomeCounts, batchErrors);
+            }
             
-            return new BatchResult(batchSuccessCount.get(), batchErrors);
+            // 每个批次在独立事务中处理
+            long startNanos = System.nanoTime();
+            try {
+                transactionTemplate.execute(status -> {
+                    for (UnitExcelRow data : batch) {
+                        try {
+                            RowOutcome outcome = importUnitRow(data, unitGroupCache, existingContentHashes);
+                            outcomeCounts.merge(outcome, 1, Integer::sum);
+                            batchSuccessCount.incrementAndGet();
+                        } catch (Exception e) {
+                            logger.warn("导入单位数据失败: {}", e.getMessage());
+                            batchErrors.add(new UnitImportResponse.ImportError(null, null, e.getMessage()));
+                            progress.recordError("单位", null, null, e.getMessage());
+                        }
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                limiter.onBatchFailed(System.nanoTime() - startNanos);
+                throw e;
+            }
+            limiter.onBatchCommitted(batch.size(), System.nanoTime() - startNanos);
+            progress.batchCommitted();
+            
+            return toBatchResult(batchSuccessCount.get(), outcomeCounts, batchErrors);
+        }
+        
+        private BatchResult toBatchResult(int successCount, Map<RowOutcome, Integer> outcomeCounts,
+                                          List<UnitImportResponse.ImportError> errors) {
+            return new BatchResult(successCount,
+                    outcomeCounts.getOrDefault(RowOutcome.INSERTED, 0),
+                    outcomeCounts.getOrDefault(RowOutcome.UPDATED, 0),
+                    outcomeCounts.getOrDefault(RowOutcome.SKIPPED, 0),
+                    errors);
         }
         
         /**
@@ -268,7 +409,10 @@ public class UnitImportService {
                 try {
                     BatchResult result = future.get();
                     successCount.addAndGet(result.successCount());
-                    errors.addAll(result.errors());
+                    insertedCount.addAndGet(result.insertedCount());
+                    updatedCount.addAndGet(result.updatedCount());
+                    skippedCount.addAndGet(result.skippedCount());
+                    result.errors().forEach(errors::add);
                 } catch (CancellationException e) {
                     logger.warn("批次被取消");
                 } catch (Exception e) {
@@ -281,99 +425,113 @@ public class UnitImportService {
             int total = totalRows.get();
             int success = successCount.get();
             int failure = total - success;
-            return new UnitImportResponse(total, success, failure, new ArrayList<>(errors));
+            return new UnitImportResponse(total, success, failure,
+                    insertedCount.get(), updatedCount.get(), skippedCount.get(), errors.toList());
         }
     }
     
     /**
      * 导入单位行数据
+     *
+     * @return 该行的写入结果：新增、更新，或内容与上次导入一致而跳过
      */
-    private void importUnitRow(UnitExcelRow data, Map<String, UnitGroup> unitGroupCache) {
-        // 获取字段值
-        String unitCode = data.getCode();
-        String unitName = data.getName();
-        String unitGroupCode = data.getUnitGroupCode();
-        String numeratorStr = data.getNumerator();
-        String denominatorStr = data.getDenominator();
-
-        // 验证必填字段
-        if (unitCode == null || unitCode.trim().isEmpty()) {
-            throw new IllegalArgumentException("单位编码不能为空");
-        }
-        if (unitName == null || unitName.trim().isEmpty()) {
-            throw new IllegalArgumentException("单位名称不能为空");
-        }
-        if (unitGroupCode == null || unitGroupCode.trim().isEmpty()) {
-            throw new IllegalArgumentException("单位组编码不能为空");
-        }
-
-        // 从缓存中获取单位组
-        String code = unitGroupCode.trim();
-        UnitGroup unitGroup = unitGroupCache.get(code);
-        
-        if (unitGroup == null) {
-            throw new IllegalStateException("单位组未预加载，请确保单位组编码正确: " + code);
+    private RowOutcome importUnitRow(UnitExcelRow data, Map<String, UnitGroup> unitGroupCache,
+                                     Map<String, Long> existingContentHashes) {
+        UnitRowPlan plan = planUnitRow(data, unitGroupCache, existingContentHashes);
+        if (plan.outcome() == RowOutcome.SKIPPED) {
+            return RowOutcome.SKIPPED;
         }
 
         // 确保 UnitGroup 已经持久化并分配了 ID
-        if (unitGroup.getId() == null) {
-            throw new IllegalStateException("单位组未正确保存: " + unitGroupCode);
+        if (plan.unitGroup().getId() == null) {
+            throw new IllegalStateException("单位组未正确保存: " + plan.unitGroup().getCode());
         }
 
         // 创建或获取单位
         Unit unit = unitService.findOrCreateByCode(
-                unitCode.trim(),
-                unitName.trim(),
-                unitGroup
+                plan.code(),
+                plan.name(),
+                plan.unitGroup()
         );
 
         // 确保 Unit 已经持久化并分配了 ID
         if (unit.getId() == null) {
-            throw new IllegalStateException("单位未正确保存: " + unitCode);
+            throw new IllegalStateException("单位未正确保存: " + plan.code());
         }
 
-        // 如果有转换率信息，直接设置到单位实体
-        if (numeratorStr != null && !numeratorStr.trim().isEmpty()) {
-            try {
-                BigDecimal numerator = parseDecimal(numeratorStr);
-                BigDecimal denominator = denominatorStr != null && !denominatorStr.trim().isEmpty()
-                        ? parseDecimal(denominatorStr)
-                        : BigDecimal.ONE;
-
-                if (denominator.compareTo(BigDecimal.ZERO) <= 0) {
-                    throw new IllegalArgumentException("换算分母必须大于0");
-                }
-
-                // 直接将转换率设置到单位实体（相对于单位组的转换率）
-                unit.setNumerator(numerator);
-                unit.setDenominator(denominator);
-                unitRepository.save(unit);
-            } catch (NumberFormatException e) {
-                logger.warn("单位 {} 的转换率格式错误: {}", unitCode, e.getMessage());
-                // 转换率格式错误不影响单位导入，只记录警告
-            }
+        unit.setName(plan.name());
+        if (plan.numerator() != null) {
+            unit.setNumerator(plan.numerator());
+            unit.setDenominator(plan.denominator());
         }
+        unit.setContentHash(plan.contentHash());
+        unitRepository.save(unit);
+        return plan.outcome();
     }
     
     /**
-     * 解析数值字符串，移除千位分隔符和其他非数字字符（保留小数点和负号）
+     * 校验并规整单位行数据，与已有单位的内容指纹比对得出写入结果（不访问数据库）
+     * 正式导入和预检共用
      */
-    private BigDecimal parseDecimal(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            throw new NumberFormatException("数值字符串为空");
+    private UnitRowPlan planUnitRow(UnitExcelRow data, Map<String, UnitGroup> unitGroupCache,
+                                    Map<String, Long> existingContentHashes) {
+        // 获取字段值（去掉两端空白，空白视为未填写）
+        String trimmedCode = CellNormalizer.trimToNull(data.getCode());
+        String trimmedName = CellNormalizer.trimToNull(data.getName());
+        String unitGroupCode = CellNormalizer.trimToNull(data.getUnitGroupCode());
+
+        // 验证必填字段
+        if (trimmedCode == null) {
+            throw new IllegalArgumentException("单位编码不能为空");
         }
+        if (trimmedName == null) {
+            throw new IllegalArgumentException("单位名称不能为空");
+        }
+        if (unitGroupCode == null) {
+            throw new IllegalArgumentException("单位组编码不能为空");
+        }
+
+        // 从缓存中获取单位组
+        UnitGroup unitGroup = unitGroupCache.get(unitGroupCode);
         
-        // 移除空格、千位分隔符（逗号）和其他非数字字符（保留小数点、负号、E/e用于科学计数法）
-        String cleaned = value.trim()
-                .replaceAll("\\s+", "")  // 移除所有空格
-                .replaceAll("[,，]", ""); // 移除千位分隔符（中文和英文逗号）
-        
-        try {
-            return new BigDecimal(cleaned);
-        } catch (NumberFormatException e) {
-            logger.warn("无法解析数值: {}", value);
-            throw new NumberFormatException("无法解析数值: " + value + "，清理后为: " + cleaned);
+        if (unitGroup == null) {
+            throw new IllegalStateException("单位组未预加载，请确保单位组编码正确: " + unitGroupCode);
+        }
+
+        // 解析转换率（相对于单位组的转换率），允许空白和千位分隔符
+        BigDecimal numerator = null;
+        BigDecimal denominator = null;
+        CellNormalizer.ParsedDecimal parsedNumerator = CellNormalizer.parseDecimal(data.getNumerator());
+        if (!parsedNumerator.isEmpty()) {
+            CellNormalizer.ParsedDecimal parsedDenominator = CellNormalizer.parseDecimal(data.getDenominator());
+            if (parsedNumerator.invalid() || parsedDenominator.invalid()) {
+                // 转换率格式错误不影响单位导入，只记录警告
+                logger.warn("单位 {} 的转换率格式错误: 分子={}, 分母={}", trimmedCode,
+                        data.getNumerator(), data.getDenominator());
+            } else {
+                numerator = parsedNumerator.value();
+                denominator = parsedDenominator.orElse(BigDecimal.ONE);
+            }
+            if (denominator != null && denominator.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("换算分母必须大于0");
+            }
+        }
+
+        // 指纹覆盖导入会写入的字段（单位组不随导入修改）
+        long contentHash = RowFingerprint.builder()
+                .add(trimmedCode)
+                .add(trimmedName)
+                .add(numerator)
+                .add(denominator)
+                .build();
+        RowOutcome outcome;
+        Long existingHash = existingContentHashes.get(trimmedCode);
+        if (existingHash != null && existingHash == contentHash) {
+            outcome = RowOutcome.SKIPPED;
+        } else {
+            outcome = existingContentHashes.containsKey(trimmedCode) ? RowOutcome.UPDATED : RowOutcome.INSERTED;
         }
+        return new UnitRowPlan(trimmedCode, trimmedName, unitGroup, numerator, denominator, contentHash, outcome);
     }
     
     /**
@@ -381,6 +539,31 @@ public class UnitImportService {
      */
     private record BatchResult(
             int successCount,
+            int insertedCount,
+            int updatedCount,
+            int skippedCount,
             List<UnitImportResponse.ImportError> errors
     ) {}
+    
+    /**
+     * 规整后的单位行及其预期写入结果
+     */
+    private record UnitRowPlan(
+            String code,
+            String name,
+            UnitGroup unitGroup,
+            BigDecimal numerator,
+            BigDecimal denominator,
+            long contentHash,
+            RowOutcome outcome
+    ) {}
+    
+    /**
+     * 单行写入结果
+     */
+    private enum RowOutcome {
+        INSERTED,
+        UPDATED,
+        SKIPPED
+    }
 }
\ No newline at end of file
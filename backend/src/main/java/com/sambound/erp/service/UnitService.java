@@ -94,6 +94,8 @@ public class UnitService {
         if (request.enabled() != null) {
             unit.setEnabled(request.enabled());
         }
+        // 手工修改后清空内容指纹，下次导入时按文件内容重新写入
+        unit.setContentHash(null);
 
         unit = unitRepository.save(unit);
         
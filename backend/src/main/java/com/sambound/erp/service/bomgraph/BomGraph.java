@@ -0,0 +1,474 @@
+package com.sambound.erp.service.bomgraph;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 常驻内存的BOM结构图（不可变快照）
+ * 只保存结构和用量：BOM表头、明细、子项物料、单位和版本，物料名称等展示信息查询时按需批量读取。
+ *
+ * <p>存储采用 CSR（压缩稀疏行）布局，全部为基本类型数组：</p>
+ * <ul>
+ *     <li>物料ID升序排列后以下标作为稠密编号，表头和明细中只保存 int 下标；</li>
+ *     <li>明细按 (BOM ID, 序号) 排列，bomEdgeStart 给出每个BOM的明细区间（正查）；</li>
+ *     <li>usageEdges 按子项物料排列明细下标，usageStart 给出每个物料被使用的区间（反查）；</li>
+ *     <li>用量按 DECIMAL(18, 6) 存为放大 10^6 的 long，分母全部为 1 时不分配数组；</li>
+ *     <li>序号、损耗率、单位和子项BOM版本打包在一个 long 中，单位和版本为字典下标；
+ *     序号、单位或版本超出打包位数的明细，该字段写入溢出表，查询结果不变，只是这些明细多占一个表项。</li>
+ * </ul>
+ *
+ * <p>每条明细约 32 字节（子项 4 + 属性 8 + 分子 8 + 分母 8 + 反查下标 4），分母全为 1 时约 24 字节；
+ * 每个BOM约 24 字节，每个物料约 16 字节。</p>
+ *
+ * <p>实例创建后不再修改，可被多个线程并发读取。</p>
+ */
+public final class BomGraph {
+
+    public static final BomGraph EMPTY = new Builder(0, 0).build();
+
+    // 用量 DECIMAL(18, 6)、损耗率 DECIMAL(5, 2)，与 bom_items 的列定义一致
+    private static final int QUANTITY_SCALE = 6;
+    private static final int SCRAP_SCALE = 2;
+    private static final long QUANTITY_ONE = 1_000_000L;
+
+    // 明细属性打包：序号 20 位 | 损耗率 18 位 | 单位 12 位 | 子项BOM版本 14 位
+    private static final int VERSION_BITS = 14;
+    private static final int UNIT_BITS = 12;
+    private static final int SCRAP_BITS = 18;
+    private static final int UNIT_SHIFT = VERSION_BITS;
+    private static final int SCRAP_SHIFT = UNIT_SHIFT + UNIT_BITS;
+    private static final int SEQUENCE_SHIFT = SCRAP_SHIFT + SCRAP_BITS;
+    // 序号超过 20 位时存入溢出表
+    private static final int SEQUENCE_OVERFLOW = (1 << (Long.SIZE - SEQUENCE_SHIFT)) - 1;
+    // 损耗率编码为 未放大值 + 偏移 + 1，0 表示未设置
+    private static final int SCRAP_OFFSET = 100_000;
+    private static final int MAX_SCRAP_UNSCALED = 99_999;
+    // 单位、版本字典下标达到各自的最大编码时存入溢出表；版本字典下标 0 表示未配置
+    private static final int UNIT_OVERFLOW = (1 << UNIT_BITS) - 1;
+    private static final int VERSION_OVERFLOW = (1 << VERSION_BITS) - 1;
+
+    private final long[] materialIds;
+    private final int[] materialBomStart;
+    private final int[] materialBoms;
+    private final int[] usageStart;
+    private final int[] usageEdges;
+
+    private final long[] bomIds;
+    private final int[] bomMaterial;
+    private final int[] bomVersion;
+    private final int[] bomEdgeStart;
+
+    private final int[] edgeChild;
+    private final long[] edgeAttributes;
+    private final long[] edgeNumerator;
+    // null 表示全部为 1
+    private final long[] edgeDenominator;
+    private final Map<Integer, Integer> sequenceOverflow;
+    private final Map<Integer, Integer> unitOverflow;
+    private final Map<Integer, Integer> versionOverflow;
+
+    private final String[] versions;
+    private final long[] unitIds;
+
+    private BomGraph(Builder builder) {
+        int bomCount = builder.bomCount;
+        int edgeCount = builder.itemCount;
+
+        // 物料字典：表头物料和子项物料去重后升序排列
+        long[] allMaterials = new long[bomCount + edgeCount];
+        System.arraycopy(builder.bomMaterialIds, 0, allMaterials, 0, bomCount);
+        System.arraycopy(builder.itemChild, 0, allMaterials, bomCount, edgeCount);
+        Arrays.sort(allMaterials);
+        int materialCount = 0;
+        for (int i = 0; i < allMaterials.length; i++) {
+            if (i == 0 || allMaterials[i] != allMaterials[i - 1]) {
+                allMaterials[materialCount++] = allMaterials[i];
+            }
+        }
+        this.materialIds = Arrays.copyOf(allMaterials, materialCount);
+
+        this.bomIds = Arrays.copyOf(builder.bomIds, bomCount);
+        this.bomVersion = Arrays.copyOf(builder.bomVersion, bomCount);
+        this.bomMaterial = new int[bomCount];
+        for (int b = 0; b < bomCount; b++) {
+            bomMaterial[b] = Arrays.binarySearch(materialIds, builder.bomMaterialIds[b]);
+        }
+        this.bomEdgeStart = new int[bomCount + 1];
+        for (int b = 0; b < bomCount; b++) {
+            bomEdgeStart[b + 1] = bomEdgeStart[b] + builder.bomEdgeCount[b];
+        }
+
+        this.edgeChild = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeChild[e] = Arrays.binarySearch(materialIds, builder.itemChild[e]);
+        }
+        this.edgeAttributes = Arrays.copyOf(builder.itemAttributes, edgeCount);
+        this.edgeNumerator = Arrays.copyOf(builder.itemNumerator, edgeCount);
+        boolean allOne = true;
+        for (int e = 0; e < edgeCount && allOne; e++) {
+            allOne = builder.itemDenominator[e] == QUANTITY_ONE;
+        }
+        this.edgeDenominator = allOne ? null : Arrays.copyOf(builder.itemDenominator, edgeCount);
+        this.sequenceOverflow = Map.copyOf(builder.sequenceOverflow);
+        this.unitOverflow = Map.copyOf(builder.unitOverflow);
+        this.versionOverflow = Map.copyOf(builder.versionOverflow);
+
+        // 物料 → BOM、物料 → 使用该物料的明细：计数排序
+        this.materialBomStart = new int[materialCount + 1];
+        this.materialBoms = groupBy(bomMaterial, bomCount, materialBomStart);
+        this.usageStart = new int[materialCount + 1];
+        this.usageEdges = groupBy(edgeChild, edgeCount, usageStart);
+
+        this.versions = new String[builder.versionIndexes.size() + 1];
+        builder.versionIndexes.forEach((version, index) -> versions[index] = version);
+        this.unitIds = new long[builder.unitIndexes.size()];
+        builder.unitIndexes.forEach((unitId, index) -> unitIds[index] = unitId);
+    }
+
+    /**
+     * 按 keys 分组：返回按键排列的下标，start[key] 到 start[key + 1] 为该键的区间，同一键内保持原顺序
+     */
+    private static int[] groupBy(int[] keys, int count, int[] start) {
+        for (int i = 0; i < count; i++) {
+            start[keys[i] + 1]++;
+        }
+        for (int k = 1; k < start.length; k++) {
+            start[k] += start[k - 1];
+        }
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        int[] grouped = new int[count];
+        for (int i = 0; i < count; i++) {
+            grouped[next[keys[i]]++] = i;
+        }
+        return grouped;
+    }
+
+    public int bomCount() {
+        return bomIds.length;
+    }
+
+    public int edgeCount() {
+        return edgeChild.length;
+    }
+
+    public int materialCount() {
+        return materialIds.length;
+    }
+
+    /**
+     * 单位或版本种类超出打包位数、改存溢出表的明细数
+     */
+    public int overflowEdgeCount() {
+        Set<Integer> edges = new HashSet<>(unitOverflow.keySet());
+        edges.addAll(versionOverflow.keySet());
+        return edges.size();
+    }
+
+    /**
+     * 各数组占用的内存（字节，不含对象头和字典中的字符串）
+     */
+    public long estimatedBytes() {
+        long bytes = (long) materialIds.length * Long.BYTES
+                + (long) (materialBomStart.length + materialBoms.length + usageStart.length + usageEdges.length) * Integer.BYTES
+                + (long) bomIds.length * Long.BYTES
+                + (long) (bomMaterial.length + bomVersion.length + bomEdgeStart.length) * Integer.BYTES
+                + (long) edgeChild.length * Integer.BYTES
+                + (long) (edgeAttributes.length + edgeNumerator.length) * Long.BYTES
+                + (long) unitIds.length * Long.BYTES;
+        if (edgeDenominator != null) {
+            bytes += (long) edgeDenominator.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    // ---------- BOM ----------
+
+    /**
+     * BOM下标，不存在时返回 -1
+     */
+    public int bomIndex(long bomId) {
+        int index = Arrays.binarySearch(bomIds, bomId);
+        return index >= 0 ? index : -1;
+    }
+
+    public long bomId(int bom) {
+        return bomIds[bom];
+    }
+
+    public long bomMaterialId(int bom) {
+        return materialIds[bomMaterial[bom]];
+    }
+
+    public String bomVersion(int bom) {
+        return versions[bomVersion[bom]];
+    }
+
+    public int firstEdge(int bom) {
+        return bomEdgeStart[bom];
+    }
+
+    public int endEdge(int bom) {
+        return bomEdgeStart[bom + 1];
+    }
+
+    /**
+     * 按父项物料和版本查找BOM下标，不存在时返回 -1
+     */
+    public int findBom(long materialId, String version) {
+        int material = materialIndex(materialId);
+        if (material < 0) {
+            return -1;
+        }
+        for (int i = materialBomStart[material]; i < materialBomStart[material + 1]; i++) {
+            int bom = materialBoms[i];
+            if (versions[bomVersion[bom]].equals(version)) {
+                return bom;
+            }
+        }
+        return -1;
+    }
+
+    // ---------- 物料（反查） ----------
+
+    /**
+     * 物料下标，物料未出现在图中时返回 -1
+     */
+    public int materialIndex(long materialId) {
+        int index = Arrays.binarySearch(materialIds, materialId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * 使用该物料的明细区间起点（配合 {@link #usageEdge(int)} 使用）
+     */
+    public int firstUsage(int material) {
+        return usageStart[material];
+    }
+
+    public int endUsage(int material) {
+        return usageStart[material + 1];
+    }
+
+    public int usageEdge(int usage) {
+        return usageEdges[usage];
+    }
+
+    /**
+     * 明细所属的BOM下标（在明细区间起点上二分查找）
+     */
+    public int edgeBom(int edge) {
+        int low = 0;
+        int high = bomIds.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bomEdgeStart[mid] <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // ---------- 明细 ----------
+
+    public long childMaterialId(int edge) {
+        return materialIds[edgeChild[edge]];
+    }
+
+    public int sequence(int edge) {
+        int code = (int) (edgeAttributes[edge] >>> SEQUENCE_SHIFT);
+        return code == SEQUENCE_OVERFLOW ? sequenceOverflow.get(edge) : code;
+    }
+
+    public long unitId(int edge) {
+        int code = (int) (edgeAttributes[edge] >>> UNIT_SHIFT) & UNIT_OVERFLOW;
+        return unitIds[code == UNIT_OVERFLOW ? unitOverflow.get(edge) : code];
+    }
+
+    /**
+     * 子项配置的BOM版本，未配置时为 null
+     */
+    public String childBomVersion(int edge) {
+        int code = (int) edgeAttributes[edge] & VERSION_OVERFLOW;
+        return versions[code == VERSION_OVERFLOW ? versionOverflow.get(edge) : code];
+    }
+
+    public BigDecimal numerator(int edge) {
+        return BigDecimal.valueOf(edgeNumerator[edge], QUANTITY_SCALE);
+    }
+
+    public BigDecimal denominator(int edge) {
+        return BigDecimal.valueOf(edgeDenominator != null ? edgeDenominator[edge] : QUANTITY_ONE, QUANTITY_SCALE);
+    }
+
+    public BigDecimal scrapRate(int edge) {
+        int code = (int) (edgeAttributes[edge] >>> SCRAP_SHIFT) & ((1 << SCRAP_BITS) - 1);
+        return code == 0 ? null : BigDecimal.valueOf(code - SCRAP_OFFSET - 1, SCRAP_SCALE);
+    }
+
+    /**
+     * 结构图构建器
+     * 表头按BOM ID升序添加；明细按所属BOM ID升序成组添加，且所属BOM的表头须已添加。
+     * 所属BOM不存在的明细（读取表头和明细之间被删除的BOM）跳过。
+     */
+    public static final class Builder {
+
+        private long[] bomIds;
+        private long[] bomMaterialIds;
+        private int[] bomVersion;
+        private int[] bomEdgeCount;
+        private int bomCount;
+        // 当前明细所属BOM的下标
+        private int currentBom;
+
+        private long[] itemChild;
+        private long[] itemAttributes;
+        private long[] itemNumerator;
+        private long[] itemDenominator;
+        private int itemCount;
+        private int skippedItemCount;
+        private final Map<Integer, Integer> sequenceOverflow = new HashMap<>();
+        private final Map<Integer, Integer> unitOverflow = new HashMap<>();
+        private final Map<Integer, Integer> versionOverflow = new HashMap<>();
+
+        private final Map<String, Integer> versionIndexes = new HashMap<>();
+        private final Map<Long, Integer> unitIndexes = new HashMap<>();
+
+        public Builder(int expectedBoms, int expectedItems) {
+            int bomCapacity = Math.max(16, expectedBoms);
+            this.bomIds = new long[bomCapacity];
+            this.bomMaterialIds = new long[bomCapacity];
+            this.bomVersion = new int[bomCapacity];
+            this.bomEdgeCount = new int[bomCapacity];
+            int itemCapacity = Math.max(16, expectedItems);
+            this.itemChild = new long[itemCapacity];
+            this.itemAttributes = new long[itemCapacity];
+            this.itemNumerator = new long[itemCapacity];
+            this.itemDenominator = new long[itemCapacity];
+        }
+
+        public Builder addBom(long bomId, long materialId, String version) {
+            if (bomCount > 0 && bomId <= bomIds[bomCount - 1]) {
+                throw new IllegalStateException("BOM须按ID升序添加: " + bomId);
+            }
+            if (bomCount == bomIds.length) {
+                int capacity = bomCount + (bomCount >> 1);
+                bomIds = Arrays.copyOf(bomIds, capacity);
+                bomMaterialIds = Arrays.copyOf(bomMaterialIds, capacity);
+                bomVersion = Arrays.copyOf(bomVersion, capacity);
+                bomEdgeCount = Arrays.copyOf(bomEdgeCount, capacity);
+            }
+            bomIds[bomCount] = bomId;
+            bomMaterialIds[bomCount] = materialId;
+            bomVersion[bomCount] = versionIndex(version);
+            bomCount++;
+            return this;
+        }
+
+        public Builder addItem(long bomId, long childMaterialId, int sequence, long unitId,
+                               BigDecimal numerator, BigDecimal denominator, BigDecimal scrapRate,
+                               String childBomVersion) {
+            return addScaledItem(bomId, childMaterialId, sequence, unitId,
+                    scaled(numerator != null ? numerator : BigDecimal.ONE),
+                    scaled(denominator != null ? denominator : BigDecimal.ONE),
+                    scrapCode(scrapRate), childBomVersion);
+        }
+
+        /**
+         * 复制另一张图中的一个BOM（表头和全部明细）
+         */
+        public Builder copyBom(BomGraph source, int bom) {
+            long bomId = source.bomId(bom);
+            addBom(bomId, source.bomMaterialId(bom), source.bomVersion(bom));
+            for (int e = source.firstEdge(bom); e < source.endEdge(bom); e++) {
+                long denominator = source.edgeDenominator != null ? source.edgeDenominator[e] : QUANTITY_ONE;
+                int scrapCode = (int) (source.edgeAttributes[e] >>> SCRAP_SHIFT) & ((1 << SCRAP_BITS) - 1);
+                addScaledItem(bomId, source.childMaterialId(e), source.sequence(e), source.unitId(e),
+                        source.edgeNumerator[e], denominator, scrapCode, source.childBomVersion(e));
+            }
+            return this;
+        }
+
+        /**
+         * 因所属BOM不存在而跳过的明细数
+         */
+        public int skippedItemCount() {
+            return skippedItemCount;
+        }
+
+        public BomGraph build() {
+            return new BomGraph(this);
+        }
+
+        private Builder addScaledItem(long bomId, long childMaterialId, int sequence, long unitId,
+                                      long numerator, long denominator, int scrapCode, String childBomVersion) {
+            while (currentBom < bomCount && bomIds[currentBom] < bomId) {
+                currentBom++;
+            }
+            if (currentBom == bomCount || bomIds[currentBom] != bomId) {
+                skippedItemCount++;
+                return this;
+            }
+            if (itemCount == itemChild.length) {
+                int capacity = itemCount + (itemCount >> 1);
+                itemChild = Arrays.copyOf(itemChild, capacity);
+                itemAttributes = Arrays.copyOf(itemAttributes, capacity);
+                itemNumerator = Arrays.copyOf(itemNumerator, capacity);
+                itemDenominator = Arrays.copyOf(itemDenominator, capacity);
+            }
+
+            int sequenceCode = sequence;
+            if (sequence < 0 || sequence >= SEQUENCE_OVERFLOW) {
+                sequenceOverflow.put(itemCount, sequence);
+                sequenceCode = SEQUENCE_OVERFLOW;
+            }
+            int versionCode = childBomVersion != null ? versionIndex(childBomVersion) : 0;
+            if (versionCode >= VERSION_OVERFLOW) {
+                versionOverflow.put(itemCount, versionCode);
+                versionCode = VERSION_OVERFLOW;
+            }
+            int unitCode = unitIndexes.computeIfAbsent(unitId, k -> unitIndexes.size());
+            if (unitCode >= UNIT_OVERFLOW) {
+                unitOverflow.put(itemCount, unitCode);
+                unitCode = UNIT_OVERFLOW;
+            }
+
+            itemChild[itemCount] = childMaterialId;
+            itemAttributes[itemCount] = ((long) sequenceCode << SEQUENCE_SHIFT)
+                    | ((long) scrapCode << SCRAP_SHIFT)
+                    | ((long) unitCode << UNIT_SHIFT)
+                    | versionCode;
+            itemNumerator[itemCount] = numerator;
+            itemDenominator[itemCount] = denominator;
+            itemCount++;
+            bomEdgeCount[currentBom]++;
+            return this;
+        }
+
+        // 版本字典下标从 1 开始，0 表示未配置
+        private int versionIndex(String version) {
+            return versionIndexes.computeIfAbsent(version, k -> versionIndexes.size() + 1);
+        }
+
+        private static long scaled(BigDecimal quantity) {
+            return quantity.setScale(QUANTITY_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+
+        private static int scrapCode(BigDecimal scrapRate) {
+            if (scrapRate == null) {
+                return 0;
+            }
+            int unscaled = scrapRate.setScale(SCRAP_SCALE, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+            if (Math.abs(unscaled) > MAX_SCRAP_UNSCALED) {
+                throw new IllegalStateException("损耗率超出范围: " + scrapRate);
+            }
+            return unscaled + SCRAP_OFFSET + 1;
+        }
+    }
+}
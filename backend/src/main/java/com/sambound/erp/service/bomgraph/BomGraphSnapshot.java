@@ -0,0 +1,165 @@
+package com.sambound.erp.service.bomgraph;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 查询使用的结构图快照：基础图 + 增量图
+ * 增量图接管的BOM（replacedBomIds，含已删除的BOM）以增量图为准，基础图中的同一BOM对查询不可见。
+ *
+ * <p>实例不可变：增量更新和合并都返回新快照，由调用方整体替换，读取方不需要加锁。</p>
+ */
+public final class BomGraphSnapshot {
+
+    private final BomGraph base;
+    private final BomGraph overlay;
+    private final Set<Long> replacedBomIds;
+
+    /**
+     * BOM在结构图中的位置
+     */
+    public record BomRef(BomGraph graph, int index) {
+
+        public long id() {
+            return graph.bomId(index);
+        }
+    }
+
+    /**
+     * 使用某物料的一条明细
+     */
+    @FunctionalInterface
+    public interface UsageConsumer {
+        void accept(BomRef bom, int edge);
+    }
+
+    private BomGraphSnapshot(BomGraph base, BomGraph overlay, Set<Long> replacedBomIds) {
+        this.base = base;
+        this.overlay = overlay;
+        this.replacedBomIds = replacedBomIds;
+    }
+
+    public static BomGraphSnapshot of(BomGraph base) {
+        return new BomGraphSnapshot(base, BomGraph.EMPTY, Set.of());
+    }
+
+    public BomGraph base() {
+        return base;
+    }
+
+    public BomGraph overlay() {
+        return overlay;
+    }
+
+    /**
+     * 增量图接管的BOM数
+     */
+    public int replacedCount() {
+        return replacedBomIds.size();
+    }
+
+    /**
+     * 应用一批变化：changedBomIds 中的BOM以 changed 为准，changed 中没有的视为已删除
+     *
+     * @param changed 从数据库重新读取的变化BOM（只包含 changedBomIds 中仍存在的BOM）
+     */
+    public BomGraphSnapshot withChanges(Collection<Long> changedBomIds, BomGraph changed) {
+        Set<Long> changedIds = new HashSet<>(changedBomIds);
+        Set<Long> replaced = new HashSet<>(replacedBomIds);
+        replaced.addAll(changedIds);
+
+        // 新的增量图：原增量图中未变化的BOM + 变化的BOM，按ID归并
+        BomGraph.Builder builder = new BomGraph.Builder(
+                overlay.bomCount() + changed.bomCount(), overlay.edgeCount() + changed.edgeCount());
+        int o = 0;
+        int c = 0;
+        while (o < overlay.bomCount() || c < changed.bomCount()) {
+            long overlayId = o < overlay.bomCount() ? overlay.bomId(o) : Long.MAX_VALUE;
+            if (o < overlay.bomCount() && changedIds.contains(overlayId)) {
+                o++;
+            } else if (c < changed.bomCount() && changed.bomId(c) < overlayId) {
+                builder.copyBom(changed, c++);
+            } else {
+                builder.copyBom(overlay, o++);
+            }
+        }
+        return new BomGraphSnapshot(base, builder.build(), Set.copyOf(replaced));
+    }
+
+    /**
+     * 增量图接管的BOM超过基础图的 1/8（且不少于 minThreshold）时需要合并，合并成本均摊到每次变更上
+     */
+    public boolean needsCompaction(int minThreshold) {
+        return replacedBomIds.size() > Math.max(minThreshold, base.bomCount() / 8);
+    }
+
+    /**
+     * 把增量图合并到基础图：按BOM ID归并，基础图中被接管的BOM以增量图为准
+     */
+    public BomGraphSnapshot compact() {
+        BomGraph.Builder builder = new BomGraph.Builder(
+                base.bomCount() + overlay.bomCount(), base.edgeCount() + overlay.edgeCount());
+        int o = 0;
+        for (int b = 0; b < base.bomCount(); b++) {
+            long baseId = base.bomId(b);
+            while (o < overlay.bomCount() && overlay.bomId(o) < baseId) {
+                builder.copyBom(overlay, o++);
+            }
+            if (!replacedBomIds.contains(baseId)) {
+                builder.copyBom(base, b);
+            }
+        }
+        while (o < overlay.bomCount()) {
+            builder.copyBom(overlay, o++);
+        }
+        return of(builder.build());
+    }
+
+    /**
+     * 按ID查找BOM，不存在（或已删除）时返回 null
+     */
+    public BomRef bom(long bomId) {
+        BomGraph graph = replacedBomIds.contains(bomId) ? overlay : base;
+        int index = graph.bomIndex(bomId);
+        return index >= 0 ? new BomRef(graph, index) : null;
+    }
+
+    /**
+     * 按父项物料和版本查找BOM，不存在时返回 null
+     */
+    public BomRef findBom(long materialId, String version) {
+        int index = overlay.findBom(materialId, version);
+        if (index >= 0) {
+            return new BomRef(overlay, index);
+        }
+        index = base.findBom(materialId, version);
+        if (index >= 0 && !replacedBomIds.contains(base.bomId(index))) {
+            return new BomRef(base, index);
+        }
+        return null;
+    }
+
+    /**
+     * 遍历使用该物料的全部明细：基础图中未被接管的BOM + 增量图
+     */
+    public void forEachUsage(long childMaterialId, UsageConsumer consumer) {
+        forEachUsage(base, true, childMaterialId, consumer);
+        forEachUsage(overlay, false, childMaterialId, consumer);
+    }
+
+    private void forEachUsage(BomGraph graph, boolean isBase, long childMaterialId, UsageConsumer consumer) {
+        int material = graph.materialIndex(childMaterialId);
+        if (material < 0) {
+            return;
+        }
+        for (int u = graph.firstUsage(material); u < graph.endUsage(material); u++) {
+            int edge = graph.usageEdge(u);
+            int bom = graph.edgeBom(edge);
+            if (isBase && replacedBomIds.contains(graph.bomId(bom))) {
+                continue;
+            }
+            consumer.accept(new BomRef(graph, bom), edge);
+        }
+    }
+}
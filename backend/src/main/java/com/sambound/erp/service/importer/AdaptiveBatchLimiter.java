@@ -0,0 +1,212 @@
+package com.sambound.erp.service.importer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * 自适应批次限流器（AIMD：加性增、乘性减）
+ * 每个导入器一个实例，跨导入保留调节结果，下一次导入从上次收敛的位置开始。
+ *
+ * <p>调节规则（每个批次提交后根据反馈执行）：</p>
+ * <ul>
+ *     <li>批次失败、有线程在等待数据库连接、或提交耗时超过目标：在途批次数减半；
+ *         耗时超标或失败时批次大小也减半。减小后的一个目标耗时窗口内不再重复减小。</li>
+ *     <li>否则：提交耗时低于目标一半时批次大小增加一个步长；
+ *         每完成“当前并发数”个批次，在途批次数加一。</li>
+ * </ul>
+ * 在途批次数取代固定大小的信号量：读取线程通过 {@link #acquire()} 获取许可，调小上限后新的获取会阻塞，
+ * 已在途的批次不受影响。
+ */
+public class AdaptiveBatchLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchLimiter.class);
+
+    private final BatchProfile profile;
+    private final int maxConcurrency;
+    private final int batchSizeStep;
+    private final long targetLatencyNanos;
+    private final IntSupplier connectionWaiters;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitAvailable = lock.newCondition();
+    private int batchSize;
+    private int concurrencyLimit;
+    private int inFlight = 0;
+    private int successesSinceIncrease = 0;
+    private long lastDecreaseNanos = 0;
+
+    private final Timer commitTimer;
+    private final Counter increaseCounter;
+    private final Counter decreaseCounter;
+
+    AdaptiveBatchLimiter(BatchProfile profile, int poolConcurrencyCap,
+                         IntSupplier connectionWaiters, MeterRegistry meterRegistry) {
+        this.profile = profile;
+        this.maxConcurrency = Math.max(1, Math.min(profile.maxConcurrency(), poolConcurrencyCap));
+        this.batchSizeStep = Math.max(1, profile.initialBatchSize() / 10);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(profile.targetLatencyMillis());
+        this.connectionWaiters = connectionWaiters;
+        this.batchSize = profile.initialBatchSize();
+        this.concurrencyLimit = Math.max(1, Math.min(profile.initialConcurrency(), maxConcurrency));
+
+        String importer = profile.name();
+        meterRegistry.gauge("erp.import.batch.size", Tags.of("importer", importer),
+                this, AdaptiveBatchLimiter::batchSize);
+        meterRegistry.gauge("erp.import.batch.concurrency", Tags.of("importer", importer),
+                this, AdaptiveBatchLimiter::concurrencyLimit);
+        meterRegistry.gauge("erp.import.batch.inflight", Tags.of("importer", importer),
+                this, AdaptiveBatchLimiter::inFlight);
+        this.commitTimer = Timer.builder("erp.import.batch.commit")
+                .description("导入批次提交耗时")
+                .tag("importer", importer)
+                .register(meterRegistry);
+        this.increaseCounter = Counter.builder("erp.import.batch.adjustments")
+                .tag("importer", importer).tag("direction", "increase")
+                .register(meterRegistry);
+        this.decreaseCounter = Counter.builder("erp.import.batch.adjustments")
+                .tag("importer", importer).tag("direction", "decrease")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 当前建议的批次大小
+     */
+    public int batchSize() {
+        lock.lock();
+        try {
+            return batchSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int concurrencyLimit() {
+        lock.lock();
+        try {
+            return concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取一个在途批次许可，在途批次数达到当前上限时阻塞
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= concurrencyLimit) {
+                permitAvailable.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放在途批次许可（无论批次成功与否都必须调用）
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批次提交成功后的反馈
+     *
+     * @param rows         批次行数
+     * @param elapsedNanos 批次事务耗时（含等待连接的时间）
+     */
+    public void onBatchCommitted(int rows, long elapsedNanos) {
+        commitTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        int waiters = connectionWaiters.getAsInt();
+        boolean slow = elapsedNanos > targetLatencyNanos;
+        if (waiters > 0 || slow) {
+            decrease(slow, slow ? "提交耗时 " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms" : "等待连接线程 " + waiters);
+        } else {
+            increase(elapsedNanos < targetLatencyNanos / 2);
+        }
+    }
+
+    /**
+     * 批次失败后的反馈
+     */
+    public void onBatchFailed(long elapsedNanos) {
+        commitTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        decrease(true, "批次失败");
+    }
+
+    private void decrease(boolean shrinkBatch, String reason) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            // 减小后的一个目标耗时窗口内，旧参数下提交的批次返回的反馈不再重复减小
+            if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < targetLatencyNanos) {
+                return;
+            }
+            lastDecreaseNanos = now;
+            int oldBatchSize = batchSize;
+            int oldConcurrency = concurrencyLimit;
+            concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+            if (shrinkBatch) {
+                batchSize = Math.max(profile.minBatchSize(), batchSize / 2);
+            }
+            successesSinceIncrease = 0;
+            if (oldBatchSize != batchSize || oldConcurrency != concurrencyLimit) {
+                decreaseCounter.increment();
+                logger.info("[{}] 写入降速（{}）：批次 {} -> {}，并发 {} -> {}",
+                        profile.name(), reason, oldBatchSize, batchSize, oldConcurrency, concurrencyLimit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void increase(boolean growBatch) {
+        lock.lock();
+        try {
+            boolean changed = false;
+            if (growBatch && batchSize < profile.maxBatchSize()) {
+                batchSize = Math.min(profile.maxBatchSize(), batchSize + batchSizeStep);
+                changed = true;
+            }
+            // 每个“往返”（完成当前并发数个批次）并发加一
+            if (++successesSinceIncrease >= concurrencyLimit && concurrencyLimit < maxConcurrency) {
+                concurrencyLimit++;
+                successesSinceIncrease = 0;
+                permitAvailable.signalAll();
+                changed = true;
+            }
+            if (changed) {
+                increaseCounter.increment();
+                logger.debug("[{}] 写入提速：批次 {}，并发 {}", profile.name(), batchSize, concurrencyLimit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
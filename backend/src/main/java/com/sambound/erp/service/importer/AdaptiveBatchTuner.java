@@ -0,0 +1,55 @@
+package com.sambound.erp.service.importer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导入写入的自适应调节器
+ * 根据批次提交耗时和 HikariCP 等待连接的线程数，为各导入器调节批次大小和在途批次数。
+ * 在途批次数上限为连接池大小的一半，剩余连接留给交互请求。
+ * 调节结果以 erp.import.batch.* 指标暴露（/actuator/metrics）。
+ */
+@Component
+public class AdaptiveBatchTuner {
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveBatchLimiter> limiters = new ConcurrentHashMap<>();
+
+    public AdaptiveBatchTuner(DataSource dataSource, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 获取导入器的限流器（同名导入器共享同一实例，调节结果跨导入保留）
+     */
+    public AdaptiveBatchLimiter limiter(BatchProfile profile) {
+        return limiters.computeIfAbsent(profile.name(),
+                name -> new AdaptiveBatchLimiter(profile, poolConcurrencyCap(), this::connectionWaiters, meterRegistry));
+    }
+
+    private int poolConcurrencyCap() {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return Math.max(1, hikari.getMaximumPoolSize() / 2);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 正在等待数据库连接的线程数（连接池尚未初始化或不是 HikariCP 时返回0）
+     */
+    private int connectionWaiters() {
+        if (dataSource instanceof HikariDataSource hikari) {
+            HikariPoolMXBean poolMXBean = hikari.getHikariPoolMXBean();
+            return poolMXBean != null ? poolMXBean.getThreadsAwaitingConnection() : 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.sambound.erp.service.importer;
+
+/**
+ * 批量写入的自适应调节参数
+ *
+ * @param name                导入器名称（用作指标标签）
+ * @param initialBatchSize    初始批次大小
+ * @param minBatchSize        批次大小下限
+ * @param maxBatchSize        批次大小上限
+ * @param initialConcurrency  初始在途批次数
+ * @param maxConcurrency      在途批次数上限（实际还受连接池大小限制）
+ * @param targetLatencyMillis 单批次提交耗时目标，超过后减小批次
+ */
+public record BatchProfile(
+        String name,
+        int initialBatchSize,
+        int minBatchSize,
+        int maxBatchSize,
+        int initialConcurrency,
+        int maxConcurrency,
+        long targetLatencyMillis
+) {
+}
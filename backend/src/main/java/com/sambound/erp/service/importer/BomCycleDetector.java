@@ -0,0 +1,212 @@
+package com.sambound.erp.service.importer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BOM循环引用检测
+ * 以物料为节点、"父项物料 → 子项物料"为边构建有向图，用 Tarjan 算法求强连通分量：
+ * 两端落在同一强连通分量内的边（含自环）即位于某个循环上。
+ *
+ * <p>支持增量检测：图中已有的边（数据库中的现有结构和此前已接受的边）保持不变，
+ * 每次只检查新加入的一批边，Tarjan 只从这批边的起点出发遍历可达的部分——
+ * 新出现的循环必然经过新加入的边，也就必然经过其起点。</p>
+ *
+ * <p>物料ID映射为连续下标，邻接表以前向星形式（每个节点的首条边 + 每条边的下一条边）存放在基本类型数组中，
+ * 删除边只做标记；Tarjan 使用显式栈迭代实现，不会因 BOM 层级过深而栈溢出。</p>
+ *
+ * <p>非线程安全：由单个线程添加边和检测。</p>
+ */
+public final class BomCycleDetector {
+
+    private final Map<Long, Integer> nodeIndexes = new HashMap<>();
+    private int nodeCount;
+    // 节点的首条出边，-1 表示没有
+    private int[] firstEdge;
+
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    // 同一起点的下一条出边，-1 表示没有
+    private int[] nextEdge;
+    private final BitSet removedEdges = new BitSet();
+    private int edgeCount;
+
+    // Tarjan 工作数组，每次检测后只重置访问过的节点
+    private int[] index;
+    private int[] lowLink;
+    private int[] component;
+    private boolean[] onStack;
+
+    public BomCycleDetector(int expectedEdges) {
+        int edgeCapacity = Math.max(16, expectedEdges);
+        this.edgeFrom = new int[edgeCapacity];
+        this.edgeTo = new int[edgeCapacity];
+        this.nextEdge = new int[edgeCapacity];
+        int nodeCapacity = Math.max(16, expectedEdges / 4);
+        this.firstEdge = new int[nodeCapacity];
+        this.index = new int[nodeCapacity];
+        Arrays.fill(index, -1);
+        this.lowLink = new int[nodeCapacity];
+        this.component = new int[nodeCapacity];
+        this.onStack = new boolean[nodeCapacity];
+    }
+
+    /**
+     * 添加一条边
+     *
+     * @return 边的序号（从 0 开始，按添加顺序递增）
+     */
+    public int addEdge(long parentMaterialId, long childMaterialId) {
+        int from = node(parentMaterialId);
+        int to = node(childMaterialId);
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeFrom.length * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            nextEdge = Arrays.copyOf(nextEdge, capacity);
+        }
+        int edge = edgeCount++;
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        nextEdge[edge] = firstEdge[from];
+        firstEdge[from] = edge;
+        return edge;
+    }
+
+    /**
+     * 删除一条边（被替换的现有明细或被拒绝的明细）
+     */
+    public void removeEdge(int edge) {
+        removedEdges.set(edge);
+    }
+
+    /**
+     * 下一条边将使用的序号
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 找出序号不小于 fromEdge 的边中位于循环上的边
+     *
+     * @return 位于循环上的边的序号集合
+     */
+    public BitSet findCycleEdges(int fromEdge) {
+        BitSet cycleEdges = new BitSet();
+        if (fromEdge >= edgeCount) {
+            return cycleEdges;
+        }
+
+        int[] stack = new int[16];
+        int stackSize = 0;
+        int[] callNode = new int[16];
+        int[] callEdge = new int[16];
+        int[] visited = new int[16];
+        int visitedCount = 0;
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int e = fromEdge; e < edgeCount; e++) {
+            int root = edgeFrom[e];
+            if (removedEdges.get(e) || index[root] != -1) {
+                continue;
+            }
+            if (visitedCount == visited.length) {
+                visited = Arrays.copyOf(visited, visited.length * 2);
+            }
+            visited[visitedCount++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = firstEdge[root];
+
+            while (depth >= 0) {
+                int v = callNode[depth];
+                int edge = callEdge[depth];
+                if (edge != -1) {
+                    callEdge[depth] = nextEdge[edge];
+                    if (removedEdges.get(edge)) {
+                        continue;
+                    }
+                    int w = edgeTo[edge];
+                    if (index[w] == -1) {
+                        if (visitedCount == visited.length) {
+                            visited = Arrays.copyOf(visited, visited.length * 2);
+                        }
+                        visited[visitedCount++] = w;
+                        index[w] = lowLink[w] = nextIndex++;
+                        if (stackSize == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        depth++;
+                        if (depth == callNode.length) {
+                            callNode = Arrays.copyOf(callNode, callNode.length * 2);
+                            callEdge = Arrays.copyOf(callEdge, callEdge.length * 2);
+                        }
+                        callNode[depth] = w;
+                        callEdge[depth] = firstEdge[w];
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // v 的出边已访问完
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+
+        for (int e = fromEdge; e < edgeCount; e++) {
+            if (!removedEdges.get(e) && component[edgeFrom[e]] == component[edgeTo[e]]) {
+                cycleEdges.set(e);
+            }
+        }
+        for (int i = 0; i < visitedCount; i++) {
+            index[visited[i]] = -1;
+        }
+        return cycleEdges;
+    }
+
+    private int node(long materialId) {
+        Integer existing = nodeIndexes.get(materialId);
+        if (existing != null) {
+            return existing;
+        }
+        int node = nodeCount++;
+        if (node == firstEdge.length) {
+            int capacity = firstEdge.length * 2;
+            firstEdge = Arrays.copyOf(firstEdge, capacity);
+            index = Arrays.copyOf(index, capacity);
+            Arrays.fill(index, node, capacity, -1);
+            lowLink = Arrays.copyOf(lowLink, capacity);
+            component = Arrays.copyOf(component, capacity);
+            onStack = Arrays.copyOf(onStack, capacity);
+        }
+        firstEdge[node] = -1;
+        nodeIndexes.put(materialId, node);
+        return node;
+    }
+}
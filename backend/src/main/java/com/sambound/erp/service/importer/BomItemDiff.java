@@ -0,0 +1,118 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.repository.BomItemRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * BOM明细差异计算
+ * 将数据库中的现有明细与目标明细按（序号, 子项物料）匹配：匹配上且内容相同的保持不变，
+ * 内容不同的原地更新（保留ID），目标中多出的插入，现有中多出的删除。
+ * 同一（序号, 子项物料）出现多次时按出现顺序一一匹配。
+ *
+ * <p>数值按数据库列的精度比较（用量分子/分母 6 位小数，损耗率 2 位小数），
+ * 写入后会被数据库舍入的差异不算变化。</p>
+ */
+public final class BomItemDiff {
+
+    private static final int QUANTITY_SCALE = 6;
+    private static final int SCRAP_RATE_SCALE = 2;
+
+    private BomItemDiff() {
+    }
+
+    /**
+     * 差异结果
+     *
+     * @param inserts 需要插入的明细
+     * @param updates 需要更新的明细（ID 为匹配到的现有明细，其余为目标内容）
+     * @param deletes 需要删除的现有明细ID
+     * @param counts  各类变化的条数
+     */
+    public record Result(List<BomItemRepository.BomItemBatchData> inserts,
+                         List<BomItemRepository.StoredBomItem> updates,
+                         List<Long> deletes,
+                         Counts counts) {
+    }
+
+    /**
+     * 明细变化条数
+     */
+    public record Counts(int inserted, int updated, int deleted, int unchanged) {
+
+        public static final Counts NONE = new Counts(0, 0, 0, 0);
+
+        public Counts plus(Counts other) {
+            return new Counts(inserted + other.inserted, updated + other.updated,
+                    deleted + other.deleted, unchanged + other.unchanged);
+        }
+    }
+
+    private record MatchKey(Integer sequence, Long childMaterialId) {
+    }
+
+    /**
+     * 计算单个BOM的明细差异
+     *
+     * @param current 数据库中的现有明细
+     * @param target  目标明细（bomId 与现有明细相同）
+     */
+    public static Result compute(List<BomItemRepository.StoredBomItem> current,
+                                 List<BomItemRepository.BomItemBatchData> target) {
+        Map<MatchKey, Deque<BomItemRepository.StoredBomItem>> currentByKey = new HashMap<>();
+        for (BomItemRepository.StoredBomItem item : current) {
+            currentByKey.computeIfAbsent(new MatchKey(item.sequence(), item.childMaterialId()),
+                    k -> new ArrayDeque<>()).addLast(item);
+        }
+
+        List<BomItemRepository.BomItemBatchData> inserts = new ArrayList<>();
+        List<BomItemRepository.StoredBomItem> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (BomItemRepository.BomItemBatchData item : target) {
+            Deque<BomItemRepository.StoredBomItem> candidates =
+                    currentByKey.get(new MatchKey(item.sequence(), item.childMaterialId()));
+            BomItemRepository.StoredBomItem matched = candidates != null ? candidates.pollFirst() : null;
+            if (matched == null) {
+                inserts.add(item);
+            } else if (sameContent(matched, item)) {
+                unchanged++;
+            } else {
+                updates.add(BomItemRepository.StoredBomItem.of(matched.id(), item));
+            }
+        }
+
+        List<Long> deletes = new ArrayList<>();
+        for (Deque<BomItemRepository.StoredBomItem> remaining : currentByKey.values()) {
+            for (BomItemRepository.StoredBomItem item : remaining) {
+                deletes.add(item.id());
+            }
+        }
+        return new Result(inserts, updates, deletes,
+                new Counts(inserts.size(), updates.size(), deletes.size(), unchanged));
+    }
+
+    private static boolean sameContent(BomItemRepository.StoredBomItem current,
+                                       BomItemRepository.BomItemBatchData target) {
+        return Objects.equals(current.childUnitId(), target.childUnitId())
+                && sameDecimal(current.numerator(), target.numerator(), QUANTITY_SCALE)
+                && sameDecimal(current.denominator(), target.denominator(), QUANTITY_SCALE)
+                && sameDecimal(current.scrapRate(), target.scrapRate(), SCRAP_RATE_SCALE)
+                && Objects.equals(current.childBomVersion(), target.childBomVersion())
+                && Objects.equals(current.memo(), target.memo());
+    }
+
+    private static boolean sameDecimal(BigDecimal current, BigDecimal target, int scale) {
+        if (current == null || target == null) {
+            return current == target;
+        }
+        return current.setScale(scale, RoundingMode.HALF_UP).compareTo(target.setScale(scale, RoundingMode.HALF_UP)) == 0;
+    }
+}
@@ -0,0 +1,45 @@
+package com.sambound.erp.service.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 导入结果中返回的错误摘要：只保留最先出现的若干条错误，完整错误由 {@link ImportErrorReport} 写入文件
+ * 添加时只做一次原子自增和数组写入，多个批次线程并发添加不需要加锁。
+ */
+public final class BoundedErrorList<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public BoundedErrorList(int capacity) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * 添加错误，超过容量时忽略
+     */
+    public void add(E error) {
+        int index = next.getAndIncrement();
+        if (index < slots.length()) {
+            slots.set(index, error);
+        }
+    }
+
+    /**
+     * 保留的错误（所有线程添加完成后调用）
+     */
+    public List<E> toList() {
+        int count = Math.min(next.get(), slots.length());
+        List<E> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            E error = slots.get(i);
+            if (error != null) {
+                errors.add(error);
+            }
+        }
+        return errors;
+    }
+}
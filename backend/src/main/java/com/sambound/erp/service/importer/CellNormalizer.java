@@ -0,0 +1,265 @@
+package com.sambound.erp.service.importer;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导入单元格规整
+ * 各导入共用的去空白、数值解析和编码复用，尽量不产生临时字符串：
+ * <ul>
+ *     <li>去空白只扫描一遍，两端没有空白时返回原字符串；</li>
+ *     <li>数值直接在字符序列上解析，允许两端空白、整数部分数字之间的千位分隔符（半角/全角逗号，
+ *     不能连续、不能位于开头或小数点前）和科学计数法；数字之间的空白等格式错误以
+ *     {@link ParsedDecimal#INVALID} 返回，不抛出异常；</li>
+ *     <li>编码类单元格（单位编码、物料组编码、物料属性等）在一次导入内复用同一个字符串实例，
+ *     大量重复的编码只保留一份。</li>
+ * </ul>
+ *
+ * <p>空白的定义与 {@link String#trim()} 相同（不大于空格的字符），规整结果与原有的 trim 写法一致，
+ * 已写入数据库的内容指纹不受影响（数值中含全角逗号的行除外，其指纹在下次导入时重写一次）。
+ * 实例可被多个线程并发使用。</p>
+ */
+public final class CellNormalizer {
+
+    // 一次导入中复用的编码数上限，超过后新编码不再放入池中
+    private static final int MAX_POOLED_CODES = 65536;
+    // 不超过 18 位有效数字时用 long 累加，不会溢出
+    private static final int MAX_LONG_DIGITS = 18;
+    // 指数绝对值上限，超过视为格式错误
+    private static final int MAX_EXPONENT = 9999;
+    private static final BigDecimal MAX_INT = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+    private final Map<String, String> codePool = new ConcurrentHashMap<>();
+
+    /**
+     * 数值解析结果：空单元格、格式错误或解析出的数值
+     */
+    public record ParsedDecimal(BigDecimal value, boolean invalid) {
+
+        public static final ParsedDecimal EMPTY = new ParsedDecimal(null, false);
+        public static final ParsedDecimal INVALID = new ParsedDecimal(null, true);
+
+        public boolean isEmpty() {
+            return value == null && !invalid;
+        }
+
+        /**
+         * 数值，空单元格或格式错误时返回默认值
+         */
+        public BigDecimal orElse(BigDecimal defaultValue) {
+            return value != null ? value : defaultValue;
+        }
+    }
+
+    /**
+     * 去掉两端空白，空白单元格视为 null
+     */
+    public static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        int end = value.length();
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == end) {
+            return null;
+        }
+        while (value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
+    }
+
+    /**
+     * 单元格是否为空白
+     */
+    public static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数值列的文本形式：去掉两端空白和千位分隔符（与 {@link #parseDecimal} 相同的半角/全角逗号），空白视为 null
+     * （用于内容指纹，只含半角逗号时与原有的 trim + replace(",", "") 结果相同）
+     */
+    public static String numberText(String value) {
+        String trimmed = trimToNull(value);
+        if (trimmed == null || (trimmed.indexOf(',') < 0 && trimmed.indexOf('，') < 0)) {
+            return trimmed;
+        }
+        StringBuilder builder = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (!isGroupingSeparator(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isGroupingSeparator(char c) {
+        return c == ',' || c == '，';
+    }
+
+    /**
+     * 解析数值单元格，不抛出异常
+     */
+    public static ParsedDecimal parseDecimal(CharSequence value) {
+        if (value == null) {
+            return ParsedDecimal.EMPTY;
+        }
+        int length = value.length();
+        int i = 0;
+        while (i < length && value.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i == length) {
+            return ParsedDecimal.EMPTY;
+        }
+
+        boolean negative = false;
+        char first = value.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long unscaled = 0;
+        int digitCount = 0;
+        int significantDigits = 0;
+        int scale = 0;
+        boolean seenPoint = false;
+        boolean overflow = false;
+        // 上一个字符是千位分隔符：其后必须是数字
+        boolean afterSeparator = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                afterSeparator = false;
+                digitCount++;
+                if (significantDigits > 0 || c != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits > MAX_LONG_DIGITS) {
+                    overflow = true;
+                } else {
+                    unscaled = unscaled * 10 + (c - '0');
+                }
+                if (seenPoint) {
+                    scale++;
+                }
+            } else if (c == '.') {
+                if (seenPoint || afterSeparator) {
+                    return ParsedDecimal.INVALID;
+                }
+                seenPoint = true;
+            } else if (isGroupingSeparator(c) && !seenPoint) {
+                // 整数部分的千位分隔符，只能出现在两个数字之间
+                if (digitCount == 0 || afterSeparator) {
+                    return ParsedDecimal.INVALID;
+                }
+                afterSeparator = true;
+            } else {
+                break;
+            }
+        }
+        if (digitCount == 0 || afterSeparator) {
+            return ParsedDecimal.INVALID;
+        }
+
+        int exponent = 0;
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i) == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+                exponent = exponent * 10 + (value.charAt(i) - '0');
+                if (exponent > MAX_EXPONENT) {
+                    return ParsedDecimal.INVALID;
+                }
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return ParsedDecimal.INVALID;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        while (i < length && value.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i != length) {
+            return ParsedDecimal.INVALID;
+        }
+
+        if (overflow) {
+            return new ParsedDecimal(slowParse(value), false);
+        }
+        return new ParsedDecimal(BigDecimal.valueOf(negative ? -unscaled : unscaled, scale - exponent), false);
+    }
+
+    /**
+     * 解析正整数单元格（如BOM明细序号），不抛出异常
+     * 不是整数、不大于 0 或超出 int 范围时返回 {@link ParsedDecimal#INVALID}
+     */
+    public static ParsedDecimal parsePositiveInt(CharSequence value) {
+        ParsedDecimal parsed = parseDecimal(value);
+        BigDecimal number = parsed.value();
+        if (number == null) {
+            return parsed;
+        }
+        if (number.signum() > 0 && number.stripTrailingZeros().scale() <= 0 && number.compareTo(MAX_INT) <= 0) {
+            return parsed;
+        }
+        return ParsedDecimal.INVALID;
+    }
+
+    /**
+     * 超过 18 位有效数字的数值：去掉分隔符和两端空白后交给 BigDecimal（格式已校验，不会抛出异常）
+     */
+    private static BigDecimal slowParse(CharSequence value) {
+        char[] chars = new char[value.length()];
+        int count = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c > ' ' && !isGroupingSeparator(c)) {
+                chars[count++] = c;
+            }
+        }
+        return new BigDecimal(chars, 0, count);
+    }
+
+    /**
+     * 编码类单元格：去掉两端空白，空白视为 null，相同编码返回同一个字符串实例
+     */
+    public String code(String value) {
+        String trimmed = trimToNull(value);
+        if (trimmed == null) {
+            return null;
+        }
+        String pooled = codePool.get(trimmed);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (codePool.size() >= MAX_POOLED_CODES) {
+            return trimmed;
+        }
+        pooled = codePool.putIfAbsent(trimmed, trimmed);
+        return pooled != null ? pooled : trimmed;
+    }
+}
@@ -0,0 +1,86 @@
+package com.sambound.erp.service.importer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 已提交批次覆盖的行范围（闭区间），用于断点续传时跳过已提交的行
+ * 构建时合并重叠和相邻的区间，构建完成后不可变，可被读取线程和批次线程并发读取；
+ * 查询为对区间起点的二分查找。
+ */
+public final class CommittedRowRanges {
+
+    private static final CommittedRowRanges EMPTY = new CommittedRowRanges(new int[0], new int[0], 0);
+
+    private final int[] starts;
+    private final int[] ends;
+    private final long rowCount;
+
+    private CommittedRowRanges(int[] starts, int[] ends, long rowCount) {
+        this.starts = starts;
+        this.ends = ends;
+        this.rowCount = rowCount;
+    }
+
+    public static CommittedRowRanges empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由 [firstRow, lastRow] 区间列表构建
+     */
+    public static CommittedRowRanges of(List<int[]> ranges) {
+        if (ranges.isEmpty()) {
+            return EMPTY;
+        }
+        List<int[]> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt(range -> range[0]));
+
+        int[] starts = new int[sorted.size()];
+        int[] ends = new int[sorted.size()];
+        int count = 0;
+        for (int[] range : sorted) {
+            if (count > 0 && range[0] <= ends[count - 1] + 1) {
+                ends[count - 1] = Math.max(ends[count - 1], range[1]);
+            } else {
+                starts[count] = range[0];
+                ends[count] = range[1];
+                count++;
+            }
+        }
+        long rowCount = 0;
+        for (int i = 0; i < count; i++) {
+            rowCount += ends[i] - starts[i] + 1L;
+        }
+        return new CommittedRowRanges(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), rowCount);
+    }
+
+    public boolean contains(int row) {
+        int index = Arrays.binarySearch(starts, row);
+        if (index >= 0) {
+            return true;
+        }
+        int insertion = -index - 1;
+        return insertion > 0 && row <= ends[insertion - 1];
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * 最后提交的行偏移（所有区间终点的最大值），没有已提交批次时返回 -1
+     */
+    public int lastCommittedRow() {
+        return ends.length > 0 ? ends[ends.length - 1] : -1;
+    }
+
+    /**
+     * 区间覆盖的行数
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+}
@@ -0,0 +1,208 @@
+package com.sambound.erp.service.importer;
+
+import cn.idev.excel.annotation.ExcelProperty;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CSV 导入读取器
+ * 从字节流自动识别编码（BOM、UTF-8 严格校验，否则按 GB18030 处理，兼容 GBK/GB2312 导出的文件），
+ * 使用 CSVParser 逐行解析并转换为与 Excel 路径相同的行对象，交给同一个 {@link ImportRowHandler}。
+ * 整个文件不会读入内存。
+ *
+ * <p>列映射：第一行表头与行对象字段 {@code @ExcelProperty} 的第一个值（Kingdee 字段名，如 FNumber）按名称匹配；
+ * 行号与 Excel 路径一致，从 0 开始并包括表头行。</p>
+ */
+public final class CsvRowReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvRowReader.class);
+
+    // Kingdee 导出文件前两行为表头（英文字段名 + 中文说明）
+    private static final int DEFAULT_HEAD_ROW_NUMBER = 2;
+    // 编码识别时检查的字节数
+    private static final int DETECT_SAMPLE_SIZE = 64 * 1024;
+    private static final Charset GB18030 = Charset.forName("GB18030");
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder()
+            .setIgnoreEmptyLines(true)
+            .build();
+
+    private CsvRowReader() {
+    }
+
+    public static boolean isCsv(ImportFile file) {
+        String filename = file.originalFilename();
+        return filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    /**
+     * 逐行读取 CSV 文件
+     */
+    public static <T> void read(ImportFile file, Class<T> rowType, ImportRowHandler<T> handler) throws IOException {
+        long startTime = System.currentTimeMillis();
+        try (InputStream inputStream = new BufferedInputStream(file.openStream(), DETECT_SAMPLE_SIZE);
+             Reader reader = new InputStreamReader(inputStream, detectCharset(inputStream));
+             CSVParser parser = CSVParser.parse(reader, FORMAT)) {
+            Iterator<CSVRecord> records = parser.iterator();
+            if (!records.hasNext()) {
+                handler.afterAllRows();
+                return;
+            }
+            RowMapper<T> mapper = RowMapper.create(rowType, records.next());
+            int rowIndex = 1;
+            while (records.hasNext()) {
+                CSVRecord record = records.next();
+                if (rowIndex >= DEFAULT_HEAD_ROW_NUMBER) {
+                    handler.handleRow(mapper.map(record), rowIndex);
+                }
+                rowIndex++;
+            }
+            handler.afterAllRows();
+            logger.info("CSV文件读取完成：{}，{} 行，耗时 {}ms",
+                    file.originalFilename(), rowIndex, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 读取第一行表头的第一列（Kingdee 导出中为单据类型，如 FBillHead(BD_MATERIAL)），用于识别 CSV 的内容
+     */
+    public static String readFirstHeader(ImportFile file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(file.openStream(), DETECT_SAMPLE_SIZE);
+             Reader reader = new InputStreamReader(inputStream, detectCharset(inputStream));
+             CSVParser parser = CSVParser.parse(reader, FORMAT)) {
+            Iterator<CSVRecord> records = parser.iterator();
+            if (!records.hasNext()) {
+                return null;
+            }
+            CSVRecord header = records.next();
+            return header.size() > 0 ? stripByteOrderMark(header.get(0)).trim() : null;
+        }
+    }
+
+    /**
+     * 识别编码：有 BOM 时按 BOM；样本是合法的 UTF-8 时按 UTF-8；否则按 GB18030（GBK 的超集）
+     * 只读取输入流开头的样本并在读取后复位，输入流必须支持 mark
+     */
+    static Charset detectCharset(InputStream inputStream) throws IOException {
+        inputStream.mark(DETECT_SAMPLE_SIZE);
+        byte[] sample = inputStream.readNBytes(DETECT_SAMPLE_SIZE);
+        inputStream.reset();
+
+        if (sample.length >= 3 && (sample[0] & 0xFF) == 0xEF && (sample[1] & 0xFF) == 0xBB
+                && (sample[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (sample.length >= 2 && (sample[0] & 0xFF) == 0xFF && (sample[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (sample.length >= 2 && (sample[0] & 0xFF) == 0xFE && (sample[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        Charset charset = isValidUtf8(sample, sample.length == DETECT_SAMPLE_SIZE) ? StandardCharsets.UTF_8 : GB18030;
+        logger.debug("CSV编码识别结果: {}", charset);
+        return charset;
+    }
+
+    /**
+     * 严格校验 UTF-8：样本被截断时，允许末尾不完整的多字节序列
+     */
+    private static boolean isValidUtf8(byte[] sample, boolean truncated) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer input = ByteBuffer.wrap(sample);
+        CharBuffer output = CharBuffer.allocate(sample.length);
+        // 未截断时按输入结束处理，末尾不完整的序列同样视为非法
+        CoderResult result = decoder.decode(input, output, !truncated);
+        return !result.isError();
+    }
+
+    /**
+     * 表头列到行对象字段的映射
+     */
+    private static final class RowMapper<T> {
+        private final Constructor<T> constructor;
+        // 下标为列序号，未映射的列为 null
+        private final Field[] fieldsByColumn;
+
+        private RowMapper(Constructor<T> constructor, Field[] fieldsByColumn) {
+            this.constructor = constructor;
+            this.fieldsByColumn = fieldsByColumn;
+        }
+
+        static <T> RowMapper<T> create(Class<T> rowType, CSVRecord header) {
+            Map<String, Field> fieldsByName = new HashMap<>();
+            for (Field field : rowType.getDeclaredFields()) {
+                ExcelProperty property = field.getAnnotation(ExcelProperty.class);
+                if (property == null || property.value().length == 0 || Modifier.isStatic(field.getModifiers())
+                        || field.getType() != String.class) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fieldsByName.putIfAbsent(property.value()[0], field);
+            }
+
+            Field[] fieldsByColumn = new Field[header.size()];
+            for (int column = 0; column < header.size(); column++) {
+                String name = stripByteOrderMark(header.get(column)).trim();
+                fieldsByColumn[column] = fieldsByName.remove(name);
+            }
+            if (!fieldsByName.isEmpty()) {
+                logger.warn("CSV表头缺少列，对应字段将为空: {}", fieldsByName.keySet());
+            }
+
+            try {
+                Constructor<T> constructor = rowType.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return new RowMapper<>(constructor, fieldsByColumn);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("行对象缺少无参构造器: " + rowType.getName(), e);
+            }
+        }
+
+        T map(CSVRecord record) {
+            try {
+                T row = constructor.newInstance();
+                int columns = Math.min(record.size(), fieldsByColumn.length);
+                for (int column = 0; column < columns; column++) {
+                    Field field = fieldsByColumn[column];
+                    if (field != null) {
+                        String value = record.get(column);
+                        // 与 Excel 路径一致，空单元格为 null
+                        field.set(row, value.isEmpty() ? null : value);
+                    }
+                }
+                return row;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("CSV行转换失败: 第" + record.getRecordNumber() + "条记录", e);
+            }
+        }
+    }
+
+    private static String stripByteOrderMark(String value) {
+        return !value.isEmpty() && value.charAt(0) == BYTE_ORDER_MARK ? value.substring(1) : value;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sambound.erp.service.importer;
+
+import cn.idev.excel.context.AnalysisContext;
+import cn.idev.excel.read.listener.ReadListener;
+
+/**
+ * 将 {@link ImportRowHandler} 适配为 FastExcel 读取监听器
+ */
+public class ExcelRowListener<T> implements ReadListener<T> {
+
+    private final ImportRowHandler<T> handler;
+
+    public ExcelRowListener(ImportRowHandler<T> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void invoke(T data, AnalysisContext context) {
+        handler.handleRow(data, context.readRowHolder().getRowIndex());
+    }
+
+    @Override
+    public void doAfterAllAnalysed(AnalysisContext context) {
+        handler.afterAllRows();
+    }
+}
@@ -0,0 +1,128 @@
+package com.sambound.erp.service.importer;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 树形数据的拓扑分层（Kahn 算法）
+ * 每个节点最多一个父节点，入度为 0 的节点（没有父节点，或父节点不在本次数据中但已存在于数据库）构成第 0 层，
+ * 每处理完一层即释放其子节点作为下一层。所有节点只访问一次，不需要逐轮重新扫描剩余节点。
+ *
+ * <p>同一层的节点之间没有依赖，可以并行写入；第 k 层写入前，其父节点都已在前面的层中写入。
+ * 无法分层的节点按原因返回：编码重复、父节点不存在（自身或某个上级的父节点既不在数据中也不在数据库中）、
+ * 循环引用（自身或某个上级处在环上）。</p>
+ */
+public final class HierarchyLevelSorter {
+
+    private HierarchyLevelSorter() {
+    }
+
+    /**
+     * 分层结果
+     *
+     * @param levels   按深度排列的各层节点，同一层内保持输入顺序
+     * @param rejected 无法分层的节点
+     */
+    public record Result<T>(List<List<T>> levels, List<Rejected<T>> rejected) {
+    }
+
+    /**
+     * 无法分层的节点
+     *
+     * @param node        节点
+     * @param reason      原因
+     * @param relatedCode 相关编码：缺失的父节点编码，或环上重复出现的编码
+     */
+    public record Rejected<T>(T node, Reason reason, String relatedCode) {
+    }
+
+    public enum Reason {
+        DUPLICATE,
+        MISSING_PARENT,
+        CYCLE
+    }
+
+    /**
+     * 拓扑分层
+     *
+     * @param nodes         输入节点（编码重复时保留第一次出现的节点）
+     * @param codeOf        节点编码
+     * @param parentCodeOf  父节点编码，没有父节点时返回 null
+     * @param externalCodes 不在输入中但已存在的编码（例如数据库中已有的父节点）
+     */
+    public static <T> Result<T> sort(List<T> nodes,
+                                     Function<T, String> codeOf,
+                                     Function<T, String> parentCodeOf,
+                                     Set<String> externalCodes) {
+        Map<String, T> byCode = new LinkedHashMap<>();
+        List<Rejected<T>> rejected = new ArrayList<>();
+        for (T node : nodes) {
+            String code = codeOf.apply(node);
+            if (byCode.putIfAbsent(code, node) != null) {
+                rejected.add(new Rejected<>(node, Reason.DUPLICATE, code));
+            }
+        }
+
+        // 建立父 -> 子邻接表，并找出入度为 0 的节点
+        Map<String, List<T>> children = new HashMap<>();
+        List<T> current = new ArrayList<>();
+        for (T node : byCode.values()) {
+            String parentCode = parentCodeOf.apply(node);
+            if (parentCode == null) {
+                current.add(node);
+            } else if (byCode.containsKey(parentCode)) {
+                children.computeIfAbsent(parentCode, k -> new ArrayList<>()).add(node);
+            } else if (externalCodes.contains(parentCode)) {
+                current.add(node);
+            }
+            // 其余节点的父节点不存在，不会进入任何一层
+        }
+
+        List<List<T>> levels = new ArrayList<>();
+        Set<String> placed = new HashSet<>();
+        while (!current.isEmpty()) {
+            levels.add(current);
+            List<T> next = new ArrayList<>();
+            for (T node : current) {
+                String code = codeOf.apply(node);
+                placed.add(code);
+                List<T> nodeChildren = children.get(code);
+                if (nodeChildren != null) {
+                    next.addAll(nodeChildren);
+                }
+            }
+            current = next;
+        }
+
+        if (placed.size() < byCode.size()) {
+            for (T node : byCode.values()) {
+                if (!placed.contains(codeOf.apply(node))) {
+                    rejected.add(classify(node, byCode, codeOf, parentCodeOf));
+                }
+            }
+        }
+        return new Result<>(levels, rejected);
+    }
+
+    /**
+     * 沿父节点链向上查找未能分层的原因：链在某个不存在的编码处断开为父节点缺失，回到已访问的编码为循环引用
+     */
+    private static <T> Rejected<T> classify(T node,
+                                            Map<String, T> byCode,
+                                            Function<T, String> codeOf,
+                                            Function<T, String> parentCodeOf) {
+        Set<String> visited = new HashSet<>();
+        visited.add(codeOf.apply(node));
+        String cursor = parentCodeOf.apply(node);
+        while (true) {
+            T parent = byCode.get(cursor);
+            if (parent == null) {
+                return new Rejected<>(node, Reason.MISSING_PARENT, cursor);
+            }
+            if (!visited.add(cursor)) {
+                return new Rejected<>(node, Reason.CYCLE, cursor);
+            }
+            cursor = parentCodeOf.apply(parent);
+        }
+    }
+}
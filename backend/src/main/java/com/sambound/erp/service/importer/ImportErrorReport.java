@@ -0,0 +1,187 @@
+package com.sambound.erp.service.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 导入错误报告：将全部行级错误写入本地磁盘的 gzip 压缩 CSV 文件
+ * 导入线程只把错误放入队列即返回，由单独的虚拟线程批量取出写入文件，错误数量再多也不阻塞读取线程和批次线程。
+ * 第一条错误出现时才创建文件和写入线程，没有错误的导入不产生文件。
+ *
+ * <p>CSV 带 UTF-8 BOM，解压后可直接用 Excel 打开。</p>
+ */
+public final class ImportErrorReport {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportErrorReport.class);
+
+    private static final String[] HEADER = {"工作表", "行号", "字段", "错误信息"};
+    // 写入线程每次从队列中最多取出的错误数
+    private static final int DRAIN_BATCH_SIZE = 1024;
+    private static final Entry END_OF_REPORT = new Entry(null, null, null, null);
+
+    private final Path path;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final Object lifecycleLock = new Object();
+    private Thread writerThread;
+    private volatile boolean closed = false;
+    private volatile boolean writeFailed = false;
+
+    private ImportErrorReport(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * 写入指定文件的错误报告（文件在第一条错误出现时创建）
+     */
+    public static ImportErrorReport toFile(Path path) {
+        return new ImportErrorReport(path);
+    }
+
+    /**
+     * 不落盘的错误报告（同步调用、不跟踪进度时使用）
+     */
+    public static ImportErrorReport discarding() {
+        return new ImportErrorReport(null);
+    }
+
+    /**
+     * 追加一条错误（非阻塞）
+     */
+    public void append(String sheetName, Integer rowNumber, String field, String message) {
+        if (path == null || closed) {
+            return;
+        }
+        ensureWriterStarted();
+        appendedCount.incrementAndGet();
+        queue.offer(new Entry(sheetName, rowNumber, field, message));
+    }
+
+    /**
+     * 结束报告：等待队列中的错误全部写入并关闭文件（导入任务结束后调用）
+     */
+    public void close() {
+        Thread writer;
+        synchronized (lifecycleLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writer = writerThread;
+        }
+        if (writer == null) {
+            return;
+        }
+        queue.offer(END_OF_REPORT);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 报告文件是否可供下载（已结束、有错误且写入成功）
+     */
+    public boolean isAvailable() {
+        return closed && !writeFailed && appendedCount.get() > 0 && path != null && Files.exists(path);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long size() {
+        return appendedCount.get();
+    }
+
+    /**
+     * 删除报告文件（任务清除时调用）
+     */
+    public void delete() {
+        close();
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("删除导入错误报告失败: {}", path, e);
+            }
+        }
+    }
+
+    private void ensureWriterStarted() {
+        if (writerThread != null) {
+            return;
+        }
+        synchronized (lifecycleLock) {
+            if (writerThread == null && !closed) {
+                writerThread = Thread.ofVirtual()
+                        .name("import-error-report-" + path.getFileName())
+                        .start(this::drain);
+            }
+        }
+    }
+
+    /**
+     * 写入线程：批量取出队列中的错误写入文件，直到收到结束标记
+     */
+    private void drain() {
+        List<Entry> entries = new ArrayList<>(DRAIN_BATCH_SIZE);
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path)), 64 * 1024),
+                StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+            writer.write('\uFEFF');
+            printer.printRecord((Object[]) HEADER);
+            while (true) {
+                entries.add(queue.take());
+                queue.drainTo(entries, DRAIN_BATCH_SIZE - 1);
+                for (Entry entry : entries) {
+                    if (entry == END_OF_REPORT) {
+                        return;
+                    }
+                    printer.printRecord(entry.sheetName, entry.rowNumber, entry.field, entry.message);
+                }
+                entries.clear();
+            }
+        } catch (IOException e) {
+            writeFailed = true;
+            logger.error("写入导入错误报告失败: {}", path, e);
+            discardUntilEnd();
+        } catch (InterruptedException e) {
+            writeFailed = true;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 文件写入失败后继续消费队列，使 close() 能正常结束
+     */
+    private void discardUntilEnd() {
+        try {
+            while (queue.take() != END_OF_REPORT) {
+                // 丢弃
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Entry(String sheetName, Integer rowNumber, String field, String message) {
+    }
+}
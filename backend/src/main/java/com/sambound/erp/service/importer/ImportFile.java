@@ -0,0 +1,59 @@
+package com.sambound.erp.service.importer;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 已暂存到本地磁盘的导入文件
+ * 上传请求结束后 MultipartFile 的临时文件会被清理，异步导入任务需要先将其复制到自己的暂存目录；
+ * 暂存文件在任务结束前一直保留，服务重启后被中断的任务按原路径重新导入
+ *
+ * @param sha256 文件内容的 SHA-256（十六进制），复制时顺带计算，用于识别同一文件的再次导入
+ */
+public record ImportFile(String originalFilename, Path path, long size, String sha256) {
+
+    /**
+     * 将上传文件复制到暂存目录下的新文件（目录不存在时创建）
+     */
+    public static ImportFile stage(MultipartFile file, Path directory) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前运行环境不支持 SHA-256", e);
+        }
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, "erp-import-", ".upload");
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(inputStream, path, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new ImportFile(file.getOriginalFilename(), path, Files.size(path),
+                HexFormat.of().formatHex(digest.digest()));
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    /**
+     * 删除暂存文件（导入任务结束后调用）
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 默认暂存目录位于系统临时目录下，残留文件由操作系统清理
+        }
+    }
+}
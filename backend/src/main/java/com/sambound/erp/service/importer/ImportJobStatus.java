@@ -0,0 +1,16 @@
+package com.sambound.erp.service.importer;
+
+/**
+ * 导入任务状态
+ */
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sambound.erp.service.importer;
+
+/**
+ * 导入任务类型
+ */
+public enum ImportJobType {
+    MATERIAL("物料"),
+    BOM("BOM"),
+    UNIT("单位");
+
+    private final String displayName;
+
+    ImportJobType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
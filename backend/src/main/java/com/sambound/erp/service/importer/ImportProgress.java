@@ -0,0 +1,91 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.exception.ImportCancelledException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导入进度：导入过程中实时更新的计数器和取消标记，以及完整的错误报告
+ * 由导入任务创建并传入导入服务，读取线程和批次线程并发更新
+ */
+public class ImportProgress {
+
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong batchesCommitted = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private volatile long startedAtMillis = 0;
+    private final ImportErrorReport errorReport;
+
+    public ImportProgress(ImportErrorReport errorReport) {
+        this.errorReport = errorReport;
+    }
+
+    /**
+     * 不跟踪进度、不可取消、不写错误报告的实例（同步调用时使用）
+     */
+    public static ImportProgress untracked() {
+        return new ImportProgress(ImportErrorReport.discarding());
+    }
+
+    public void start() {
+        startedAtMillis = System.currentTimeMillis();
+    }
+
+    public void rowParsed() {
+        rowsParsed.incrementAndGet();
+    }
+
+    public void batchCommitted() {
+        batchesCommitted.incrementAndGet();
+    }
+
+    /**
+     * 记录一条错误：计数并异步写入错误报告（不阻塞调用线程）
+     */
+    public void recordError(String sheetName, Integer rowNumber, String field, String message) {
+        errorCount.incrementAndGet();
+        errorReport.append(sheetName, rowNumber, field, message);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 在行或批次边界检查取消标记，已取消时抛出异常中止导入
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new ImportCancelledException("导入任务已取消");
+        }
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public long getBatchesCommitted() {
+        return batchesCommitted.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * 从开始到现在的平均解析速度（行/秒）
+     */
+    public double getRowsPerSecond() {
+        long started = startedAtMillis;
+        if (started == 0) {
+            return 0;
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        return elapsed > 0 ? rowsParsed.get() * 1000.0 / elapsed : 0;
+    }
+}
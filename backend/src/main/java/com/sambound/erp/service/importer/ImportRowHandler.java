@@ -0,0 +1,21 @@
+package com.sambound.erp.service.importer;
+
+/**
+ * 导入行处理器：Excel 和 CSV 两种读取路径共用的行回调
+ * Excel 通过 {@link ExcelRowListener} 适配为 FastExcel 监听器，CSV 由 {@link CsvRowReader} 直接调用。
+ */
+public interface ImportRowHandler<T> {
+
+    /**
+     * 处理一行数据
+     *
+     * @param row      行数据
+     * @param rowIndex 行号（从 0 开始，包括表头行）
+     */
+    void handleRow(T row, int rowIndex);
+
+    /**
+     * 所有行读取完成
+     */
+    void afterAllRows();
+}
@@ -0,0 +1,155 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.entity.MaterialGroup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 物料组编码最长前缀索引（字符前缀树）
+ * 导入开始前根据本次导入的物料组和数据库中已有的物料组构建一次，构建完成后不可变，
+ * 可以被多个批次线程并发读取。查询复杂度为 O(物料编码长度)，不访问数据库。
+ *
+ * <p>匹配规则与原逐项扫描一致：优先返回本次导入的物料组中最长的前缀匹配，
+ * 导入的物料组中没有匹配时，再返回已有物料组中最长的前缀匹配。</p>
+ */
+public final class MaterialGroupPrefixIndex {
+
+    private static final MaterialGroupPrefixIndex EMPTY = new MaterialGroupPrefixIndex(new Node(), 0);
+
+    private final Node root;
+    private final int size;
+
+    private MaterialGroupPrefixIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static MaterialGroupPrefixIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 构建索引
+     *
+     * @param importedGroups 本次导入的物料组（优先匹配）
+     * @param existingGroups 数据库中已有的物料组
+     */
+    public static MaterialGroupPrefixIndex build(Collection<MaterialGroup> importedGroups,
+                                                 Collection<MaterialGroup> existingGroups) {
+        BuilderNode builderRoot = new BuilderNode();
+        int count = 0;
+        for (MaterialGroup group : existingGroups) {
+            if (insert(builderRoot, group, false)) {
+                count++;
+            }
+        }
+        for (MaterialGroup group : importedGroups) {
+            if (insert(builderRoot, group, true)) {
+                count++;
+            }
+        }
+        return new MaterialGroupPrefixIndex(builderRoot.freeze(), count);
+    }
+
+    private static boolean insert(BuilderNode root, MaterialGroup group, boolean imported) {
+        String code = group.getCode();
+        if (code == null || code.isEmpty()) {
+            return false;
+        }
+        BuilderNode node = root;
+        for (int i = 0; i < code.length(); i++) {
+            node = node.children.computeIfAbsent(code.charAt(i), c -> new BuilderNode());
+        }
+        boolean added = node.group == null;
+        // 同一编码同时存在于导入数据和数据库中时，使用导入的对象
+        if (imported || node.group == null) {
+            node.group = group;
+            node.imported = imported;
+        }
+        return added;
+    }
+
+    /**
+     * 查找物料编码的最长前缀匹配物料组
+     *
+     * @param materialCode 物料编码
+     * @return 匹配到的物料组，如果未找到返回 null
+     */
+    public MaterialGroup findLongestPrefix(String materialCode) {
+        if (materialCode == null) {
+            return null;
+        }
+        String code = materialCode.trim();
+        MaterialGroup longestImported = null;
+        MaterialGroup longestExisting = null;
+        Node node = root;
+        for (int i = 0; i < code.length(); i++) {
+            node = node.child(code.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.group != null) {
+                if (node.imported) {
+                    longestImported = node.group;
+                } else {
+                    longestExisting = node.group;
+                }
+            }
+        }
+        return longestImported != null ? longestImported : longestExisting;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 不可变节点：子节点按字符排序存放在数组中，通过二分查找定位
+     */
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final MaterialGroup group;
+        private final boolean imported;
+
+        private Node() {
+            this(new char[0], new Node[0], null, false);
+        }
+
+        private Node(char[] keys, Node[] children, MaterialGroup group, boolean imported) {
+            this.keys = keys;
+            this.children = children;
+            this.group = group;
+            this.imported = imported;
+        }
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * 构建阶段使用的可变节点
+     */
+    private static final class BuilderNode {
+        private final TreeMap<Character, BuilderNode> children = new TreeMap<>();
+        private MaterialGroup group;
+        private boolean imported;
+
+        private Node freeze() {
+            char[] keys = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                frozen[i] = entry.getValue().freeze();
+                i++;
+            }
+            return new Node(keys, frozen, group, imported);
+        }
+    }
+}
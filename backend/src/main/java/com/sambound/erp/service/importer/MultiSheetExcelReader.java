@@ -0,0 +1,60 @@
+package com.sambound.erp.service.importer;
+
+import cn.idev.excel.ExcelReader;
+import cn.idev.excel.FastExcel;
+import cn.idev.excel.read.metadata.ReadSheet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多工作表单次读取器
+ * 工作簿只打开、解压一次，各工作表的行在同一次扫描中分发给各自的监听器。
+ * 工作表按工作簿中的实际顺序解析，与注册顺序无关；
+ * 监听器如依赖其他工作表的结果，需要自行处理先后顺序。
+ */
+public class MultiSheetExcelReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiSheetExcelReader.class);
+
+    // Kingdee 导出文件前两行为表头（英文字段名 + 中文说明）
+    private static final int DEFAULT_HEAD_ROW_NUMBER = 2;
+
+    private final InputStream inputStream;
+    private final List<ReadSheet> readSheets = new ArrayList<>();
+
+    public MultiSheetExcelReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * 注册工作表及其行处理器
+     */
+    public <T> MultiSheetExcelReader sheet(String sheetName, Class<T> headClass, ImportRowHandler<T> handler) {
+        readSheets.add(FastExcel.readSheet(sheetName)
+                .head(headClass)
+                .headRowNumber(DEFAULT_HEAD_ROW_NUMBER)
+                .registerReadListener(new ExcelRowListener<>(handler))
+                .build());
+        return this;
+    }
+
+    /**
+     * 单次扫描读取所有已注册的工作表
+     * 工作簿中不存在的工作表会被忽略，其监听器不会收到任何回调
+     */
+    public void read() {
+        if (readSheets.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try (ExcelReader excelReader = FastExcel.read(inputStream).build()) {
+            excelReader.read(readSheets);
+        }
+        logger.info("工作簿单次扫描完成：{} 个工作表，耗时 {}ms",
+                readSheets.size(), System.currentTimeMillis() - startTime);
+    }
+}
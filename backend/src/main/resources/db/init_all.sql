@@ -13,6 +13,9 @@ BEGIN;
 -- ============================================
 -- 第一步：删除所有现有表（按依赖顺序）
 -- ============================================
+-- 删除导入任务和检查点表
+DROP TABLE IF EXISTS import_jobs CASCADE;
+DROP TABLE IF EXISTS import_checkpoints CASCADE;
 -- 删除BOM相关表
 DROP TABLE IF EXISTS bom_items CASCADE;
 DROP TABLE IF EXISTS bill_of_materials CASCADE;
@@ -115,6 +118,7 @@ CREATE TABLE units (
     name VARCHAR(100) NOT NULL,
     unit_group_id BIGINT NOT NULL REFERENCES unit_groups(id) ON DELETE CASCADE,
     enabled BOOLEAN NOT NULL DEFAULT TRUE,
+    content_hash BIGINT,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
@@ -155,6 +159,7 @@ CREATE TABLE materials (
     erp_cls_id VARCHAR(50),
     material_group_id BIGINT NOT NULL REFERENCES material_groups(id) ON DELETE RESTRICT,
     base_unit_id BIGINT NOT NULL REFERENCES units(id) ON DELETE RESTRICT,
+    content_hash BIGINT,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
@@ -168,6 +173,7 @@ CREATE TABLE bill_of_materials (
     category VARCHAR(100),
     usage VARCHAR(100),
     description TEXT,
+    content_hash BIGINT,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT uk_bom_material_version UNIQUE (material_id, version)
@@ -191,6 +197,43 @@ CREATE TABLE bom_items (
     CONSTRAINT chk_bom_item_sequence CHECK (sequence > 0)
 );
 
+-- bom_items、audit_logs 的主键由 Hibernate 按 pooled 序列分配（每次 50 个ID，与实体的 allocationSize 一致）
+-- 注意：此后不指定 id、依赖列默认值（nextval）的 INSERT（如手工SQL脚本）每插入一行ID跳过 50
+ALTER SEQUENCE bom_items_id_seq INCREMENT BY 50;
+ALTER SEQUENCE audit_logs_id_seq INCREMENT BY 50;
+
+-- 导入检查点表（每个写入批次一行，用于中断后的断点续传）
+CREATE TABLE import_checkpoints (
+    id BIGSERIAL PRIMARY KEY,
+    job_id VARCHAR(36) NOT NULL,
+    job_type VARCHAR(20) NOT NULL,
+    sheet_name VARCHAR(100) NOT NULL,
+    batch_index INTEGER NOT NULL,
+    first_row INTEGER NOT NULL,
+    last_row INTEGER NOT NULL,
+    row_count INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    error_message VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- 同一批次（按起始行识别）只有一行，并发或重复记录时由 ON CONFLICT 更新
+    CONSTRAINT uk_import_checkpoints_batch UNIQUE (job_id, sheet_name, first_row)
+);
+
+-- 导入任务表（排队中和运行中的任务，服务重启后恢复）
+CREATE TABLE import_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    job_type VARCHAR(20) NOT NULL,
+    dry_run BOOLEAN NOT NULL,
+    original_filename VARCHAR(255),
+    file_path VARCHAR(1000) NOT NULL,
+    file_size BIGINT NOT NULL,
+    file_hash VARCHAR(64) NOT NULL,
+    submitted_by VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    submitted_at TIMESTAMP NOT NULL,
+    started_at TIMESTAMP
+);
+
 -- ============================================
 -- 第三步：创建索引
 -- ============================================
@@ -240,10 +283,13 @@ CREATE INDEX idx_materials_base_unit_id ON materials(base_unit_id);
 CREATE INDEX idx_bill_of_materials_material_id ON bill_of_materials(material_id);
 CREATE INDEX idx_bill_of_materials_version ON bill_of_materials(version);
 CREATE INDEX idx_bom_items_bom_id ON bom_items(bom_id);
-CREATE INDEX idx_bom_items_child_material_id ON bom_items(child_material_id);
+-- 反查沿 子项物料 → BOM 向上递归，复合索引同时覆盖按子项物料的单列查询
+CREATE INDEX idx_bom_items_child_material_bom ON bom_items(child_material_id, bom_id);
 CREATE INDEX idx_bom_items_child_unit_id ON bom_items(child_unit_id);
 CREATE INDEX idx_bom_items_sequence ON bom_items(bom_id, sequence);
 
+-- 导入检查点表按 (job_id, sheet_name) 的查询使用唯一约束 uk_import_checkpoints_batch 的索引
+
 -- ============================================
 -- 第四步：添加表注释和列注释
 -- ============================================
@@ -259,6 +305,8 @@ COMMENT ON TABLE units IS '单位表';
 COMMENT ON TABLE unit_conversions IS '单位转换表';
 COMMENT ON TABLE material_groups IS '物料组表';
 COMMENT ON TABLE materials IS '物料表';
+COMMENT ON TABLE import_checkpoints IS '导入检查点表';
+COMMENT ON TABLE import_jobs IS '导入任务表';
 
 COMMENT ON COLUMN users.id IS '用户ID';
 COMMENT ON COLUMN users.username IS '用户名（唯一）';
@@ -307,6 +355,7 @@ COMMENT ON COLUMN units.code IS '单位编码（唯一）';
 COMMENT ON COLUMN units.name IS '单位名称';
 COMMENT ON COLUMN units.unit_group_id IS '所属单位组ID';
 COMMENT ON COLUMN units.enabled IS '是否启用';
+COMMENT ON COLUMN units.content_hash IS '导入内容指纹（内容未变化时跳过写入，手工修改后清空）';
 COMMENT ON COLUMN units.created_at IS '创建时间';
 COMMENT ON COLUMN units.updated_at IS '更新时间';
 
@@ -335,9 +384,34 @@ COMMENT ON COLUMN materials.old_number IS '旧编号';
 COMMENT ON COLUMN materials.description IS '描述';
 COMMENT ON COLUMN materials.material_group_id IS '所属物料组ID';
 COMMENT ON COLUMN materials.base_unit_id IS '基础单位ID';
+COMMENT ON COLUMN materials.content_hash IS '导入内容指纹（内容未变化时跳过写入）';
 COMMENT ON COLUMN materials.created_at IS '创建时间';
 COMMENT ON COLUMN materials.updated_at IS '更新时间';
 
+COMMENT ON COLUMN import_checkpoints.id IS '检查点ID';
+COMMENT ON COLUMN import_checkpoints.job_id IS '导入任务ID';
+COMMENT ON COLUMN import_checkpoints.job_type IS '导入类型（MATERIAL, BOM等）';
+COMMENT ON COLUMN import_checkpoints.sheet_name IS '工作表名称';
+COMMENT ON COLUMN import_checkpoints.batch_index IS '批次序号';
+COMMENT ON COLUMN import_checkpoints.first_row IS '批次覆盖的第一行行号';
+COMMENT ON COLUMN import_checkpoints.last_row IS '批次覆盖的最后一行行号';
+COMMENT ON COLUMN import_checkpoints.row_count IS '批次写入的记录数';
+COMMENT ON COLUMN import_checkpoints.status IS '批次状态（COMMITTED, FAILED）';
+COMMENT ON COLUMN import_checkpoints.error_message IS '失败原因';
+COMMENT ON COLUMN import_checkpoints.created_at IS '创建时间';
+
+COMMENT ON COLUMN import_jobs.id IS '任务ID';
+COMMENT ON COLUMN import_jobs.job_type IS '导入类型（MATERIAL, BOM, UNIT）';
+COMMENT ON COLUMN import_jobs.dry_run IS '是否只做预检';
+COMMENT ON COLUMN import_jobs.original_filename IS '上传时的原始文件名';
+COMMENT ON COLUMN import_jobs.file_path IS '暂存文件的本地路径';
+COMMENT ON COLUMN import_jobs.file_size IS '暂存文件大小（字节）';
+COMMENT ON COLUMN import_jobs.file_hash IS '导入文件内容的SHA-256';
+COMMENT ON COLUMN import_jobs.submitted_by IS '提交用户';
+COMMENT ON COLUMN import_jobs.status IS '任务状态（QUEUED, RUNNING）';
+COMMENT ON COLUMN import_jobs.submitted_at IS '提交时间';
+COMMENT ON COLUMN import_jobs.started_at IS '开始运行时间';
+
 -- ============================================
 -- 第五步：插入初始数据
 -- ============================================
@@ -0,0 +1,23 @@
+-- ============================================
+-- 迁移脚本：导入检查点改按导入任务记录
+-- 说明: import_checkpoints 以 job_id（导入任务ID）取代 file_hash，唯一约束改为 (job_id, sheet_name, first_row)。
+--       检查点只用于同一任务在服务重启后的续传；再次上传同一文件是新的任务，不再跳过上一次导入已提交的行
+--       （期间数据库可能已被修改）。任务结束后应用删除该任务的检查点。
+--       原有检查点按文件记录，无法对应到任务，一并清除：未结束的任务重启后从头导入，未变化的行由内容指纹跳过。
+-- 执行: psql -h localhost -p 5432 -U postgres -d erp_db -f migrate_import_checkpoint_job.sql
+-- 注意: 在 migrate_import_jobs.sql 之后、部署新版本应用之前执行；执行期间不要运行导入任务
+-- ============================================
+
+BEGIN;
+
+DELETE FROM import_checkpoints;
+
+ALTER TABLE import_checkpoints DROP CONSTRAINT uk_import_checkpoints_batch;
+ALTER TABLE import_checkpoints DROP COLUMN file_hash;
+ALTER TABLE import_checkpoints ADD COLUMN job_id VARCHAR(36) NOT NULL;
+ALTER TABLE import_checkpoints
+    ADD CONSTRAINT uk_import_checkpoints_batch UNIQUE (job_id, sheet_name, first_row);
+
+COMMENT ON COLUMN import_checkpoints.job_id IS '导入任务ID';
+
+COMMIT;
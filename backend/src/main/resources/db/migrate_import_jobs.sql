@@ -0,0 +1,57 @@
+-- ============================================
+-- 迁移脚本：导入任务表 + 导入检查点唯一约束
+-- 说明: 1. 新增 import_jobs 表，登记排队中和运行中的导入任务，服务重启后重新排队；
+--       2. import_checkpoints 增加 (job_type, file_hash, sheet_name, first_row) 唯一约束，
+--          检查点改为 INSERT ... ON CONFLICT 写入，并发导入同一文件时不再产生重复行。
+--          检查点每个批次一行，唯一键包含批次起始行；按 (job_type, file_hash, sheet_name) 的查询
+--          使用该约束的索引，原 idx_import_checkpoints_file 索引一并删除。
+-- 执行: psql -h localhost -p 5432 -U postgres -d erp_db -f migrate_import_jobs.sql
+-- 注意: 部署新版本应用之前执行；执行期间不要运行导入任务
+-- ============================================
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS import_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    job_type VARCHAR(20) NOT NULL,
+    dry_run BOOLEAN NOT NULL,
+    original_filename VARCHAR(255),
+    file_path VARCHAR(1000) NOT NULL,
+    file_size BIGINT NOT NULL,
+    file_hash VARCHAR(64) NOT NULL,
+    submitted_by VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    submitted_at TIMESTAMP NOT NULL,
+    started_at TIMESTAMP
+);
+
+COMMENT ON TABLE import_jobs IS '导入任务表';
+COMMENT ON COLUMN import_jobs.id IS '任务ID';
+COMMENT ON COLUMN import_jobs.job_type IS '导入类型（MATERIAL, BOM, UNIT）';
+COMMENT ON COLUMN import_jobs.dry_run IS '是否只做预检';
+COMMENT ON COLUMN import_jobs.original_filename IS '上传时的原始文件名';
+COMMENT ON COLUMN import_jobs.file_path IS '暂存文件的本地路径';
+COMMENT ON COLUMN import_jobs.file_size IS '暂存文件大小（字节）';
+COMMENT ON COLUMN import_jobs.file_hash IS '导入文件内容的SHA-256';
+COMMENT ON COLUMN import_jobs.submitted_by IS '提交用户';
+COMMENT ON COLUMN import_jobs.status IS '任务状态（QUEUED, RUNNING）';
+COMMENT ON COLUMN import_jobs.submitted_at IS '提交时间';
+COMMENT ON COLUMN import_jobs.started_at IS '开始运行时间';
+
+-- 清理已有的重复检查点：同一批次保留一行，已提交优先，其次行范围更大、更新的记录
+DELETE FROM import_checkpoints c
+USING (
+    SELECT id, ROW_NUMBER() OVER (
+        PARTITION BY job_type, file_hash, sheet_name, first_row
+        ORDER BY (status = 'COMMITTED') DESC, last_row DESC, created_at DESC, id DESC
+    ) AS rn
+    FROM import_checkpoints
+) d
+WHERE c.id = d.id AND d.rn > 1;
+
+ALTER TABLE import_checkpoints
+    ADD CONSTRAINT uk_import_checkpoints_batch UNIQUE (job_type, file_hash, sheet_name, first_row);
+
+DROP INDEX IF EXISTS idx_import_checkpoints_file;
+
+COMMIT;
@@ -0,0 +1,22 @@
+-- ============================================
+-- 迁移脚本：bom_items、audit_logs 主键改为 pooled 序列分配
+-- 说明: 实体改用 SEQUENCE 主键（每次分配 50 个ID）后，Hibernate 才能按 JDBC 批次插入；
+--       数据库序列的 INCREMENT BY 必须与实体的 allocationSize 一致。
+--       已有数据的ID保持不变，序列从当前最大ID之后继续分配。
+-- 执行: psql -h localhost -p 5432 -U postgres -d erp_db -f migrate_pooled_sequences.sql
+-- 注意: 需在部署新版本应用之前执行（新版本启动时会校验序列步长）
+--       执行后，不指定 id、依赖 BIGSERIAL 列默认值的 INSERT（如手工SQL脚本、数据修复脚本）每插入一行
+--       调用一次 nextval，ID 按 50 跳号（例如插入 1 万行占用约 50 万个ID）；数据本身不受影响，
+--       但不要依赖这两张表的ID连续。应用内的写入按块分配ID，不跳号。
+-- ============================================
+
+BEGIN;
+
+-- 序列值 v 代表ID区间 (v - 50, v]，将序列置于当前最大ID处，下一次分配从最大ID + 1 开始
+ALTER SEQUENCE bom_items_id_seq INCREMENT BY 50;
+SELECT setval('bom_items_id_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bom_items), 1), true);
+
+ALTER SEQUENCE audit_logs_id_seq INCREMENT BY 50;
+SELECT setval('audit_logs_id_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM audit_logs), 1), true);
+
+COMMIT;
@@ -0,0 +1,12 @@
+-- ============================================
+-- 迁移脚本：bom_items 子项物料索引改为 (child_material_id, bom_id) 复合索引
+-- 说明: BOM反查以一条递归查询沿 子项物料 → 明细 → BOM 逐层向上，
+--       复合索引让每一层只按索引定位父项BOM；原单列索引被复合索引覆盖，一并删除。
+-- 执行: psql -h localhost -p 5432 -U postgres -d erp_db -f migrate_where_used_index.sql
+-- 注意: CONCURRENTLY 不能在事务中执行，脚本不包 BEGIN/COMMIT；可在应用运行期间执行
+-- ============================================
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bom_items_child_material_bom
+    ON bom_items(child_material_id, bom_id);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_bom_items_child_material_id;
@@ -0,0 +1,51 @@
+package com.sambound.erp.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BomItemRepositoryImplTest {
+
+    @Test
+    void eachSequenceValueCoversOneBlockEndingAtTheValue() {
+        Long[] ids = BomItemRepositoryImpl.expandIdBlocks(List.of(150L, 200L), 50, 60);
+
+        assertThat(ids).hasSize(60);
+        assertThat(ids[0]).isEqualTo(101L);
+        assertThat(ids[49]).isEqualTo(150L);
+        assertThat(ids[50]).isEqualTo(151L);
+        assertThat(ids[59]).isEqualTo(160L);
+    }
+
+    @Test
+    void firstSequenceValueCoversOnlyItself() {
+        Long[] ids = BomItemRepositoryImpl.expandIdBlocks(List.of(1L, 51L), 50, 3);
+
+        assertThat(ids).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void blockSizeFollowsTheSequenceIncrement() {
+        // 未执行迁移脚本的库：INCREMENT BY 1，每个序列值只对应一个ID
+        Long[] ids = BomItemRepositoryImpl.expandIdBlocks(List.of(7L, 8L, 9L, 10L), 1, 3);
+
+        assertThat(ids).containsExactly(7L, 8L, 9L);
+    }
+
+    @Test
+    void idsDoNotOverlapAcrossAllocations() {
+        Long[] first = BomItemRepositoryImpl.expandIdBlocks(List.of(101L, 151L), 50, 50);
+        Long[] second = BomItemRepositoryImpl.expandIdBlocks(List.of(201L, 251L), 50, 50);
+
+        assertThat(first[first.length - 1]).isLessThan(second[0]);
+    }
+
+    @Test
+    void tooFewSequenceValuesFail() {
+        assertThatThrownBy(() -> BomItemRepositoryImpl.expandIdBlocks(List.of(50L), 50, 60))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
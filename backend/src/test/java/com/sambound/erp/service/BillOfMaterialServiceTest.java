@@ -0,0 +1,255 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.dto.BomQueryDTO;
+import com.sambound.erp.dto.BomWhereUsedDTO;
+import com.sambound.erp.entity.BillOfMaterial;
+import com.sambound.erp.entity.Material;
+import com.sambound.erp.repository.BillOfMaterialRepository;
+import com.sambound.erp.repository.BillOfMaterialRepository.ExplodedBomLine;
+import com.sambound.erp.repository.BillOfMaterialRepository.WhereUsedLine;
+import com.sambound.erp.repository.BomItemRepository;
+import com.sambound.erp.repository.MaterialRepository;
+import com.sambound.erp.repository.UnitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BillOfMaterialServiceTest {
+
+    // 测试数据约定：物料 n 的编码为 "M<n>"，其 V000 版本BOM的ID为 100 + n
+    private static final long ROOT = 1L;
+
+    private BillOfMaterialRepository bomRepository;
+    private MaterialRepository materialRepository;
+    private BomGraphService bomGraphService;
+    private BillOfMaterialService service;
+
+    @BeforeEach
+    void setUp() {
+        bomRepository = mock(BillOfMaterialRepository.class);
+        materialRepository = mock(MaterialRepository.class);
+        bomGraphService = mock(BomGraphService.class);
+        service = new BillOfMaterialService(bomRepository, mock(BomItemRepository.class), materialRepository,
+                mock(UnitRepository.class), bomGraphService);
+
+        Material root = material(ROOT);
+        when(materialRepository.findByCode("M1")).thenReturn(Optional.of(root));
+        when(bomRepository.findByMaterialIdAndVersion(ROOT, "V000")).thenReturn(Optional.of(
+                BillOfMaterial.builder().id(bomId(ROOT)).material(root).version("V000").build()));
+        when(bomGraphService.explode(bomId(ROOT))).thenReturn(Optional.empty());
+        when(bomGraphService.whereUsed(ROOT)).thenReturn(Optional.empty());
+    }
+
+    private static Material material(long id) {
+        return Material.builder().id(id).code("M" + id).name("M" + id).build();
+    }
+
+    private static long bomId(long materialId) {
+        return 100 + materialId;
+    }
+
+    /**
+     * BOM parent 中序号为 sequence 的明细，子项为物料 child；hasBom 表示子项有 V000 版本的BOM
+     */
+    private static ExplodedBomLine line(long parent, int sequence, long child, boolean hasBom) {
+        return new ExplodedBomLine(bomId(parent), sequence, child, "M" + child, "M" + child, null, null, null,
+                hasBom ? bomId(child) : null, hasBom ? "V000" : null, null,
+                BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO, null, "PCS", "PCS");
+    }
+
+    private BomQueryDTO explode(ExplodedBomLine... lines) {
+        when(bomRepository.explode(bomId(ROOT))).thenReturn(List.of(lines));
+        return service.queryBomForward("M1", "V000");
+    }
+
+    private static List<String> codes(List<BomQueryDTO> nodes) {
+        return nodes.stream().map(BomQueryDTO::materialCode).toList();
+    }
+
+    @Test
+    void childrenAreNestedAndSortedBySequence() {
+        BomQueryDTO root = explode(
+                line(1, 20, 3, false),
+                line(1, 10, 2, true),
+                line(2, 10, 4, false));
+
+        assertThat(root.bomId()).isEqualTo(bomId(ROOT));
+        assertThat(codes(root.children())).containsExactly("M2", "M3");
+        assertThat(codes(root.children().getFirst().children())).containsExactly("M4");
+        assertThat(root.children().get(1).children()).isEmpty();
+    }
+
+    @Test
+    void sharedSubAssemblyIsExpandedOnlyAtItsFirstOccurrence() {
+        // 1 → 2 → 4 → 5，1 → 3 → 4：与逐层递归查询一致，BOM 4 只在第一次出现的位置（2 之下）展开
+        BomQueryDTO root = explode(
+                line(1, 10, 2, true),
+                line(1, 20, 3, true),
+                line(2, 10, 4, true),
+                line(3, 10, 4, true),
+                line(4, 10, 5, false));
+
+        BomQueryDTO viaTwo = root.children().get(0).children().getFirst();
+        BomQueryDTO viaThree = root.children().get(1).children().getFirst();
+        assertThat(viaTwo.materialCode()).isEqualTo("M4");
+        assertThat(codes(viaTwo.children())).containsExactly("M5");
+        assertThat(viaThree.materialCode()).isEqualTo("M4");
+        assertThat(viaThree.bomId()).isEqualTo(bomId(4));
+        assertThat(viaThree.children()).isEmpty();
+    }
+
+    @Test
+    void cyclicReferenceKeepsTheNodeWithoutExpandingIt() {
+        // 1 → 2 → 3 → 1，3 → 4
+        BomQueryDTO root = explode(
+                line(1, 10, 2, true),
+                line(2, 10, 3, true),
+                line(3, 10, 1, true),
+                line(3, 20, 4, false));
+
+        BomQueryDTO three = root.children().getFirst().children().getFirst();
+        assertThat(codes(three.children())).containsExactly("M1", "M4");
+        assertThat(three.children().getFirst().bomId()).isEqualTo(bomId(ROOT));
+        assertThat(three.children().getFirst().children()).isEmpty();
+    }
+
+    @Test
+    void treeSizeIsLinearInDistinctItems() {
+        // 每层两条明细指向同一个下层BOM：2^30 条路径，树中只有 60 个节点
+        int levels = 30;
+        List<ExplodedBomLine> lines = new ArrayList<>();
+        for (long m = ROOT; m < ROOT + levels; m++) {
+            lines.add(line(m, 10, m + 1, m + 1 < ROOT + levels));
+            lines.add(line(m, 20, m + 1, m + 1 < ROOT + levels));
+        }
+
+        BomQueryDTO root = explode(lines.toArray(ExplodedBomLine[]::new));
+
+        assertThat(countNodes(root.children())).isEqualTo(2 * levels);
+    }
+
+    @Test
+    void deepChainIsBuiltWithoutRecursion() {
+        int depth = 50_000;
+        List<ExplodedBomLine> lines = new ArrayList<>(depth);
+        for (long m = ROOT; m < ROOT + depth; m++) {
+            lines.add(line(m, 10, m + 1, true));
+        }
+
+        BomQueryDTO root = explode(lines.toArray(ExplodedBomLine[]::new));
+
+        assertThat(countNodes(root.children())).isEqualTo(depth);
+    }
+
+    /**
+     * 物料 parent 的BOM中序号为 sequence 的明细使用了物料 child
+     */
+    private static WhereUsedLine usage(long child, long parent, int sequence) {
+        return new WhereUsedLine(child, "M" + child, parent, "M" + parent, "M" + parent, null, null, null,
+                bomId(parent), "V000", null, sequence, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO, null,
+                "PCS", "PCS");
+    }
+
+    private List<BomQueryDTO> whereUsed(WhereUsedLine... lines) {
+        when(bomRepository.whereUsed(ROOT)).thenReturn(List.of(lines));
+        return service.queryBomBackward("M1", null);
+    }
+
+    private List<BomWhereUsedDTO> whereUsedFlat(WhereUsedLine... lines) {
+        when(bomRepository.whereUsed(ROOT)).thenReturn(List.of(lines));
+        return service.queryBomBackwardFlat("M1", null);
+    }
+
+    @Test
+    void whereUsedParentReachedTwiceIsExpandedOnlyOnce() {
+        // 1 用于 2 和 3，2 和 3 都用于 4，4 用于 5
+        List<BomQueryDTO> parents = whereUsed(
+                usage(1, 2, 10),
+                usage(1, 3, 10),
+                usage(2, 4, 10),
+                usage(3, 4, 20),
+                usage(4, 5, 10));
+
+        assertThat(codes(parents)).containsExactly("M2", "M3");
+        BomQueryDTO viaTwo = parents.get(0).children().getFirst();
+        BomQueryDTO viaThree = parents.get(1).children().getFirst();
+        assertThat(viaTwo.materialCode()).isEqualTo("M4");
+        assertThat(codes(viaTwo.children())).containsExactly("M5");
+        assertThat(viaThree.materialCode()).isEqualTo("M4");
+        assertThat(viaThree.sequence()).isEqualTo(20);
+        assertThat(viaThree.children()).isEmpty();
+    }
+
+    @Test
+    void whereUsedCycleKeepsTheNodeWithoutExpandingIt() {
+        List<BomQueryDTO> parents = whereUsed(
+                usage(1, 2, 10),
+                usage(2, 1, 10));
+
+        assertThat(codes(parents)).containsExactly("M2");
+        assertThat(codes(parents.getFirst().children())).containsExactly("M1");
+        assertThat(parents.getFirst().children().getFirst().children()).isEmpty();
+    }
+
+    @Test
+    void whereUsedKeepsOneNodePerParentBom() {
+        List<BomQueryDTO> parents = whereUsed(
+                usage(1, 2, 10),
+                usage(1, 2, 30));
+
+        assertThat(parents).singleElement().satisfies(node -> assertThat(node.sequence()).isEqualTo(10));
+    }
+
+    @Test
+    void flatWhereUsedListsEachUsageOnceAtItsShortestLevel() {
+        // 3 直接使用 1（第 1 层），也经 2 间接使用 1（第 2 层）；3 的上层 4 只在第 2 层出现，不在第 3 层重复
+        List<BomWhereUsedDTO> rows = whereUsedFlat(
+                usage(1, 2, 10),
+                usage(1, 3, 10),
+                usage(2, 3, 20),
+                usage(3, 4, 10));
+
+        assertThat(rows)
+                .extracting(BomWhereUsedDTO::level, BomWhereUsedDTO::childMaterialCode, BomWhereUsedDTO::materialCode)
+                .containsExactly(
+                        tuple(1, "M1", "M2"),
+                        tuple(1, "M1", "M3"),
+                        tuple(2, "M2", "M3"),
+                        tuple(2, "M3", "M4"));
+    }
+
+    @Test
+    void flatWhereUsedStopsAtCycles() {
+        List<BomWhereUsedDTO> rows = whereUsedFlat(
+                usage(1, 2, 10),
+                usage(2, 3, 10),
+                usage(3, 1, 10));
+
+        assertThat(rows)
+                .extracting(BomWhereUsedDTO::level, BomWhereUsedDTO::childMaterialCode, BomWhereUsedDTO::materialCode)
+                .containsExactly(
+                        tuple(1, "M1", "M2"),
+                        tuple(2, "M2", "M3"),
+                        tuple(3, "M3", "M1"));
+    }
+
+    private static long countNodes(List<BomQueryDTO> nodes) {
+        long count = 0;
+        List<BomQueryDTO> pending = new ArrayList<>(nodes);
+        while (!pending.isEmpty()) {
+            BomQueryDTO node = pending.removeLast();
+            count++;
+            pending.addAll(node.children());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,97 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.repository.BillOfMaterialRepository;
+import com.sambound.erp.repository.BillOfMaterialRepository.GraphBom;
+import com.sambound.erp.repository.MaterialRepository;
+import com.sambound.erp.repository.UnitRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BomGraphServiceTest {
+
+    private static final long BOM_ID = 1L;
+
+    private BillOfMaterialRepository bomRepository;
+    private BomGraphService service;
+    private final CountDownLatch refreshStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseRefresh = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        bomRepository = mock(BillOfMaterialRepository.class);
+        when(bomRepository.countGraph()).thenReturn(new BillOfMaterialRepository.GraphSize(1, 0));
+        // 全量加载：一个没有明细的BOM
+        doAnswer(invocation -> {
+            Consumer<GraphBom> bomConsumer = invocation.getArgument(0);
+            bomConsumer.accept(new GraphBom(BOM_ID, 10L, "V000"));
+            return null;
+        }).when(bomRepository).streamGraph(any(), any());
+        // 增量刷新：等待测试放行，模拟刷新尚未完成
+        doAnswer(invocation -> {
+            refreshStarted.countDown();
+            assertThat(releaseRefresh.await(10, TimeUnit.SECONDS)).isTrue();
+            Collection<Long> ids = invocation.getArgument(0);
+            Consumer<GraphBom> bomConsumer = invocation.getArgument(1);
+            ids.forEach(id -> bomConsumer.accept(new GraphBom(id, 10L, "V000")));
+            return null;
+        }).when(bomRepository).streamGraph(anyCollection(), any(), any());
+
+        service = new BomGraphService(bomRepository, mock(MaterialRepository.class), mock(UnitRepository.class),
+                mock(PlatformTransactionManager.class), true);
+        service.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseRefresh.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void queriesUseTheGraphOnceLoaded() {
+        assertThat(service.isReady()).isTrue();
+        assertThat(service.explode(BOM_ID)).isPresent();
+        assertThat(service.whereUsed(10L)).isPresent();
+    }
+
+    @Test
+    void queriesFallBackToTheDatabaseUntilCommittedChangesAreApplied() throws InterruptedException {
+        service.refreshAfterCommit(List.of(BOM_ID));
+
+        // 刷新进行中：结构图中仍是旧结构，查询必须改用数据库
+        assertThat(refreshStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.explode(BOM_ID)).isEmpty();
+        assertThat(service.whereUsed(10L)).isEmpty();
+
+        releaseRefresh.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (service.explode(BOM_ID).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(service.explode(BOM_ID)).isPresent();
+        assertThat(service.whereUsed(10L)).isPresent();
+    }
+
+    @Test
+    void refreshIsVisibleAsPendingBeforeTheWriteCallReturns() {
+        // 没有事务同步时 refreshAfterCommit 立即入队；入队后的第一次查询即改用数据库，不依赖刷新线程的调度
+        service.refreshAfterCommit(List.of(BOM_ID));
+
+        assertThat(service.explode(BOM_ID)).isEmpty();
+    }
+}
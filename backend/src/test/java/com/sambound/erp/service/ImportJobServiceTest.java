@@ -0,0 +1,318 @@
+package com.sambound.erp.service;
+
+import com.sambound.erp.dto.ImportJobResponse;
+import com.sambound.erp.entity.ImportJobRecord;
+import com.sambound.erp.exception.ImportCancelledException;
+import com.sambound.erp.repository.ImportJobRecordRepository;
+import com.sambound.erp.service.importer.ImportJobStatus;
+import com.sambound.erp.service.importer.ImportJobType;
+import com.sambound.erp.service.importer.ImportProgress;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImportJobServiceTest {
+
+    private static final String USER = "alice";
+
+    @TempDir
+    Path stagingDirectory;
+
+    private MaterialImportService materialImportService;
+    private BomImportService bomImportService;
+    private ImportJobRecordRepository jobRecordRepository;
+    private ImportCheckpointService checkpointService;
+    private final List<Runnable> deferredTasks = new ArrayList<>();
+    private boolean deferTasks = false;
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+    private ImportJobService service;
+
+    @BeforeEach
+    void setUp() {
+        materialImportService = mock(MaterialImportService.class);
+        bomImportService = mock(BomImportService.class);
+        jobRecordRepository = mock(ImportJobRecordRepository.class);
+        checkpointService = mock(ImportCheckpointService.class);
+        // 默认任务在提交线程中同步执行，submit 返回时任务已结束；deferTasks 为 true 时任务保持运行中
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            if (deferTasks) {
+                deferredTasks.add(task);
+            } else {
+                task.run();
+            }
+            return null;
+        }).when(executor).execute(any());
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return now;
+            }
+        };
+        service = new ImportJobService(materialImportService, bomImportService, mock(UnitImportService.class),
+                jobRecordRepository, checkpointService, executor, stagingDirectory.toString(), clock);
+    }
+
+    private static MockMultipartFile upload(String content) {
+        return new MockMultipartFile("file", "materials.xlsx", null, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int stagedUploads() throws IOException {
+        try (var staged = Files.newDirectoryStream(stagingDirectory, "erp-import-*.upload")) {
+            int count = 0;
+            for (Path ignored : staged) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Test
+    void importUsesTheJobIdAsCheckpointKeyAndClearsItWhenFinished() {
+        ImportJobResponse job = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        assertThat(job.status()).isEqualTo(ImportJobStatus.SUCCEEDED);
+        verify(materialImportService).importFromExcel(any(), eq(job.jobId()), any(), eq(false));
+        verify(checkpointService).clear(job.jobId());
+        verify(jobRecordRepository).deleteById(job.jobId());
+    }
+
+    @Test
+    void sameFileUploadedAgainDoesNotReuseTheFirstJobsCheckpoints() {
+        ImportJobResponse first = service.submit(ImportJobType.BOM, upload("same"), USER, false, false);
+        ImportJobResponse second = service.submit(ImportJobType.BOM, upload("same"), USER, false, false);
+
+        assertThat(second.jobId()).isNotEqualTo(first.jobId());
+        verify(bomImportService).importFromExcel(any(), eq(first.jobId()), any(), eq(false));
+        verify(bomImportService).importFromExcel(any(), eq(second.jobId()), any(), eq(false));
+        verify(checkpointService).clear(first.jobId());
+        verify(checkpointService).clear(second.jobId());
+    }
+
+    @Test
+    void failedJobClearsItsCheckpoints() {
+        when(materialImportService.importFromExcel(any(), anyString(), any(), anyBoolean()))
+                .thenThrow(new RuntimeException("写入失败"));
+
+        ImportJobResponse job = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        assertThat(job.status()).isEqualTo(ImportJobStatus.FAILED);
+        verify(checkpointService).clear(job.jobId());
+    }
+
+    @Test
+    void jobInterruptedByShutdownKeepsCheckpointsRecordAndStagedFile() throws IOException {
+        when(materialImportService.importFromExcel(any(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            service.shutdown();
+            throw new ImportCancelledException("物料导入已取消");
+        });
+
+        ImportJobResponse job = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        verify(checkpointService, never()).clear(anyString());
+        verify(jobRecordRepository, never()).deleteById(anyString());
+        try (var staged = Files.list(stagingDirectory)) {
+            assertThat(staged).hasSize(1);
+        }
+        assertThat(job.status()).isEqualTo(ImportJobStatus.CANCELLED);
+    }
+
+    @Test
+    void resumedJobKeepsItsIdSoCommittedBatchesAreSkipped() throws IOException {
+        Path staged = Files.writeString(stagingDirectory.resolve("erp-import-1.upload"), "v1");
+        when(jobRecordRepository.findAllByOrderBySubmittedAtAsc()).thenReturn(List.of(ImportJobRecord.builder()
+                .id("job-1")
+                .jobType(ImportJobType.BOM.name())
+                .dryRun(false)
+                .originalFilename("bom.xlsx")
+                .filePath(staged.toString())
+                .fileSize(2L)
+                .fileHash("hash")
+                .submittedBy(USER)
+                .status(ImportJobStatus.RUNNING.name())
+                .submittedAt(LocalDateTime.now())
+                .build()));
+
+        service.resumeInterruptedJobs();
+
+        verify(bomImportService).importFromExcel(any(), eq("job-1"), any(), eq(false));
+        verify(checkpointService).clear("job-1");
+    }
+
+    @Test
+    void unrecoverableJobRecordIsDeletedWithItsCheckpoints() {
+        when(jobRecordRepository.findAllByOrderBySubmittedAtAsc()).thenReturn(List.of(ImportJobRecord.builder()
+                .id("job-1")
+                .jobType(ImportJobType.BOM.name())
+                .filePath(stagingDirectory.resolve("missing.upload").toString())
+                .fileHash("hash")
+                .submittedBy(USER)
+                .submittedAt(LocalDateTime.now())
+                .build()));
+
+        service.resumeInterruptedJobs();
+
+        verify(bomImportService, never()).importFromExcel(any(), anyString(), any(), anyBoolean());
+        verify(jobRecordRepository).deleteById("job-1");
+        verify(checkpointService).clear("job-1");
+    }
+
+    @Test
+    void errorReportIsWrittenUnderTheStagingDirectory() {
+        when(materialImportService.importFromExcel(any(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            invocation.<ImportProgress>getArgument(2).recordError("物料", 3, "编码", "编码为空");
+            return null;
+        });
+
+        ImportJobResponse job = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        assertThat(job.errorReportAvailable()).isTrue();
+        Path report = service.getErrorReport(job.jobId());
+        assertThat(report.getParent()).isEqualTo(stagingDirectory);
+        assertThat(report).exists();
+    }
+
+    @Test
+    void restartDeletesErrorReportsLeftByThePreviousRun() throws IOException {
+        Path orphan = Files.writeString(stagingDirectory.resolve("erp-import-errors-old-job.csv.gz"), "x");
+        Path upload = Files.writeString(stagingDirectory.resolve("erp-import-1.upload"), "v1");
+
+        service.resumeInterruptedJobs();
+
+        assertThat(orphan).doesNotExist();
+        assertThat(upload).exists();
+    }
+
+    @Test
+    void duplicateOfQueuedJobReturnsThatJobAndDeletesTheStagedCopy() throws IOException {
+        deferTasks = true;
+
+        ImportJobResponse first = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+        ImportJobResponse second = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        assertThat(second.jobId()).isEqualTo(first.jobId());
+        assertThat(stagedUploads()).isEqualTo(1);
+        verify(jobRecordRepository, times(1)).save(any());
+
+        deferredTasks.forEach(Runnable::run);
+        verify(materialImportService, times(1)).importFromExcel(any(), anyString(), any(), anyBoolean());
+        assertThat(stagedUploads()).isZero();
+    }
+
+    @Test
+    void sameFileFromAnotherUserGetsItsOwnJob() throws IOException {
+        deferTasks = true;
+
+        ImportJobResponse first = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+        ImportJobResponse second = service.submit(ImportJobType.MATERIAL, upload("v1"), "bob", false, false);
+
+        assertThat(second.jobId()).isNotEqualTo(first.jobId());
+        assertThat(stagedUploads()).isEqualTo(2);
+    }
+
+    @Test
+    void differentContentTypeOrModeIsNotADuplicate() {
+        deferTasks = true;
+
+        ImportJobResponse job = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+
+        assertThat(service.submit(ImportJobType.MATERIAL, upload("v2"), USER, false, false).jobId())
+                .isNotEqualTo(job.jobId());
+        assertThat(service.submit(ImportJobType.BOM, upload("v1"), USER, false, false).jobId())
+                .isNotEqualTo(job.jobId());
+        assertThat(service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false).jobId())
+                .isNotEqualTo(job.jobId());
+    }
+
+    @Test
+    void forceCreatesANewJobForTheSameContent() throws IOException {
+        deferTasks = true;
+
+        ImportJobResponse first = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, false);
+        ImportJobResponse forced = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, false, true);
+
+        assertThat(forced.jobId()).isNotEqualTo(first.jobId());
+        assertThat(stagedUploads()).isEqualTo(2);
+    }
+
+    @Test
+    void succeededDryRunIsReusedForSixtyMinutes() throws IOException {
+        ImportJobResponse first = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+        assertThat(first.status()).isEqualTo(ImportJobStatus.SUCCEEDED);
+
+        now = now.plus(Duration.ofMinutes(59));
+        ImportJobResponse reused = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+
+        assertThat(reused.jobId()).isEqualTo(first.jobId());
+        assertThat(stagedUploads()).isZero();
+        verify(materialImportService, times(1)).importFromExcel(any(), anyString(), any(), eq(true));
+
+        now = now.plus(Duration.ofMinutes(2));
+        ImportJobResponse rerun = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+
+        assertThat(rerun.jobId()).isNotEqualTo(first.jobId());
+        verify(materialImportService, times(2)).importFromExcel(any(), anyString(), any(), eq(true));
+    }
+
+    @Test
+    void succeededDryRunIsRerunWithForce() {
+        ImportJobResponse first = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+
+        ImportJobResponse forced = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, true);
+
+        assertThat(forced.jobId()).isNotEqualTo(first.jobId());
+        verify(materialImportService, times(2)).importFromExcel(any(), anyString(), any(), eq(true));
+    }
+
+    @Test
+    void failedDryRunIsNotReused() {
+        when(materialImportService.importFromExcel(any(), anyString(), any(), anyBoolean()))
+                .thenThrow(new RuntimeException("解析失败"))
+                .thenReturn(null);
+
+        ImportJobResponse failed = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+        ImportJobResponse rerun = service.submit(ImportJobType.MATERIAL, upload("v1"), USER, true, false);
+
+        assertThat(failed.status()).isEqualTo(ImportJobStatus.FAILED);
+        assertThat(rerun.jobId()).isNotEqualTo(failed.jobId());
+        assertThat(rerun.status()).isEqualTo(ImportJobStatus.SUCCEEDED);
+    }
+}
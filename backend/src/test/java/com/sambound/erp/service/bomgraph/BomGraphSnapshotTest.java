@@ -0,0 +1,131 @@
+package com.sambound.erp.service.bomgraph;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BomGraphSnapshotTest {
+
+    @Test
+    void changedBomsReplaceBaseBoms() {
+        BomGraphSnapshot snapshot = BomGraphSnapshot.of(new BomGraph.Builder(2, 2)
+                .addBom(1, 100, "V000")
+                .addBom(2, 300, "V000")
+                .addItem(1, 200, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(2, 200, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+
+        BomGraphSnapshot changed = snapshot.withChanges(List.of(1L), new BomGraph.Builder(1, 1)
+                .addBom(1, 100, "V000")
+                .addItem(1, 201, 1, 7, BigDecimal.TWO, BigDecimal.ONE, null, null)
+                .build());
+
+        BomGraphSnapshot.BomRef bom = changed.bom(1);
+        assertThat(bom.graph()).isSameAs(changed.overlay());
+        assertThat(bom.graph().childMaterialId(bom.graph().firstEdge(bom.index()))).isEqualTo(201);
+        assertThat(changed.findBom(100, "V000").graph()).isSameAs(changed.overlay());
+        assertThat(usingBoms(changed, 200)).containsExactly(2L);
+        assertThat(usingBoms(changed, 201)).containsExactly(1L);
+
+        // 原快照不受影响
+        assertThat(usingBoms(snapshot, 200)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void missingChangedBomsAreTreatedAsDeleted() {
+        BomGraphSnapshot snapshot = BomGraphSnapshot.of(new BomGraph.Builder(2, 1)
+                .addBom(1, 100, "V000")
+                .addBom(2, 300, "V000")
+                .addItem(2, 200, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+
+        BomGraphSnapshot changed = snapshot.withChanges(List.of(2L), BomGraph.EMPTY);
+
+        assertThat(changed.bom(2)).isNull();
+        assertThat(changed.findBom(300, "V000")).isNull();
+        assertThat(usingBoms(changed, 200)).isEmpty();
+        assertThat(changed.bom(1).id()).isEqualTo(1);
+    }
+
+    @Test
+    void laterChangesReplaceEarlierOverlayEntries() {
+        BomGraphSnapshot snapshot = BomGraphSnapshot.of(new BomGraph.Builder(1, 0).addBom(1, 100, "V000").build());
+
+        snapshot = snapshot.withChanges(List.of(5L, 3L), new BomGraph.Builder(2, 2)
+                .addBom(3, 300, "V000")
+                .addBom(5, 500, "V000")
+                .addItem(3, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(5, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+        snapshot = snapshot.withChanges(List.of(3L, 4L), new BomGraph.Builder(2, 1)
+                .addBom(3, 300, "V001")
+                .addBom(4, 400, "V000")
+                .addItem(4, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+
+        assertThat(snapshot.overlay().bomCount()).isEqualTo(3);
+        assertThat(snapshot.findBom(300, "V000")).isNull();
+        assertThat(snapshot.findBom(300, "V001").id()).isEqualTo(3);
+        assertThat(usingBoms(snapshot, 900)).containsExactly(4L, 5L);
+        assertThat(snapshot.replacedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void compactionThresholdScalesWithBaseSize() {
+        BomGraph.Builder builder = new BomGraph.Builder(80, 0);
+        for (int i = 1; i <= 80; i++) {
+            builder.addBom(i, 1000 + i, "V000");
+        }
+        BomGraphSnapshot snapshot = BomGraphSnapshot.of(builder.build());
+
+        // 基础图 80 个BOM：阈值为 max(4, 80 / 8) = 10
+        for (long id = 1; id <= 10; id++) {
+            snapshot = snapshot.withChanges(List.of(id), BomGraph.EMPTY);
+        }
+        assertThat(snapshot.needsCompaction(4)).isFalse();
+        assertThat(snapshot.needsCompaction(20)).isFalse();
+        snapshot = snapshot.withChanges(List.of(11L), BomGraph.EMPTY);
+        assertThat(snapshot.needsCompaction(4)).isTrue();
+        assertThat(snapshot.needsCompaction(20)).isFalse();
+    }
+
+    @Test
+    void compactMergesOverlayIntoBase() {
+        BomGraphSnapshot snapshot = BomGraphSnapshot.of(new BomGraph.Builder(3, 3)
+                .addBom(1, 100, "V000")
+                .addBom(2, 200, "V000")
+                .addBom(4, 400, "V000")
+                .addItem(1, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(2, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(4, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+        snapshot = snapshot.withChanges(List.of(2L, 3L, 4L), new BomGraph.Builder(2, 2)
+                .addBom(2, 200, "V000")
+                .addBom(3, 300, "V000")
+                .addItem(2, 901, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(3, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build());
+
+        BomGraphSnapshot compacted = snapshot.compact();
+
+        assertThat(compacted.replacedCount()).isZero();
+        assertThat(compacted.overlay().bomCount()).isZero();
+        BomGraph base = compacted.base();
+        assertThat(base.bomCount()).isEqualTo(3);
+        assertThat(List.of(base.bomId(0), base.bomId(1), base.bomId(2))).containsExactly(1L, 2L, 3L);
+        assertThat(usingBoms(compacted, 900)).containsExactly(1L, 3L);
+        assertThat(usingBoms(compacted, 901)).containsExactly(2L);
+        assertThat(usingBoms(compacted, 900)).isEqualTo(usingBoms(snapshot, 900));
+    }
+
+    private static List<Long> usingBoms(BomGraphSnapshot snapshot, long childMaterialId) {
+        List<Long> bomIds = new ArrayList<>();
+        snapshot.forEachUsage(childMaterialId, (bom, edge) -> bomIds.add(bom.id()));
+        bomIds.sort(null);
+        return bomIds;
+    }
+}
@@ -0,0 +1,165 @@
+package com.sambound.erp.service.bomgraph;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BomGraphTest {
+
+    @Test
+    void packedAttributesRoundTrip() {
+        BomGraph graph = new BomGraph.Builder(1, 6)
+                .addBom(1, 100, "V000")
+                .addItem(1, 201, 1, 7, new BigDecimal("2.5"), null, null, null)
+                .addItem(1, 202, (1 << 20) - 2, 8, new BigDecimal("0.000001"), new BigDecimal("3"),
+                        new BigDecimal("0.00"), "V001")
+                .addItem(1, 203, 1 << 20, 7, BigDecimal.ONE, BigDecimal.ONE, new BigDecimal("999.99"), "V000")
+                .addItem(1, 204, -5, 9, new BigDecimal("999999999999.999999"), BigDecimal.ONE,
+                        new BigDecimal("-999.99"), "V001")
+                .addItem(1, 205, Integer.MAX_VALUE, 7, BigDecimal.ONE, BigDecimal.ONE, new BigDecimal("5.255"), null)
+                .build();
+
+        assertThat(graph.edgeCount()).isEqualTo(5);
+        assertThat(graph.sequence(0)).isEqualTo(1);
+        assertThat(graph.sequence(1)).isEqualTo((1 << 20) - 2);
+        assertThat(graph.sequence(2)).isEqualTo(1 << 20);
+        assertThat(graph.sequence(3)).isEqualTo(-5);
+        assertThat(graph.sequence(4)).isEqualTo(Integer.MAX_VALUE);
+
+        assertThat(graph.unitId(0)).isEqualTo(7);
+        assertThat(graph.unitId(1)).isEqualTo(8);
+        assertThat(graph.unitId(3)).isEqualTo(9);
+
+        assertThat(graph.childBomVersion(0)).isNull();
+        assertThat(graph.childBomVersion(1)).isEqualTo("V001");
+        assertThat(graph.childBomVersion(2)).isEqualTo("V000");
+
+        assertThat(graph.scrapRate(0)).isNull();
+        assertThat(graph.scrapRate(1)).isEqualByComparingTo("0");
+        assertThat(graph.scrapRate(2)).isEqualByComparingTo("999.99");
+        assertThat(graph.scrapRate(3)).isEqualByComparingTo("-999.99");
+        assertThat(graph.scrapRate(4)).isEqualByComparingTo("5.26");
+
+        assertThat(graph.numerator(0)).isEqualByComparingTo("2.5");
+        assertThat(graph.denominator(0)).isEqualByComparingTo("1");
+        assertThat(graph.numerator(1)).isEqualByComparingTo("0.000001");
+        assertThat(graph.denominator(1)).isEqualByComparingTo("3");
+        assertThat(graph.numerator(3)).isEqualByComparingTo("999999999999.999999");
+
+        assertThat(graph.childMaterialId(4)).isEqualTo(205);
+        assertThat(graph.bomVersion(0)).isEqualTo("V000");
+        assertThat(graph.overflowEdgeCount()).isZero();
+    }
+
+    @Test
+    void unitsBeyondPackedBitsFallBackPerEdge() {
+        int count = 5000;
+        BomGraph.Builder builder = new BomGraph.Builder(1, count).addBom(1, 100, "V000");
+        for (int i = 0; i < count; i++) {
+            builder.addItem(1, 1000 + i, i, 10_000 + i, BigDecimal.ONE, BigDecimal.ONE, null, null);
+        }
+        BomGraph graph = builder.build();
+
+        for (int e = 0; e < count; e++) {
+            assertThat(graph.unitId(e)).isEqualTo(10_000 + e);
+            assertThat(graph.sequence(e)).isEqualTo(e);
+            assertThat(graph.childBomVersion(e)).isNull();
+        }
+        assertThat(graph.overflowEdgeCount()).isEqualTo(count - ((1 << 12) - 1));
+    }
+
+    @Test
+    void versionsBeyondPackedBitsFallBackPerEdge() {
+        int count = 17_000;
+        BomGraph.Builder builder = new BomGraph.Builder(count, count);
+        for (int i = 0; i < count; i++) {
+            builder.addBom(i + 1, 100, "V" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            builder.addItem(i + 1, 100, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, "C" + i);
+        }
+        BomGraph graph = builder.build();
+
+        for (int e = 0; e < count; e++) {
+            assertThat(graph.childBomVersion(e)).isEqualTo("C" + e);
+            assertThat(graph.unitId(e)).isEqualTo(7);
+        }
+        assertThat(graph.findBom(100, "V16999")).isEqualTo(graph.bomIndex(17_000));
+        assertThat(graph.overflowEdgeCount()).isEqualTo(count);
+    }
+
+    @Test
+    void overflowEdgesSurviveCopy() {
+        int count = 5000;
+        BomGraph.Builder builder = new BomGraph.Builder(1, count).addBom(1, 100, "V000");
+        for (int i = 0; i < count; i++) {
+            builder.addItem(1, 1000 + i, i, 10_000 + i, BigDecimal.ONE, BigDecimal.ONE, null, "C" + i);
+        }
+        BomGraph source = builder.build();
+
+        BomGraph copy = new BomGraph.Builder(1, count).copyBom(source, 0).build();
+
+        for (int e = 0; e < count; e++) {
+            assertThat(copy.unitId(e)).isEqualTo(source.unitId(e));
+            assertThat(copy.childBomVersion(e)).isEqualTo(source.childBomVersion(e));
+        }
+    }
+
+    @Test
+    void edgeBomSkipsBomsWithoutItems() {
+        BomGraph graph = new BomGraph.Builder(5, 3)
+                .addBom(10, 100, "V000")
+                .addBom(20, 200, "V000")
+                .addBom(30, 300, "V000")
+                .addBom(40, 400, "V000")
+                .addBom(50, 500, "V000")
+                .addItem(20, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(20, 901, 2, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(40, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .build();
+
+        assertThat(graph.bomId(graph.edgeBom(0))).isEqualTo(20);
+        assertThat(graph.bomId(graph.edgeBom(1))).isEqualTo(20);
+        assertThat(graph.bomId(graph.edgeBom(2))).isEqualTo(40);
+        assertThat(graph.firstEdge(0)).isEqualTo(graph.endEdge(0));
+        assertThat(graph.firstEdge(4)).isEqualTo(graph.endEdge(4));
+
+        int material = graph.materialIndex(900);
+        assertThat(graph.endUsage(material) - graph.firstUsage(material)).isEqualTo(2);
+        assertThat(graph.bomId(graph.edgeBom(graph.usageEdge(graph.firstUsage(material))))).isEqualTo(20);
+        assertThat(graph.bomId(graph.edgeBom(graph.usageEdge(graph.firstUsage(material) + 1)))).isEqualTo(40);
+    }
+
+    @Test
+    void itemsOfUnknownBomsAreSkipped() {
+        BomGraph.Builder builder = new BomGraph.Builder(2, 3)
+                .addBom(10, 100, "V000")
+                .addBom(30, 300, "V000")
+                .addItem(10, 900, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(20, 901, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null)
+                .addItem(30, 902, 1, 7, BigDecimal.ONE, BigDecimal.ONE, null, null);
+        BomGraph graph = builder.build();
+
+        assertThat(builder.skippedItemCount()).isEqualTo(1);
+        assertThat(graph.edgeCount()).isEqualTo(2);
+        assertThat(graph.materialIndex(901)).isEqualTo(-1);
+        assertThat(graph.childMaterialId(graph.firstEdge(graph.bomIndex(30)))).isEqualTo(902);
+    }
+
+    @Test
+    void findBomMatchesMaterialAndVersion() {
+        BomGraph graph = new BomGraph.Builder(3, 0)
+                .addBom(1, 100, "V000")
+                .addBom(2, 100, "V001")
+                .addBom(3, 200, "V000")
+                .build();
+
+        assertThat(graph.bomId(graph.findBom(100, "V001"))).isEqualTo(2);
+        assertThat(graph.bomId(graph.findBom(200, "V000"))).isEqualTo(3);
+        assertThat(graph.findBom(200, "V001")).isEqualTo(-1);
+        assertThat(graph.findBom(999, "V000")).isEqualTo(-1);
+        assertThat(graph.bomIndex(4)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,229 @@
+package com.sambound.erp.service.importer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveBatchLimiterTest {
+
+    private final AtomicInteger connectionWaiters = new AtomicInteger();
+
+    /**
+     * 初始批次 1000（步长 100），下限 100，上限 2000；初始并发 initialConcurrency，上限 4
+     */
+    private static BatchProfile profile(int initialConcurrency, long targetLatencyMillis) {
+        return new BatchProfile("test", 1000, 100, 2000, initialConcurrency, 4, targetLatencyMillis);
+    }
+
+    private AdaptiveBatchLimiter limiter(BatchProfile profile, int poolConcurrencyCap) {
+        return new AdaptiveBatchLimiter(profile, poolConcurrencyCap, connectionWaiters::get, new SimpleMeterRegistry());
+    }
+
+    private AdaptiveBatchLimiter limiter() {
+        return limiter(profile(2, 1000), 10);
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    @Test
+    void fastCommitGrowsBatchByOneStep() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        limiter.onBatchCommitted(1000, millis(100));
+
+        assertThat(limiter.batchSize()).isEqualTo(1100);
+    }
+
+    @Test
+    void commitWithinTargetButAboveHalfKeepsBatchSize() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        limiter.onBatchCommitted(1000, millis(600));
+
+        assertThat(limiter.batchSize()).isEqualTo(1000);
+    }
+
+    @Test
+    void batchSizeStopsAtMaximum() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onBatchCommitted(1000, millis(10));
+        }
+
+        assertThat(limiter.batchSize()).isEqualTo(2000);
+    }
+
+    @Test
+    void concurrencyGrowsByOneAfterEachRoundTrip() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        // 并发 2：每 2 个成功批次加一
+        limiter.onBatchCommitted(1000, millis(600));
+        assertThat(limiter.concurrencyLimit()).isEqualTo(2);
+        limiter.onBatchCommitted(1000, millis(600));
+        assertThat(limiter.concurrencyLimit()).isEqualTo(3);
+        // 并发 3：再经过 3 个成功批次
+        limiter.onBatchCommitted(1000, millis(600));
+        limiter.onBatchCommitted(1000, millis(600));
+        assertThat(limiter.concurrencyLimit()).isEqualTo(3);
+        limiter.onBatchCommitted(1000, millis(600));
+        assertThat(limiter.concurrencyLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void concurrencyIsCappedByProfileAndPool() {
+        AdaptiveBatchLimiter profileCapped = limiter();
+        AdaptiveBatchLimiter poolCapped = limiter(profile(2, 1000), 3);
+
+        for (int i = 0; i < 50; i++) {
+            profileCapped.onBatchCommitted(1000, millis(10));
+            poolCapped.onBatchCommitted(1000, millis(10));
+        }
+
+        assertThat(profileCapped.concurrencyLimit()).isEqualTo(4);
+        assertThat(poolCapped.concurrencyLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void initialConcurrencyIsClampedToPoolCap() {
+        AdaptiveBatchLimiter limiter = limiter(profile(2, 1000), 1);
+
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void slowCommitHalvesBatchSizeAndConcurrency() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        limiter.onBatchCommitted(1000, millis(1500));
+
+        assertThat(limiter.batchSize()).isEqualTo(500);
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void failedBatchHalvesBatchSizeAndConcurrency() {
+        AdaptiveBatchLimiter limiter = limiter();
+
+        limiter.onBatchFailed(millis(10));
+
+        assertThat(limiter.batchSize()).isEqualTo(500);
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void connectionWaitersHalveConcurrencyOnly() {
+        AdaptiveBatchLimiter limiter = limiter();
+        connectionWaiters.set(2);
+
+        limiter.onBatchCommitted(1000, millis(10));
+
+        assertThat(limiter.batchSize()).isEqualTo(1000);
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void decreaseIsAppliedOncePerTargetLatencyWindow() {
+        // 目标耗时 60 秒：窗口内后续的失败反馈来自旧参数下提交的批次，不再减小
+        AdaptiveBatchLimiter limiter = limiter(profile(2, 60_000), 10);
+
+        limiter.onBatchFailed(millis(10));
+        limiter.onBatchFailed(millis(10));
+        limiter.onBatchCommitted(1000, millis(120_000));
+
+        assertThat(limiter.batchSize()).isEqualTo(500);
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedDecreasesStopAtMinimumBatchSizeAndOneBatch() throws InterruptedException {
+        // 目标耗时 1 毫秒：每次失败前等过窗口
+        AdaptiveBatchLimiter limiter = limiter(profile(2, 1), 10);
+
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(2);
+            limiter.onBatchFailed(millis(10));
+        }
+
+        assertThat(limiter.batchSize()).isEqualTo(100);
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void increaseAfterDecreaseRestartsTheRoundTripCount() {
+        AdaptiveBatchLimiter limiter = limiter();
+        limiter.onBatchCommitted(1000, millis(600));
+
+        limiter.onBatchFailed(millis(10));
+        limiter.onBatchCommitted(1000, millis(600));
+
+        // 并发 1：降速后的第一个成功批次即完成一个往返
+        assertThat(limiter.concurrencyLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void acquireBlocksAtTheLimitUntilReleased() throws Exception {
+        AdaptiveBatchLimiter limiter = limiter();
+        limiter.acquire();
+        limiter.acquire();
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> acquireUninterruptibly(limiter));
+        assertThatThrownBy(() -> third.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        limiter.release();
+        third.get(5, TimeUnit.SECONDS);
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void loweredLimitKeepsInFlightBatchesAndBlocksNewOnes() throws Exception {
+        AdaptiveBatchLimiter limiter = limiter();
+        limiter.acquire();
+        limiter.acquire();
+
+        limiter.onBatchFailed(millis(10));
+        assertThat(limiter.concurrencyLimit()).isEqualTo(1);
+        assertThat(limiter.inFlight()).isEqualTo(2);
+
+        // 在途 2 个、上限 1：释放一个后仍然达到上限，释放两个后才放行
+        CompletableFuture<Void> next = CompletableFuture.runAsync(() -> acquireUninterruptibly(limiter));
+        limiter.release();
+        assertThatThrownBy(() -> next.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        limiter.release();
+        next.get(5, TimeUnit.SECONDS);
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void raisedLimitWakesBlockedAcquire() throws Exception {
+        AdaptiveBatchLimiter limiter = limiter(profile(1, 1000), 10);
+        limiter.acquire();
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> acquireUninterruptibly(limiter));
+        assertThatThrownBy(() -> second.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        // 并发 1 时一个成功批次即完成一个往返，上限加一后等待的获取被唤醒
+        limiter.onBatchCommitted(1000, millis(10));
+
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    private static void acquireUninterruptibly(AdaptiveBatchLimiter limiter) {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
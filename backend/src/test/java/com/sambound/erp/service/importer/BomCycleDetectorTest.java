@@ -0,0 +1,144 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BomCycleDetectorTest {
+
+    @Test
+    void acyclicGraphHasNoCycleEdges() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        detector.addEdge(1, 3);
+        detector.addEdge(2, 4);
+        detector.addEdge(3, 4);
+
+        assertThat(detector.findCycleEdges(0).isEmpty()).isTrue();
+    }
+
+    @Test
+    void selfLoopIsACycle() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        int selfLoop = detector.addEdge(2, 2);
+
+        assertThat(detector.findCycleEdges(0).stream()).containsExactly(selfLoop);
+    }
+
+    @Test
+    void onlyEdgesOnTheCycleAreReported() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        int a = detector.addEdge(1, 2);
+        int b = detector.addEdge(2, 3);
+        int c = detector.addEdge(3, 1);
+        detector.addEdge(3, 4);
+        detector.addEdge(5, 1);
+
+        assertThat(detector.findCycleEdges(0).stream()).containsExactlyInAnyOrder(a, b, c);
+    }
+
+    @Test
+    void cycleClosedByLaterBatchReportsOnlyTheNewEdge() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        detector.addEdge(2, 3);
+        assertThat(detector.findCycleEdges(0).isEmpty()).isTrue();
+
+        int batchStart = detector.edgeCount();
+        detector.addEdge(3, 4);
+        int closing = detector.addEdge(3, 1);
+
+        assertThat(detector.findCycleEdges(batchStart).stream()).containsExactly(closing);
+    }
+
+    @Test
+    void cycleClosedThroughEarlierBatchesFromUnrelatedStart() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        // 第一批：10 → 11 → 12；第二批：与之无关的 20 → 21；第三批：12 → 20、21 → 10 闭合循环
+        detector.addEdge(10, 11);
+        detector.addEdge(11, 12);
+        assertThat(detector.findCycleEdges(0).isEmpty()).isTrue();
+        int second = detector.edgeCount();
+        detector.addEdge(20, 21);
+        assertThat(detector.findCycleEdges(second).isEmpty()).isTrue();
+
+        int third = detector.edgeCount();
+        int x = detector.addEdge(12, 20);
+        int y = detector.addEdge(21, 10);
+
+        assertThat(detector.findCycleEdges(third).stream()).containsExactlyInAnyOrder(x, y);
+    }
+
+    @Test
+    void removedExistingEdgeBreaksTheCycle() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        int replaced = detector.addEdge(1, 2);
+        detector.addEdge(2, 3);
+        detector.removeEdge(replaced);
+
+        int batchStart = detector.edgeCount();
+        detector.addEdge(3, 1);
+
+        assertThat(detector.findCycleEdges(batchStart).isEmpty()).isTrue();
+    }
+
+    @Test
+    void rejectedEdgeDoesNotCloseLaterCycles() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        int batchStart = detector.edgeCount();
+        int rejected = detector.addEdge(2, 1);
+        assertThat(detector.findCycleEdges(batchStart).stream()).containsExactly(rejected);
+        detector.removeEdge(rejected);
+
+        batchStart = detector.edgeCount();
+        detector.addEdge(2, 3);
+        detector.addEdge(3, 4);
+
+        assertThat(detector.findCycleEdges(batchStart).isEmpty()).isTrue();
+    }
+
+    @Test
+    void removedEdgeInTheCurrentBatchIsSkipped() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        int rejected = detector.addEdge(2, 1);
+        detector.removeEdge(rejected);
+
+        assertThat(detector.findCycleEdges(0).isEmpty()).isTrue();
+    }
+
+    @Test
+    void repeatedDetectionGivesTheSameResult() {
+        BomCycleDetector detector = new BomCycleDetector(0);
+        detector.addEdge(1, 2);
+        detector.addEdge(2, 1);
+        detector.addEdge(3, 4);
+
+        BitSet first = detector.findCycleEdges(0);
+        BitSet second = detector.findCycleEdges(0);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.stream()).containsExactly(0, 1);
+    }
+
+    @Test
+    void chainDeeperThanTenThousandLevelsDoesNotOverflowTheStack() {
+        int depth = 50_000;
+        BomCycleDetector detector = new BomCycleDetector(0);
+        for (long i = 0; i < depth; i++) {
+            detector.addEdge(i, i + 1);
+        }
+        assertThat(detector.findCycleEdges(0).isEmpty()).isTrue();
+
+        int batchStart = detector.edgeCount();
+        int closing = detector.addEdge(depth, 0);
+        assertThat(detector.findCycleEdges(batchStart).stream()).containsExactly(closing);
+
+        // 整条链在同一批中检测时，链上的每条边都位于循环上
+        assertThat(detector.findCycleEdges(0).cardinality()).isEqualTo(depth + 1);
+    }
+}
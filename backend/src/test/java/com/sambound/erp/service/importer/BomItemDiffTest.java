@@ -0,0 +1,180 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.repository.BomItemRepository.BomItemBatchData;
+import com.sambound.erp.repository.BomItemRepository.StoredBomItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class BomItemDiffTest {
+
+    private static final long BOM_ID = 1L;
+
+    private static BomItemBatchData target(int sequence, long childMaterialId, String numerator, String scrapRate,
+                                           String version, String memo) {
+        return new BomItemBatchData(BOM_ID, sequence, childMaterialId, 7L, decimal(numerator), BigDecimal.ONE,
+                decimal(scrapRate), version, memo);
+    }
+
+    private static BomItemBatchData target(int sequence, long childMaterialId) {
+        return target(sequence, childMaterialId, "1", "0", null, null);
+    }
+
+    private static StoredBomItem stored(long id, BomItemBatchData data) {
+        return StoredBomItem.of(id, data);
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    @Test
+    void identicalItemsAreUnchanged() {
+        List<StoredBomItem> current = List.of(stored(11, target(10, 100)), stored(12, target(20, 200)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(target(20, 200), target(10, 100)));
+
+        assertThat(result.inserts()).isEmpty();
+        assertThat(result.updates()).isEmpty();
+        assertThat(result.deletes()).isEmpty();
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 0, 0, 2));
+    }
+
+    @Test
+    void duplicateKeysMatchInOrderOfAppearance() {
+        List<StoredBomItem> current = List.of(
+                stored(11, target(10, 100, "1", "0", null, "a")),
+                stored(12, target(10, 100, "2", "0", null, "b")));
+
+        // 第一条与第一条现有明细相同；第二条匹配第二条现有明细（用量变化）；第三条没有可匹配的现有明细
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(
+                target(10, 100, "1", "0", null, "a"),
+                target(10, 100, "3", "0", null, "b"),
+                target(10, 100, "4", "0", null, "c")));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(1, 1, 0, 1));
+        assertThat(result.updates()).singleElement().satisfies(item -> {
+            assertThat(item.id()).isEqualTo(12L);
+            assertThat(item.numerator()).isEqualByComparingTo("3");
+        });
+        assertThat(result.inserts()).singleElement()
+                .satisfies(item -> assertThat(item.memo()).isEqualTo("c"));
+    }
+
+    @Test
+    void surplusDuplicateKeysAreDeleted() {
+        List<StoredBomItem> current = List.of(
+                stored(11, target(10, 100)), stored(12, target(10, 100)), stored(13, target(10, 100)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(target(10, 100)));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 0, 2, 1));
+        assertThat(result.deletes()).containsExactlyInAnyOrder(12L, 13L);
+    }
+
+    @Test
+    void sameChildUnderDifferentSequenceIsReplaced() {
+        List<StoredBomItem> current = List.of(stored(11, target(10, 100)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(target(20, 100)));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(1, 0, 1, 0));
+        assertThat(result.deletes()).containsExactly(11L);
+    }
+
+    @Test
+    void nullAndZeroDecimalsDiffer() {
+        List<StoredBomItem> current = List.of(
+                stored(11, target(10, 100, "1", null, null, null)),
+                stored(12, target(20, 200, "1", "0", null, null)),
+                stored(13, target(30, 300, "1", null, null, null)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(
+                target(10, 100, "1", "0", null, null),
+                target(20, 200, "1", null, null, null),
+                target(30, 300, "1", null, null, null)));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 2, 0, 1));
+        assertThat(result.updates()).extracting(StoredBomItem::id).containsExactly(11L, 12L);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            // 用量按 6 位小数、损耗率按 2 位小数（HALF_UP）比较
+            "1.000000, 1.0000004, 0.00, 0.00, true",
+            "1.000000, 1.0000005, 0.00, 0.00, false",
+            "1.5, 1.500000000, 0, 0, true",
+            "2.000000, 1.9999996, 0.00, 0.00, true",
+            "1, 1, 5.00, 5.004, true",
+            "1, 1, 5.00, 5.005, false",
+            "1, 1, 5.00, 5.0, true"
+    })
+    void decimalsCompareAtColumnScale(String storedNumerator, String targetNumerator,
+                                      String storedScrapRate, String targetScrapRate, boolean unchanged) {
+        List<StoredBomItem> current = List.of(
+                stored(11, target(10, 100, storedNumerator, storedScrapRate, null, null)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current,
+                List.of(target(10, 100, targetNumerator, targetScrapRate, null, null)));
+
+        assertThat(result.counts().unchanged()).isEqualTo(unchanged ? 1 : 0);
+        assertThat(result.counts().updated()).isEqualTo(unchanged ? 0 : 1);
+    }
+
+    @Test
+    void memoOnlyChangeIsUpdatedInPlace() {
+        List<StoredBomItem> current = List.of(stored(11, target(10, 100, "1", "0", "V1", "旧备注")));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current,
+                List.of(target(10, 100, "1", "0", "V1", "新备注")));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 1, 0, 0));
+        assertThat(result.updates()).singleElement().satisfies(item -> {
+            assertThat(item.id()).isEqualTo(11L);
+            assertThat(item.memo()).isEqualTo("新备注");
+        });
+    }
+
+    @Test
+    void memoClearedIsUpdated() {
+        List<StoredBomItem> current = List.of(stored(11, target(10, 100, "1", "0", null, "备注")));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(target(10, 100, "1", "0", null, null)));
+
+        assertThat(result.counts().updated()).isEqualTo(1);
+        assertThat(result.updates().getFirst().memo()).isNull();
+    }
+
+    @Test
+    void childVersionOnlyChangeIsUpdatedInPlace() {
+        List<StoredBomItem> current = List.of(
+                stored(11, target(10, 100, "1", "0", "V1", null)),
+                stored(12, target(20, 200, "1", "0", null, null)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of(
+                target(10, 100, "1", "0", "V2", null),
+                target(20, 200, "1", "0", "V1", null)));
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 2, 0, 0));
+        assertThat(result.updates()).extracting(StoredBomItem::id, StoredBomItem::childBomVersion)
+                .containsExactly(
+                        tuple(11L, "V2"),
+                        tuple(12L, "V1"));
+    }
+
+    @Test
+    void emptyTargetDeletesEverything() {
+        List<StoredBomItem> current = List.of(stored(11, target(10, 100)), stored(12, target(20, 200)));
+
+        BomItemDiff.Result result = BomItemDiff.compute(current, List.of());
+
+        assertThat(result.counts()).isEqualTo(new BomItemDiff.Counts(0, 0, 2, 0));
+        assertThat(result.deletes()).containsExactlyInAnyOrder(11L, 12L);
+    }
+}
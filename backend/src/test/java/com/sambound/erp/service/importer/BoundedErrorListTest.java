@@ -0,0 +1,52 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedErrorListTest {
+
+    @Test
+    void keepsErrorsInInsertionOrder() {
+        BoundedErrorList<String> errors = new BoundedErrorList<>(3);
+
+        errors.add("a");
+        errors.add("b");
+
+        assertThat(errors.toList()).containsExactly("a", "b");
+    }
+
+    @Test
+    void errorsBeyondCapacityAreDropped() {
+        BoundedErrorList<String> errors = new BoundedErrorList<>(3);
+
+        for (int i = 0; i < 10; i++) {
+            errors.add("e" + i);
+        }
+
+        assertThat(errors.toList()).containsExactly("e0", "e1", "e2");
+    }
+
+    @Test
+    void concurrentAddsFillTheCapacityExactlyOnce() {
+        BoundedErrorList<Integer> errors = new BoundedErrorList<>(100);
+
+        CompletableFuture.allOf(IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        errors.add(thread * 1000 + i);
+                    }
+                }))
+                .toArray(CompletableFuture[]::new)).join();
+
+        assertThat(errors.toList()).hasSize(100).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void emptyListHasNoErrors() {
+        assertThat(new BoundedErrorList<String>(3).toList()).isEmpty();
+    }
+}
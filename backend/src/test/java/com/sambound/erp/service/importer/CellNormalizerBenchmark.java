@@ -0,0 +1,87 @@
+package com.sambound.erp.service.importer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数值单元格解析基准：{@link CellNormalizer#parseDecimal} 对比原来的 trim + replace + new BigDecimal
+ * （格式错误时捕获 NumberFormatException）。
+ *
+ * <p>运行方式见 {@link MultiSheetExcelReaderBenchmark}。</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(CellNormalizerBenchmark.CELL_COUNT)
+public class CellNormalizerBenchmark {
+
+    static final int CELL_COUNT = 4096;
+
+    // 格式错误的单元格比例（百分比）
+    @Param({"0", "10"})
+    private int invalidPercent;
+
+    private String[] cells;
+
+    @Setup
+    public void generateCells() {
+        Random random = new Random(42);
+        cells = new String[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            if (random.nextInt(100) < invalidPercent) {
+                cells[i] = random.nextBoolean() ? "N/A" : "1 2" + i;
+                continue;
+            }
+            cells[i] = switch (i % 4) {
+                case 0 -> String.valueOf(random.nextInt(100));
+                case 1 -> " " + random.nextInt(1000) + "." + random.nextInt(1_000_000) + " ";
+                case 2 -> String.format("%,d.%02d", random.nextInt(10_000_000), random.nextInt(100));
+                default -> "0." + random.nextInt(1000);
+            };
+        }
+    }
+
+    @Benchmark
+    public void parseDecimal(Blackhole blackhole) {
+        for (String cell : cells) {
+            blackhole.consume(CellNormalizer.parseDecimal(cell).orElse(BigDecimal.ONE));
+        }
+    }
+
+    @Benchmark
+    public void legacyParse(Blackhole blackhole) {
+        for (String cell : cells) {
+            blackhole.consume(legacyParse(cell, BigDecimal.ONE));
+        }
+    }
+
+    private static BigDecimal legacyParse(String value, BigDecimal defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        String normalized = value.trim().replace(",", "");
+        try {
+            return new BigDecimal(normalized);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CellNormalizerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "0|0",
+            "12|12",
+            "'  12.50 '|12.50",
+            "-0.5|-0.5",
+            "+3|3",
+            ".5|0.5",
+            "-.5|-0.5",
+            "5.|5",
+            "1,234|1234",
+            "'1,234,567.891'|1234567.891",
+            "1，234|1234",
+            "1，234,5|12345",
+            "1e3|1E+3",
+            "1.5E-2|0.015",
+            "-2.5e+2|-250",
+            "000123.4500|123.4500",
+            "123456789012345678|123456789012345678",
+            "1234567890123456789|1234567890123456789",
+            "'12,345,678,901,234,567,890.123456'|12345678901234567890.123456",
+            "-99999999999999999999e-2|-999999999999999999.99",
+            "0.000000000000000000001|1E-21"
+    })
+    void parsesValidNumbers(String input, String expected) {
+        CellNormalizer.ParsedDecimal parsed = CellNormalizer.parseDecimal(input);
+
+        assertThat(parsed.invalid()).isFalse();
+        assertThat(parsed.value()).isEqualByComparingTo(new BigDecimal(expected));
+    }
+
+    @Test
+    void keepsScaleOfSmallNumbers() {
+        assertThat(CellNormalizer.parseDecimal("12.50").value()).isEqualTo(new BigDecimal("12.50"));
+        assertThat(CellNormalizer.parseDecimal("1,234.5").value()).isEqualTo(new BigDecimal("1234.5"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "-", "+", ".", "-.", "+e5",
+            "1 2", "1 234", "- 5", "1. 5", "1e 3",
+            "1,,2", ",12", "12,", "1,.5", "1.5,0", "1，，2", "1,，2",
+            "1.2.3", "abc", "12a", "1e", "1e+", "1e99999", "0x10", "∞"
+    })
+    void rejectsMalformedNumbers(String input) {
+        CellNormalizer.ParsedDecimal parsed = CellNormalizer.parseDecimal(input);
+
+        assertThat(parsed.invalid()).isTrue();
+        assertThat(parsed.value()).isNull();
+        assertThat(parsed.orElse(BigDecimal.ONE)).isEqualTo(BigDecimal.ONE);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "1|1",
+            " 10 |10",
+            "20.0|20",
+            "1,000|1000",
+            "2E1|20",
+            "2147483647|2147483647"
+    })
+    void parsesPositiveIntegers(String input, int expected) {
+        CellNormalizer.ParsedDecimal parsed = CellNormalizer.parsePositiveInt(input);
+
+        assertThat(parsed.invalid()).isFalse();
+        assertThat(parsed.value().intValue()).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "0.0", "-0", "-1", "1.5", "2147483648", "1e-1", "abc"})
+    void rejectsZeroNegativeFractionalAndOversizedIntegers(String input) {
+        // bom_items 要求序号大于 0，这些值不能作为序号写入
+        CellNormalizer.ParsedDecimal parsed = CellNormalizer.parsePositiveInt(input);
+
+        assertThat(parsed.invalid()).isTrue();
+        assertThat(parsed.value()).isNull();
+    }
+
+    @Test
+    void positiveIntTreatsBlankAsEmpty() {
+        assertThat(CellNormalizer.parsePositiveInt(" ").isEmpty()).isTrue();
+        assertThat(CellNormalizer.parsePositiveInt(null).isEmpty()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " ", "\t \n"})
+    void treatsBlankAsEmpty(String input) {
+        assertThat(CellNormalizer.parseDecimal(input).isEmpty()).isTrue();
+        assertThat(CellNormalizer.parseDecimal(input).invalid()).isFalse();
+    }
+
+    @Test
+    void treatsNullAsEmpty() {
+        assertThat(CellNormalizer.parseDecimal(null)).isEqualTo(CellNormalizer.ParsedDecimal.EMPTY);
+    }
+
+    @Test
+    void parsesSameValuesAsBigDecimalAfterRemovingSeparators() {
+        String[] inputs = {"1,234.5", "1，234.5", " -0.001 ", "7e-3", "12345678901234567890.5"};
+        for (String input : inputs) {
+            assertThat(CellNormalizer.parseDecimal(input).value())
+                    .isEqualByComparingTo(new BigDecimal(CellNormalizer.numberText(input)));
+        }
+    }
+
+    @Test
+    void numberTextRemovesBothSeparatorsAndTrims() {
+        assertThat(CellNormalizer.numberText(" 1,234.5 ")).isEqualTo("1234.5");
+        assertThat(CellNormalizer.numberText("1，234，567")).isEqualTo("1234567");
+        assertThat(CellNormalizer.numberText("12.5")).isEqualTo("12.5");
+        assertThat(CellNormalizer.numberText("  ")).isNull();
+        assertThat(CellNormalizer.numberText(null)).isNull();
+    }
+
+    @Test
+    void numberTextReturnsSameInstanceWhenNothingToRemove() {
+        String value = "12.5";
+        assertThat(CellNormalizer.numberText(value)).isSameAs(value);
+    }
+
+    @Test
+    void trimsLikeStringTrim() {
+        String[] inputs = {"abc", " abc", "abc\t", " \u0000a b\u001f ", "a"};
+        for (String input : inputs) {
+            assertThat(CellNormalizer.trimToNull(input)).isEqualTo(input.trim());
+        }
+        assertThat(CellNormalizer.trimToNull(" \t ")).isNull();
+        assertThat(CellNormalizer.trimToNull(null)).isNull();
+        String untouched = "abc";
+        assertThat(CellNormalizer.trimToNull(untouched)).isSameAs(untouched);
+    }
+
+    @Test
+    void detectsBlankCells() {
+        assertThat(CellNormalizer.isBlank(null)).isTrue();
+        assertThat(CellNormalizer.isBlank("")).isTrue();
+        assertThat(CellNormalizer.isBlank(" \t")).isTrue();
+        assertThat(CellNormalizer.isBlank(" x ")).isFalse();
+    }
+
+    @Test
+    void poolsEqualCodes() {
+        CellNormalizer cells = new CellNormalizer();
+        String first = cells.code(new String(" Pcs "));
+        String second = cells.code(new String("Pcs"));
+
+        assertThat(first).isEqualTo("Pcs");
+        assertThat(second).isSameAs(first);
+        assertThat(cells.code("  ")).isNull();
+        assertThat(cells.code(null)).isNull();
+    }
+}
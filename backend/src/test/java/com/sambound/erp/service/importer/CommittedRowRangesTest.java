@@ -0,0 +1,74 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommittedRowRangesTest {
+
+    private static CommittedRowRanges ranges(int... bounds) {
+        List<int[]> list = new ArrayList<>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            list.add(new int[]{bounds[i], bounds[i + 1]});
+        }
+        return CommittedRowRanges.of(list);
+    }
+
+    @Test
+    void emptyRangesContainNothing() {
+        CommittedRowRanges empty = CommittedRowRanges.of(List.of());
+
+        assertThat(empty.isEmpty()).isTrue();
+        assertThat(empty.contains(0)).isFalse();
+        assertThat(empty.rowCount()).isZero();
+        assertThat(empty.lastCommittedRow()).isEqualTo(-1);
+    }
+
+    @Test
+    void containsChecksBothEndsOfEachRange() {
+        CommittedRowRanges committed = ranges(10, 19, 40, 49);
+
+        assertThat(committed.contains(9)).isFalse();
+        assertThat(committed.contains(10)).isTrue();
+        assertThat(committed.contains(19)).isTrue();
+        assertThat(committed.contains(20)).isFalse();
+        assertThat(committed.contains(39)).isFalse();
+        assertThat(committed.contains(40)).isTrue();
+        assertThat(committed.contains(49)).isTrue();
+        assertThat(committed.contains(50)).isFalse();
+    }
+
+    @Test
+    void overlappingAndAdjacentRangesAreMerged() {
+        // 批次并发提交，检查点按提交顺序返回：乱序、重叠、相邻
+        CommittedRowRanges committed = ranges(20, 29, 0, 9, 10, 19, 25, 34, 50, 59);
+
+        assertThat(committed.rowCount()).isEqualTo(35 + 10);
+        assertThat(committed.contains(34)).isTrue();
+        assertThat(committed.contains(35)).isFalse();
+        assertThat(committed.lastCommittedRow()).isEqualTo(59);
+    }
+
+    @Test
+    void rangeInsideAnotherDoesNotShrinkIt() {
+        CommittedRowRanges committed = ranges(0, 99, 10, 19);
+
+        assertThat(committed.rowCount()).isEqualTo(100);
+        assertThat(committed.contains(99)).isTrue();
+        assertThat(committed.lastCommittedRow()).isEqualTo(99);
+    }
+
+    @Test
+    void gapBetweenRangesIsNotSkipped() {
+        // 中间的批次失败：续传时只重新导入失败批次的行
+        CommittedRowRanges committed = ranges(0, 9, 20, 29);
+
+        assertThat(committed.rowCount()).isEqualTo(20);
+        for (int row = 10; row < 20; row++) {
+            assertThat(committed.contains(row)).isFalse();
+        }
+    }
+}
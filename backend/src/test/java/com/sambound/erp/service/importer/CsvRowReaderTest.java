@@ -0,0 +1,228 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.dto.MaterialGroupExcelRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CsvRowReaderTest {
+
+    private static final Charset GBK = Charset.forName("GBK");
+    private static final Charset GB18030 = Charset.forName("GB18030");
+    // 与 CsvRowReader 编码识别的样本大小一致
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final Path EXAMPLE_DIRECTORY = Path.of("..", "example");
+
+    @TempDir
+    Path directory;
+
+    private static Charset detect(byte[] bytes) throws IOException {
+        return CsvRowReader.detectCharset(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.writeBytes(part);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    void utf8ByteOrderMarkSelectsUtf8() throws IOException {
+        assertThat(detect(concat(bytes(0xEF, 0xBB, 0xBF), "编码".getBytes(StandardCharsets.UTF_8))))
+                .isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void utf16ByteOrderMarksSelectUtf16() throws IOException {
+        assertThat(detect(concat(bytes(0xFF, 0xFE), "编码".getBytes(StandardCharsets.UTF_16LE))))
+                .isEqualTo(StandardCharsets.UTF_16LE);
+        assertThat(detect(concat(bytes(0xFE, 0xFF), "编码".getBytes(StandardCharsets.UTF_16BE))))
+                .isEqualTo(StandardCharsets.UTF_16BE);
+    }
+
+    @Test
+    void validUtf8WithoutByteOrderMarkSelectsUtf8() throws IOException {
+        assertThat(detect("FNumber,FName\n01,原料类\n".getBytes(StandardCharsets.UTF_8)))
+                .isEqualTo(StandardCharsets.UTF_8);
+        assertThat(detect("FNumber,FName\n".getBytes(StandardCharsets.US_ASCII)))
+                .isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void gbkBytesFallBackToGb18030() throws IOException {
+        assertThat(detect("FNumber,FName\n01,原料类\n".getBytes(GBK))).isEqualTo(GB18030);
+    }
+
+    @Test
+    void multiByteCharacterCutBySampleEndIsStillUtf8() throws IOException {
+        // 样本最后一个字节是三字节字符“中”的第一个字节
+        byte[] padding = new byte[SAMPLE_SIZE - 1];
+        Arrays.fill(padding, (byte) 'a');
+        byte[] bytes = concat(padding, "中\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(detect(bytes)).isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void truncatedSequenceAtEndOfShortFileIsNotUtf8() throws IOException {
+        // 整个文件都在样本内：末尾不完整的多字节序列说明不是 UTF-8
+        byte[] bytes = concat("01,原料".getBytes(StandardCharsets.UTF_8), bytes(0xE4, 0xB8));
+
+        assertThat(detect(bytes)).isEqualTo(GB18030);
+    }
+
+    @Test
+    void detectionLeavesTheStreamAtTheStart() throws IOException {
+        byte[] bytes = "FNumber,FName\n01,原料类\n".getBytes(StandardCharsets.UTF_8);
+        InputStream inputStream = new ByteArrayInputStream(bytes);
+
+        CsvRowReader.detectCharset(inputStream);
+
+        assertThat(inputStream.readAllBytes()).isEqualTo(bytes);
+    }
+
+    private ImportFile write(String filename, byte[] content) throws IOException {
+        Path path = Files.write(directory.resolve(filename), content);
+        return new ImportFile(filename, path, content.length, "hash");
+    }
+
+    private static List<IndexedRow> read(ImportFile file) throws IOException {
+        CollectingHandler handler = new CollectingHandler();
+        CsvRowReader.read(file, MaterialGroupExcelRow.class, handler);
+        assertThat(handler.finished).isTrue();
+        return handler.rows;
+    }
+
+    @Test
+    void columnsAreMappedByHeaderName() throws IOException {
+        // 列顺序与字段顺序不同，含未知列，缺少 FDescription#2052
+        String csv = """
+                FNumber,FUnknown,FName#2052,FBillHead(BOS_FORMGROUP),FParentId
+                *(单据头)编码,未知,*(单据头)名称#中文(简体),*单据头(实体序号),(单据头)父节点
+                01,x,原料类,150813,
+                01.01,y,"塑料, 颗粒",150814,01
+                """;
+
+        List<IndexedRow> rows = read(write("groups.csv", csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(rows)
+                .extracting(IndexedRow::rowIndex, r -> r.row().getCode(), r -> r.row().getName(),
+                        r -> r.row().getBillHead(), r -> r.row().getParentCode(), r -> r.row().getDescription())
+                .containsExactly(
+                        tuple(2, "01", "原料类", "150813", null, null),
+                        tuple(3, "01.01", "塑料, 颗粒", "150814", "01", null));
+    }
+
+    @Test
+    void byteOrderMarkIsStrippedFromTheFirstHeader() throws IOException {
+        String csv = "FBillHead(BOS_FORMGROUP),FNumber\n说明,编码\n150813,01\n";
+        ImportFile file = write("groups.csv",
+                concat(bytes(0xEF, 0xBB, 0xBF), csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(read(file)).singleElement().satisfies(row -> assertThat(row.row().getBillHead()).isEqualTo("150813"));
+        assertThat(CsvRowReader.readFirstHeader(file)).isEqualTo("FBillHead(BOS_FORMGROUP)");
+    }
+
+    @Test
+    void utf16FileIsReadWithItsByteOrderMark() throws IOException {
+        String csv = "FBillHead(BOS_FORMGROUP),FNumber,FName#2052\n说明,编码,名称\n150813,01,原料类\n";
+        ImportFile file = write("groups.csv", concat(bytes(0xFF, 0xFE), csv.getBytes(StandardCharsets.UTF_16LE)));
+
+        assertThat(read(file)).singleElement().satisfies(row -> {
+            assertThat(row.row().getBillHead()).isEqualTo("150813");
+            assertThat(row.row().getName()).isEqualTo("原料类");
+        });
+    }
+
+    @Test
+    void emptyFileOnlyFinishes() throws IOException {
+        assertThat(read(write("empty.csv", new byte[0]))).isEmpty();
+        assertThat(CsvRowReader.readFirstHeader(write("empty2.csv", new byte[0]))).isNull();
+    }
+
+    /**
+     * example 目录下第一列表头为 firstHeader 的 CSV 文件
+     * （按内容查找：文件名为中文，在非 UTF-8 区域设置的 JVM 中不能按名称构造路径）
+     */
+    private static ImportFile exampleFile(String firstHeader) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(EXAMPLE_DIRECTORY, "*.csv")) {
+            for (Path path : files) {
+                ImportFile file = new ImportFile("example.csv", path, Files.size(path), "hash");
+                if (firstHeader.equals(CsvRowReader.readFirstHeader(file))) {
+                    return file;
+                }
+            }
+        }
+        throw new IllegalStateException("example 目录下没有 " + firstHeader + " 文件");
+    }
+
+    @Test
+    void readsGbkExampleFile() throws IOException {
+        // 物料组.csv：GBK 编码，没有 BOM
+        ImportFile file = exampleFile("FBillHead(BOS_FORMGROUP)");
+
+        List<IndexedRow> rows = read(file);
+
+        assertThat(rows).hasSize(89);
+        IndexedRow first = rows.getFirst();
+        assertThat(first.rowIndex()).isEqualTo(2);
+        assertThat(first.row().getBillHead()).isEqualTo("161350");
+        assertThat(first.row().getParentCode()).isNull();
+        assertThat(first.row().getCode()).isEqualTo("00");
+        assertThat(first.row().getName()).isEqualTo("辅料类");
+        assertThat(rows.getLast().row().getName()).isEqualTo("辅料费用类");
+    }
+
+    @Test
+    void readsFirstHeaderOfUtf8ExampleFile() throws IOException {
+        // 物料.csv：UTF-8 编码，带 BOM
+        ImportFile file = exampleFile("FBillHead(BD_MATERIAL)");
+
+        try (InputStream inputStream = file.openStream()) {
+            assertThat(inputStream.readNBytes(3)).isEqualTo(bytes(0xEF, 0xBB, 0xBF));
+        }
+    }
+
+    private record IndexedRow(MaterialGroupExcelRow row, int rowIndex) {
+    }
+
+    private static final class CollectingHandler implements ImportRowHandler<MaterialGroupExcelRow> {
+        private final List<IndexedRow> rows = new ArrayList<>();
+        private boolean finished;
+
+        @Override
+        public void handleRow(MaterialGroupExcelRow row, int rowIndex) {
+            rows.add(new IndexedRow(row, rowIndex));
+        }
+
+        @Override
+        public void afterAllRows() {
+            finished = true;
+        }
+    }
+}
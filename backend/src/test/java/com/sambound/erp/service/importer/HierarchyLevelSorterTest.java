@@ -0,0 +1,154 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.service.importer.HierarchyLevelSorter.Reason;
+import com.sambound.erp.service.importer.HierarchyLevelSorter.Rejected;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HierarchyLevelSorterTest {
+
+    private record Row(String code, String parent) {
+    }
+
+    private static HierarchyLevelSorter.Result<Row> sort(List<Row> rows, Set<String> externalCodes) {
+        return HierarchyLevelSorter.sort(rows, Row::code, Row::parent, externalCodes);
+    }
+
+    private static List<List<String>> codes(HierarchyLevelSorter.Result<Row> result) {
+        return result.levels().stream()
+                .map(level -> level.stream().map(Row::code).toList())
+                .toList();
+    }
+
+    @Test
+    void levelsFollowDepthAndKeepInputOrder() {
+        List<Row> rows = List.of(
+                new Row("C", "B"),
+                new Row("D", "A"),
+                new Row("B", "A"),
+                new Row("A", null),
+                new Row("E", "X"),
+                new Row("F", "E"));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of("X"));
+
+        assertThat(codes(result)).containsExactly(
+                List.of("A", "E"),
+                List.of("D", "B", "F"),
+                List.of("C"));
+        assertThat(result.rejected()).isEmpty();
+    }
+
+    @Test
+    void parentsAreAlwaysInEarlierLevels() {
+        List<Row> rows = List.of(
+                new Row("A3", "A2"), new Row("B1", "B0"), new Row("A1", null), new Row("A2", "A1"),
+                new Row("B0", null), new Row("B2", "B1"), new Row("A4", "A3"));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of());
+
+        List<String> placed = new ArrayList<>();
+        for (List<Row> level : result.levels()) {
+            for (Row row : level) {
+                assertThat(row.parent() == null || placed.contains(row.parent())).isTrue();
+            }
+            level.forEach(row -> placed.add(row.code()));
+        }
+        assertThat(placed).hasSize(rows.size());
+    }
+
+    @Test
+    void duplicateCodeKeepsFirstOccurrence() {
+        Row first = new Row("A", null);
+        Row duplicate = new Row("A", "B");
+        List<Row> rows = List.of(first, new Row("B", null), duplicate, new Row("C", "A"));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of());
+
+        assertThat(result.levels().getFirst()).containsExactly(first, new Row("B", null));
+        assertThat(codes(result).get(1)).containsExactly("C");
+        assertThat(result.rejected()).containsExactly(new Rejected<>(duplicate, Reason.DUPLICATE, "A"));
+    }
+
+    @Test
+    void missingParentIsReportedForTheWholeSubtree() {
+        List<Row> rows = List.of(
+                new Row("A", null),
+                new Row("M1", "Z"),
+                new Row("M2", "M1"),
+                new Row("M3", "M2"));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of("Y"));
+
+        assertThat(codes(result)).containsExactly(List.of("A"));
+        assertThat(result.rejected())
+                .extracting(r -> r.node().code(), Rejected::reason, Rejected::relatedCode)
+                .containsExactly(
+                        tuple("M1", Reason.MISSING_PARENT, "Z"),
+                        tuple("M2", Reason.MISSING_PARENT, "Z"),
+                        tuple("M3", Reason.MISSING_PARENT, "Z"));
+    }
+
+    @Test
+    void cycleIsReportedForMembersAndDescendants() {
+        List<Row> rows = List.of(
+                new Row("A", null),
+                new Row("P", "Q"),
+                new Row("Q", "R"),
+                new Row("R", "P"),
+                new Row("S", "P"),
+                new Row("B", "A"));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of());
+
+        assertThat(codes(result)).containsExactly(List.of("A"), List.of("B"));
+        assertThat(result.rejected())
+                .extracting(r -> r.node().code(), Rejected::reason, Rejected::relatedCode)
+                .containsExactly(
+                        tuple("P", Reason.CYCLE, "P"),
+                        tuple("Q", Reason.CYCLE, "Q"),
+                        tuple("R", Reason.CYCLE, "R"),
+                        tuple("S", Reason.CYCLE, "P"));
+    }
+
+    @Test
+    void selfParentIsACycle() {
+        HierarchyLevelSorter.Result<Row> result = sort(List.of(new Row("A", "A")), Set.of());
+
+        assertThat(result.levels()).isEmpty();
+        assertThat(result.rejected())
+                .extracting(r -> r.node().code(), Rejected::reason, Rejected::relatedCode)
+                .containsExactly(tuple("A", Reason.CYCLE, "A"));
+    }
+
+    @Test
+    void externalCodeTakesPrecedenceOnlyWhenNotInInput() {
+        // 父节点同时存在于输入和数据库中时，按输入中的节点分层
+        List<Row> rows = List.of(new Row("B", "A"), new Row("A", null));
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of("A"));
+
+        assertThat(codes(result)).containsExactly(List.of("A"), List.of("B"));
+    }
+
+    @Test
+    void deepChainIsLevelledWithoutRecursion() {
+        int depth = 100_000;
+        List<Row> rows = new ArrayList<>(depth);
+        for (int i = depth - 1; i >= 0; i--) {
+            rows.add(new Row("G" + i, i == 0 ? null : "G" + (i - 1)));
+        }
+
+        HierarchyLevelSorter.Result<Row> result = sort(rows, Set.of());
+
+        assertThat(result.levels()).hasSize(depth);
+        assertThat(result.levels().getLast()).containsExactly(new Row("G" + (depth - 1), "G" + (depth - 2)));
+        assertThat(result.rejected()).isEmpty();
+    }
+}
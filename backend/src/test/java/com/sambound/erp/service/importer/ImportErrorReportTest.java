@@ -0,0 +1,128 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportErrorReportTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<String> readLines(Path report) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(report))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    @Test
+    void reportWithoutErrorsCreatesNoFile() {
+        Path path = directory.resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+
+        report.close();
+
+        assertThat(path).doesNotExist();
+        assertThat(report.isAvailable()).isFalse();
+    }
+
+    @Test
+    void closeWritesEveryQueuedErrorBeforeReturning() throws IOException {
+        Path path = directory.resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+
+        // 超过写入线程一次取出的数量，close 返回前队列中的错误必须全部写入
+        for (int i = 1; i <= 5000; i++) {
+            report.append("物料", i, "编码", "错误" + i);
+        }
+        report.close();
+
+        assertThat(report.isAvailable()).isTrue();
+        assertThat(report.size()).isEqualTo(5000);
+        List<String> lines = readLines(path);
+        assertThat(lines).hasSize(5001);
+        assertThat(lines.getFirst()).isEqualTo("\uFEFF工作表,行号,字段,错误信息");
+        assertThat(lines.get(1)).isEqualTo("物料,1,编码,错误1");
+        assertThat(lines.getLast()).isEqualTo("物料,5000,编码,错误5000");
+    }
+
+    @Test
+    void concurrentAppendsAreAllWritten() throws IOException {
+        Path path = directory.resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+
+        CompletableFuture.allOf(IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        report.append("BOM", thread * 1000 + i, null, "错误");
+                    }
+                }))
+                .toArray(CompletableFuture[]::new)).join();
+        report.close();
+
+        assertThat(readLines(path)).hasSize(8001);
+    }
+
+    @Test
+    void errorsAppendedAfterCloseAreIgnored() throws IOException {
+        Path path = directory.resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+        report.append("物料", 1, null, "错误");
+        report.close();
+
+        report.append("物料", 2, null, "错误");
+        report.close();
+
+        assertThat(report.size()).isEqualTo(1);
+        assertThat(readLines(path)).hasSize(2);
+    }
+
+    @Test
+    void writeFailureMakesTheReportUnavailableWithoutBlockingClose() {
+        // 父目录不存在：创建文件失败
+        Path path = directory.resolve("missing").resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+
+        for (int i = 0; i < 100; i++) {
+            report.append("物料", i, null, "错误");
+        }
+        report.close();
+
+        assertThat(report.isAvailable()).isFalse();
+        assertThat(path).doesNotExist();
+    }
+
+    @Test
+    void deleteClosesAndRemovesTheFile() {
+        Path path = directory.resolve("report.csv.gz");
+        ImportErrorReport report = ImportErrorReport.toFile(path);
+        report.append("物料", 1, null, "错误");
+
+        report.delete();
+
+        assertThat(path).doesNotExist();
+        assertThat(report.isAvailable()).isFalse();
+    }
+
+    @Test
+    void discardingReportKeepsNothing() {
+        ImportErrorReport report = ImportErrorReport.discarding();
+
+        report.append("物料", 1, null, "错误");
+        report.close();
+
+        assertThat(report.size()).isZero();
+        assertThat(report.isAvailable()).isFalse();
+    }
+}
@@ -0,0 +1,110 @@
+package com.sambound.erp.service.importer;
+
+import com.sambound.erp.entity.MaterialGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaterialGroupPrefixIndexTest {
+
+    private static MaterialGroup group(String code) {
+        return MaterialGroup.builder().code(code).name(code).build();
+    }
+
+    @Test
+    void findsLongestPrefix() {
+        MaterialGroup shortest = group("01");
+        MaterialGroup longer = group("01.02");
+        MaterialGroup other = group("02");
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(), List.of(shortest, longer, other));
+
+        assertThat(index.findLongestPrefix("01.02.0003")).isSameAs(longer);
+        assertThat(index.findLongestPrefix("01.03.0001")).isSameAs(shortest);
+        assertThat(index.findLongestPrefix("01.0")).isSameAs(shortest);
+        assertThat(index.findLongestPrefix("02")).isSameAs(other);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void returnsNullWithoutMatch() {
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(group("01.02")), List.of());
+
+        assertThat(index.findLongestPrefix("01.03")).isNull();
+        assertThat(index.findLongestPrefix("0")).isNull();
+        assertThat(index.findLongestPrefix("")).isNull();
+        assertThat(index.findLongestPrefix(null)).isNull();
+    }
+
+    @Test
+    void importedGroupsTakePrecedenceOverLongerExistingMatches() {
+        MaterialGroup imported = group("01");
+        MaterialGroup existing = group("01.02");
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(imported), List.of(existing));
+
+        assertThat(index.findLongestPrefix("01.02.0003")).isSameAs(imported);
+    }
+
+    @Test
+    void existingGroupsAreUsedWhenNoImportedGroupMatches() {
+        MaterialGroup imported = group("02");
+        MaterialGroup existing = group("01");
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(imported), List.of(existing));
+
+        assertThat(index.findLongestPrefix("01.0001")).isSameAs(existing);
+        assertThat(index.findLongestPrefix("02.0001")).isSameAs(imported);
+    }
+
+    @Test
+    void importedObjectReplacesExistingWithTheSameCode() {
+        MaterialGroup existing = group("01");
+        MaterialGroup imported = group("01");
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(imported), List.of(existing));
+
+        assertThat(index.findLongestPrefix("01.0001")).isSameAs(imported);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void materialCodeIsTrimmed() {
+        MaterialGroup group = group("A1");
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(group), List.of());
+
+        assertThat(index.findLongestPrefix("  A1-001 ")).isSameAs(group);
+    }
+
+    @Test
+    void groupsWithoutCodeAreIgnored() {
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(
+                List.of(group(null), group("")), List.of(group("01")));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findLongestPrefix("99")).isNull();
+    }
+
+    @Test
+    void emptyIndexMatchesNothing() {
+        assertThat(MaterialGroupPrefixIndex.empty().findLongestPrefix("01.0001")).isNull();
+        assertThat(MaterialGroupPrefixIndex.empty().size()).isZero();
+    }
+
+    @Test
+    void childrenAreFoundAmongManySiblings() {
+        // 子节点按字符二分查找，覆盖同一层有大量兄弟节点（含非 ASCII 字符）的情况
+        List<MaterialGroup> groups = new ArrayList<>();
+        for (char c = '0'; c <= 'z'; c++) {
+            groups.add(group("G" + c));
+        }
+        MaterialGroup chinese = group("G电");
+        groups.add(chinese);
+        MaterialGroupPrefixIndex index = MaterialGroupPrefixIndex.build(List.of(), groups);
+
+        for (MaterialGroup group : groups) {
+            assertThat(index.findLongestPrefix(group.getCode() + "-1")).isSameAs(group);
+        }
+        assertThat(index.findLongestPrefix("G电机")).isSameAs(chinese);
+        assertThat(index.findLongestPrefix("H0")).isNull();
+    }
+}
@@ -0,0 +1,134 @@
+package com.sambound.erp.service.importer;
+
+import cn.idev.excel.ExcelWriter;
+import cn.idev.excel.FastExcel;
+import com.sambound.erp.dto.MaterialExcelRow;
+import com.sambound.erp.dto.MaterialGroupExcelRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 物料工作簿读取基准：单次扫描（{@link MultiSheetExcelReader}，直接读暂存文件）
+ * 对比原来的两次读取（整个文件读入 byte[]，物料组、物料工作表各解析一次）。
+ *
+ * <p>运行（-prof gc 同时输出每次读取的分配量）：</p>
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main MultiSheetExcelReaderBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class MultiSheetExcelReaderBenchmark {
+
+    private static final String MATERIAL_GROUP_SHEET = "数据分组#单据头(FBillHead)Group";
+    private static final String MATERIAL_SHEET = "物料#物料(FBillHead)";
+
+    @Param({"100000"})
+    private int materialRows;
+
+    // true：字符串写入共享字符串表（与 Excel 保存的文件一致）；false：行内字符串（流式写出的文件）
+    @Param({"false", "true"})
+    private boolean sharedStrings;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void writeWorkbook() throws IOException {
+        file = Files.createTempFile("material-benchmark", ".xlsx");
+        List<MaterialGroupExcelRow> groups = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            MaterialGroupExcelRow row = new MaterialGroupExcelRow();
+            row.setCode("G" + i);
+            row.setName("物料组" + i);
+            row.setParentCode(i < 20 ? null : "G" + (i / 100));
+            groups.add(row);
+        }
+        List<MaterialExcelRow> materials = new ArrayList<>(materialRows);
+        for (int i = 0; i < materialRows; i++) {
+            MaterialExcelRow row = new MaterialExcelRow();
+            row.setCode("G" + (i % 2000) + "." + i);
+            row.setName("物料名称" + i);
+            row.setSpecification("规格 " + (i % 500) + "x" + (i % 37));
+            row.setMnemonicCode("WL" + i);
+            row.setDescription(i % 3 == 0 ? "描述" + i : null);
+            row.setMaterialGroupCode("G" + (i % 2000));
+            row.setMaterialGroupName("物料组" + (i % 2000));
+            row.setErpClsId(String.valueOf(i % 3 + 1));
+            row.setBaseUnitCode("Pcs");
+            row.setBaseUnitName("个");
+            materials.add(row);
+        }
+        try (ExcelWriter writer = FastExcel.write(file.toFile()).inMemory(sharedStrings).build()) {
+            writer.write(groups, FastExcel.writerSheet(0, MATERIAL_GROUP_SHEET).head(MaterialGroupExcelRow.class).build());
+            writer.write(materials, FastExcel.writerSheet(1, MATERIAL_SHEET).head(MaterialExcelRow.class).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkbook() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            new MultiSheetExcelReader(inputStream)
+                    .sheet(MATERIAL_GROUP_SHEET, MaterialGroupExcelRow.class, new ConsumingHandler<>(blackhole))
+                    .sheet(MATERIAL_SHEET, MaterialExcelRow.class, new ConsumingHandler<>(blackhole))
+                    .read();
+        }
+    }
+
+    @Benchmark
+    public void twoPass(Blackhole blackhole) throws IOException {
+        byte[] fileBytes = Files.readAllBytes(file);
+        FastExcel.read(new ByteArrayInputStream(fileBytes), MaterialGroupExcelRow.class,
+                        new ExcelRowListener<>(new ConsumingHandler<MaterialGroupExcelRow>(blackhole)))
+                .sheet(MATERIAL_GROUP_SHEET)
+                .headRowNumber(2)
+                .doRead();
+        FastExcel.read(new ByteArrayInputStream(fileBytes), MaterialExcelRow.class,
+                        new ExcelRowListener<>(new ConsumingHandler<MaterialExcelRow>(blackhole)))
+                .sheet(MATERIAL_SHEET)
+                .headRowNumber(2)
+                .doRead();
+    }
+
+    private record ConsumingHandler<T>(Blackhole blackhole) implements ImportRowHandler<T> {
+
+        @Override
+        public void handleRow(T row, int rowIndex) {
+            blackhole.consume(row);
+        }
+
+        @Override
+        public void afterAllRows() {
+        }
+    }
+}
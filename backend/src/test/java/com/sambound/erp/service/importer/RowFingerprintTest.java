@@ -0,0 +1,121 @@
+package com.sambound.erp.service.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowFingerprintTest {
+
+    /**
+     * 与 MaterialImportService 相同的字段顺序：编码、名称、规格、助记码、旧编码、描述、物料属性、物料组ID、单位ID
+     */
+    private static final Object[] MATERIAL = {
+            "01.001", "螺丝", "M3*10", "LS", "A-01", "不锈钢", "1", 11L, 22L
+    };
+
+    private static long materialHash(Object[] fields) {
+        return RowFingerprint.builder()
+                .add((String) fields[0])
+                .add((String) fields[1])
+                .add((String) fields[2])
+                .add((String) fields[3])
+                .add((String) fields[4])
+                .add((String) fields[5])
+                .add((String) fields[6])
+                .add((Long) fields[7])
+                .add((Long) fields[8])
+                .build();
+    }
+
+    private static Object[] with(int index, Object value) {
+        Object[] fields = Arrays.copyOf(MATERIAL, MATERIAL.length);
+        fields[index] = value;
+        return fields;
+    }
+
+    @Test
+    void sameFieldsGiveTheSameHash() {
+        assertThat(materialHash(MATERIAL)).isEqualTo(materialHash(MATERIAL.clone()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3, 4, 5, 6})
+    void changingAnyTextFieldChangesTheHash(int index) {
+        long original = materialHash(MATERIAL);
+
+        assertThat(materialHash(with(index, MATERIAL[index] + "x"))).isNotEqualTo(original);
+        assertThat(materialHash(with(index, null))).isNotEqualTo(original);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {7, 8})
+    void changingAnyReferencedIdChangesTheHash(int index) {
+        long original = materialHash(MATERIAL);
+
+        assertThat(materialHash(with(index, (Long) MATERIAL[index] + 1))).isNotEqualTo(original);
+        assertThat(materialHash(with(index, null))).isNotEqualTo(original);
+    }
+
+    @Test
+    void nullAndEmptyStringAreDifferent() {
+        // 写入时 null 保留数据库原值（COALESCE），空字符串会覆盖原值，两者不能视为相同内容
+        assertThat(RowFingerprint.builder().add((String) null).build())
+                .isNotEqualTo(RowFingerprint.builder().add("").build());
+    }
+
+    @Test
+    void blankCellsNormalizedToNullHashLikeMissingCells() {
+        // 导入前空白单元格规整为 null，与缺失的单元格一样由 COALESCE 保留原值，指纹也相同
+        long missing = materialHash(with(2, null));
+
+        assertThat(materialHash(with(2, CellNormalizer.trimToNull("")))).isEqualTo(missing);
+        assertThat(materialHash(with(2, CellNormalizer.trimToNull("   ")))).isEqualTo(missing);
+    }
+
+    @Test
+    void valueMovedToTheNeighbouringFieldChangesTheHash() {
+        // 规格为空、描述有值 与 规格有值、描述为空 写入结果不同
+        long inSpecification = materialHash(with(5, null));
+        long inDescription = materialHash(with(2, null));
+
+        assertThat(inSpecification).isNotEqualTo(inDescription);
+    }
+
+    @Test
+    void adjacentFieldsAreNotConcatenated() {
+        assertThat(RowFingerprint.builder().add("ab").add("c").build())
+                .isNotEqualTo(RowFingerprint.builder().add("a").add("bc").build());
+        assertThat(RowFingerprint.builder().add("a").add((String) null).build())
+                .isNotEqualTo(RowFingerprint.builder().add((String) null).add("a").build());
+    }
+
+    @Test
+    void addedFieldChangesTheHash() {
+        assertThat(RowFingerprint.builder().add("a").build())
+                .isNotEqualTo(RowFingerprint.builder().add("a").add((String) null).build());
+    }
+
+    @Test
+    void decimalsWithTheSameValueHashTheSame() {
+        assertThat(RowFingerprint.builder().add(new BigDecimal("1.50")).build())
+                .isEqualTo(RowFingerprint.builder().add(new BigDecimal("1.5")).build());
+        assertThat(RowFingerprint.builder().add(new BigDecimal("1E+1")).build())
+                .isEqualTo(RowFingerprint.builder().add(new BigDecimal("10")).build());
+        assertThat(RowFingerprint.builder().add(new BigDecimal("1.5")).build())
+                .isNotEqualTo(RowFingerprint.builder().add(new BigDecimal("1.05")).build());
+    }
+
+    @Test
+    void nullNumbersHashLikeNullText() {
+        long nullText = RowFingerprint.builder().add((String) null).build();
+
+        assertThat(RowFingerprint.builder().add((Long) null).build()).isEqualTo(nullText);
+        assertThat(RowFingerprint.builder().add((Integer) null).build()).isEqualTo(nullText);
+        assertThat(RowFingerprint.builder().add((BigDecimal) null).build()).isEqualTo(nullText);
+    }
+}
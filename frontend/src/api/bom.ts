@@ -1,5 +1,7 @@
 import request from '@/utils/request'
-import type { BillOfMaterial, BomImportResponse, BomQueryNode } from '@/types/bom'
+import type { BillOfMaterial, BomImportResponse, BomQueryNode, BomWhereUsedRow } from '@/types/bom'
+import type { ImportJob } from '@/types/importJob'
+import { importJobApi } from '@/api/importJob'
 
 export const bomApi = {
   // 获取所有BOM
@@ -17,14 +19,14 @@ export const bomApi = {
     return request.delete(`/boms/${id}`)
   },
 
-  // 导入BOM（Excel/CSV文件）
-  importBoms(file: File): Promise<BomImportResponse> {
-    const formData = new FormData()
-    formData.append('file', file)
-    // 不设置 Content-Type，让浏览器自动添加 boundary
-    return request.post('/boms/import', formData, {
-      timeout: 600000, // 10分钟超时，因为大文件导入可能耗时较长
-    })
+  // 导入BOM（Excel/CSV文件），dryRun 为 true 时只预检，不写入数据库；force 为 true 时忽略相同文件的已有任务
+  importBoms(
+    file: File,
+    onProgress?: (job: ImportJob<BomImportResponse>) => void,
+    dryRun = false,
+    force = false,
+  ): Promise<BomImportResponse> {
+    return importJobApi.submitAndWait('/boms/import', file, onProgress, dryRun, force)
   },
 
   // 根据物料编码获取该物料的所有BOM版本列表
@@ -45,4 +47,11 @@ export const bomApi = {
       params: { materialCode, version },
     })
   },
+
+  // BOM反查（平铺）：按层级平铺返回所有父级物料及其BOM
+  queryBomBackwardFlat(materialCode: string, version?: string): Promise<BomWhereUsedRow[]> {
+    return request.get('/boms/query/backward/flat', {
+      params: { materialCode, version },
+    })
+  },
 }
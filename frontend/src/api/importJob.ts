@@ -0,0 +1,62 @@
+import request from '@/utils/request'
+import type { ImportJob } from '@/types/importJob'
+
+// 轮询间隔（毫秒）
+const POLL_INTERVAL = 1000
+
+export const importJobApi = {
+  // 获取导入任务状态
+  getJob<T>(jobId: string): Promise<ImportJob<T>> {
+    return request.get(`/import-jobs/${jobId}`)
+  },
+
+  // 取消导入任务
+  cancelJob<T>(jobId: string): Promise<ImportJob<T>> {
+    return request.post(`/import-jobs/${jobId}/cancel`)
+  },
+
+  // 下载完整错误报告（gzip 压缩的 CSV）
+  async downloadErrorReport(jobId: string): Promise<void> {
+    const response = await request.get(`/import-jobs/${jobId}/error-report`, {
+      responseType: 'blob',
+      timeout: 300000,
+    })
+    const url = URL.createObjectURL(response.data)
+    const link = document.createElement('a')
+    link.href = url
+    link.download = `import-errors-${jobId}.csv.gz`
+    link.click()
+    URL.revokeObjectURL(url)
+  },
+
+  // 提交导入文件并轮询任务直到结束，返回导入结果
+  // 相同内容的文件正在导入或刚导入成功时后端返回已有任务，force 为 true 时强制重新导入
+  async submitAndWait<T>(
+    url: string,
+    file: File,
+    onProgress?: (job: ImportJob<T>) => void,
+    dryRun = false,
+    force = false,
+  ): Promise<T> {
+    const formData = new FormData()
+    formData.append('file', file)
+    // 不设置 Content-Type，让浏览器自动添加 boundary
+    // 上传请求只负责暂存文件，导入在后台任务中执行
+    let job: ImportJob<T> = await request.post(url, formData, {
+      params: { dryRun, force },
+      timeout: 300000, // 5分钟超时，仅覆盖大文件上传
+    })
+    onProgress?.(job)
+
+    while (job.status === 'QUEUED' || job.status === 'RUNNING') {
+      await new Promise((resolve) => setTimeout(resolve, POLL_INTERVAL))
+      job = await importJobApi.getJob<T>(job.jobId)
+      onProgress?.(job)
+    }
+
+    if (job.status !== 'SUCCEEDED' || job.result === undefined) {
+      throw new Error(job.errorMessage || (job.status === 'CANCELLED' ? '导入已取消' : '导入失败'))
+    }
+    return job.result
+  },
+}
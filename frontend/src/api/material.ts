@@ -1,5 +1,7 @@
 import request from '@/utils/request'
 import type { Material, MaterialImportResponse } from '@/types/material'
+import type { ImportJob } from '@/types/importJob'
+import { importJobApi } from '@/api/importJob'
 
 export const materialApi = {
   // 获取所有物料
@@ -17,14 +19,14 @@ export const materialApi = {
     return request.get(`/materials/group/${groupId}`)
   },
 
-  // 导入物料（Excel文件）
-  importMaterials(file: File): Promise<MaterialImportResponse> {
-    const formData = new FormData()
-    formData.append('file', file)
-    // 不设置 Content-Type，让浏览器自动添加 boundary
-    return request.post('/materials/import', formData, {
-      timeout: 600000, // 10分钟超时，因为大文件导入可能耗时较长
-    })
+  // 导入物料（Excel文件），dryRun 为 true 时只预检，不写入数据库；force 为 true 时忽略相同文件的已有任务
+  importMaterials(
+    file: File,
+    onProgress?: (job: ImportJob<MaterialImportResponse>) => void,
+    dryRun = false,
+    force = false,
+  ): Promise<MaterialImportResponse> {
+    return importJobApi.submitAndWait('/materials/import', file, onProgress, dryRun, force)
   },
 
   // 搜索物料（根据编码或名称模糊匹配）
@@ -1,5 +1,7 @@
 import request from '@/utils/request'
 import type { Unit, CreateUnitRequest, UpdateUnitRequest, UnitImportResponse } from '@/types/unit'
+import type { ImportJob } from '@/types/importJob'
+import { importJobApi } from '@/api/importJob'
 
 export const unitApi = {
   // 获取所有单位
@@ -32,15 +34,13 @@ export const unitApi = {
     return request.delete(`/units/${id}`)
   },
 
-  // 导入Excel文件
-  importUnits(file: File): Promise<UnitImportResponse> {
-    const formData = new FormData()
-    formData.append('file', file)
-    return request.post('/units/import', formData, {
-      headers: {
-        'Content-Type': 'multipart/form-data',
-      },
-      timeout: 300000, // 导入接口设置为5分钟（300秒）
-    })
+  // 导入Excel文件，dryRun 为 true 时只预检，不写入数据库；force 为 true 时忽略相同文件的已有任务
+  importUnits(
+    file: File,
+    onProgress?: (job: ImportJob<UnitImportResponse>) => void,
+    dryRun = false,
+    force = false,
+  ): Promise<UnitImportResponse> {
+    return importJobApi.submitAndWait('/units/import', file, onProgress, dryRun, force)
   },
 }
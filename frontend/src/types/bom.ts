@@ -38,6 +38,13 @@ export interface BomImportResult {
   totalRows: number
   successCount: number
   failureCount: number
+  // BOM结果：新增、更新和内容未变化而跳过的BOM数；明细结果：新增、更新的明细数
+  insertedCount?: number
+  updatedCount?: number
+  skippedCount?: number
+  // 仅明细结果包含：删除和未变化的明细数
+  deletedCount?: number
+  unchangedCount?: number
   errors: BomImportError[]
 }
 
@@ -119,3 +126,25 @@ export interface BomQueryNode {
   calculatedQuantity?: number | null // 计算出的需求数量
   parentQuantity?: number | null // 父物料的需求数量
 }
+
+export interface BomWhereUsedRow {
+  level: number // 层级：直接使用被查物料的父项为 1，多条路径到达的明细取最短层数
+  childMaterialId: number
+  childMaterialCode: string
+  materialId: number
+  materialCode: string
+  materialName: string
+  materialSpecification: string | null // 物料型号
+  materialGroupCode: string | null
+  materialGroupName: string | null
+  bomId: number
+  bomVersion: string
+  bomName: string | null
+  sequence: number | null
+  numerator: number | null
+  denominator: number | null
+  scrapRate: number | null
+  childBomVersion: string | null
+  childUnitCode: string | null // 子项单位编码
+  childUnitName: string | null // 子项单位名称
+}
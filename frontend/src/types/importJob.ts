@@ -0,0 +1,25 @@
+export type ImportJobType = 'MATERIAL' | 'BOM' | 'UNIT'
+
+export type ImportJobStatus = 'QUEUED' | 'RUNNING' | 'SUCCEEDED' | 'FAILED' | 'CANCELLED'
+
+export interface ImportJob<T = unknown> {
+  jobId: string
+  type: ImportJobType
+  // 预检任务：只校验和比对，不写入数据库
+  dryRun: boolean
+  status: ImportJobStatus
+  filename: string
+  submittedBy: string
+  queuePosition: number
+  rowsParsed: number
+  batchesCommitted: number
+  errorCount: number
+  // 任务结束后是否可以下载完整错误报告（结果中的错误列表只是摘要）
+  errorReportAvailable: boolean
+  rowsPerSecond: number
+  submittedAt: string
+  startedAt?: string
+  finishedAt?: string
+  result?: T
+  errorMessage?: string
+}
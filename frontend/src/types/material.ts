@@ -21,6 +21,10 @@ export interface MaterialImportResult {
   totalRows: number
   successCount: number
   failureCount: number
+  // 仅物料结果包含：新增、更新和内容未变化而跳过的行数
+  insertedCount?: number
+  updatedCount?: number
+  skippedCount?: number
   errors: ImportError[]
 }
 
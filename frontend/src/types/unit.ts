@@ -56,6 +56,9 @@ export interface UnitImportResponse {
   totalRows: number
   successCount: number
   failureCount: number
+  insertedCount: number
+  updatedCount: number
+  skippedCount: number
   errors: ImportError[]
 }
 